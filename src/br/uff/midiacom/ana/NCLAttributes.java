@@ -0,0 +1,290 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+
+/**
+ * Esta classe define um repositório compacto para os atributos opcionais de um
+ * elemento da <i>Nested Context Language</i> (NCL).<br/>
+ *
+ * Elementos como o descritor, a região, as ações e condições simples e a
+ * transição possuem muitos atributos opcionais, mas normalmente poucos deles
+ * são usados em cada instância. Em vez de um campo por atributo, o elemento
+ * guarda um repositório que ocupa memória apenas com os atributos definidos.
+ *
+ * Os atributos são identificados pelas constantes de uma enumeração, com no
+ * máximo 32 constantes. Os atributos definidos são indicados por máscaras de
+ * bits e seus valores são guardados em vetores compactos, ordenados pela
+ * posição da constante na enumeração. Valores inteiros e reais são guardados
+ * sem encapsulamento e valores booleanos são guardados nas próprias máscaras.
+ *
+ * @param <K>
+ *          enumeração que identifica os atributos.
+ *
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLAttributes<K extends Enum<K>> {
+
+    private static final Object[] NO_VALUES = new Object[0];
+    private static final long[] NO_NUMBERS = new long[0];
+
+    private int objects;
+    private Object[] values = NO_VALUES;
+    private int numerics;
+    private long[] numbers = NO_NUMBERS;
+    private int flags;
+    private int bits;
+
+
+    /**
+     * Retorna o valor de um atributo guardado como objeto.
+     *
+     * @param key
+     *          constante que identifica o atributo.
+     * @return
+     *          valor do atributo ou nulo se o atributo não estiver definido.
+     */
+    public <V> V get(K key) {
+        int bit = bit(key);
+        if((objects & bit) == 0)
+            return null;
+
+        return (V) values[Integer.bitCount(objects & (bit - 1))];
+    }
+
+
+    /**
+     * Atribui o valor de um atributo guardado como objeto. Um valor nulo
+     * remove o atributo.
+     *
+     * @param key
+     *          constante que identifica o atributo.
+     * @param value
+     *          valor do atributo.
+     */
+    public void set(K key, Object value) {
+        int bit = bit(key);
+        int index = Integer.bitCount(objects & (bit - 1));
+
+        if((objects & bit) != 0){
+            if(value != null){
+                values[index] = value;
+                return;
+            }
+            Object[] result = new Object[values.length - 1];
+            System.arraycopy(values, 0, result, 0, index);
+            System.arraycopy(values, index + 1, result, index, result.length - index);
+            values = result.length == 0 ? NO_VALUES : result;
+            objects &= ~bit;
+        }
+        else if(value != null){
+            Object[] result = new Object[values.length + 1];
+            System.arraycopy(values, 0, result, 0, index);
+            result[index] = value;
+            System.arraycopy(values, index, result, index + 1, values.length - index);
+            values = result;
+            objects |= bit;
+        }
+    }
+
+
+    /**
+     * Retorna o valor de um atributo inteiro.
+     *
+     * @param key
+     *          constante que identifica o atributo.
+     * @return
+     *          valor do atributo ou nulo se o atributo não estiver definido.
+     */
+    public Integer getInteger(K key) {
+        int bit = bit(key);
+        if((numerics & bit) == 0)
+            return null;
+
+        return (int) numbers[Integer.bitCount(numerics & (bit - 1))];
+    }
+
+
+    /**
+     * Atribui o valor de um atributo inteiro. Um valor nulo remove o atributo.
+     *
+     * @param key
+     *          constante que identifica o atributo.
+     * @param value
+     *          valor do atributo.
+     */
+    public void setInteger(K key, Integer value) {
+        if(value == null)
+            setNumber(bit(key), false, 0);
+        else
+            setNumber(bit(key), true, value.longValue());
+    }
+
+
+    /**
+     * Retorna o valor de um atributo real.
+     *
+     * @param key
+     *          constante que identifica o atributo.
+     * @return
+     *          valor do atributo ou nulo se o atributo não estiver definido.
+     */
+    public Double getDouble(K key) {
+        int bit = bit(key);
+        if((numerics & bit) == 0)
+            return null;
+
+        return Double.longBitsToDouble(numbers[Integer.bitCount(numerics & (bit - 1))]);
+    }
+
+
+    /**
+     * Atribui o valor de um atributo real. Um valor nulo remove o atributo.
+     *
+     * @param key
+     *          constante que identifica o atributo.
+     * @param value
+     *          valor do atributo.
+     */
+    public void setDouble(K key, Double value) {
+        if(value == null)
+            setNumber(bit(key), false, 0);
+        else
+            setNumber(bit(key), true, Double.doubleToRawLongBits(value));
+    }
+
+
+    /**
+     * Retorna o valor de um atributo booleano.
+     *
+     * @param key
+     *          constante que identifica o atributo.
+     * @return
+     *          valor do atributo ou nulo se o atributo não estiver definido.
+     */
+    public Boolean getBoolean(K key) {
+        int bit = bit(key);
+        if((flags & bit) == 0)
+            return null;
+
+        return (bits & bit) != 0;
+    }
+
+
+    /**
+     * Atribui o valor de um atributo booleano. Um valor nulo remove o atributo.
+     *
+     * @param key
+     *          constante que identifica o atributo.
+     * @param value
+     *          valor do atributo.
+     */
+    public void setBoolean(K key, Boolean value) {
+        int bit = bit(key);
+        if(value == null){
+            flags &= ~bit;
+            bits &= ~bit;
+        }
+        else{
+            flags |= bit;
+            if(value)
+                bits |= bit;
+            else
+                bits &= ~bit;
+        }
+    }
+
+
+    /**
+     * Verifica se um atributo está definido.
+     *
+     * @param key
+     *          constante que identifica o atributo.
+     * @return
+     *          verdadeiro se o atributo estiver definido.
+     */
+    public boolean contains(K key) {
+        return ((objects | numerics | flags) & bit(key)) != 0;
+    }
+
+
+    /**
+     * Retorna o número de atributos definidos.
+     *
+     * @return
+     *          inteiro representando o número de atributos.
+     */
+    public int size() {
+        return Integer.bitCount(objects | numerics | flags);
+    }
+
+
+    private void setNumber(int bit, boolean present, long value) {
+        int index = Integer.bitCount(numerics & (bit - 1));
+
+        if((numerics & bit) != 0){
+            if(present){
+                numbers[index] = value;
+                return;
+            }
+            long[] result = new long[numbers.length - 1];
+            System.arraycopy(numbers, 0, result, 0, index);
+            System.arraycopy(numbers, index + 1, result, index, result.length - index);
+            numbers = result.length == 0 ? NO_NUMBERS : result;
+            numerics &= ~bit;
+        }
+        else if(present){
+            long[] result = new long[numbers.length + 1];
+            System.arraycopy(numbers, 0, result, 0, index);
+            result[index] = value;
+            System.arraycopy(numbers, index, result, index + 1, numbers.length - index);
+            numbers = result;
+            numerics |= bit;
+        }
+    }
+
+
+    private int bit(K key) {
+        int ordinal = key.ordinal();
+        if(ordinal >= Integer.SIZE)
+            throw new IllegalArgumentException("Attribute index out of range: " + key);
+
+        return 1 << ordinal;
+    }
+}
@@ -37,7 +37,9 @@
  *******************************************************************************/
 package br.uff.midiacom.ana;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.interfaces.NCLPort;
+import br.uff.midiacom.ana.interfaces.NCLPortResolver;
 import br.uff.midiacom.ana.interfaces.NCLProperty;
 import br.uff.midiacom.ana.link.NCLLink;
 import br.uff.midiacom.ana.meta.NCLMeta;
@@ -67,6 +69,7 @@ public class NCLBody<Pt extends NCLPort, Pp extends NCLProperty, N extends NCLNo
     private Set<L> links = new TreeSet<L>();
     private Set<M> metas = new TreeSet<M>();
     private Set<MT> metadatas = new TreeSet<MT>();
+    private NCLPortResolver portResolver;
 
 
     /**
@@ -102,10 +105,14 @@ public class NCLBody<Pt extends NCLPort, Pp extends NCLProperty, N extends NCLNo
      * @see TreeSet#add
      */
     public boolean addPort(Pt port) {
+        modified();
         if(ports.add(port)){
             //Se port existe, atribui este como seu parente
             if(port != null)
                 port.setParent(this);
+            added("port", port);
+            if(portResolver != null)
+                portResolver.invalidate(port);
 
             return true;
         }
@@ -124,6 +131,7 @@ public class NCLBody<Pt extends NCLPort, Pp extends NCLProperty, N extends NCLNo
      * @see TreeSet#remove
      */
     public boolean removePort(String id) {
+        modified();
         for(Pt port : ports){
             if(port.getId().equals(id))
                 return removePort(port);
@@ -143,10 +151,14 @@ public class NCLBody<Pt extends NCLPort, Pp extends NCLProperty, N extends NCLNo
      * @see TreeSet#remove
      */
     public boolean removePort(Pt port) {
+        modified();
         if(ports.remove(port)){
             //Se port existe, retira o seu parentesco
             if(port != null)
                 port.setParent(null);
+            removed("port", port);
+            if(portResolver != null)
+                portResolver.invalidate(port);
 
             return true;
         }
@@ -154,6 +166,30 @@ public class NCLBody<Pt extends NCLPort, Pp extends NCLProperty, N extends NCLNo
     }
     
     
+    /**
+     * Define o resolvedor de portas avisado quando portas são adicionadas ou
+     * removidas do corpo do documento NCL.
+     *
+     * @param resolver
+     *          resolvedor de portas ou nulo.
+     */
+    public void setPortResolver(NCLPortResolver resolver) {
+        portResolver = resolver;
+    }
+
+
+    /**
+     * Retorna o resolvedor de portas avisado quando portas são adicionadas ou
+     * removidas do corpo do documento NCL.
+     *
+     * @return
+     *          resolvedor de portas ou nulo.
+     */
+    public NCLPortResolver getPortResolver() {
+        return portResolver;
+    }
+    
+    
     /**
      * Verifica se o corpo do documento NCL possui uma porta.
      * 
@@ -217,10 +253,12 @@ public class NCLBody<Pt extends NCLPort, Pp extends NCLProperty, N extends NCLNo
      * @see TreeSet#add
      */
     public boolean addProperty(Pp property) {
+        modified();
         if(properties.add(property)){
             //Se property existe, atribui este como seu parente
             if(property != null)
                 property.setParent(this);
+            added("property", property);
 
             return true;
         }
@@ -239,6 +277,7 @@ public class NCLBody<Pt extends NCLPort, Pp extends NCLProperty, N extends NCLNo
      * @see TreeSet#remove
      */
     public boolean removeProperty(String name) {
+        modified();
         for(Pp property : properties){
             if(property.getId().equals(name))
                 return removeProperty(property);
@@ -258,10 +297,12 @@ public class NCLBody<Pt extends NCLPort, Pp extends NCLProperty, N extends NCLNo
      * @see TreeSet#remove
      */
     public boolean removeProperty(Pp property) {
+        modified();
         if(properties.remove(property)){
             //Se property existe, retira o seu parentesco
             if(property != null)
                 property.setParent(null);
+            removed("property", property);
 
             return true;
         }
@@ -332,10 +373,12 @@ public class NCLBody<Pt extends NCLPort, Pp extends NCLProperty, N extends NCLNo
      * @see TreeSet#add
      */
     public boolean addNode(N node) {
+        modified();
         if(nodes.add(node)){
             //Se node existe, atribui este como seu parente
             if(node != null)
                 node.setParent(this);
+            added("node", node);
 
             return true;
         }
@@ -354,6 +397,7 @@ public class NCLBody<Pt extends NCLPort, Pp extends NCLProperty, N extends NCLNo
      * @see TreeSet#remove
      */
     public boolean removeNode(String id) {
+        modified();
         for(N node : nodes){
             if(node.getId().equals(id))
                 return removeNode(node);
@@ -373,10 +417,14 @@ public class NCLBody<Pt extends NCLPort, Pp extends NCLProperty, N extends NCLNo
      * @see TreeSet#remove
      */
     public boolean removeNode(N node) {
+        modified();
         if(nodes.remove(node)){
             //Se node existe, retira o seu parentesco
             if(node != null)
                 node.setParent(null);
+            removed("node", node);
+            if(portResolver != null)
+                portResolver.invalidate(node);
 
             return true;
         }
@@ -447,10 +495,12 @@ public class NCLBody<Pt extends NCLPort, Pp extends NCLProperty, N extends NCLNo
      * @see TreeSet#add
      */
     public boolean addLink(L link) {
+        modified();
         if(links.add(link)){
             //Se link existe, atribui este como seu parente
             if(link != null)
                 link.setParent(this);
+            added("link", link);
 
             return true;
         }
@@ -469,10 +519,12 @@ public class NCLBody<Pt extends NCLPort, Pp extends NCLProperty, N extends NCLNo
      * @see TreeSet#remove
      */
     public boolean removeLink(L link) {
+        modified();
         if(links.remove(link)){
             //Se link existe, retira o seu parentesco
             if(link != null)
                 link.setParent(null);
+            removed("link", link);
 
             return true;
         }
@@ -526,10 +578,12 @@ public class NCLBody<Pt extends NCLPort, Pp extends NCLProperty, N extends NCLNo
      * @see TreeSet#add
      */
     public boolean addMeta(M meta) {
+        modified();
         if(metas.add(meta)){
             //Se meta existe, atribui este como seu parente
             if(meta != null)
                 meta.setParent(this);
+            added("meta", meta);
 
             return true;
         }
@@ -548,10 +602,12 @@ public class NCLBody<Pt extends NCLPort, Pp extends NCLProperty, N extends NCLNo
      * @see TreeSet#remove
      */
     public boolean removeMeta(M meta) {
+        modified();
         if(metas.remove(meta)){
             //Se meta existe, retira o seu parentesco
             if(meta != null)
                 meta.setParent(null);
+            removed("meta", meta);
 
             return true;
         }
@@ -605,10 +661,12 @@ public class NCLBody<Pt extends NCLPort, Pp extends NCLProperty, N extends NCLNo
      * @see TreeSet#add
      */
     public boolean addMetadata(MT metadata) {
+        modified();
         if(metadatas.add(metadata)){
             //Se metadata existe, atribui este como seu parente
             if(metadata != null)
                 metadata.setParent(this);
+            added("metadata", metadata);
 
             return true;
         }
@@ -627,10 +685,12 @@ public class NCLBody<Pt extends NCLPort, Pp extends NCLProperty, N extends NCLNo
      * @see TreeSet#remove
      */
     public boolean removeMetadata(MT metadata) {
+        modified();
         if(metadatas.remove(metadata)){
             //Se metadata existe, retira o seu parentesco
             if(metadata != null)
                 metadata.setParent(null);
+            removed("metadata", metadata);
 
             return true;
         }
@@ -674,7 +734,12 @@ public class NCLBody<Pt extends NCLPort, Pp extends NCLProperty, N extends NCLNo
     
     
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -685,43 +750,86 @@ public class NCLBody<Pt extends NCLPort, Pp extends NCLProperty, N extends NCLNo
             space += "\t";        
         
         // <body> element and attributes declaration
-        content = space + "<body";
+        content.append(space + "<body");
         if(getId() != null)
-            content += " id='" + getId() + "'";
-        content += ">\n";
+            content.append(" id='" + escape(getId()) + "'");
+        content.append(">\n");
         
         
         // <body> element content
         if(hasMeta()){
             for(M meta : metas)
-                content += meta.parse(ident + 1);
+                content.append(meta.parse(ident + 1));
         }
         if(hasMetadata()){
             for(MT metadata : metadatas)
-                content += metadata.parse(ident + 1);
+                content.append(metadata.parse(ident + 1));
         }
         if(hasPort()){
             for(Pt port : ports)
-                content += port.parse(ident + 1);
+                content.append(port.parse(ident + 1));
         }
         if(hasProperty()){
             for(Pp property : properties)
-                content += property.parse(ident + 1);
+                content.append(property.parse(ident + 1));
         }
         if(hasNode()){
             for(N node : nodes)
-                content += node.parse(ident + 1);
+                content.append(node.parse(ident + 1));
         }
         if(hasLink()){
             for(L link : links)
-                content += link.parse(ident + 1);
+                content.append(link.parse(ident + 1));
         }
         
         
         // <body> element end declaration
-        content += space + "</body>\n";
+        content.append(space + "</body>\n");
         
-        return content;
+        return content.toString();
+    }
+
+
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(property.equals("port")){
+            if(operation == Operation.ADD)
+                addPort((Pt) value);
+            else
+                removePort((Pt) value);
+        }
+        else if(property.equals("property")){
+            if(operation == Operation.ADD)
+                addProperty((Pp) value);
+            else
+                removeProperty((Pp) value);
+        }
+        else if(property.equals("node")){
+            if(operation == Operation.ADD)
+                addNode((N) value);
+            else
+                removeNode((N) value);
+        }
+        else if(property.equals("link")){
+            if(operation == Operation.ADD)
+                addLink((L) value);
+            else
+                removeLink((L) value);
+        }
+        else if(property.equals("meta")){
+            if(operation == Operation.ADD)
+                addMeta((M) value);
+            else
+                removeMeta((M) value);
+        }
+        else if(property.equals("metadata")){
+            if(operation == Operation.ADD)
+                addMetadata((MT) value);
+            else
+                removeMetadata((MT) value);
+        }
+        else
+            super.applyChange(operation, property, value);
     }
 
 
@@ -0,0 +1,268 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Esta classe entrega as alterações de um documento da <i>Nested Context
+ * Language</i> (NCL) aos seus ouvintes e agrupa as alterações feitas dentro de
+ * um lote.<br/>
+ *
+ * Um lote pertence à thread que o iniciou: as alterações feitas por outras
+ * threads no mesmo documento são entregues normalmente. Dentro de um lote,
+ * alterações seguidas do mesmo atributo do mesmo elemento são unidas em uma só,
+ * com o primeiro valor antigo e o último valor novo, e descartadas se o atributo
+ * voltar ao valor original. A inserção e a retirada do mesmo filho na mesma
+ * lista se anulam.
+ *
+ * Os diários do documento recebem cada alteração assim que ela é feita, sem
+ * agrupamento, na thread que a fez, e são avisados do fim de cada lote.
+ *
+ * @see NCLDoc#addChangeListener(br.uff.midiacom.ana.NCLChangeListener)
+ * @see NCLJournal
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+final class NCLChangeDispatcher {
+
+    private static final AtomicInteger observed = new AtomicInteger();
+
+    private final List<NCLChangeListener> listeners = new ArrayList<NCLChangeListener>();
+    private final List<NCLJournal> journals = new CopyOnWriteArrayList<NCLJournal>();
+    private final ThreadLocal<Batch> batches = new ThreadLocal<Batch>();
+    private volatile boolean active;
+
+
+    /**
+     * Retorna o distribuidor do documento de um elemento se o documento possuir
+     * ouvintes. Permite que os elementos não criem alterações enquanto ninguém
+     * as observa. O documento só é procurado se algum documento possuir
+     * ouvintes.
+     *
+     * @param element
+     *          elemento alterado.
+     * @return
+     *          distribuidor do documento ou nulo se o elemento não pertencer a
+     *          um documento observado.
+     */
+    static NCLChangeDispatcher of(NCLElement element) {
+        if(observed.get() == 0)
+            return null;
+
+        NCLDoc doc = element.document();
+        NCLChangeDispatcher dispatcher = doc != null ? doc.getChangeDispatcher() : null;
+        return dispatcher != null && dispatcher.active ? dispatcher : null;
+    }
+
+
+    synchronized void addListener(NCLChangeListener listener) {
+        if(listener == null || listeners.contains(listener))
+            return;
+
+        listeners.add(listener);
+        observe();
+    }
+
+
+    synchronized boolean removeListener(NCLChangeListener listener) {
+        if(!listeners.remove(listener))
+            return false;
+
+        observe();
+        return true;
+    }
+
+
+    synchronized void addJournal(NCLJournal journal) {
+        if(journals.contains(journal))
+            return;
+
+        journals.add(journal);
+        observe();
+    }
+
+
+    synchronized boolean removeJournal(NCLJournal journal) {
+        if(!journals.remove(journal))
+            return false;
+
+        observe();
+        return true;
+    }
+
+
+    private void observe() {
+        boolean now = !listeners.isEmpty() || !journals.isEmpty();
+        if(now == active)
+            return;
+
+        active = now;
+        if(now)
+            observed.incrementAndGet();
+        else
+            observed.decrementAndGet();
+    }
+
+
+    void begin() {
+        Batch batch = batches.get();
+        if(batch == null){
+            batch = new Batch();
+            batches.set(batch);
+        }
+        batch.depth++;
+    }
+
+
+    void end() {
+        Batch batch = batches.get();
+        if(batch == null)
+            throw new IllegalStateException("No batch to end");
+        if(--batch.depth > 0)
+            return;
+        batches.remove();
+
+        List<NCLChangeEvent> events = new ArrayList<NCLChangeEvent>();
+        for(NCLChangeEvent event : batch.pending){
+            if(event != null && !(event.getOperation() == Operation.ATTRIBUTE && same(event.getOldValue(), event.getNewValue())))
+                events.add(event);
+        }
+        List<NCLChangeListener> targets;
+        synchronized(this){
+            targets = new ArrayList<NCLChangeListener>(listeners);
+        }
+        for(NCLJournal journal : journals)
+            journal.commit();
+        deliver(targets, events);
+    }
+
+
+    void dispatch(NCLChangeEvent event) {
+        Batch batch = batches.get();
+        List<NCLChangeListener> targets = null;
+        synchronized(this){
+            if(!listeners.isEmpty()){
+                if(batch != null)
+                    batch.queue(event);
+                else
+                    targets = new ArrayList<NCLChangeListener>(listeners);
+            }
+        }
+        for(NCLJournal journal : journals)
+            journal.record(event, batch != null);
+
+        if(targets != null){
+            List<NCLChangeEvent> events = new ArrayList<NCLChangeEvent>(1);
+            events.add(event);
+            deliver(targets, events);
+        }
+    }
+
+
+    private static void deliver(List<NCLChangeListener> targets, List<NCLChangeEvent> events) {
+        if(events.isEmpty())
+            return;
+
+        events = Collections.unmodifiableList(events);
+        for(NCLChangeListener listener : targets)
+            listener.changed(events);
+    }
+
+
+    private static boolean same(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+
+    /**
+     * Lote de alterações de uma thread.
+     */
+    private static class Batch {
+
+        private int depth;
+        private final List<NCLChangeEvent> pending = new ArrayList<NCLChangeEvent>();
+        private final Map<NCLElement, Map<String, Integer>> attributes = new IdentityHashMap<NCLElement, Map<String, Integer>>();
+        private final Map<Object, Integer> children = new IdentityHashMap<Object, Integer>();
+
+
+        private void queue(NCLChangeEvent event) {
+            NCLElement element = event.getElement();
+            String property = event.getProperty();
+
+            if(event.getOperation() == Operation.ATTRIBUTE){
+                Map<String, Integer> slots = attributes.get(element);
+                if(slots == null){
+                    slots = new HashMap<String, Integer>();
+                    attributes.put(element, slots);
+                }
+                Integer slot = slots.get(property);
+                if(slot != null){
+                    NCLChangeEvent first = pending.get(slot);
+                    pending.set(slot, new NCLChangeEvent(Operation.ATTRIBUTE, element, property, first.getOldValue(), event.getNewValue()));
+                    return;
+                }
+                slots.put(property, pending.size());
+                pending.add(event);
+                return;
+            }
+
+            Object child = event.getOperation() == Operation.ADD ? event.getNewValue() : event.getOldValue();
+            Integer slot = children.get(child);
+            if(slot != null){
+                NCLChangeEvent previous = pending.get(slot);
+                if(previous.getOperation() != event.getOperation() && previous.getElement() == element && property.equals(previous.getProperty())){
+                    pending.set(slot, null);
+                    children.remove(child);
+                    return;
+                }
+            }
+            children.put(child, pending.size());
+            pending.add(event);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+
+/**
+ * Esta classe define uma alteração feita em um elemento de um documento da
+ * <i>Nested Context Language</i> (NCL), entregue aos ouvintes do documento.<br/>
+ *
+ * Uma alteração de atributo informa o nome do atributo, derivado do método que
+ * o altera (por exemplo <i>zIndex</i> para <i>setzIndex</i>), e os valores antes
+ * e depois da alteração. Atributos que aceitam tanto um valor quanto um
+ * parâmetro de conector informam o que estiver atribuído. Referências a outros
+ * elementos informam o elemento referenciado, ou nulo se a referência ainda não
+ * foi resolvida.
+ *
+ * A inserção e a retirada de um filho informam o elemento pai, o nome da lista
+ * de filhos, derivado do método que a altera (por exemplo <i>port</i> para
+ * <i>addPort</i>), e o filho, como valor novo na inserção e como valor antigo na
+ * retirada. Os filhos do elemento inserido ou retirado não geram alterações
+ * próprias.
+ *
+ * @see NCLChangeListener
+ * @see NCLDoc#addChangeListener(br.uff.midiacom.ana.NCLChangeListener)
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public final class NCLChangeEvent {
+
+    /**
+     * Operações de alteração dos elementos.
+     */
+    public enum Operation {
+        ADD, REMOVE, ATTRIBUTE
+    }
+
+    private final Operation operation;
+    private final NCLElement element;
+    private final String property;
+    private final Object oldValue;
+    private final Object newValue;
+
+
+    NCLChangeEvent(Operation operation, NCLElement element, String property, Object oldValue, Object newValue) {
+        this.operation = operation;
+        this.element = element;
+        this.property = property;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+    }
+
+
+    /**
+     * Retorna a operação da alteração.
+     *
+     * @return
+     *          operação da alteração.
+     */
+    public Operation getOperation() {
+        return operation;
+    }
+
+
+    /**
+     * Retorna o elemento alterado. Na inserção e na retirada de um filho,
+     * retorna o elemento pai.
+     *
+     * @return
+     *          elemento alterado.
+     */
+    public NCLElement getElement() {
+        return element;
+    }
+
+
+    /**
+     * Retorna o nome do atributo alterado ou da lista de filhos alterada.
+     *
+     * @return
+     *          String contendo o nome do atributo ou da lista.
+     */
+    public String getProperty() {
+        return property;
+    }
+
+
+    /**
+     * Retorna o valor do atributo antes da alteração ou o filho retirado.
+     *
+     * @return
+     *          valor antigo ou nulo.
+     */
+    public Object getOldValue() {
+        return oldValue;
+    }
+
+
+    /**
+     * Retorna o valor do atributo depois da alteração ou o filho inserido.
+     *
+     * @return
+     *          valor novo ou nulo.
+     */
+    public Object getNewValue() {
+        return newValue;
+    }
+
+
+    @Override
+    public String toString() {
+        return operation + " " + element.getClass().getSimpleName() + "." + property + ": " + oldValue + " -> " + newValue;
+    }
+}
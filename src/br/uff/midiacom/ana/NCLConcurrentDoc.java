@@ -0,0 +1,269 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * Esta classe permite a edição simultânea de um documento da <i>Nested Context
+ * Language</i> (NCL) por várias threads.<br/>
+ *
+ * O documento é dividido em ramos: cada filho do corpo (<i>body</i>) e do
+ * cabeçalho (<i>head</i>) do documento, como um contexto, uma mídia, um elo ou
+ * uma base, forma um ramo com todos os seus descendentes. Cada ramo é protegido
+ * por um entre um número fixo de travas de leitura e escrita, escolhida a partir
+ * da raiz do ramo. Edições em ramos diferentes podem ser feitas ao mesmo tempo,
+ * enquanto edições no mesmo ramo são feitas uma de cada vez.
+ *
+ * Alterações que envolvem mais de um ramo, como inserir ou retirar filhos do
+ * corpo ou do cabeçalho, renomear elementos referenciados ou apagar elementos
+ * através do índice de referências, devem ser feitas através de
+ * <i>editDocument</i>, que aguarda o término das demais edições.
+ *
+ * A leitura consistente do documento é feita através de uma cópia congelada
+ * obtida por <i>snapshot</i>. O código XML do documento é gerado enquanto
+ * nenhuma edição está em andamento, com as travas de todos os ramos tomadas para
+ * leitura, de modo que várias cópias podem ser geradas ao mesmo tempo. A cópia
+ * pode então ser lida, transformada em código XML ou validada sem bloquear as
+ * edições que continuam no documento.
+ *
+ * Todos os acessos ao documento devem ser feitos através desta classe enquanto
+ * houver edições simultâneas.
+ *
+ * @see NCLFrozenDoc
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLConcurrentDoc {
+
+    /**
+     * Número de travas usado quando não especificado.
+     */
+    public static final int DEFAULT_STRIPES = 16;
+
+    private NCLDoc doc;
+    private ReentrantReadWriteLock structure = new ReentrantReadWriteLock();
+    private ReentrantReadWriteLock[] stripes;
+
+
+    /**
+     * Construtor do editor simultâneo de um documento.
+     *
+     * @param doc
+     *          documento NCL editado.
+     */
+    public NCLConcurrentDoc(NCLDoc doc) {
+        this(doc, DEFAULT_STRIPES);
+    }
+
+
+    /**
+     * Construtor do editor simultâneo de um documento.
+     *
+     * @param doc
+     *          documento NCL editado.
+     * @param stripes
+     *          número de travas que protegem os ramos do documento.
+     * @throws IllegalArgumentException
+     *          se o número de travas não for positivo.
+     */
+    public NCLConcurrentDoc(NCLDoc doc, int stripes) throws IllegalArgumentException {
+        if(doc == null)
+            throw new NullPointerException("Null document");
+        if(stripes < 1)
+            throw new IllegalArgumentException("Invalid number of stripes");
+
+        this.doc = doc;
+        this.stripes = new ReentrantReadWriteLock[stripes];
+        for(int i = 0; i < stripes; i++)
+            this.stripes[i] = new ReentrantReadWriteLock();
+    }
+
+
+    /**
+     * Retorna o documento editado.
+     *
+     * @return
+     *          documento NCL.
+     */
+    public NCLDoc getDoc() {
+        return doc;
+    }
+
+
+    /**
+     * Executa uma edição no ramo do documento que contém o elemento. A edição só
+     * deve alterar elementos deste ramo. Caso o elemento seja o próprio documento,
+     * seu corpo ou seu cabeçalho, ou não pertença a nenhum ramo, a edição é
+     * executada como em <i>editDocument</i>.
+     *
+     * @param element
+     *          elemento a ser editado.
+     * @param edit
+     *          edição a ser executada.
+     * @return
+     *          resultado da edição.
+     * @throws Exception
+     *          exceção disparada pela edição.
+     */
+    public <R> R edit(NCLElement element, Callable<R> edit) throws Exception {
+        structure.readLock().lock();
+        try{
+            NCLElement root = getBranch(element);
+            if(root != null){
+                Lock lock = getStripe(root).writeLock();
+                lock.lock();
+                try{
+                    return edit.call();
+                }
+                finally{
+                    lock.unlock();
+                }
+            }
+        }
+        finally{
+            structure.readLock().unlock();
+        }
+
+        return editDocument(edit);
+    }
+
+
+    /**
+     * Executa uma edição que pode alterar qualquer parte do documento. A edição
+     * aguarda o término das demais edições e nenhuma outra edição é iniciada
+     * enquanto ela estiver em andamento.
+     *
+     * @param edit
+     *          edição a ser executada.
+     * @return
+     *          resultado da edição.
+     * @throws Exception
+     *          exceção disparada pela edição.
+     */
+    public <R> R editDocument(Callable<R> edit) throws Exception {
+        structure.writeLock().lock();
+        try{
+            return edit.call();
+        }
+        finally{
+            structure.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Gera o código XML do documento enquanto nenhuma edição está em andamento.
+     * Outras gerações do código XML podem ser feitas ao mesmo tempo.
+     *
+     * @return
+     *          código XML do documento.
+     */
+    public String parse() {
+        structure.readLock().lock();
+        try{
+            // as travas são tomadas sempre na mesma ordem
+            for(int i = 0; i < stripes.length; i++)
+                stripes[i].readLock().lock();
+            try{
+                return doc.parse(0);
+            }
+            finally{
+                for(int i = stripes.length - 1; i >= 0; i--)
+                    stripes[i].readLock().unlock();
+            }
+        }
+        finally{
+            structure.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Cria uma cópia congelada do documento. O documento é bloqueado apenas
+     * durante a geração de seu código XML; a cópia é construída depois, sem
+     * bloquear as edições.
+     *
+     * @return
+     *          documento congelado com o estado atual do documento.
+     * @throws NCLParsingException
+     *          se o código XML do documento não puder ser lido.
+     */
+    public NCLFrozenDoc snapshot() throws NCLParsingException {
+        return new NCLFrozenDoc(parse());
+    }
+
+
+    /**
+     * Cria uma cópia alterável do estado atual do documento, que pode ser
+     * validada ou alterada sem afetar o documento editado.
+     *
+     * @return
+     *          cópia do documento NCL.
+     * @throws NCLParsingException
+     *          se o código XML do documento não puder ser lido.
+     */
+    public NCLDoc copy() throws NCLParsingException {
+        return snapshot().thaw();
+    }
+
+
+    private NCLElement getBranch(NCLElement element) {
+        if(element == null)
+            return null;
+
+        NCLElement parent;
+        while((parent = element.getParent()) != null && parent != element){
+            if(parent instanceof NCLBody || parent instanceof NCLHead)
+                return element;
+            element = parent;
+        }
+
+        return null;
+    }
+
+
+    private ReentrantReadWriteLock getStripe(NCLElement root) {
+        int hash = System.identityHashCode(root);
+        hash ^= hash >>> 16;
+        return stripes[(hash & 0x7fffffff) % stripes.length];
+    }
+}
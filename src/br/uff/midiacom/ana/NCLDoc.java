@@ -37,12 +37,20 @@
  *******************************************************************************/
 package br.uff.midiacom.ana;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLValues.NCLNamespace;
+import br.uff.midiacom.ana.reuse.NCLImportGraph;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import org.xml.sax.Attributes;
 import org.xml.sax.helpers.XMLReaderFactory;
 import org.xml.sax.InputSource;
@@ -63,6 +71,13 @@ public class NCLDoc<H extends NCLHead, B extends NCLBody> extends NCLIdentifiabl
 
     private H head;
     private B body;
+    private NCLImportGraph importGraph;
+    private NCLReferenceIndex referenceIndex;
+    private NCLQueryIndex queryIndex;
+    private NCLSerializationCache serializationCache;
+    private NCLStringPool stringPool;
+    private volatile Map<NCLElement, Long> fingerprints;
+    private final NCLChangeDispatcher changeDispatcher = new NCLChangeDispatcher();
 
     
     /**
@@ -75,11 +90,14 @@ public class NCLDoc<H extends NCLHead, B extends NCLBody> extends NCLIdentifiabl
      *          Se o título a ser atribuído for uma String vazia.
      */
     public void setTitle(String title) throws IllegalArgumentException {
+        modified();
+        Object old = this.title;
         if(title != null && "".equals(title.trim()))
             throw new IllegalArgumentException("Empty title String");
         
         
         this.title = title;
+        changed("title", old, this.title);
     }
 
 
@@ -101,7 +119,10 @@ public class NCLDoc<H extends NCLHead, B extends NCLBody> extends NCLIdentifiabl
      *          namespace usado pelo documento NCL.
      */
     public void setXmlns(NCLNamespace xmlns) {
+        modified();
+        Object old = this.xmlns;
         this.xmlns = xmlns;
+        changed("xmlns", old, this.xmlns);
     }
 
 
@@ -123,6 +144,8 @@ public class NCLDoc<H extends NCLHead, B extends NCLBody> extends NCLIdentifiabl
      *          elemento representando o cabeçalho do documento NCL.
      */
     public void setHead(H head) {
+        modified();
+        Object old = this.head;
         //Retira o parentesco do head atual
         if(this.head != null)
             this.head.setParent(null);
@@ -131,6 +154,7 @@ public class NCLDoc<H extends NCLHead, B extends NCLBody> extends NCLIdentifiabl
         //Se head existe, atribui este como seu parente
         if(this.head != null)
             this.head.setParent(this);
+        changed("head", old, this.head);
     }
 
 
@@ -152,6 +176,8 @@ public class NCLDoc<H extends NCLHead, B extends NCLBody> extends NCLIdentifiabl
      *          elemento representando o corpo do documento NCL.
      */
     public void setBody(B body) {
+        modified();
+        Object old = this.body;
         //Retira o parentesco do body atual
         if(this.body != null)
             this.body.setParent(null);
@@ -160,6 +186,7 @@ public class NCLDoc<H extends NCLHead, B extends NCLBody> extends NCLIdentifiabl
         //Se body existe, atribui este como seu parente
         if(this.body != null)
             this.body.setParent(this);
+        changed("body", old, this.body);
     }
 
 
@@ -174,8 +201,235 @@ public class NCLDoc<H extends NCLHead, B extends NCLBody> extends NCLIdentifiabl
     }
 
 
+
+    /**
+     * Atribui ao documento o grafo de importação usado para resolver as
+     * referências a elementos definidos em documentos importados.
+     *
+     * @param importGraph
+     *          grafo de importação do documento.
+     *
+     * @see NCLImportGraph
+     */
+    public void setImportGraph(NCLImportGraph importGraph) {
+        this.importGraph = importGraph;
+    }
+
+
+    /**
+     * Retorna o grafo de importação do documento.
+     *
+     * @return
+     *          grafo de importação ou nulo se as importações não foram resolvidas.
+     */
+    public NCLImportGraph getImportGraph() {
+        return importGraph;
+    }
+
+
+    /**
+     * Atribui ao documento o índice reverso de referências mantido a cada
+     * alteração das referências do documento.
+     *
+     * @param referenceIndex
+     *          índice de referências do documento ou nulo para deixar de mantê-lo.
+     *
+     * @see NCLReferenceIndex
+     */
+    public void setReferenceIndex(NCLReferenceIndex referenceIndex) {
+        this.referenceIndex = referenceIndex;
+    }
+
+
+    /**
+     * Retorna o índice reverso de referências do documento.
+     *
+     * @return
+     *          índice de referências ou nulo se o documento não foi indexado.
+     */
+    public NCLReferenceIndex getReferenceIndex() {
+        return referenceIndex;
+    }
+
+
+    /**
+     * Atribui ao documento os índices de consulta, que passam a ser mantidos
+     * atualizados quando elementos são inseridos ou retirados do documento.
+     *
+     * @param queryIndex
+     *          índices de consulta do documento ou nulo para deixar de mantê-los.
+     *
+     * @see NCLQueryIndex
+     */
+    public void setQueryIndex(NCLQueryIndex queryIndex) {
+        this.queryIndex = queryIndex;
+    }
+
+
+    /**
+     * Retorna os índices de consulta do documento.
+     *
+     * @return
+     *          índices de consulta ou nulo se o documento não foi indexado.
+     */
+    public NCLQueryIndex getQueryIndex() {
+        return queryIndex;
+    }
+
+
+    /**
+     * Atribui ao documento uma cache de serialização. Com a cache, o método
+     * <i>parse</i> gera novamente apenas o código dos elementos alterados desde a
+     * última geração.
+     *
+     * @param serializationCache
+     *          cache de serialização ou nulo para não usar cache.
+     *
+     * @see NCLSerializationCache
+     */
+    public void setSerializationCache(NCLSerializationCache serializationCache) {
+        this.serializationCache = serializationCache;
+    }
+
+
+    /**
+     * Retorna a cache de serialização do documento.
+     *
+     * @return
+     *          cache de serialização ou nulo se o documento não usar cache.
+     */
+    public NCLSerializationCache getSerializationCache() {
+        return serializationCache;
+    }
+
+
+    /*
+     * Resumos dos elementos do documento, criados na primeira consulta.
+     */
+    Map<NCLElement, Long> getFingerprints(boolean create) {
+        Map<NCLElement, Long> result = fingerprints;
+        if(result == null && create){
+            synchronized(this){
+                if(fingerprints == null)
+                    fingerprints = Collections.synchronizedMap(new IdentityHashMap<NCLElement, Long>());
+                result = fingerprints;
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Atribui ao documento o repositório de Strings usado pelo método
+     * <i>loadXML</i>. Sem um repositório atribuído, cada leitura usa um
+     * repositório próprio.
+     *
+     * @param stringPool
+     *          repositório de Strings, por exemplo o repositório compartilhado.
+     *
+     * @see NCLStringPool#shared()
+     */
+    public void setStringPool(NCLStringPool stringPool) {
+        this.stringPool = stringPool;
+    }
+
+
+    /**
+     * Retorna o repositório de Strings atribuído ao documento.
+     *
+     * @return
+     *          repositório de Strings ou nulo se cada leitura usar um repositório
+     *          próprio.
+     */
+    public NCLStringPool getStringPool() {
+        return stringPool;
+    }
+
+
+    /**
+     * Adiciona um ouvinte das alterações feitas nos elementos do documento pelos
+     * métodos <i>set</i>, <i>add</i> e <i>remove</i>. Apenas os elementos que
+     * estão na árvore do documento geram alterações.
+     *
+     * @param listener
+     *          ouvinte das alterações.
+     *
+     * @see NCLChangeEvent
+     */
+    public void addChangeListener(NCLChangeListener listener) {
+        changeDispatcher.addListener(listener);
+    }
+
+
+    /**
+     * Remove um ouvinte das alterações do documento.
+     *
+     * @param listener
+     *          ouvinte das alterações.
+     * @return
+     *          verdadeiro se o ouvinte foi removido.
+     */
+    public boolean removeChangeListener(NCLChangeListener listener) {
+        return changeDispatcher.removeListener(listener);
+    }
+
+
+    /**
+     * Inicia um lote de alterações. Até o fim do lote, as alterações do
+     * documento são guardadas e agrupadas, e então entregues juntas aos
+     * ouvintes. Os lotes podem ser aninhados, e as alterações são entregues ao
+     * fim do lote mais externo. O lote vale apenas para a thread que o iniciou,
+     * e deve ser terminado por ela.
+     *
+     * @see NCLDoc#endBatch()
+     */
+    public void beginBatch() {
+        changeDispatcher.begin();
+    }
+
+
+    /**
+     * Termina um lote de alterações, entregando aos ouvintes as alterações
+     * guardadas se este for o lote mais externo.
+     *
+     * @throws java.lang.IllegalStateException
+     *          se nenhum lote foi iniciado.
+     *
+     * @see NCLDoc#beginBatch()
+     */
+    public void endBatch() throws IllegalStateException {
+        changeDispatcher.end();
+    }
+
+
+    NCLChangeDispatcher getChangeDispatcher() {
+        return changeDispatcher;
+    }
+
+
+    /**
+     * Cria uma cópia imutável do documento, que pode ser lida por várias threads
+     * sem sincronização.
+     *
+     * @return
+     *          documento congelado.
+     * @throws NCLParsingException
+     *          se algum erro ocorrer durante o congelamento do documento.
+     *
+     * @see NCLFrozenDoc
+     */
+    public NCLFrozenDoc freeze() throws NCLParsingException {
+        return new NCLFrozenDoc(this);
+    }
+
+
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -186,30 +440,49 @@ public class NCLDoc<H extends NCLHead, B extends NCLBody> extends NCLIdentifiabl
             space += "\t";
 
         // XML document start declaration
-        content = space + "<?xml version='1.0' encoding='ISO-8859-1'?>\n";
+        content.append(space + "<?xml version='1.0' encoding='ISO-8859-1'?>\n");
 
-        content += space + "<!-- Generated with NCL API -->\n\n";
+        content.append(space + "<!-- Generated with NCL API -->\n\n");
 
         // <ncl> element and attributes declaration
-        content += space + "<ncl";
+        content.append(space + "<ncl");
         if(getId() != null)
-            content += " id='" + getId() + "'";
+            content.append(" id='" + escape(getId()) + "'");
         if(getTitle() != null)
-            content += " title='" + getTitle() + "'";
+            content.append(" title='" + escape(getTitle()) + "'");
         if(getXmlns() != null)
-            content += " xmlns='" + getXmlns() + "'";
-        content += ">\n";
+            content.append(" xmlns='" + escape(getXmlns()) + "'");
+        content.append(">\n");
 
         // <ncl> element content
         if(getHead() != null)
-            content += getHead().parse(ident + 1);
+            content.append(getHead().parse(ident + 1));
         if(getBody() != null)
-            content += getBody().parse(ident + 1);
+            content.append(getBody().parse(ident + 1));
 
         // <ncl> element end declaration
-        content += space + "</ncl>\n";
+        content.append(space + "</ncl>\n");
 
-        return content;
+        return content.toString();
+    }
+
+
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("title"))
+                setTitle((String) value);
+            else if(property.equals("xmlns"))
+                setXmlns((NCLNamespace) value);
+            else if(property.equals("head"))
+                setHead((H) value);
+            else if(property.equals("body"))
+                setBody((B) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else
+            super.applyChange(operation, property, value);
     }
 
 
@@ -241,6 +514,97 @@ public class NCLDoc<H extends NCLHead, B extends NCLBody> extends NCLIdentifiabl
     }
 
 
+    /**
+     * Valida o documento usando as threads de um <i>ForkJoinPool</i>. As bases do
+     * cabeçalho e os contextos e switches do corpo são validados
+     * concorrentemente, quando suas subárvores forem grandes o suficiente, e
+     * depois o documento é validado como no método <i>validate()</i>, reusando os
+     * resultados. As mensagens de aviso e de erro são as mesmas, e na mesma
+     * ordem, da validação sequencial.
+     *
+     * @param pool
+     *          pool onde a validação é executada.
+     * @return
+     *          verdadeiro se o documento estiver de acordo com o padrão.
+     *
+     * @see NCLWalker#DEFAULT_THRESHOLD
+     */
+    public boolean validate(ForkJoinPool pool) {
+        return validate(pool, NCLWalker.DEFAULT_THRESHOLD);
+    }
+
+
+    /**
+     * Valida o documento usando as threads de um <i>ForkJoinPool</i>.
+     *
+     * @param pool
+     *          pool onde a validação é executada.
+     * @param threshold
+     *          número mínimo de elementos de uma subárvore para que ela seja
+     *          dividida em tarefas.
+     * @return
+     *          verdadeiro se o documento estiver de acordo com o padrão.
+     *
+     * @see NCLDoc#validate(java.util.concurrent.ForkJoinPool)
+     */
+    public boolean validate(ForkJoinPool pool, int threshold) {
+        Map<NCLElement, Object> results = NCLWalker.walk(this, new Partitions(false, null), pool, threshold);
+        Map<NCLElement, Object> previous = setPartitions(results);
+        try{
+            return validate();
+        }
+        finally{
+            setPartitions(previous);
+        }
+    }
+
+
+    /**
+     * Gera o código XML do documento usando as threads de um
+     * <i>ForkJoinPool</i>. O código das bases do cabeçalho e dos contextos e
+     * switches do corpo é gerado concorrentemente em textos separados, quando
+     * suas subárvores forem grandes o suficiente, e esses textos são
+     * concatenados na ordem do documento. O resultado é idêntico ao do método
+     * <i>parse(0)</i>.
+     *
+     * @param pool
+     *          pool onde a geração é executada.
+     * @return
+     *          String contendo o código XML do documento.
+     *
+     * @see NCLWalker#DEFAULT_THRESHOLD
+     */
+    public String parse(ForkJoinPool pool) {
+        return parse(pool, NCLWalker.DEFAULT_THRESHOLD);
+    }
+
+
+    /**
+     * Gera o código XML do documento usando as threads de um
+     * <i>ForkJoinPool</i>.
+     *
+     * @param pool
+     *          pool onde a geração é executada.
+     * @param threshold
+     *          número mínimo de elementos de uma subárvore para que ela seja
+     *          dividida em tarefas.
+     * @return
+     *          String contendo o código XML do documento.
+     *
+     * @see NCLDoc#parse(java.util.concurrent.ForkJoinPool)
+     */
+    public String parse(ForkJoinPool pool, int threshold) {
+        Map<NCLElement, Object> results = NCLWalker.walk(this, new Partitions(true, getSerializationCache()), pool, threshold);
+        Map<NCLElement, Object> previous = setPartitions(results);
+        try{
+            return parse(0);
+        }
+        finally{
+            setPartitions(previous);
+        }
+    }
+
+
     /**
      * Recupera a estrutura de classes que representam elementos NCL a partir
      * de um arquivo XML especificado de acordo com a linguagem NCL.
@@ -253,7 +617,10 @@ public class NCLDoc<H extends NCLHead, B extends NCLBody> extends NCLIdentifiabl
     public void loadXML(String path) throws NCLParsingException {
         try{
             URI fileURI = new URI(path);
-            setReader(XMLReaderFactory.createXMLReader());
+            NCLStringPool pool = getStringPool();
+            if(pool == null)
+                pool = new NCLStringPool();
+            setReader(pool.filter(XMLReaderFactory.createXMLReader()));
 
             getReader().setContentHandler(this);
             getReader().setErrorHandler(new NCLParsingErrorHandler(getReader()));
@@ -347,4 +714,71 @@ public class NCLDoc<H extends NCLHead, B extends NCLBody> extends NCLIdentifiabl
     protected B createBody() {
         return (B) new NCLBody(getReader(), this);
     }
+
+
+    /*
+     * Valida ou gera o código de cada base, contexto e switch depois de seus
+     * filhos. Cada subárvore retorna um mapa próprio com os resultados ainda não
+     * usados por um ancestral, que os recebe durante a sua própria validação e
+     * os descarta em seguida, de modo que chamadas simultâneas não compartilham
+     * resultados. Quando o documento possui uma cache de serialização, cada
+     * tarefa gera o código do elemento através da cache, que é passada
+     * explicitamente às tarefas. A profundidade do percurso a partir do documento é o nível de
+     * indentação do elemento no código do documento.
+     */
+    private static class Partitions implements NCLVisitor<Map<NCLElement, Object>> {
+
+        private boolean render;
+        private NCLSerializationCache cache;
+
+
+        Partitions(boolean render, NCLSerializationCache cache) {
+            this.render = render;
+            this.cache = cache;
+        }
+
+
+        public boolean visit(Object element, int depth) {
+            return true;
+        }
+
+
+        public Map<NCLElement, Object> leave(Object element, int depth, List<Map<NCLElement, Object>> results) {
+            // os mapas dos filhos pertencem apenas a este elemento
+            Map<NCLElement, Object> done = null;
+            for(Map<NCLElement, Object> r : results){
+                if(r.isEmpty())
+                    continue;
+                if(done == null)
+                    done = r;
+                else
+                    done.putAll(r);
+            }
+            if(done == null)
+                done = Collections.emptyMap();
+
+            if(!NCLWalker.isBoundary(element) || element instanceof NCLDoc
+                    || element instanceof NCLHead || element instanceof NCLBody)
+                return done;
+
+            NCLElement e = (NCLElement) element;
+            Object result;
+            Map<NCLElement, Object> previous = setPartitions(done);
+            try{
+                if(render && cache != null)
+                    result = cache.entry(e, depth);
+                else if(render)
+                    result = e.parse(depth);
+                else
+                    result = e.validate();
+            }
+            finally{
+                setPartitions(previous);
+            }
+
+            Map<NCLElement, Object> own = new IdentityHashMap<NCLElement, Object>();
+            own.put(e, result);
+            return own;
+        }
+    }
 }
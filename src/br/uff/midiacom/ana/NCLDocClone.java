@@ -0,0 +1,598 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Esta classe define um clone de um documento congelado da <i>Nested Context
+ * Language</i> (NCL) com cópia na escrita.<br/>
+ *
+ * O clone compartilha todos os elementos do documento congelado que lhe deu origem.
+ * Quando um elemento é alterado, apenas esse elemento é copiado: a cópia compartilha
+ * os filhos do original e é registrada em uma tabela de substituições consultada
+ * durante a navegação pelo clone. A remoção ou a inserção de um elemento copia
+ * apenas o elemento pai. Dessa forma, a memória usada por um clone é proporcional
+ * ao número de alterações e não ao tamanho do documento.
+ *
+ * O código XML do clone é gerado diretamente a partir dos elementos compartilhados
+ * e das cópias, sem reconstruir o documento. O método <i>thaw</i> deve ser usado
+ * apenas quando for necessário um documento NCL alterável.
+ *
+ * Os elementos retornados pelo clone refletem as alterações, mas seus métodos de
+ * navegação (<i>getParent</i>, <i>getChildren</i> e <i>getReference</i>) percorrem
+ * o documento congelado original; a navegação que considera as alterações deve ser
+ * feita através dos métodos do clone. O clone não é seguro para uso simultâneo por
+ * várias threads, mas vários clones podem ser criados e alterados em paralelo a
+ * partir do mesmo documento congelado.
+ *
+ * @see NCLFrozenDoc#createClone
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public final class NCLDocClone {
+
+    private NCLFrozenDoc base;
+    private Map<NCLFrozenElement, NCLFrozenElement> replaced;
+    private Set<NCLFrozenElement> removed;
+    private Map<String, NCLFrozenElement> ids;
+    private int inserted;
+
+
+    NCLDocClone(NCLFrozenDoc base) {
+        this.base = base;
+        this.replaced = new IdentityHashMap<NCLFrozenElement, NCLFrozenElement>();
+        this.removed = Collections.newSetFromMap(new IdentityHashMap<NCLFrozenElement, Boolean>());
+        this.ids = new HashMap<String, NCLFrozenElement>();
+        this.inserted = 0;
+    }
+
+
+    private NCLDocClone(NCLDocClone other) {
+        this.base = other.base;
+        this.replaced = new IdentityHashMap<NCLFrozenElement, NCLFrozenElement>(other.replaced);
+        this.removed = Collections.newSetFromMap(new IdentityHashMap<NCLFrozenElement, Boolean>());
+        this.removed.addAll(other.removed);
+        this.ids = new HashMap<String, NCLFrozenElement>(other.ids);
+        this.inserted = other.inserted;
+    }
+
+
+    /**
+     * Cria um novo clone com as alterações feitas até o momento neste clone. As
+     * alterações posteriores em um dos clones não afetam o outro.
+     *
+     * @return
+     *          novo clone do documento.
+     */
+    public NCLDocClone createClone() {
+        return new NCLDocClone(this);
+    }
+
+
+    /**
+     * Retorna o documento congelado compartilhado pelo clone.
+     *
+     * @return
+     *          documento congelado de origem.
+     */
+    public NCLFrozenDoc getBase() {
+        return base;
+    }
+
+
+    /**
+     * Retorna o número de elementos copiados, removidos ou inseridos no clone.
+     *
+     * @return
+     *          número de alterações do clone.
+     */
+    public int getEditCount() {
+        return replaced.size() + removed.size() + inserted;
+    }
+
+
+    /**
+     * Retorna o elemento <i>ncl</i> do clone.
+     *
+     * @return
+     *          elemento raiz do clone.
+     */
+    public NCLFrozenElement getRoot() {
+        return current(base.getRoot());
+    }
+
+
+    /**
+     * Retorna o elemento do clone com um identificador.
+     *
+     * @param id
+     *          identificador do elemento.
+     * @return
+     *          elemento encontrado ou nulo.
+     */
+    public NCLFrozenElement getElement(String id) {
+        NCLFrozenElement origin;
+        if(ids.containsKey(id))
+            origin = ids.get(id);
+        else
+            origin = base.getElement(id);
+
+        if(origin == null || isRemoved(origin))
+            return null;
+
+        return current(origin);
+    }
+
+
+    /**
+     * Retorna os elementos do clone com um nome, na ordem em que aparecem no documento.
+     *
+     * @param name
+     *          nome dos elementos, como "media" ou "link".
+     * @return
+     *          lista com os elementos encontrados.
+     */
+    public List<NCLFrozenElement> getElements(String name) {
+        List<NCLFrozenElement> result = new ArrayList<NCLFrozenElement>();
+        if(inserted > 0){
+            // os elementos inseridos não constam no índice do documento congelado
+            collect(getRoot(), name, result);
+            return result;
+        }
+
+        for(NCLFrozenElement el : base.getElements(name)){
+            if(!isRemoved(el))
+                result.add(current(el));
+        }
+        return result;
+    }
+
+
+    /**
+     * Retorna os filhos de um elemento do clone.
+     *
+     * @param element
+     *          elemento do clone.
+     * @return
+     *          lista com os elementos filhos.
+     */
+    public List<NCLFrozenElement> getChildren(NCLFrozenElement element) {
+        NCLFrozenElement[] children = current(element.origin()).children();
+        List<NCLFrozenElement> result = new ArrayList<NCLFrozenElement>(children.length);
+        for(NCLFrozenElement child : children)
+            result.add(current(child));
+        return result;
+    }
+
+
+    /**
+     * Retorna o pai de um elemento do clone.
+     *
+     * @param element
+     *          elemento do clone.
+     * @return
+     *          elemento pai ou nulo para o elemento raiz.
+     */
+    public NCLFrozenElement getParent(NCLFrozenElement element) {
+        NCLFrozenElement parent = element.origin().getParent();
+        if(parent == null)
+            return null;
+
+        return current(parent);
+    }
+
+
+    /**
+     * Retorna o elemento do clone referenciado por um atributo de um elemento.
+     *
+     * @param element
+     *          elemento do clone.
+     * @param attribute
+     *          nome do atributo, como "component" ou "descriptor".
+     * @return
+     *          elemento referenciado ou nulo.
+     */
+    public NCLFrozenElement getReference(NCLFrozenElement element, String attribute) {
+        NCLFrozenElement target = current(element.origin()).getReference(attribute);
+        if(target == null || isRemoved(target.origin()))
+            return null;
+
+        return current(target.origin());
+    }
+
+
+    /**
+     * Altera o valor de um atributo de um elemento do clone.
+     *
+     * @param id
+     *          identificador do elemento.
+     * @param attribute
+     *          nome do atributo.
+     * @param value
+     *          novo valor do atributo ou nulo para remover o atributo.
+     * @return
+     *          elemento alterado.
+     * @throws java.lang.IllegalArgumentException
+     *          se não houver elemento com o identificador.
+     */
+    public NCLFrozenElement setAttribute(String id, String attribute, String value) throws IllegalArgumentException {
+        NCLFrozenElement element = getElement(id);
+        if(element == null)
+            throw new IllegalArgumentException("Could not find element with id: " + id);
+
+        return setAttribute(element, attribute, value);
+    }
+
+
+    /**
+     * Altera o valor de um atributo de um elemento do clone. Apenas o elemento é
+     * copiado; seus filhos continuam compartilhados com o documento congelado.
+     *
+     * @param element
+     *          elemento do clone.
+     * @param attribute
+     *          nome do atributo.
+     * @param value
+     *          novo valor do atributo ou nulo para remover o atributo.
+     * @return
+     *          elemento alterado.
+     */
+    public NCLFrozenElement setAttribute(NCLFrozenElement element, String attribute, String value) {
+        NCLFrozenElement origin = element.origin();
+        NCLFrozenElement cur = current(origin);
+        String[] names = cur.attributeNames();
+        String[] values = cur.attributeValues();
+        NCLFrozenElement[] refs = cur.references();
+
+        int index = -1;
+        for(int i = 0; i < names.length; i++){
+            if(names[i].equals(attribute))
+                index = i;
+        }
+        if(index == -1 && value == null)
+            return cur;
+
+        String oldValue = index != -1 ? values[index] : null;
+        int length = names.length + (index == -1 ? 1 : 0) - (value == null ? 1 : 0);
+        String[] newNames = new String[length];
+        String[] newValues = new String[length];
+        NCLFrozenElement[] newRefs = new NCLFrozenElement[length];
+
+        int pos = 0;
+        for(int i = 0; i < names.length; i++){
+            if(i == index && value == null)
+                continue;
+
+            newNames[pos] = names[i];
+            newValues[pos] = i == index ? value : values[i];
+            newRefs[pos] = i == index ? null : refs[i];
+            pos++;
+        }
+        if(index == -1){
+            newNames[pos] = attribute.intern();
+            newValues[pos] = value;
+        }
+
+        NCLFrozenElement copy = new NCLFrozenElement(origin, newNames, newValues, cur.children(), newRefs);
+        replaced.put(origin, copy);
+
+        if(value != null && NCLFrozenDoc.REFERENCES.contains(attribute)){
+            for(int i = 0; i < newNames.length; i++){
+                if(newNames[i].equals(attribute))
+                    newRefs[i] = resolve(copy, attribute, value);
+            }
+        }
+        if(attribute.equals("id")){
+            if(oldValue != null)
+                ids.put(oldValue, null);
+            if(value != null)
+                ids.put(value, origin);
+        }
+
+        return copy;
+    }
+
+
+    /**
+     * Remove um elemento do clone. Apenas o elemento pai é copiado.
+     *
+     * @param element
+     *          elemento do clone.
+     * @return
+     *          verdadeiro se o elemento foi removido.
+     */
+    public boolean remove(NCLFrozenElement element) {
+        NCLFrozenElement origin = element.origin();
+        NCLFrozenElement parent = origin.getParent();
+        if(parent == null || isRemoved(origin))
+            return false;
+
+        NCLFrozenElement cur = current(parent);
+        NCLFrozenElement[] children = cur.children();
+        NCLFrozenElement[] newChildren = new NCLFrozenElement[children.length - 1];
+        int pos = 0;
+        for(NCLFrozenElement child : children){
+            if(child != origin)
+                newChildren[pos++] = child;
+        }
+
+        replaced.put(parent, new NCLFrozenElement(parent, cur.attributeNames(), cur.attributeValues(), newChildren, cur.references()));
+        removed.add(origin);
+        return true;
+    }
+
+
+    /**
+     * Insere um novo elemento, sem atributos, como último filho de um elemento do
+     * clone. Apenas o elemento pai é copiado. Os atributos do novo elemento podem
+     * ser definidos com o método <i>setAttribute</i>.
+     *
+     * @param parent
+     *          elemento do clone que recebe o novo elemento.
+     * @param name
+     *          nome do novo elemento, como "media" ou "link".
+     * @return
+     *          elemento inserido.
+     * @throws java.lang.IllegalArgumentException
+     *          se o elemento pai tiver sido removido do clone.
+     */
+    public NCLFrozenElement insert(NCLFrozenElement parent, String name) throws IllegalArgumentException {
+        NCLFrozenElement element = new NCLFrozenElement(parent.getNamespace(), name.intern(),
+                new String[0], new String[0], new NCLFrozenElement[0]);
+        return insert(parent, element, 1);
+    }
+
+
+    /**
+     * Insere uma cópia de um ramo como último filho de um elemento do clone. O ramo
+     * pode pertencer a este clone, a outro clone ou a um documento congelado e é
+     * copiado como visto por este clone. Apenas o elemento pai é copiado; os
+     * elementos do ramo passam a ser encontrados pelos métodos de busca do clone e
+     * suas referências são resolvidas no clone.
+     *
+     * @param parent
+     *          elemento do clone que recebe o ramo.
+     * @param branch
+     *          raiz do ramo a ser copiado.
+     * @return
+     *          raiz do ramo inserido.
+     * @throws java.lang.IllegalArgumentException
+     *          se o elemento pai tiver sido removido do clone.
+     */
+    public NCLFrozenElement insert(NCLFrozenElement parent, NCLFrozenElement branch) throws IllegalArgumentException {
+        List<NCLFrozenElement> all = new ArrayList<NCLFrozenElement>();
+        NCLFrozenElement element = copy(current(branch.origin()), all);
+        insert(parent, element, all.size());
+
+        for(NCLFrozenElement el : all){
+            String id = el.getId();
+            if(id != null && getElement(id) == null)
+                ids.put(id, el);
+        }
+        for(NCLFrozenElement el : all){
+            for(int i = 0; i < el.getAttributeCount(); i++){
+                String attribute = el.getAttributeName(i);
+                if(NCLFrozenDoc.REFERENCES.contains(attribute))
+                    el.setReference(i, resolve(el, attribute, el.getAttributeValue(i)));
+            }
+        }
+
+        return element;
+    }
+
+
+    /**
+     * Gera o código XML do clone a partir dos elementos compartilhados e das cópias,
+     * sem reconstruir o documento.
+     *
+     * @param ident
+     *          nível de indentação do código.
+     * @return
+     *          String com o código XML do clone.
+     */
+    public String parse(int ident) {
+        String space;
+        StringBuilder content = new StringBuilder();
+
+        if(ident < 0)
+            ident = 0;
+
+        // Element indentation
+        space = "";
+        for(int i = 0; i < ident; i++)
+            space += "\t";
+
+        // XML document start declaration
+        content.append(space + "<?xml version='1.0' encoding='ISO-8859-1'?>\n");
+
+        content.append(space + "<!-- Generated with NCL API -->\n\n");
+
+        parse(getRoot(), "", ident, content);
+
+        return content.toString();
+    }
+
+
+    /**
+     * Cria um documento NCL alterável a partir do clone.
+     *
+     * @return
+     *          novo documento NCL com as alterações do clone.
+     * @throws NCLParsingException
+     *          se algum erro ocorrer durante a reconstrução do documento.
+     */
+    public NCLDoc thaw() throws NCLParsingException {
+        return NCLFrozenDoc.thaw(getRoot(), this);
+    }
+
+
+    private NCLFrozenElement insert(NCLFrozenElement parent, NCLFrozenElement element, int count) {
+        NCLFrozenElement origin = parent.origin();
+        if(isRemoved(origin))
+            throw new IllegalArgumentException("Could not insert into a removed element: " + parent.getName());
+
+        NCLFrozenElement cur = current(origin);
+        NCLFrozenElement[] children = cur.children();
+        NCLFrozenElement[] newChildren = new NCLFrozenElement[children.length + 1];
+        System.arraycopy(children, 0, newChildren, 0, children.length);
+        newChildren[children.length] = element;
+
+        element.setParent(origin);
+        replaced.put(origin, new NCLFrozenElement(origin, cur.attributeNames(), cur.attributeValues(), newChildren, cur.references()));
+        inserted += count;
+        return element;
+    }
+
+
+    private NCLFrozenElement copy(NCLFrozenElement element, List<NCLFrozenElement> all) {
+        NCLFrozenElement[] children = current(element.origin()).children();
+        NCLFrozenElement[] newChildren = new NCLFrozenElement[children.length];
+        List<NCLFrozenElement> descendants = new ArrayList<NCLFrozenElement>();
+        for(int i = 0; i < children.length; i++)
+            newChildren[i] = copy(current(children[i]), descendants);
+
+        NCLFrozenElement result = new NCLFrozenElement(element.getNamespace(), element.getName(),
+                element.attributeNames().clone(), element.attributeValues().clone(), newChildren);
+        all.add(result);
+        all.addAll(descendants);
+        return result;
+    }
+
+
+    private void collect(NCLFrozenElement element, String name, List<NCLFrozenElement> result) {
+        if(element.getName().equals(name))
+            result.add(element);
+        for(NCLFrozenElement child : getChildren(element))
+            collect(child, name, result);
+    }
+
+
+    private void parse(NCLFrozenElement element, String namespace, int ident, StringBuilder content) {
+        String space = "";
+        for(int i = 0; i < ident; i++)
+            space += "\t";
+
+        content.append(space + "<" + element.getName());
+        for(int i = 0; i < element.getAttributeCount(); i++)
+            content.append(" " + element.getAttributeName(i) + "='" + escape(element.getAttributeValue(i)) + "'");
+        if(element.getNamespace() != null && !element.getNamespace().equals(namespace))
+            content.append(" xmlns='" + escape(element.getNamespace()) + "'");
+
+        List<NCLFrozenElement> children = getChildren(element);
+        if(children.isEmpty()){
+            content.append("/>\n");
+            return;
+        }
+
+        content.append(">\n");
+        for(NCLFrozenElement child : children)
+            parse(child, element.getNamespace(), ident + 1, content);
+        content.append(space + "</" + element.getName() + ">\n");
+    }
+
+
+    private String escape(String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        for(int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            switch(c){
+                case '&': result.append("&amp;"); break;
+                case '<': result.append("&lt;"); break;
+                case '>': result.append("&gt;"); break;
+                case '\'': result.append("&apos;"); break;
+                case '"': result.append("&quot;"); break;
+                default: result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+
+    private NCLFrozenElement current(NCLFrozenElement origin) {
+        NCLFrozenElement cur = replaced.get(origin);
+        return cur != null ? cur : origin;
+    }
+
+
+    private boolean isRemoved(NCLFrozenElement origin) {
+        if(removed.isEmpty())
+            return false;
+
+        for(NCLFrozenElement el = origin; el != null; el = el.getParent()){
+            if(removed.contains(el))
+                return true;
+        }
+        return false;
+    }
+
+
+    private NCLFrozenElement resolve(NCLFrozenElement element, String attribute, String value) {
+        if(!attribute.equals("interface")){
+            NCLFrozenElement target = getElement(value);
+            return target != null ? target.origin() : null;
+        }
+
+        // a interface é procurada dentro do componente referenciado
+        NCLFrozenElement component = getReference(element, "component");
+        if(component == null)
+            return null;
+
+        NCLFrozenElement target = findDescendant(component, value);
+        return target != null ? target.origin() : null;
+    }
+
+
+    private NCLFrozenElement findDescendant(NCLFrozenElement element, String id) {
+        for(NCLFrozenElement child : getChildren(element)){
+            if(id.equals(child.getId()))
+                return child;
+            NCLFrozenElement found = findDescendant(child, id);
+            if(found != null)
+                return found;
+        }
+        return null;
+    }
+}
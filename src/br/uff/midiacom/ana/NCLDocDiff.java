@@ -0,0 +1,691 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Esta classe define a diferença entre duas versões de um documento da
+ * <i>Nested Context Language</i> (NCL).<br/>
+ *
+ * As duas versões são congeladas e comparadas de cima para baixo. Cada elemento
+ * recebe um resumo calculado a partir do seu nome, dos seus atributos e dos
+ * resumos dos seus filhos, de modo que os ramos idênticos nas duas versões são
+ * reconhecidos sem ser percorridos. Os elementos com atributo <i>id</i> são
+ * associados pelo identificador em qualquer posição do documento; os demais são
+ * associados dentro do elemento pai pelo nome do elemento e pelo atributo
+ * <i>name</i>, <i>role</i> ou <i>alias</i>, na ordem em que aparecem.
+ *
+ * O resultado é um roteiro de edições (inserção, remoção, movimentação e
+ * alteração de atributo) que transforma a versão original na nova versão. Os
+ * elementos da versão original são identificados pela sua posição na ordem de
+ * documento do documento congelado e os elementos inseridos recebem os números
+ * seguintes, na ordem das inserções. O roteiro só pode ser aplicado a um
+ * documento igual à versão original.
+ *
+ * A ordem dos elementos irmãos mantidos no mesmo pai não é comparada, já que a
+ * maior parte dos elementos é mantida ordenada pelo próprio modelo.
+ *
+ * @see NCLFrozenDoc
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public final class NCLDocDiff {
+
+    /**
+     * Operações do roteiro de edições.
+     */
+    public enum Operation {
+        ADD, REMOVE, MOVE, ATTRIBUTE
+    }
+
+    private final long baseHash;
+    private final long resultHash;
+    private final int baseSize;
+    private final List<Edit> edits;
+
+
+    private NCLDocDiff(long baseHash, long resultHash, int baseSize, List<Edit> edits) {
+        this.baseHash = baseHash;
+        this.resultHash = resultHash;
+        this.baseSize = baseSize;
+        this.edits = Collections.unmodifiableList(edits);
+    }
+
+
+    /**
+     * Compara duas versões de um documento NCL.
+     *
+     * @param oldDoc
+     *          versão original do documento.
+     * @param newDoc
+     *          nova versão do documento.
+     * @return
+     *          diferença entre as versões.
+     * @throws NCLParsingException
+     *          se o código XML de alguma das versões não puder ser lido.
+     */
+    public static NCLDocDiff diff(NCLDoc oldDoc, NCLDoc newDoc) throws NCLParsingException {
+        return diff(new NCLFrozenDoc(oldDoc), new NCLFrozenDoc(newDoc));
+    }
+
+
+    /**
+     * Compara duas versões congeladas de um documento NCL.
+     *
+     * @param oldDoc
+     *          versão original do documento.
+     * @param newDoc
+     *          nova versão do documento.
+     * @return
+     *          diferença entre as versões.
+     */
+    public static NCLDocDiff diff(NCLFrozenDoc oldDoc, NCLFrozenDoc newDoc) {
+        Matcher matcher = new Matcher(oldDoc.getRoot(), newDoc.getRoot());
+        matcher.run();
+
+        List<Edit> result = new ArrayList<Edit>(matcher.structure);
+        result.addAll(matcher.attributes);
+        result.addAll(matcher.removals);
+
+        return new NCLDocDiff(matcher.hash(oldDoc.getRoot()), matcher.hash(newDoc.getRoot()), matcher.numbers.size(), result);
+    }
+
+
+    /**
+     * Retorna o roteiro de edições. As inserções e movimentações aparecem
+     * primeiro, seguidas pelas alterações de atributos e pelas remoções. A lista
+     * retornada não pode ser modificada.
+     *
+     * @return
+     *          lista com as edições.
+     */
+    public List<Edit> getEdits() {
+        return edits;
+    }
+
+
+    /**
+     * Verifica se as duas versões são iguais.
+     *
+     * @return
+     *          verdadeiro se o roteiro não possuir edições.
+     */
+    public boolean isEmpty() {
+        return edits.isEmpty();
+    }
+
+
+    /**
+     * Retorna o resumo da versão original do documento.
+     *
+     * @return
+     *          resumo do elemento <i>ncl</i> da versão original.
+     */
+    public long getBaseHash() {
+        return baseHash;
+    }
+
+
+    /**
+     * Retorna o resumo da nova versão do documento.
+     *
+     * @return
+     *          resumo do elemento <i>ncl</i> da nova versão.
+     */
+    public long getResultHash() {
+        return resultHash;
+    }
+
+
+    /**
+     * Aplica o roteiro de edições a um documento igual à versão original.
+     *
+     * @param doc
+     *          documento NCL igual à versão original.
+     * @return
+     *          novo documento NCL igual à nova versão.
+     * @throws NCLParsingException
+     *          se algum erro ocorrer durante a leitura ou a reconstrução do documento.
+     * @throws IllegalArgumentException
+     *          se o documento for diferente da versão original.
+     */
+    public NCLDoc patch(NCLDoc doc) throws NCLParsingException {
+        return patch(new NCLFrozenDoc(doc));
+    }
+
+
+    /**
+     * Aplica o roteiro de edições a um documento congelado igual à versão original.
+     *
+     * @param doc
+     *          documento congelado igual à versão original.
+     * @return
+     *          novo documento NCL igual à nova versão.
+     * @throws NCLParsingException
+     *          se algum erro ocorrer durante a reconstrução do documento.
+     * @throws IllegalArgumentException
+     *          se o documento for diferente da versão original.
+     */
+    public NCLDoc patch(NCLFrozenDoc doc) throws NCLParsingException {
+        Matcher matcher = new Matcher(doc.getRoot(), null);
+        if(matcher.hash(doc.getRoot()) != baseHash)
+            throw new IllegalArgumentException("Document does not match the diff base");
+
+        List<Node> nodes = new ArrayList<Node>(baseSize);
+        Node root = Node.copy(doc.getRoot(), nodes);
+        List<Node[]> inserts = new ArrayList<Node[]>();
+        List<Integer> positions = new ArrayList<Integer>();
+
+        for(Edit edit : edits){
+            switch(edit.operation){
+                case ADD:
+                    Node added = new Node(edit.namespace, edit.name, edit.attributeNames, edit.attributeValues);
+                    if(edit.target != nodes.size())
+                        throw new IllegalArgumentException("Invalid element number: " + edit.target);
+                    nodes.add(added);
+                    inserts.add(new Node[]{nodes.get(edit.parent), added});
+                    positions.add(edit.index);
+                    break;
+                case MOVE:
+                    Node moved = nodes.get(edit.target);
+                    moved.detach();
+                    inserts.add(new Node[]{nodes.get(edit.parent), moved});
+                    positions.add(edit.index);
+                    break;
+                case ATTRIBUTE:
+                    nodes.get(edit.target).setAttribute(edit.attribute, edit.value);
+                    break;
+                case REMOVE:
+                    nodes.get(edit.target).detach();
+                    break;
+            }
+        }
+
+        // as inserções de um mesmo pai estão em ordem crescente de posição e são
+        // feitas depois das remoções, quando restam apenas os filhos mantidos
+        for(int i = 0; i < inserts.size(); i++){
+            Node parent = inserts.get(i)[0];
+            Node child = inserts.get(i)[1];
+            int index = Math.min(positions.get(i), parent.children.size());
+            parent.children.add(index, child);
+            child.parent = parent;
+        }
+
+        return NCLFrozenDoc.thaw(root.freeze(), null);
+    }
+
+
+    @Override
+    public String toString() {
+        StringBuilder content = new StringBuilder();
+        for(Edit edit : edits)
+            content.append(edit).append('\n');
+
+        return content.toString();
+    }
+
+
+    /**
+     * Esta classe define uma edição do roteiro de edições.
+     */
+    public static final class Edit {
+
+        private Operation operation;
+        private int target;
+        private int parent = -1;
+        private int index = -1;
+        private String namespace;
+        private String name;
+        private String[] attributeNames;
+        private String[] attributeValues;
+        private String attribute;
+        private String value;
+
+
+        private Edit(Operation operation, int target) {
+            this.operation = operation;
+            this.target = target;
+        }
+
+
+        /**
+         * Retorna a operação da edição.
+         *
+         * @return
+         *          operação da edição.
+         */
+        public Operation getOperation() {
+            return operation;
+        }
+
+
+        /**
+         * Retorna o número do elemento inserido, removido, movido ou alterado.
+         *
+         * @return
+         *          número do elemento.
+         */
+        public int getTarget() {
+            return target;
+        }
+
+
+        /**
+         * Retorna o número do novo pai de um elemento inserido ou movido.
+         *
+         * @return
+         *          número do elemento pai ou -1 para as demais operações.
+         */
+        public int getParent() {
+            return parent;
+        }
+
+
+        /**
+         * Retorna a posição de um elemento inserido ou movido entre os filhos do
+         * novo pai.
+         *
+         * @return
+         *          posição do elemento ou -1 para as demais operações.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+
+        /**
+         * Retorna o nome de um elemento inserido.
+         *
+         * @return
+         *          String com o nome do elemento ou nulo para as demais operações.
+         */
+        public String getName() {
+            return name;
+        }
+
+
+        /**
+         * Retorna os nomes dos atributos de um elemento inserido.
+         *
+         * @return
+         *          lista imutável com os nomes dos atributos.
+         */
+        public List<String> getAttributeNames() {
+            if(attributeNames == null)
+                return Collections.emptyList();
+
+            return Collections.unmodifiableList(Arrays.asList(attributeNames));
+        }
+
+
+        /**
+         * Retorna os valores dos atributos de um elemento inserido.
+         *
+         * @return
+         *          lista imutável com os valores dos atributos.
+         */
+        public List<String> getAttributeValues() {
+            if(attributeValues == null)
+                return Collections.emptyList();
+
+            return Collections.unmodifiableList(Arrays.asList(attributeValues));
+        }
+
+
+        /**
+         * Retorna o nome do atributo alterado.
+         *
+         * @return
+         *          String com o nome do atributo ou nulo para as demais operações.
+         */
+        public String getAttribute() {
+            return attribute;
+        }
+
+
+        /**
+         * Retorna o novo valor do atributo alterado.
+         *
+         * @return
+         *          String com o valor do atributo ou nulo se o atributo foi retirado.
+         */
+        public String getValue() {
+            return value;
+        }
+
+
+        @Override
+        public String toString() {
+            switch(operation){
+                case ADD:
+                    String content = "add " + target + " <" + name;
+                    for(int i = 0; i < attributeNames.length; i++)
+                        content += " " + attributeNames[i] + "='" + attributeValues[i] + "'";
+                    return content + "> to " + parent + " at " + index;
+                case MOVE:
+                    return "move " + target + " to " + parent + " at " + index;
+                case ATTRIBUTE:
+                    if(value == null)
+                        return "unset " + target + " " + attribute;
+                    return "set " + target + " " + attribute + "='" + value + "'";
+                default:
+                    return "remove " + target;
+            }
+        }
+    }
+
+
+    /*
+     * Associa os elementos das duas versões e gera as edições.
+     */
+    private static class Matcher {
+
+        private NCLFrozenElement oldRoot;
+        private NCLFrozenElement newRoot;
+        private Map<NCLFrozenElement, Long> hashes = new IdentityHashMap<NCLFrozenElement, Long>();
+        private Map<NCLFrozenElement, Integer> numbers = new IdentityHashMap<NCLFrozenElement, Integer>();
+        private Map<String, NCLFrozenElement> ids = new HashMap<String, NCLFrozenElement>();
+        private Set<NCLFrozenElement> matched = Collections.newSetFromMap(new IdentityHashMap<NCLFrozenElement, Boolean>());
+        private List<NCLFrozenElement> changed = new ArrayList<NCLFrozenElement>();
+        private List<Edit> structure = new ArrayList<Edit>();
+        private List<Edit> attributes = new ArrayList<Edit>();
+        private List<Edit> removals = new ArrayList<Edit>();
+        private int next;
+
+
+        private Matcher(NCLFrozenElement oldRoot, NCLFrozenElement newRoot) {
+            this.oldRoot = oldRoot;
+            this.newRoot = newRoot;
+        }
+
+
+        private void run() {
+            index(oldRoot);
+            next = numbers.size();
+            matched.add(oldRoot);
+            visit(oldRoot, newRoot, 0);
+
+            for(NCLFrozenElement o : changed){
+                for(NCLFrozenElement child : o.children()){
+                    if(!matched.contains(child))
+                        removals.add(new Edit(Operation.REMOVE, numbers.get(child)));
+                }
+            }
+        }
+
+
+        private void index(NCLFrozenElement el) {
+            numbers.put(el, numbers.size());
+            String id = el.getAttribute("id");
+            if(id != null && !ids.containsKey(id))
+                ids.put(id, el);
+
+            for(NCLFrozenElement child : el.children())
+                index(child);
+        }
+
+
+        private void visit(NCLFrozenElement o, NCLFrozenElement n, int ref) {
+            if(o != null){
+                if(hash(o) == hash(n))
+                    return;
+
+                compareAttributes(o, n, ref);
+                changed.add(o);
+            }
+
+            // filhos sem identificador do elemento original, agrupados pela chave
+            Map<String, List<NCLFrozenElement>> local = new HashMap<String, List<NCLFrozenElement>>();
+            if(o != null){
+                for(NCLFrozenElement child : o.children()){
+                    if(child.getAttribute("id") != null)
+                        continue;
+
+                    String key = key(child);
+                    List<NCLFrozenElement> list = local.get(key);
+                    if(list == null){
+                        list = new ArrayList<NCLFrozenElement>();
+                        local.put(key, list);
+                    }
+                    list.add(child);
+                }
+            }
+
+            NCLFrozenElement[] children = n.children();
+            for(int i = 0; i < children.length; i++){
+                NCLFrozenElement c = children[i];
+                NCLFrozenElement m = null;
+
+                String id = c.getAttribute("id");
+                if(id != null){
+                    m = ids.get(id);
+                    if(m != null && (m == oldRoot || !m.getName().equals(c.getName()) || matched.contains(m)))
+                        m = null;
+                }
+                else{
+                    List<NCLFrozenElement> list = local.get(key(c));
+                    if(list != null && !list.isEmpty())
+                        m = list.remove(0);
+                }
+
+                if(m != null){
+                    matched.add(m);
+                    int mref = numbers.get(m);
+                    if(o == null || m.getParent() != o){
+                        Edit edit = new Edit(Operation.MOVE, mref);
+                        edit.parent = ref;
+                        edit.index = i;
+                        structure.add(edit);
+                    }
+                    visit(m, c, mref);
+                }
+                else{
+                    Edit edit = new Edit(Operation.ADD, next++);
+                    edit.parent = ref;
+                    edit.index = i;
+                    edit.namespace = c.getNamespace();
+                    edit.name = c.getName();
+                    edit.attributeNames = c.attributeNames();
+                    edit.attributeValues = c.attributeValues();
+                    structure.add(edit);
+                    visit(null, c, edit.target);
+                }
+            }
+        }
+
+
+        private void compareAttributes(NCLFrozenElement o, NCLFrozenElement n, int ref) {
+            for(int i = 0; i < n.getAttributeCount(); i++){
+                String attribute = n.getAttributeName(i);
+                String value = n.getAttributeValue(i);
+                if(!value.equals(o.getAttribute(attribute))){
+                    Edit edit = new Edit(Operation.ATTRIBUTE, ref);
+                    edit.attribute = attribute;
+                    edit.value = value;
+                    attributes.add(edit);
+                }
+            }
+            for(int i = 0; i < o.getAttributeCount(); i++){
+                String attribute = o.getAttributeName(i);
+                if(n.getAttribute(attribute) == null){
+                    Edit edit = new Edit(Operation.ATTRIBUTE, ref);
+                    edit.attribute = attribute;
+                    attributes.add(edit);
+                }
+            }
+        }
+
+
+        private static String key(NCLFrozenElement el) {
+            String key = el.getAttribute("name");
+            if(key == null)
+                key = el.getAttribute("role");
+            if(key == null)
+                key = el.getAttribute("alias");
+            if(key == null)
+                key = "";
+
+            return el.getName() + '\u0000' + key;
+        }
+
+
+        /*
+         * Resumo de 64 bits (FNV-1a) do nome, dos atributos e dos resumos dos filhos.
+         */
+        private long hash(NCLFrozenElement el) {
+            Long cached = hashes.get(el);
+            if(cached != null)
+                return cached;
+
+            long h = 0xcbf29ce484222325L;
+            h = hash(h, el.getNamespace());
+            h = hash(h, el.getName());
+            for(int i = 0; i < el.getAttributeCount(); i++){
+                h = hash(h, el.getAttributeName(i));
+                h = hash(h, el.getAttributeValue(i));
+            }
+            for(NCLFrozenElement child : el.children()){
+                long c = hash(child);
+                for(int i = 0; i < 8; i++){
+                    h ^= (c >>> (8 * i)) & 0xff;
+                    h *= 0x100000001b3L;
+                }
+            }
+
+            hashes.put(el, h);
+            return h;
+        }
+
+
+        private static long hash(long h, String s) {
+            for(int i = 0; i < s.length(); i++){
+                h ^= s.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            // separador entre as cadeias
+            h ^= 0xff;
+            h *= 0x100000001b3L;
+
+            return h;
+        }
+    }
+
+
+    /*
+     * Elemento alterável usado na aplicação do roteiro de edições.
+     */
+    private static class Node {
+
+        private String namespace;
+        private String name;
+        private List<String> attributeNames;
+        private List<String> attributeValues;
+        private List<Node> children = new ArrayList<Node>();
+        private Node parent;
+
+
+        private Node(String namespace, String name, String[] attributeNames, String[] attributeValues) {
+            this.namespace = namespace;
+            this.name = name;
+            this.attributeNames = new ArrayList<String>(Arrays.asList(attributeNames));
+            this.attributeValues = new ArrayList<String>(Arrays.asList(attributeValues));
+        }
+
+
+        private static Node copy(NCLFrozenElement el, List<Node> nodes) {
+            Node node = new Node(el.getNamespace(), el.getName(), el.attributeNames(), el.attributeValues());
+            nodes.add(node);
+            for(NCLFrozenElement child : el.children()){
+                Node c = copy(child, nodes);
+                c.parent = node;
+                node.children.add(c);
+            }
+
+            return node;
+        }
+
+
+        private void detach() {
+            if(parent != null){
+                for(int i = 0; i < parent.children.size(); i++){
+                    if(parent.children.get(i) == this){
+                        parent.children.remove(i);
+                        break;
+                    }
+                }
+                parent = null;
+            }
+        }
+
+
+        private void setAttribute(String attribute, String value) {
+            int index = attributeNames.indexOf(attribute);
+            if(value == null){
+                if(index != -1){
+                    attributeNames.remove(index);
+                    attributeValues.remove(index);
+                }
+            }
+            else if(index != -1)
+                attributeValues.set(index, value);
+            else{
+                attributeNames.add(attribute);
+                attributeValues.add(value);
+            }
+        }
+
+
+        private NCLFrozenElement freeze() {
+            NCLFrozenElement[] frozen = new NCLFrozenElement[children.size()];
+            for(int i = 0; i < frozen.length; i++)
+                frozen[i] = children.get(i).freeze();
+
+            return new NCLFrozenElement(namespace, name, attributeNames.toArray(new String[attributeNames.size()]),
+                    attributeValues.toArray(new String[attributeValues.size()]), frozen);
+        }
+    }
+}
@@ -39,6 +39,7 @@ package br.uff.midiacom.ana;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import org.xml.sax.Attributes;
 import org.xml.sax.helpers.DefaultHandler;
 import org.xml.sax.XMLReader;
@@ -52,6 +53,9 @@ import org.xml.sax.XMLReader;
  */
 public abstract class NCLElement extends DefaultHandler implements Element {
 
+    private static final ThreadLocal<NCLElement> fingerprinting = new ThreadLocal<NCLElement>();
+    private static final ThreadLocal<Map<NCLElement, Object>> partitions = new ThreadLocal<Map<NCLElement, Object>>();
+
     private NCLElement parent;
     private XMLReader reader;
     private List<String> warnings = new ArrayList<String>();
@@ -70,7 +74,18 @@ public abstract class NCLElement extends DefaultHandler implements Element {
         if(this.parent != null && parent != null)
             return false;
 
+        if(this.parent != null){
+            NCLReferenceIndex.attach(this, false);
+            NCLQueryIndex.attach(this, false);
+            this.parent.modified();
+            detached();
+        }
         this.parent = parent;
+        if(parent != null){
+            NCLReferenceIndex.attach(this, true);
+            NCLQueryIndex.attach(this, true);
+            parent.modified();
+        }
         return true;
     }
 
@@ -137,6 +152,40 @@ public abstract class NCLElement extends DefaultHandler implements Element {
     public abstract boolean validate();
 
 
+    /**
+     * Retorna o resultado da validação do elemento já feita pela validação
+     * paralela do documento. Enquanto ela ocorre, os elementos validados em
+     * paralelo retornam esse resultado sem serem validados novamente. Os
+     * resultados pertencem à chamada da validação paralela e só são vistos
+     * pela thread que valida o elemento pai.
+     *
+     * @return
+     *          resultado da validação ou nulo se o elemento ainda deve ser validado.
+     *
+     * @see NCLDoc#validate(java.util.concurrent.ForkJoinPool, int)
+     */
+    protected Boolean getValidation() {
+        Map<NCLElement, Object> results = partitions.get();
+        Object result = results != null ? results.get(this) : null;
+        return result instanceof Boolean ? (Boolean) result : null;
+    }
+
+
+    /*
+     * Atribui os resultados já calculados para os elementos durante uma
+     * validação ou geração de código paralela na thread atual, retornando os
+     * anteriores.
+     */
+    static Map<NCLElement, Object> setPartitions(Map<NCLElement, Object> results) {
+        Map<NCLElement, Object> previous = partitions.get();
+        if(results == null)
+            partitions.remove();
+        else
+            partitions.set(results);
+        return previous;
+    }
+
+
     /**
      * Adiciona uma mensagem de aviso relacionado ao elemento NCL em questão.
      * Uma mensagem será adicionada durante a recuperação do
@@ -233,6 +282,297 @@ public abstract class NCLElement extends DefaultHandler implements Element {
     }
 
 
+    /**
+     * Retorna o resumo do conteúdo do elemento, calculado a partir dos seus
+     * atributos e dos resumos dos seus elementos filhos.<br/>
+     *
+     * O resumo é guardado pelo documento que contém o elemento e descartado, junto
+     * com os resumos dos seus ancestrais, quando o elemento é alterado através dos
+     * seus métodos. Dois elementos com o mesmo resumo geram o mesmo código XML. A
+     * alteração do identificador de um elemento descarta todos os resumos do seu
+     * documento, pois os elementos que o referenciam passam a gerar um código
+     * diferente. Os resumos de elementos que não pertencem a um documento não são
+     * guardados. Alterações feitas diretamente em objetos auxiliares, como papéis
+     * e tempos, não são percebidas pelo elemento.
+     *
+     * @return
+     *          resumo de 64 bits do conteúdo do elemento.
+     */
+    public long getFingerprint() {
+        NCLDoc doc = document();
+        Map<NCLElement, Long> fingerprints = doc != null ? doc.getFingerprints(true) : null;
+        Long fingerprint = fingerprints != null ? fingerprints.get(this) : null;
+        if(fingerprint == null){
+            // o código do elemento é gerado com os filhos substituídos pelos
+            // seus resumos, de modo que apenas os ramos alterados são percorridos
+            NCLElement owner = fingerprinting.get();
+            fingerprinting.set(this);
+            String content;
+            try{
+                content = parse(0);
+            }
+            finally{
+                fingerprinting.set(owner);
+            }
+
+            long h = 0xcbf29ce484222325L;
+            h = hash(h, getClass().getName());
+            h = hash(h, content);
+            fingerprint = h;
+            if(fingerprints != null)
+                fingerprints.put(this, fingerprint);
+        }
+        return fingerprint;
+    }
+
+
+    /**
+     * Retorna o código XML do elemento quando ele não precisa ser gerado
+     * novamente. Deve ser chamado no início do método <i>parse</i>, que retorna
+     * imediatamente o resultado quando este não for nulo.<br/>
+     *
+     * Durante o cálculo do resumo de um elemento ancestral, o código do elemento
+     * é substituído pelo seu resumo. Durante a geração paralela do código do
+     * documento, é retornado o código já gerado para o elemento. Durante a
+     * geração do código de um documento que possua um cache de serialização, o
+     * código do elemento é procurado no cache pelo resumo do elemento e pelo
+     * nível de indentação e, quando não for encontrado, é gerado e guardado no
+     * cache.
+     *
+     * @param ident
+     *          nível de indentação do elemento.
+     * @return
+     *          String com o código do elemento ou nulo se o código deve ser gerado
+     *          pelo método <i>parse</i>.
+     *
+     * @see NCLSerializationCache
+     */
+    protected String getCachedParse(int ident) {
+        NCLElement owner = fingerprinting.get();
+        if(owner != null){
+            if(owner == this)
+                return null;
+            return "\u0000" + Long.toHexString(getFingerprint()) + "\n";
+        }
+        Map<NCLElement, Object> results = partitions.get();
+        Object parked = results != null ? results.get(this) : null;
+        if(parked instanceof String)
+            return (String) parked;
+        return NCLSerializationCache.part(this, ident, parked);
+    }
+
+
+    /**
+     * Descarta o resumo do elemento e dos seus ancestrais. Deve ser chamado pelos
+     * métodos que alteram o conteúdo do elemento.
+     */
+    protected void modified() {
+        NCLDoc doc = document();
+        Map<NCLElement, Long> fingerprints = doc != null ? doc.getFingerprints(false) : null;
+        if(fingerprints == null)
+            return;
+
+        // o resumo de um elemento só é guardado depois dos resumos dos seus filhos
+        for(NCLElement e = this; e != null && fingerprints.remove(e) != null; e = e.parent);
+    }
+
+
+    /*
+     * Descarta os resumos do elemento e de todos os elementos contidos nele
+     * quando o elemento é retirado do documento, pois a tabela do documento
+     * manteria os elementos retirados.
+     */
+    private void detached() {
+        NCLDoc doc = document();
+        Map<NCLElement, Long> fingerprints = doc != null ? doc.getFingerprints(false) : null;
+        if(fingerprints == null || fingerprints.isEmpty())
+            return;
+
+        // os filhos podem ter resumos mesmo que o elemento não tenha
+        List<Object> subtree = new ArrayList<Object>();
+        NCLWalker.collect(this, subtree);
+        for(Object e : subtree)
+            fingerprints.remove(e);
+    }
+
+
+    /**
+     * Avisa os ouvintes do documento que um atributo do elemento foi alterado.
+     * Deve ser chamado pelos métodos <i>set</i> depois da alteração. Nada é
+     * feito se os valores forem iguais.
+     *
+     * @param property
+     *          nome do atributo alterado.
+     * @param oldValue
+     *          valor do atributo antes da alteração.
+     * @param newValue
+     *          valor do atributo depois da alteração.
+     *
+     * @see NCLChangeEvent
+     */
+    protected void changed(String property, Object oldValue, Object newValue) {
+        if(oldValue == null ? newValue == null : oldValue.equals(newValue))
+            return;
+
+        NCLChangeDispatcher dispatcher = NCLChangeDispatcher.of(this);
+        if(dispatcher != null)
+            dispatcher.dispatch(new NCLChangeEvent(NCLChangeEvent.Operation.ATTRIBUTE, this, property, oldValue, newValue));
+    }
+
+
+    /**
+     * Avisa os ouvintes do documento que um filho foi inserido no elemento.
+     * Deve ser chamado pelos métodos <i>add</i> depois da inserção.
+     *
+     * @param property
+     *          nome da lista de filhos alterada.
+     * @param child
+     *          filho inserido.
+     */
+    protected void added(String property, Object child) {
+        if(child == null)
+            return;
+
+        NCLChangeDispatcher dispatcher = NCLChangeDispatcher.of(this);
+        if(dispatcher != null)
+            dispatcher.dispatch(new NCLChangeEvent(NCLChangeEvent.Operation.ADD, this, property, null, child));
+    }
+
+
+    /**
+     * Avisa os ouvintes do documento que um filho foi retirado do elemento.
+     * Deve ser chamado pelos métodos <i>remove</i> depois da retirada.
+     *
+     * @param property
+     *          nome da lista de filhos alterada.
+     * @param child
+     *          filho retirado.
+     */
+    protected void removed(String property, Object child) {
+        if(child == null)
+            return;
+
+        NCLChangeDispatcher dispatcher = NCLChangeDispatcher.of(this);
+        if(dispatcher != null)
+            dispatcher.dispatch(new NCLChangeEvent(NCLChangeEvent.Operation.REMOVE, this, property, child, null));
+    }
+
+
+    /**
+     * Aplica ao elemento uma alteração guardada, chamando o método <i>set</i>,
+     * <i>add</i> ou <i>remove</i> do atributo ou da lista de filhos indicada.
+     * É usado pelo diário para desfazer, refazer e repetir as alterações. Cada
+     * elemento que avisa alterações trata os seus atributos e listas e repassa
+     * os demais à classe pai.
+     *
+     * @param operation
+     *          tipo da alteração.
+     * @param property
+     *          nome do atributo ou da lista de filhos alterada.
+     * @param value
+     *          valor do atributo, filho inserido ou filho retirado.
+     * @throws Exception
+     *          se o elemento recusar o valor.
+     *
+     * @see NCLJournal
+     */
+    protected void applyChange(NCLChangeEvent.Operation operation, String property, Object value) throws Exception {
+        throw new IllegalStateException("Property " + property + " not found in " + getClass().getSimpleName());
+    }
+
+
+    /**
+     * Retorna o valor de um atributo que pode ser um parâmetro de conector ou um
+     * valor, conforme o que estiver atribuído.
+     *
+     * @param parameter
+     *          parâmetro atribuído ao atributo.
+     * @param value
+     *          valor atribuído ao atributo.
+     * @return
+     *          o parâmetro, se atribuído, ou o valor.
+     */
+    protected static Object either(Object parameter, Object value) {
+        return parameter != null ? parameter : value;
+    }
+
+
+    /**
+     * Retorna o valor de um atributo pronto para ser escrito entre aspas no código
+     * XML. Os caracteres especiais do XML, as quebras de linha, as tabulações e os
+     * caracteres fora do ISO-8859-1 são substituídos por referências.
+     *
+     * @param value
+     *          valor do atributo.
+     * @return
+     *          String com o valor do atributo.
+     */
+    protected static String escape(Object value) {
+        String text = String.valueOf(value);
+        StringBuilder content = null;
+        for(int i = 0; i < text.length(); ){
+            int c = text.codePointAt(i);
+            int next = i + Character.charCount(c);
+            String ref;
+            switch(c){
+                case '&': ref = "&amp;"; break;
+                case '<': ref = "&lt;"; break;
+                case '>': ref = "&gt;"; break;
+                case '\'': ref = "&apos;"; break;
+                case '"': ref = "&quot;"; break;
+                // quebras de linha e tabulações seriam normalizadas para
+                // espaços pelo leitor se não fossem escritas como referências
+                case '\t': ref = "&#9;"; break;
+                case '\n': ref = "&#10;"; break;
+                case '\r': ref = "&#13;"; break;
+                default: ref = c > 0xFF ? "&#" + c + ";" : null;
+            }
+
+            if(ref != null){
+                if(content == null)
+                    content = new StringBuilder(text.length() + 16).append(text, 0, i);
+                content.append(ref);
+            }
+            else if(content != null)
+                content.appendCodePoint(c);
+            i = next;
+        }
+
+        return content != null ? content.toString() : text;
+    }
+
+
+    /**
+     * Descarta os resumos de todos os elementos do documento. Deve ser chamado
+     * quando um nome usado em referências, como um identificador, é alterado.
+     */
+    protected void renamed() {
+        NCLDoc doc = document();
+        Map<NCLElement, Long> fingerprints = doc != null ? doc.getFingerprints(false) : null;
+        if(fingerprints != null)
+            fingerprints.clear();
+    }
+
+
+    NCLDoc document() {
+        NCLElement root = this;
+        NCLElement p;
+        while((p = root.parent) != null && p != root)
+            root = p;
+
+        return root instanceof NCLDoc ? (NCLDoc) root : null;
+    }
+
+
+    private static long hash(long h, String s) {
+        for(int i = 0; i < s.length(); i++){
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+
     /**
      * Implementa o método startElement do parser SAX para a recuperação dos objetos
      * representativos dos elementos NCL a partir de um arquivo XML.
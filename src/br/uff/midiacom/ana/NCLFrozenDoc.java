@@ -0,0 +1,488 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+
+/**
+ * Esta classe define um documento congelado da <i>Nested Context Language</i> (NCL),
+ * isto é, uma cópia imutável e compacta de um documento NCL.<br/>
+ *
+ * O documento congelado é construído a partir do código XML do documento original
+ * e guarda, para cada elemento, apenas seu nome, seus atributos e seus filhos. As
+ * referências entre elementos são resolvidas durante o congelamento e são mantidos
+ * índices dos elementos por identificador e por nome.
+ *
+ * Todo o conteúdo do documento congelado é construído antes do término do construtor
+ * e não é alterado depois, de forma que o documento pode ser compartilhado e lido
+ * por qualquer número de threads sem sincronização. Uma cópia alterável pode ser
+ * obtida através de <i>thaw</i>, que reconstrói o documento NCL repetindo os eventos
+ * SAX a partir dos elementos congelados, e clones que compartilham os elementos
+ * não alterados podem ser criados através de <i>createClone</i>.
+ *
+ * @see NCLDoc#freeze
+ * @see NCLFrozenElement
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public final class NCLFrozenDoc {
+
+    static final Set<String> REFERENCES = new HashSet<String>(Arrays.asList(
+            "component", "interface", "descriptor", "region", "xconnector", "refer",
+            "constituent", "rule", "transIn", "transOut"));
+
+    private final NCLFrozenElement root;
+    private final Map<String, NCLFrozenElement> ids;
+    private final Map<String, List<NCLFrozenElement>> names;
+    private final int size;
+
+
+    /**
+     * Congela um documento NCL.
+     *
+     * @param doc
+     *          documento NCL a ser congelado.
+     * @throws NCLParsingException
+     *          se o código XML do documento não puder ser lido.
+     */
+    public NCLFrozenDoc(NCLDoc doc) throws NCLParsingException {
+        this(doc.parse(0));
+    }
+
+
+    /**
+     * Congela o código XML de um documento NCL.
+     *
+     * @param content
+     *          código XML do documento.
+     * @throws NCLParsingException
+     *          se o código XML não puder ser lido.
+     */
+    NCLFrozenDoc(String content) throws NCLParsingException {
+        Builder builder = new Builder();
+        try{
+            XMLReader reader = XMLReaderFactory.createXMLReader();
+            reader.setContentHandler(builder);
+            reader.parse(new InputSource(new StringReader(content)));
+        }
+        catch(SAXException ex){
+            throw new NCLParsingException(ex.getMessage(), ex);
+        }
+        catch(IOException ex){
+            throw new NCLParsingException(ex.getMessage(), ex);
+        }
+
+        Map<String, NCLFrozenElement> idIndex = new HashMap<String, NCLFrozenElement>();
+        Map<String, List<NCLFrozenElement>> nameIndex = new HashMap<String, List<NCLFrozenElement>>();
+        List<NCLFrozenElement> all = new ArrayList<NCLFrozenElement>();
+
+        root = builder.root;
+        collect(root, all);
+        for(NCLFrozenElement el : all){
+            if(el.getAttribute("id") != null && !idIndex.containsKey(el.getAttribute("id")))
+                idIndex.put(el.getAttribute("id"), el);
+
+            List<NCLFrozenElement> list = nameIndex.get(el.getName());
+            if(list == null){
+                list = new ArrayList<NCLFrozenElement>();
+                nameIndex.put(el.getName(), list);
+            }
+            list.add(el);
+        }
+        for(Map.Entry<String, List<NCLFrozenElement>> e : nameIndex.entrySet())
+            e.setValue(Collections.unmodifiableList(e.getValue()));
+
+        for(NCLFrozenElement el : all)
+            resolve(el, idIndex);
+
+        ids = Collections.unmodifiableMap(idIndex);
+        names = Collections.unmodifiableMap(nameIndex);
+        size = all.size();
+    }
+
+
+    /**
+     * Retorna o elemento <i>ncl</i> do documento congelado.
+     *
+     * @return
+     *          elemento raiz do documento.
+     */
+    public NCLFrozenElement getRoot() {
+        return root;
+    }
+
+
+    /**
+     * Retorna o elemento com um identificador.
+     *
+     * @param id
+     *          identificador do elemento.
+     * @return
+     *          elemento encontrado ou nulo.
+     */
+    public NCLFrozenElement getElement(String id) {
+        return ids.get(id);
+    }
+
+
+    /**
+     * Retorna os elementos com um nome, na ordem em que aparecem no documento.
+     *
+     * @param name
+     *          nome dos elementos, como "media" ou "link".
+     * @return
+     *          lista imutável com os elementos encontrados.
+     */
+    public List<NCLFrozenElement> getElements(String name) {
+        List<NCLFrozenElement> list = names.get(name);
+        if(list == null)
+            return Collections.emptyList();
+
+        return list;
+    }
+
+
+    /**
+     * Retorna o número de elementos do documento congelado.
+     *
+     * @return
+     *          número de elementos.
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Cria uma cópia alterável do documento congelado.
+     *
+     * @return
+     *          novo documento NCL.
+     * @throws NCLParsingException
+     *          se algum erro ocorrer durante a reconstrução do documento.
+     */
+    public NCLDoc thaw() throws NCLParsingException {
+        return thaw(root, null);
+    }
+
+
+    /**
+     * Cria um clone do documento congelado. O clone compartilha todos os elementos
+     * com o documento congelado e copia apenas os elementos alterados.
+     *
+     * @return
+     *          clone do documento.
+     *
+     * @see NCLDocClone
+     */
+    public NCLDocClone createClone() {
+        return new NCLDocClone(this);
+    }
+
+
+    static NCLDoc thaw(NCLFrozenElement root, NCLDocClone view) throws NCLParsingException {
+        NCLDoc doc = new NCLDoc();
+        Replay reader = new Replay(root, view);
+        doc.setReader(reader);
+        reader.setContentHandler(doc);
+        reader.setErrorHandler(new NCLParsingErrorHandler(reader));
+
+        try{
+            reader.parse((InputSource) null);
+        }
+        catch(SAXException ex){
+            throw new NCLParsingException(ex.getMessage(), ex);
+        }
+
+        return doc;
+    }
+
+
+    /**
+     * Insere um ramo congelado como filho de um elemento NCL, repetindo sobre o
+     * elemento os eventos de leitura do ramo. O elemento cria o filho como faria
+     * durante a leitura do documento, e as referências do filho são resolvidas ao
+     * fim da inserção.
+     *
+     * @param branch
+     *          raiz do ramo congelado.
+     * @param parent
+     *          elemento que recebe o ramo.
+     * @return
+     *          elemento criado a partir da raiz do ramo.
+     * @throws NCLParsingException
+     *          se o ramo não puder ser lido pelo elemento.
+     */
+    static NCLElement graft(NCLFrozenElement branch, NCLElement parent) throws NCLParsingException {
+        Replay reader = new Replay(branch, null);
+        XMLReader previous = parent.getReader();
+        parent.setReader(null);
+        parent.setReader(reader);
+        reader.setContentHandler(parent);
+        reader.setErrorHandler(new NCLParsingErrorHandler(reader));
+
+        try{
+            reader.replay(branch);
+        }
+        catch(SAXException ex){
+            throw new NCLParsingException(ex.getMessage(), ex);
+        }
+        finally{
+            parent.setReader(null);
+            parent.setReader(previous);
+        }
+
+        if(!(reader.created instanceof NCLElement) || reader.created == parent)
+            throw new NCLParsingException("Element " + branch.getName() + " not accepted by " + parent.getClass().getSimpleName());
+
+        NCLElement child = (NCLElement) reader.created;
+        child.endDocument();
+        return child;
+    }
+
+
+    private void collect(NCLFrozenElement el, List<NCLFrozenElement> all) {
+        all.add(el);
+        for(NCLFrozenElement child : el.children())
+            collect(child, all);
+    }
+
+
+    private void resolve(NCLFrozenElement el, Map<String, NCLFrozenElement> idIndex) {
+        for(int i = 0; i < el.getAttributeCount(); i++){
+            String attribute = el.getAttributeName(i);
+            if(!REFERENCES.contains(attribute))
+                continue;
+
+            String value = el.getAttributeValue(i);
+            NCLFrozenElement target;
+            if(attribute.equals("interface")){
+                // a interface é procurada dentro do componente referenciado
+                NCLFrozenElement component = el.getReference("component");
+                target = component != null ? component.findDescendant(value) : null;
+            }
+            else
+                target = idIndex.get(value);
+
+            el.setReference(i, target);
+        }
+    }
+
+
+    /**
+     * Constrói os elementos congelados a partir dos eventos SAX do código XML.
+     */
+    private static class Builder extends DefaultHandler {
+
+        private NCLFrozenElement root;
+        private List<String> uris = new ArrayList<String>();
+        private List<String> elements = new ArrayList<String>();
+        private List<String[]> attributes = new ArrayList<String[]>();
+        private List<List<NCLFrozenElement>> children = new ArrayList<List<NCLFrozenElement>>();
+
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attrs) {
+            String[] pairs = new String[attrs.getLength() * 2];
+            for(int i = 0; i < attrs.getLength(); i++){
+                pairs[2 * i] = attrs.getLocalName(i).intern();
+                pairs[2 * i + 1] = attrs.getValue(i);
+            }
+
+            uris.add(uri.intern());
+            elements.add(localName.intern());
+            attributes.add(pairs);
+            children.add(new ArrayList<NCLFrozenElement>());
+        }
+
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            int top = elements.size() - 1;
+            String[] pairs = attributes.remove(top);
+            String[] attrNames = new String[pairs.length / 2];
+            String[] attrValues = new String[pairs.length / 2];
+            for(int i = 0; i < attrNames.length; i++){
+                attrNames[i] = pairs[2 * i];
+                attrValues[i] = pairs[2 * i + 1];
+            }
+
+            List<NCLFrozenElement> list = children.remove(top);
+            NCLFrozenElement el = new NCLFrozenElement(uris.remove(top), elements.remove(top),
+                    attrNames, attrValues, list.toArray(new NCLFrozenElement[list.size()]));
+
+            if(top == 0)
+                root = el;
+            else
+                children.get(top - 1).add(el);
+        }
+    }
+
+
+    /**
+     * Leitor que repete os eventos SAX dos elementos congelados para o tratador
+     * de conteúdo corrente, permitindo reconstruir o documento NCL com o mesmo
+     * código usado na leitura de arquivos.
+     */
+    private static class Replay implements XMLReader {
+
+        private NCLFrozenElement root;
+        private NCLDocClone view;
+        private ContentHandler contentHandler;
+        private ErrorHandler errorHandler;
+        private EntityResolver entityResolver;
+        private DTDHandler dtdHandler;
+        private ContentHandler created;
+
+
+        private Replay(NCLFrozenElement root, NCLDocClone view) {
+            this.root = root;
+            this.view = view;
+        }
+
+
+        public void parse(InputSource input) throws SAXException {
+            contentHandler.startDocument();
+            replay(root);
+            contentHandler.endDocument();
+        }
+
+
+        public void parse(String systemId) throws SAXException {
+            parse((InputSource) null);
+        }
+
+
+        private void replay(NCLFrozenElement el) throws SAXException {
+            AttributesImpl attrs = new AttributesImpl();
+            for(int i = 0; i < el.getAttributeCount(); i++)
+                attrs.addAttribute("", el.getAttributeName(i), el.getAttributeName(i), "CDATA", el.getAttributeValue(i));
+
+            // os elementos trocam o tratador de conteúdo durante a leitura
+            contentHandler.startElement(el.getNamespace(), el.getName(), el.getName(), attrs);
+            if(el == root)
+                created = contentHandler;
+            if(view != null){
+                for(NCLFrozenElement child : view.getChildren(el))
+                    replay(child);
+            }
+            else{
+                for(NCLFrozenElement child : el.children())
+                    replay(child);
+            }
+            contentHandler.endElement(el.getNamespace(), el.getName(), el.getName());
+        }
+
+
+        public boolean getFeature(String name) {
+            return false;
+        }
+
+
+        public void setFeature(String name, boolean value) {}
+
+
+        public Object getProperty(String name) {
+            return null;
+        }
+
+
+        public void setProperty(String name, Object value) {}
+
+
+        public void setEntityResolver(EntityResolver resolver) {
+            this.entityResolver = resolver;
+        }
+
+
+        public EntityResolver getEntityResolver() {
+            return entityResolver;
+        }
+
+
+        public void setDTDHandler(DTDHandler handler) {
+            this.dtdHandler = handler;
+        }
+
+
+        public DTDHandler getDTDHandler() {
+            return dtdHandler;
+        }
+
+
+        public void setContentHandler(ContentHandler handler) {
+            this.contentHandler = handler;
+        }
+
+
+        public ContentHandler getContentHandler() {
+            return contentHandler;
+        }
+
+
+        public void setErrorHandler(ErrorHandler handler) {
+            this.errorHandler = handler;
+        }
+
+
+        public ErrorHandler getErrorHandler() {
+            return errorHandler;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Esta classe define um elemento imutável de um documento congelado da
+ * <i>Nested Context Language</i> (NCL).<br/>
+ *
+ * O elemento guarda o nome, os atributos e os filhos do elemento NCL original
+ * em vetores compactos. Os atributos que referenciam outros elementos do documento
+ * (como <i>component</i>, <i>interface</i>, <i>descriptor</i>, <i>region</i> e
+ * <i>xconnector</i>) são resolvidos durante o congelamento e podem ser obtidos
+ * diretamente através de <i>getReference</i>.
+ *
+ * Os elementos não possuem métodos de alteração e podem ser lidos por várias
+ * threads simultaneamente.
+ *
+ * @see NCLFrozenDoc
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public final class NCLFrozenElement {
+
+    private final String namespace;
+    private final String name;
+    private final String[] attributeNames;
+    private final String[] attributeValues;
+    private final NCLFrozenElement[] children;
+    private final NCLFrozenElement[] references;
+    private final NCLFrozenElement origin;
+    private NCLFrozenElement parent;
+
+
+    NCLFrozenElement(String namespace, String name, String[] attributeNames, String[] attributeValues, NCLFrozenElement[] children) {
+        this.namespace = namespace;
+        this.name = name;
+        this.attributeNames = attributeNames;
+        this.attributeValues = attributeValues;
+        this.children = children;
+        this.references = new NCLFrozenElement[attributeNames.length];
+        this.origin = this;
+
+        for(NCLFrozenElement child : children)
+            child.parent = this;
+    }
+
+
+    NCLFrozenElement(NCLFrozenElement origin, String[] attributeNames, String[] attributeValues, NCLFrozenElement[] children, NCLFrozenElement[] references) {
+        // cópia usada por NCLDocClone: os filhos são compartilhados com o
+        // elemento original e continuam apontando para o pai original
+        this.namespace = origin.namespace;
+        this.name = origin.name;
+        this.attributeNames = attributeNames;
+        this.attributeValues = attributeValues;
+        this.children = children;
+        this.references = references;
+        this.origin = origin;
+        this.parent = origin.parent;
+    }
+
+
+    /**
+     * Retorna o nome do elemento, como "media" ou "link".
+     *
+     * @return
+     *          String com o nome do elemento.
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * Retorna o espaço de nomes do elemento.
+     *
+     * @return
+     *          String com o espaço de nomes ou vazia se o elemento não possuir espaço de nomes.
+     */
+    public String getNamespace() {
+        return namespace;
+    }
+
+
+    /**
+     * Retorna o elemento pai.
+     *
+     * @return
+     *          elemento pai ou nulo para o elemento <i>ncl</i>.
+     */
+    public NCLFrozenElement getParent() {
+        return parent;
+    }
+
+
+    /**
+     * Retorna os elementos filhos na ordem em que aparecem no documento.
+     *
+     * @return
+     *          lista imutável com os elementos filhos.
+     */
+    public List<NCLFrozenElement> getChildren() {
+        return Collections.unmodifiableList(Arrays.asList(children));
+    }
+
+
+    /**
+     * Retorna o identificador do elemento, isto é, o valor do atributo <i>id</i>
+     * ou, na sua falta, do atributo <i>name</i>.
+     *
+     * @return
+     *          String com o identificador ou nulo se o elemento não possuir identificador.
+     */
+    public String getId() {
+        String id = getAttribute("id");
+        if(id == null)
+            id = getAttribute("name");
+
+        return id;
+    }
+
+
+    /**
+     * Retorna o valor de um atributo do elemento.
+     *
+     * @param attribute
+     *          nome do atributo.
+     * @return
+     *          String com o valor do atributo ou nulo se o elemento não possuir o atributo.
+     */
+    public String getAttribute(String attribute) {
+        int index = indexOf(attribute);
+        if(index == -1)
+            return null;
+
+        return attributeValues[index];
+    }
+
+
+    /**
+     * Retorna os nomes dos atributos do elemento.
+     *
+     * @return
+     *          lista imutável com os nomes dos atributos.
+     */
+    public List<String> getAttributeNames() {
+        return Collections.unmodifiableList(Arrays.asList(attributeNames));
+    }
+
+
+    /**
+     * Retorna o elemento referenciado por um atributo do elemento.
+     *
+     * @param attribute
+     *          nome do atributo, como "component" ou "descriptor".
+     * @return
+     *          elemento referenciado ou nulo se o atributo não referenciar um
+     *          elemento do documento.
+     */
+    public NCLFrozenElement getReference(String attribute) {
+        int index = indexOf(attribute);
+        if(index == -1)
+            return null;
+
+        return references[index];
+    }
+
+
+    /**
+     * Procura, entre os descendentes do elemento, o elemento com um identificador.
+     *
+     * @param id
+     *          identificador do atributo <i>id</i> ou <i>name</i>.
+     * @return
+     *          elemento encontrado ou nulo.
+     */
+    public NCLFrozenElement findDescendant(String id) {
+        for(NCLFrozenElement child : children){
+            if(id.equals(child.getId()))
+                return child;
+            NCLFrozenElement found = child.findDescendant(id);
+            if(found != null)
+                return found;
+        }
+        return null;
+    }
+
+
+    String getAttributeName(int index) {
+        return attributeNames[index];
+    }
+
+
+    String getAttributeValue(int index) {
+        return attributeValues[index];
+    }
+
+
+    int getAttributeCount() {
+        return attributeNames.length;
+    }
+
+
+    NCLFrozenElement[] children() {
+        return children;
+    }
+
+
+    String[] attributeNames() {
+        return attributeNames;
+    }
+
+
+    String[] attributeValues() {
+        return attributeValues;
+    }
+
+
+    NCLFrozenElement[] references() {
+        return references;
+    }
+
+
+    NCLFrozenElement origin() {
+        return origin;
+    }
+
+
+    void setReference(int index, NCLFrozenElement reference) {
+        references[index] = reference;
+    }
+
+
+    void setParent(NCLFrozenElement parent) {
+        this.parent = parent;
+    }
+
+
+    private int indexOf(String attribute) {
+        for(int i = 0; i < attributeNames.length; i++){
+            if(attributeNames[i].equals(attribute))
+                return i;
+        }
+        return -1;
+    }
+}
@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.connector.NCLConnectorBase;
 import br.uff.midiacom.ana.descriptor.NCLDescriptorBase;
 import br.uff.midiacom.ana.meta.NCLMeta;
@@ -100,6 +101,8 @@ public class NCLHead<IB extends NCLImportedDocumentBase, RLB extends NCLRuleBase
      *          elemento representando a base de documentos importados a ser utilizada pelo cabeçalho.
      */
     public void setImportedDocumentBase(IB importedDocumentBase) {
+        modified();
+        Object old = this.importedDocumentBase;
         //Retira o parentesco do importedDocumentBase atual
         if(this.importedDocumentBase != null)
             this.importedDocumentBase.setParent(null);
@@ -108,6 +111,7 @@ public class NCLHead<IB extends NCLImportedDocumentBase, RLB extends NCLRuleBase
         //Se importedDocumentBase existe, atribui este como seu parente
         if(this.importedDocumentBase != null)
             this.importedDocumentBase.setParent(this);
+        changed("importedDocumentBase", old, this.importedDocumentBase);
     }
 
 
@@ -130,6 +134,8 @@ public class NCLHead<IB extends NCLImportedDocumentBase, RLB extends NCLRuleBase
      *          elemento representando a base de regras NCL a ser utilizada pelo cabeçalho.
      */
     public void setRuleBase(RLB ruleBase) {
+        modified();
+        Object old = this.ruleBase;
         //Retira o parentesco do ruleBase atual
         if(this.ruleBase != null)
             this.ruleBase.setParent(null);
@@ -138,6 +144,7 @@ public class NCLHead<IB extends NCLImportedDocumentBase, RLB extends NCLRuleBase
         //Se ruleBase existe, atribui este como seu parente
         if(this.ruleBase != null)
             this.ruleBase.setParent(this);
+        changed("ruleBase", old, this.ruleBase);
     }
 
 
@@ -160,6 +167,8 @@ public class NCLHead<IB extends NCLImportedDocumentBase, RLB extends NCLRuleBase
      *          elemento representando a base de transições NCL a ser utilizada pelo cabeçalho.
      */
     public void setTransitionBase(TB transitionBase) {
+        modified();
+        Object old = this.transitionBase;
         //Retira o parentesco do transitionBase atual
         if(this.transitionBase != null)
             this.transitionBase.setParent(null);
@@ -168,6 +177,7 @@ public class NCLHead<IB extends NCLImportedDocumentBase, RLB extends NCLRuleBase
         //Se transitionBase existe, atribui este como seu parente
         if(this.transitionBase != null)
             this.transitionBase.setParent(this);
+        changed("transitionBase", old, this.transitionBase);
     }
 
 
@@ -190,6 +200,8 @@ public class NCLHead<IB extends NCLImportedDocumentBase, RLB extends NCLRuleBase
      *          elemento representando a base de regiões NCL a ser utilizada pelo cabeçalho.
      */
     public void setRegionBase(RB regionBase) {
+        modified();
+        Object old = this.regionBase;
         //Retira o parentesco do regionBase atual
         if(this.regionBase != null)
             this.regionBase.setParent(null);
@@ -198,6 +210,7 @@ public class NCLHead<IB extends NCLImportedDocumentBase, RLB extends NCLRuleBase
         //Se regionBase existe, atribui este como seu parente
         if(this.regionBase != null)
             this.regionBase.setParent(this);
+        changed("regionBase", old, this.regionBase);
     }
 
 
@@ -220,6 +233,8 @@ public class NCLHead<IB extends NCLImportedDocumentBase, RLB extends NCLRuleBase
      *          elemento representando a base de descritores NCL a ser utilizada pelo cabeçalho.
      */    
     public void setDescriptorBase(DB descriptorBase) {
+        modified();
+        Object old = this.descriptorBase;
         //Retira o parentesco do descriptorBase atual
         if(this.descriptorBase != null)
             this.descriptorBase.setParent(null);
@@ -228,6 +243,7 @@ public class NCLHead<IB extends NCLImportedDocumentBase, RLB extends NCLRuleBase
         //Se descriptorBase existe, atribui este como seu parente
         if(this.descriptorBase != null)
             this.descriptorBase.setParent(this);
+        changed("descriptorBase", old, this.descriptorBase);
     }
 
     
@@ -249,6 +265,8 @@ public class NCLHead<IB extends NCLImportedDocumentBase, RLB extends NCLRuleBase
      *          elemento representando a base de conectores NCL a ser utilizada pelo cabeçalho.
      */
     public void setConnectorBase(CB connectorBase) {
+        modified();
+        Object old = this.connectorBase;
         //Retira o parentesco do connectorBase atual
         if(this.connectorBase != null)
             this.connectorBase.setParent(null);
@@ -257,6 +275,7 @@ public class NCLHead<IB extends NCLImportedDocumentBase, RLB extends NCLRuleBase
         //Se connectorBase existe, atribui este como seu parente
         if(this.connectorBase != null)
             this.connectorBase.setParent(this);
+        changed("connectorBase", old, this.connectorBase);
     }
 
     
@@ -282,10 +301,12 @@ public class NCLHead<IB extends NCLImportedDocumentBase, RLB extends NCLRuleBase
      * @see TreeSet#add
      */
     public boolean addMeta(M meta) {
+        modified();
         if(metas.add(meta)){
             //Se meta existe, atribui este como seu parente
             if(meta != null)
                 meta.setParent(this);
+            added("meta", meta);
 
             return true;
         }
@@ -304,10 +325,12 @@ public class NCLHead<IB extends NCLImportedDocumentBase, RLB extends NCLRuleBase
      * @see TreeSet#remove
      */
     public boolean removeMeta(M meta) {
+        modified();
         if(metas.remove(meta)){
             //Se meta existe, retira o seu parentesco
             if(meta != null)
                 meta.setParent(null);
+            removed("meta", meta);
 
             return true;
         }
@@ -361,10 +384,12 @@ public class NCLHead<IB extends NCLImportedDocumentBase, RLB extends NCLRuleBase
      * @see TreeSet#add
      */
     public boolean addMetadata(MT metadata) {
+        modified();
         if(metadatas.add(metadata)){
             //Se metadata existe, atribui este como seu parente
             if(metadata != null)
                 metadata.setParent(this);
+            added("metadata", metadata);
 
             return true;
         }
@@ -383,10 +408,12 @@ public class NCLHead<IB extends NCLImportedDocumentBase, RLB extends NCLRuleBase
      * @see TreeSet#remove
      */
     public boolean removeMetadata(MT metadata) {
+        modified();
         if(metadatas.remove(metadata)){
             //Se metadata existe, retira o seu parentesco
             if(metadata != null)
                 metadata.setParent(null);
+            removed("metadata", metadata);
 
             return true;
         }
@@ -430,7 +457,12 @@ public class NCLHead<IB extends NCLImportedDocumentBase, RLB extends NCLRuleBase
     
     
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -440,32 +472,67 @@ public class NCLHead<IB extends NCLImportedDocumentBase, RLB extends NCLRuleBase
         for(int i = 0; i < ident; i++)
             space += "\t";
                 
-        content = space + "<head>\n";    
+        content.append(space + "<head>\n");
 
         if(getImportedDocumentBase() != null)
-            content += getImportedDocumentBase().parse(ident + 1);
+            content.append(getImportedDocumentBase().parse(ident + 1));
         if(getRuleBase() != null)
-            content += getRuleBase().parse(ident + 1);
+            content.append(getRuleBase().parse(ident + 1));
         if(getTransitionBase() != null)
-            content += getTransitionBase().parse(ident + 1);
+            content.append(getTransitionBase().parse(ident + 1));
         if(getRegionBase() != null)
-            content += getRegionBase().parse(ident + 1);
+            content.append(getRegionBase().parse(ident + 1));
         if(getDescriptorBase() != null)
-            content += getDescriptorBase().parse(ident + 1);
+            content.append(getDescriptorBase().parse(ident + 1));
         if(getConnectorBase() != null)
-            content += getConnectorBase().parse(ident + 1);
+            content.append(getConnectorBase().parse(ident + 1));
         if(hasMeta()){
             for(M meta : metas)
-                content += meta.parse(ident + 1);
+                content.append(meta.parse(ident + 1));
         }
         if(hasMetadata()){
             for(MT metadata : metadatas)
-                content += metadata.parse(ident + 1);
+                content.append(metadata.parse(ident + 1));
         }
         
-        content += space + "</head>\n";
+        content.append(space + "</head>\n");
         
-        return content;
+        return content.toString();
+    }
+
+
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("importedDocumentBase"))
+                setImportedDocumentBase((IB) value);
+            else if(property.equals("ruleBase"))
+                setRuleBase((RLB) value);
+            else if(property.equals("transitionBase"))
+                setTransitionBase((TB) value);
+            else if(property.equals("regionBase"))
+                setRegionBase((RB) value);
+            else if(property.equals("descriptorBase"))
+                setDescriptorBase((DB) value);
+            else if(property.equals("connectorBase"))
+                setConnectorBase((CB) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else if(property.equals("meta")){
+            if(operation == Operation.ADD)
+                addMeta((M) value);
+            else
+                removeMeta((M) value);
+        }
+        else if(property.equals("metadata")){
+            if(operation == Operation.ADD)
+                addMetadata((MT) value);
+            else
+                removeMetadata((MT) value);
+        }
+        else
+            super.applyChange(operation, property, value);
     }
 
 
@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -50,6 +51,8 @@ import java.util.regex.Pattern;
  */
 public abstract class NCLIdentifiableElement extends NCLElement implements IdentifiableElement {
     
+    private static final Pattern pattern = Pattern.compile("[_:A-Za-z][-._:A-Za-z0-9]*");
+
     private String id;    
 
 
@@ -65,7 +68,13 @@ public abstract class NCLIdentifiableElement extends NCLElement implements Ident
         if(!validate(id))
             throw new NCLInvalidIdentifierException("Invalid identifier");
     
+        modified();
+        Object old = this.id;
+        // as referências ao elemento usam o identificador antigo
+        if(this.id != null && !this.id.equals(id))
+            renamed();
         this.id = id;
+        changed("id", old, this.id);
     }
     
     
@@ -81,6 +90,15 @@ public abstract class NCLIdentifiableElement extends NCLElement implements Ident
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE && property.equals("id"))
+            setId((String) value);
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     /**
      * Método utilizado para validar o identificador do elemento.
      * A validação segue o formato: [_:A-Za-z] \c = [-._:A-Za-z0-9]
@@ -90,9 +108,7 @@ public abstract class NCLIdentifiableElement extends NCLElement implements Ident
      * @return
      *          verdadeiro se o identificador for válido e falso caso contrário.
      */
-    private boolean validate(String id) {
-    
-        Pattern pattern = Pattern.compile("[_:A-Za-z][-._:A-Za-z0-9]*");
+    static boolean validate(String id) {
 
         Matcher matcher = pattern.matcher(id);
 
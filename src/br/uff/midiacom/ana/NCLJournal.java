@@ -0,0 +1,1029 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Esta classe define um diário das operações feitas em um documento da
+ * <i>Nested Context Language</i> (NCL), que permite desfazer e refazer as
+ * operações e repeti-las sobre outra cópia do documento.<br/>
+ *
+ * O diário recebe cada alteração do documento assim que ela é feita. Uma
+ * alteração feita fora de um lote forma uma operação, e as alterações feitas
+ * por uma thread dentro de um lote formam uma única operação, sem as
+ * alterações das outras threads. O diário guarda apenas as alterações: cada
+ * elemento alterado, inserido, retirado ou referenciado recebe um marcador, que
+ * guarda o elemento e o caminho do elemento a partir da raiz do documento no
+ * momento em que foi marcado pela primeira vez. O caminho é formado pelos
+ * identificadores dos elementos ou, para os elementos sem identificador, pela
+ * posição entre os filhos do pai. Nenhum elemento é copiado durante o registro,
+ * e a memória usada pelo diário é proporcional ao número de alterações e não ao
+ * tamanho do documento.
+ *
+ * Desfazer ou refazer uma operação aplica cada alteração ao próprio elemento
+ * alterado, que chama o seu método <i>set</i>, <i>add</i> ou <i>remove</i> com
+ * o valor guardado, em tempo proporcional ao número de alterações da operação.
+ * Essas chamadas não são registradas pelo diário, mas são entregues aos ouvintes
+ * do documento em um único lote. Uma nova operação descarta as operações
+ * desfeitas.
+ *
+ * Um checkpoint é uma posição do diário. Quando o documento é salvo em um
+ * checkpoint, as operações seguintes podem ser repetidas sobre o documento salvo
+ * e lido novamente, por exemplo para recuperar o trabalho após uma falha. Os
+ * elementos marcados são encontrados na cópia pelos seus caminhos, e os
+ * elementos inseridos são copiados para a cópia no estado em que estão no
+ * documento, o que já inclui as alterações feitas neles depois da inserção.
+ *
+ * As operações também podem ser gravadas em um fluxo de bytes, para serem
+ * repetidas depois sobre o documento salvo mesmo que o diário original tenha
+ * sido perdido. Cada alteração é gravada com o caminho do elemento alterado, a
+ * operação, a propriedade e o valor: um texto, o caminho do elemento
+ * referenciado ou retirado ou o código NCL do elemento inserido. Um elemento já
+ * citado no fluxo é gravado apenas pelo seu número.
+ *
+ * @see NCLChangeEvent
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public final class NCLJournal {
+
+    private final NCLDoc doc;
+    private final List<List<Entry>> operations = new ArrayList<List<Entry>>();
+    private final ThreadLocal<List<Entry>> open = new ThreadLocal<List<Entry>>();
+    private final Map<Object, Handle> handles = new IdentityHashMap<Object, Handle>();
+    private static final int MAGIC = 0x4E434C4A;
+    private static final int VERSION = 1;
+    private static final int VALUE = 0;
+    private static final int REFERENCED = 1;
+    private static final int INSERTED = 2;
+    private static final int REMOVED = 3;
+    private int position;
+    private int epoch;
+    private Thread applying;
+    private Thread grafting;
+    private List<NCLChangeEvent> grafted;
+
+
+    /**
+     * Cria um diário e passa a registrar as operações feitas no documento.
+     *
+     * @param doc
+     *          documento NCL.
+     */
+    public NCLJournal(NCLDoc doc) {
+        this.doc = doc;
+        doc.getChangeDispatcher().addJournal(this);
+    }
+
+
+    /**
+     * Retorna o documento do diário.
+     *
+     * @return
+     *          documento NCL.
+     */
+    public NCLDoc getDoc() {
+        return doc;
+    }
+
+
+    /**
+     * Deixa de registrar as operações feitas no documento. As operações já
+     * registradas continuam podendo ser desfeitas, refeitas e repetidas.
+     */
+    public void close() {
+        doc.getChangeDispatcher().removeJournal(this);
+    }
+
+
+    /**
+     * Retorna o número de operações do diário, incluindo as desfeitas.
+     *
+     * @return
+     *          número de operações.
+     */
+    public synchronized int size() {
+        return operations.size();
+    }
+
+
+    /**
+     * Retorna a posição atual do diário, isto é, o número de operações
+     * aplicadas ao documento que não foram desfeitas.
+     *
+     * @return
+     *          posição atual.
+     */
+    public synchronized int getPosition() {
+        return position;
+    }
+
+
+    /**
+     * Verifica se existe uma operação a ser desfeita.
+     *
+     * @return
+     *          verdadeiro se existir uma operação a ser desfeita.
+     */
+    public synchronized boolean canUndo() {
+        return position > 0;
+    }
+
+
+    /**
+     * Verifica se existe uma operação desfeita a ser refeita.
+     *
+     * @return
+     *          verdadeiro se existir uma operação a ser refeita.
+     */
+    public synchronized boolean canRedo() {
+        return position < operations.size();
+    }
+
+
+    /**
+     * Desfaz a última operação aplicada.
+     *
+     * @return
+     *          verdadeiro se uma operação foi desfeita.
+     * @throws java.lang.IllegalStateException
+     *          se um lote do documento estiver em andamento na thread ou se algum
+     *          elemento recusar o valor guardado.
+     */
+    public synchronized boolean undo() throws IllegalStateException {
+        if(position == 0)
+            return false;
+
+        apply(operations.get(position - 1), false);
+        position--;
+        return true;
+    }
+
+
+    /**
+     * Refaz a última operação desfeita.
+     *
+     * @return
+     *          verdadeiro se uma operação foi refeita.
+     * @throws java.lang.IllegalStateException
+     *          se um lote do documento estiver em andamento na thread ou se algum
+     *          elemento recusar o valor guardado.
+     */
+    public synchronized boolean redo() throws IllegalStateException {
+        if(position == operations.size())
+            return false;
+
+        apply(operations.get(position), true);
+        position++;
+        return true;
+    }
+
+
+    /**
+     * Marca um checkpoint na posição atual do diário. A primeira operação
+     * seguinte que referenciar um elemento guarda novamente o caminho do
+     * elemento, para que ele seja encontrado em uma cópia salva no checkpoint.
+     *
+     * @return
+     *          checkpoint, usado para voltar a esta posição ou para repetir as
+     *          operações seguintes.
+     *
+     * @see NCLJournal#rollback(int)
+     * @see NCLJournal#replay(br.uff.midiacom.ana.NCLDoc, int)
+     */
+    public synchronized int checkpoint() {
+        epoch++;
+        return position;
+    }
+
+
+    /**
+     * Desfaz ou refaz as operações até que o diário volte a um checkpoint.
+     *
+     * @param checkpoint
+     *          checkpoint marcado no diário.
+     * @throws java.lang.IllegalArgumentException
+     *          se o checkpoint não existir mais no diário.
+     */
+    public synchronized void rollback(int checkpoint) throws IllegalArgumentException {
+        if(checkpoint < 0 || checkpoint > operations.size())
+            throw new IllegalArgumentException("Invalid checkpoint");
+
+        while(position > checkpoint)
+            undo();
+        while(position < checkpoint)
+            redo();
+    }
+
+
+    /**
+     * Descarta todas as operações do diário, por exemplo depois que o documento
+     * foi salvo.
+     */
+    public synchronized void clear() {
+        operations.clear();
+        handles.clear();
+        epoch++;
+        position = 0;
+    }
+
+
+    /**
+     * Repete todas as operações aplicadas sobre outra cópia do documento, lida
+     * no estado em que o documento estava quando o diário foi criado ou limpo.
+     *
+     * @param target
+     *          cópia do documento.
+     * @throws NCLParsingException
+     *          se alguma operação não puder ser repetida sobre a cópia.
+     */
+    public void replay(NCLDoc target) throws NCLParsingException {
+        replay(target, 0);
+    }
+
+
+    /**
+     * Repete as operações aplicadas a partir de um checkpoint sobre outra cópia
+     * do documento, lida no estado em que o documento estava no checkpoint. Os
+     * elementos são encontrados na cópia pelos seus marcadores. Os elementos
+     * inseridos são copiados no estado em que estão no documento, e as alterações
+     * feitas neles depois da inserção não são repetidas.
+     *
+     * @param target
+     *          cópia do documento.
+     * @param checkpoint
+     *          checkpoint marcado no diário.
+     * @throws NCLParsingException
+     *          se alguma operação não puder ser repetida sobre a cópia.
+     * @throws java.lang.IllegalArgumentException
+     *          se a cópia for o próprio documento ou se o checkpoint não for
+     *          anterior à posição atual.
+     */
+    public synchronized void replay(NCLDoc target, int checkpoint) throws NCLParsingException, IllegalArgumentException {
+        if(target == doc)
+            throw new IllegalArgumentException("Journal can not be replayed over its own document");
+        if(checkpoint < 0 || checkpoint > position)
+            throw new IllegalArgumentException("Invalid checkpoint");
+
+        Map<Integer, NCLElement> resolved = new HashMap<Integer, NCLElement>();
+        target.beginBatch();
+        try{
+            for(List<Record> operation : records(checkpoint)){
+                for(Record record : operation)
+                    replay(target, record, resolved);
+            }
+        }
+        finally{
+            target.endBatch();
+        }
+    }
+
+
+    /**
+     * Grava todas as operações aplicadas em um fluxo de bytes.
+     *
+     * @param out
+     *          fluxo onde as operações serão gravadas. O fluxo não é fechado.
+     * @throws java.io.IOException
+     *          se o fluxo não puder ser escrito ou se algum valor alterado não
+     *          puder ser gravado como texto.
+     *
+     * @see NCLJournal#read(java.io.InputStream)
+     */
+    public void write(OutputStream out) throws IOException {
+        write(out, 0);
+    }
+
+
+    /**
+     * Grava as operações aplicadas a partir de um checkpoint em um fluxo de
+     * bytes. As operações gravadas podem ser repetidas sobre o documento salvo
+     * no checkpoint através do método <i>read</i> do diário desse documento.
+     *
+     * @param out
+     *          fluxo onde as operações serão gravadas. O fluxo não é fechado.
+     * @param checkpoint
+     *          checkpoint marcado no diário.
+     * @throws java.io.IOException
+     *          se o fluxo não puder ser escrito ou se algum valor alterado não
+     *          puder ser gravado como texto.
+     * @throws java.lang.IllegalArgumentException
+     *          se o checkpoint não for anterior à posição atual.
+     */
+    public synchronized void write(OutputStream out, int checkpoint) throws IOException, IllegalArgumentException {
+        if(checkpoint < 0 || checkpoint > position)
+            throw new IllegalArgumentException("Invalid checkpoint");
+
+        List<List<Record>> records = records(checkpoint);
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(records.size());
+        for(List<Record> operation : records){
+            data.writeInt(operation.size());
+            for(Record record : operation)
+                write(data, record);
+        }
+        data.flush();
+    }
+
+
+    /**
+     * Lê operações gravadas por outro diário e as repete sobre o documento
+     * deste diário, que deve estar no estado em que o documento original
+     * estava no checkpoint a partir do qual as operações foram gravadas. Cada
+     * operação lida é aplicada em um lote e passa a ser uma operação deste
+     * diário, que pode ser desfeita.
+     *
+     * @param in
+     *          fluxo com as operações gravadas.
+     * @throws java.io.IOException
+     *          se o fluxo não puder ser lido ou não contiver operações gravadas
+     *          por um diário.
+     * @throws NCLParsingException
+     *          se alguma operação não puder ser repetida sobre o documento.
+     *
+     * @see NCLJournal#write(java.io.OutputStream, int)
+     */
+    public synchronized void read(InputStream in) throws IOException, NCLParsingException {
+        DataInputStream data = new DataInputStream(in);
+        if(data.readInt() != MAGIC)
+            throw new IOException("Not a journal stream");
+        if(data.readInt() != VERSION)
+            throw new IOException("Unsupported journal version");
+
+        List<List<Record>> records = new ArrayList<List<Record>>();
+        for(int i = data.readInt(); i > 0; i--){
+            List<Record> operation = new ArrayList<Record>();
+            for(int j = data.readInt(); j > 0; j--)
+                operation.add(read(data));
+            records.add(operation);
+        }
+
+        Map<Integer, NCLElement> resolved = new HashMap<Integer, NCLElement>();
+        for(List<Record> operation : records){
+            doc.beginBatch();
+            try{
+                for(Record record : operation)
+                    replay(doc, record, resolved);
+            }
+            finally{
+                doc.endBatch();
+            }
+        }
+    }
+
+
+    synchronized void record(NCLChangeEvent event, boolean batched) {
+        if(applying == Thread.currentThread())
+            return;
+        if(grafting == Thread.currentThread()){
+            grafted.add(event);
+            return;
+        }
+
+        List<Entry> entries = open.get();
+        if(entries == null){
+            entries = new ArrayList<Entry>(1);
+            open.set(entries);
+        }
+        entries.add(entry(event));
+
+        if(!batched)
+            commit();
+    }
+
+
+    synchronized void commit() {
+        List<Entry> entries = open.get();
+        if(entries == null)
+            return;
+        open.remove();
+
+        while(operations.size() > position)
+            operations.remove(operations.size() - 1);
+        operations.add(entries);
+        position++;
+    }
+
+
+    private void apply(List<Entry> operation, boolean forward) {
+        if(open.get() != null)
+            throw new IllegalStateException("Batch in progress");
+
+        applying = Thread.currentThread();
+        doc.beginBatch();
+        try{
+            if(forward){
+                for(int i = 0; i < operation.size(); i++)
+                    apply(operation.get(i).event, true);
+            }
+            else{
+                for(int i = operation.size() - 1; i >= 0; i--)
+                    apply(operation.get(i).event, false);
+            }
+        }
+        finally{
+            applying = null;
+            doc.endBatch();
+        }
+    }
+
+
+    private void apply(NCLChangeEvent event, boolean forward) {
+        Operation operation = event.getOperation();
+        Object value;
+        if(operation == Operation.ATTRIBUTE)
+            value = forward ? event.getNewValue() : event.getOldValue();
+        else if(operation == Operation.ADD)
+            value = event.getNewValue();
+        else
+            value = event.getOldValue();
+
+        // desfazer uma inserção é uma retirada e vice-versa
+        if(!forward && operation == Operation.ADD)
+            operation = Operation.REMOVE;
+        else if(!forward && operation == Operation.REMOVE)
+            operation = Operation.ADD;
+
+        change(event.getElement(), operation, event.getProperty(), value);
+    }
+
+
+    /*
+     * Converte as alterações em registros independentes dos objetos do
+     * documento: os marcadores são trocados por números e os caminhos ausentes
+     * dos elementos inseridos são calculados neste momento.
+     */
+    private List<List<Record>> records(int checkpoint) {
+        Map<Handle, Integer> numbers = new IdentityHashMap<Handle, Integer>();
+        Map<Handle, Boolean> copied = new IdentityHashMap<Handle, Boolean>();
+        List<List<Record>> result = new ArrayList<List<Record>>();
+
+        for(int i = checkpoint; i < position; i++){
+            List<Record> operation = new ArrayList<Record>();
+            for(Entry entry : operations.get(i)){
+                // a cópia de um elemento inserido já possui as alterações feitas
+                // nele, inclusive os elementos inseridos nele
+                if(entry.owner != null && copied.containsKey(entry.owner)){
+                    if(entry.value != null && entry.value.inserted)
+                        copied.put(entry.value, Boolean.TRUE);
+                    continue;
+                }
+
+                NCLChangeEvent event = entry.event;
+                Record record = new Record(event.getOperation(), event.getProperty());
+                record.path = path(entry.element, entry.path, numbers);
+                record.element = number(entry.element, numbers);
+
+                if(event.getOperation() == Operation.REMOVE){
+                    record.valuePath = path(entry.value, entry.valuePath, numbers);
+                    if(record.valuePath == null)
+                        record.content = event.getOldValue();
+                    record.value = number(entry.value, numbers);
+                }
+                else if(entry.value != null && entry.value.inserted){
+                    record.inserted = true;
+                    record.content = entry.value.element;
+                    record.value = number(entry.value, numbers);
+                    copied.put(entry.value, Boolean.TRUE);
+                }
+                else if(entry.value != null){
+                    record.valuePath = path(entry.value, entry.valuePath, numbers);
+                    record.value = number(entry.value, numbers);
+                }
+                else
+                    record.content = event.getNewValue();
+
+                operation.add(record);
+            }
+            if(!operation.isEmpty())
+                result.add(operation);
+        }
+        return result;
+    }
+
+
+    private String path(Handle handle, String path, Map<Handle, Integer> numbers) {
+        // um elemento de uma cópia é encontrado pelo seu caminho atual
+        if(path == null && !numbers.containsKey(handle) && handle.inserted && handle.element instanceof NCLElement)
+            path = path((NCLElement) handle.element, null);
+        return path;
+    }
+
+
+    private static int number(Handle handle, Map<Handle, Integer> numbers) {
+        Integer number = numbers.get(handle);
+        if(number == null){
+            number = numbers.size();
+            numbers.put(handle, number);
+        }
+        return number;
+    }
+
+
+    private void replay(NCLDoc target, Record record, Map<Integer, NCLElement> resolved) throws NCLParsingException {
+        NCLElement element = resolve(target, record.element, record.path, resolved);
+        if(element == null)
+            throw new NCLParsingException("Element not found: " + record.path);
+
+        try{
+            if(record.operation == Operation.REMOVE){
+                NCLElement child = resolve(target, record.value, record.valuePath, resolved);
+                if(child == null && record.content != null)
+                    child = match(element, code(record.content));
+                if(child == null)
+                    throw new NCLParsingException("Element not found: " + record.path + "/" + record.property);
+                change(element, Operation.REMOVE, record.property, child);
+            }
+            else if(record.inserted){
+                NCLFrozenDoc branch = new NCLFrozenDoc(code(record.content));
+                resolved.put(record.value, graft(target, branch, element));
+            }
+            else if(record.value >= 0){
+                NCLElement referenced = resolve(target, record.value, record.valuePath, resolved);
+                if(referenced == null)
+                    throw new NCLParsingException("Element not found: " + record.valuePath);
+                change(element, Operation.ATTRIBUTE, record.property, referenced);
+            }
+            else
+                change(element, Operation.ATTRIBUTE, record.property, record.content);
+        }
+        catch(IllegalStateException ex){
+            throw new NCLParsingException(ex.getMessage(), ex);
+        }
+    }
+
+
+    /*
+     * Ao repetir operações lidas sobre o próprio documento, apenas a inserção do
+     * elemento copiado é registrada. As alterações feitas pela leitura do
+     * elemento o deixariam incompleto ao serem desfeitas.
+     */
+    private NCLElement graft(NCLDoc target, NCLFrozenDoc branch, NCLElement parent) throws NCLParsingException {
+        if(target != doc)
+            return NCLFrozenDoc.graft(branch.getRoot(), parent);
+
+        NCLElement child;
+        grafting = Thread.currentThread();
+        grafted = new ArrayList<NCLChangeEvent>();
+        try{
+            child = NCLFrozenDoc.graft(branch.getRoot(), parent);
+        }
+        finally{
+            grafting = null;
+        }
+
+        for(NCLChangeEvent event : grafted){
+            if(!contains(child, event.getElement()))
+                record(event, true);
+        }
+        grafted = null;
+        return child;
+    }
+
+
+    private static boolean contains(NCLElement ancestor, NCLElement element) {
+        for(NCLElement e = element; e != null; e = e.getParent()){
+            if(e == ancestor)
+                return true;
+            if(e.getParent() == e)
+                break;
+        }
+        return false;
+    }
+
+
+    /*
+     * Um elemento lido do fluxo já é guardado pelo seu código.
+     */
+    private static String code(Object element) {
+        if(element instanceof NCLElement)
+            return ((NCLElement) element).parse(0);
+        return (String) element;
+    }
+
+
+    private static void write(DataOutputStream out, Record record) throws IOException {
+        int kind;
+        if(record.operation == Operation.REMOVE)
+            kind = REMOVED;
+        else if(record.inserted)
+            kind = INSERTED;
+        else if(record.value >= 0)
+            kind = REFERENCED;
+        else
+            kind = VALUE;
+
+        out.writeByte(kind);
+        out.writeInt(record.element);
+        writeString(out, record.path);
+        writeString(out, record.property);
+        if(kind == VALUE){
+            writeValue(out, record.content);
+            return;
+        }
+
+        out.writeInt(record.value);
+        if(kind != INSERTED)
+            writeString(out, record.valuePath);
+        if(kind != REFERENCED)
+            writeString(out, record.content == null ? null : code(record.content));
+    }
+
+
+    private static Record read(DataInputStream in) throws IOException {
+        int kind = in.readByte();
+        if(kind < VALUE || kind > REMOVED)
+            throw new IOException("Invalid journal record");
+
+        int element = in.readInt();
+        String path = readString(in);
+        Record record = new Record(kind == REMOVED ? Operation.REMOVE : kind == INSERTED ? Operation.ADD : Operation.ATTRIBUTE, readString(in));
+        record.element = element;
+        record.path = path;
+        record.inserted = kind == INSERTED;
+        if(kind == VALUE){
+            record.content = readValue(in);
+            return record;
+        }
+
+        record.value = in.readInt();
+        if(kind != INSERTED)
+            record.valuePath = readString(in);
+        if(kind != REFERENCED)
+            record.content = readString(in);
+        return record;
+    }
+
+
+    /*
+     * Um valor é gravado como texto junto com a sua classe, que deve ser uma
+     * enumeração ou possuir um construtor que recebe o texto.
+     */
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if(value == null || value instanceof String){
+            out.writeByte(0);
+            writeString(out, (String) value);
+        }
+        else if(value instanceof Enum){
+            out.writeByte(1);
+            writeString(out, ((Enum) value).getDeclaringClass().getName());
+            writeString(out, ((Enum) value).name());
+        }
+        else{
+            try{
+                value.getClass().getConstructor(String.class);
+            }
+            catch(NoSuchMethodException ex){
+                throw new IOException("Value can not be written: " + value.getClass().getName());
+            }
+            out.writeByte(2);
+            writeString(out, value.getClass().getName());
+            writeString(out, value.toString());
+        }
+    }
+
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        int kind = in.readByte();
+        if(kind == 0)
+            return readString(in);
+
+        String name = readString(in);
+        String text = readString(in);
+        // apenas os valores da API e os tipos básicos são criados
+        if(name == null || text == null || !(name.startsWith("br.uff.midiacom.ana.") || name.startsWith("java.lang.")))
+            throw new IOException("Invalid journal value: " + name);
+
+        try{
+            Class type = Class.forName(name);
+            if(kind == 1 && type.isEnum())
+                return Enum.valueOf(type, text);
+            if(kind == 2 && !type.isEnum()){
+                Constructor constructor = type.getConstructor(String.class);
+                return constructor.newInstance(text);
+            }
+        }
+        catch(Exception ex){
+            throw new IOException("Invalid journal value: " + name, ex);
+        }
+        throw new IOException("Invalid journal value: " + name);
+    }
+
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if(value == null){
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if(length < 0)
+            return null;
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+
+    private static void change(NCLElement element, Operation operation, String property, Object value) {
+        try{
+            element.applyChange(operation, property, value);
+        }
+        catch(RuntimeException ex){
+            throw ex;
+        }
+        catch(Exception ex){
+            throw new IllegalStateException(ex.getMessage(), ex);
+        }
+    }
+
+
+    private Entry entry(NCLChangeEvent event) {
+        NCLElement element = event.getElement();
+        Entry entry = new Entry(event);
+
+        // a alteração do identificador é localizada pelo identificador antigo
+        String name = null;
+        if(event.getOperation() == Operation.ATTRIBUTE && "id".equals(event.getProperty()) && event.getOldValue() instanceof String)
+            name = (String) event.getOldValue();
+
+        entry.element = handle(element, false);
+        if(entry.element.epoch != epoch){
+            entry.element.epoch = epoch;
+            entry.path = path(element, name);
+        }
+
+        // elemento inserido que contém o elemento alterado
+        for(NCLElement e = element; e != null && e != doc; e = e.getParent()){
+            Handle handle = handles.get(e);
+            if(handle != null && handle.inserted){
+                entry.owner = handle;
+                break;
+            }
+            if(e.getParent() == e)
+                break;
+        }
+
+        Object value = event.getOperation() == Operation.REMOVE ? event.getOldValue() : event.getNewValue();
+        if(!(value instanceof NCLElement))
+            return entry;
+
+        NCLElement child = (NCLElement) value;
+        if(event.getOperation() == Operation.ADD || (event.getOperation() == Operation.ATTRIBUTE && child.getParent() == element)){
+            // o filho inserido recebe um novo marcador, pois será copiado
+            entry.value = new Handle(child, true);
+            entry.value.epoch = epoch;
+            handles.put(child, entry.value);
+        }
+        else{
+            entry.value = handle(child, false);
+            if(entry.value.epoch != epoch){
+                entry.value.epoch = epoch;
+                // o filho retirado já não está no documento e é encontrado pelo identificador
+                if(event.getOperation() == Operation.REMOVE)
+                    entry.valuePath = step(entry.path != null ? entry.path : path(element, null), child);
+                else
+                    entry.valuePath = path(child, null);
+            }
+        }
+        return entry;
+    }
+
+
+    private Handle handle(Object element, boolean inserted) {
+        Handle handle = handles.get(element);
+        if(handle == null){
+            handle = new Handle(element, inserted);
+            handle.epoch = -1;
+            handles.put(element, handle);
+        }
+        return handle;
+    }
+
+
+    private static String step(String parent, NCLElement child) {
+        String id = child instanceof NCLIdentifiableElement ? ((NCLIdentifiableElement) child).getId() : null;
+        if(id == null || parent == null)
+            return null;
+        return parent.length() == 0 ? id : parent + "/" + id;
+    }
+
+
+    private String path(NCLElement element, String name) {
+        List<String> steps = new ArrayList<String>();
+        NCLElement e = element;
+        while(e != doc){
+            NCLElement parent = e.getParent();
+            if(parent == null || parent == e)
+                return null;
+
+            String step = name;
+            if(step == null && e instanceof NCLIdentifiableElement)
+                step = ((NCLIdentifiableElement) e).getId();
+            if(step == null){
+                int index = indexOf(NCLWalker.children(parent), e);
+                if(index < 0)
+                    return null;
+                step = "#" + index;
+            }
+            steps.add(step);
+            name = null;
+            e = parent;
+        }
+
+        StringBuilder result = new StringBuilder();
+        for(int i = steps.size() - 1; i >= 0; i--){
+            result.append(steps.get(i));
+            if(i > 0)
+                result.append('/');
+        }
+        return result.toString();
+    }
+
+
+    private static NCLElement resolve(NCLDoc target, int number, String path, Map<Integer, NCLElement> resolved) {
+        NCLElement element = resolved.get(number);
+        if(element == null && path != null){
+            element = locate(target, path);
+            if(element != null)
+                resolved.put(number, element);
+        }
+        return element;
+    }
+
+
+    private static NCLElement locate(NCLDoc root, String path) {
+        if(path == null)
+            return null;
+
+        NCLElement e = root;
+        if(path.length() == 0)
+            return e;
+
+        for(String step : path.split("/")){
+            Object next = child(e, step);
+            if(!(next instanceof NCLElement))
+                return null;
+            e = (NCLElement) next;
+        }
+        return e;
+    }
+
+
+    private static Object child(NCLElement parent, String key) {
+        List<Object> children = NCLWalker.children(parent);
+        if(key.startsWith("#")){
+            int index = Integer.parseInt(key.substring(1));
+            return index < children.size() ? children.get(index) : null;
+        }
+
+        for(Object child : children){
+            if(child instanceof NCLIdentifiableElement && key.equals(((NCLIdentifiableElement) child).getId()))
+                return child;
+        }
+        return null;
+    }
+
+
+    private static NCLElement match(NCLElement parent, String content) {
+        // um filho sem identificador é encontrado pelo código, gerado apenas aqui
+        for(Object child : NCLWalker.children(parent)){
+            if(child instanceof NCLElement && content.equals(((NCLElement) child).parse(0)))
+                return (NCLElement) child;
+        }
+        return null;
+    }
+
+
+    private static int indexOf(List<Object> list, Object element) {
+        for(int i = 0; i < list.size(); i++){
+            if(list.get(i) == element)
+                return i;
+        }
+        return -1;
+    }
+
+
+    /**
+     * Alteração registrada: a alteração original, usada para desfazer e refazer,
+     * e os marcadores usados para repetir a alteração sobre outra cópia do
+     * documento. Os caminhos só são guardados na primeira referência a cada
+     * elemento depois de um checkpoint.
+     */
+    private static class Entry {
+
+        private final NCLChangeEvent event;
+        private Handle element;
+        private String path;
+        private Handle value;
+        private String valuePath;
+        private Handle owner;
+
+
+        private Entry(NCLChangeEvent event) {
+            this.event = event;
+        }
+    }
+
+
+    /**
+     * Alteração pronta para ser repetida ou gravada: os elementos são
+     * identificados pelo seu número no registro e pelo seu caminho, e o conteúdo
+     * é o valor atribuído, o elemento inserido ou o elemento retirado, ou o seu
+     * código quando lido de um fluxo.
+     */
+    private static class Record {
+
+        private final Operation operation;
+        private final String property;
+        private int element;
+        private String path;
+        private int value = -1;
+        private String valuePath;
+        private boolean inserted;
+        private Object content;
+
+
+        private Record(Operation operation, String property) {
+            this.operation = operation;
+            this.property = property;
+        }
+    }
+
+
+    /**
+     * Marcador de um elemento: o próprio elemento, se foi inserido no documento
+     * pela alteração e o checkpoint em que o seu caminho foi guardado pela
+     * última vez.
+     */
+    private static class Handle {
+
+        private final Object element;
+        private final boolean inserted;
+        private int epoch;
+
+
+        private Handle(Object element, boolean inserted) {
+            this.element = element;
+            this.inserted = inserted;
+        }
+    }
+}
@@ -0,0 +1,453 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.NCLReferenceIndex.Reference;
+import br.uff.midiacom.ana.NCLValues.NCLMediaType;
+import br.uff.midiacom.ana.NCLValues.NCLMimeType;
+import br.uff.midiacom.ana.interfaces.NCLProperty;
+import br.uff.midiacom.ana.node.NCLMedia;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Esta classe define uma consulta aos elementos de um documento da
+ * <i>Nested Context Language</i> (NCL).<br/>
+ *
+ * A consulta é montada pela combinação de critérios, por exemplo:
+ *
+ * <pre>
+ * List&lt;NCLElement&gt; videos = index.select()
+ *         .kind(NCLMedia.class)
+ *         .mediaType(NCLMediaType.VIDEO)
+ *         .under(context)
+ *         .list();
+ * </pre>
+ *
+ * Os critérios de classe, tipo MIME, tipo de mídia, descritor e conector são
+ * atendidos pelos índices do documento. Ao executar a consulta, o índice com o
+ * menor número de elementos é usado como ponto de partida e apenas esses
+ * elementos são testados contra os demais critérios. As restrições de filhos e
+ * de descendentes usam o índice de filhos e percorrem apenas a subárvore
+ * consultada. A restrição de propriedade parte das propriedades indexadas e a
+ * de profundidade é testada subindo a árvore de cada elemento encontrado.
+ *
+ * @see NCLQueryIndex#select()
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLQuery {
+
+    private NCLQueryIndex index;
+    private Class kind;
+    private NCLMimeType type;
+    private NCLMediaType mediaType;
+    private Object descriptor;
+    private Object connector;
+    private NCLElement parent;
+    private NCLElement ancestor;
+    private String id;
+    private String property;
+    private String propertyValue;
+    private int depth;
+
+
+    /**
+     * Construtor da consulta.
+     *
+     * @param index
+     *          índices de consulta do documento.
+     */
+    public NCLQuery(NCLQueryIndex index) {
+        if(index == null)
+            throw new NullPointerException("Null index");
+
+        this.index = index;
+    }
+
+
+    /**
+     * Restringe a consulta aos elementos de uma classe ou de suas subclasses.
+     *
+     * @param kind
+     *          classe dos elementos.
+     * @return
+     *          a própria consulta.
+     */
+    public NCLQuery kind(Class kind) {
+        this.kind = kind;
+        return this;
+    }
+
+
+    /**
+     * Restringe a consulta às mídias de um tipo MIME.
+     *
+     * @param type
+     *          tipo MIME das mídias.
+     * @return
+     *          a própria consulta.
+     */
+    public NCLQuery type(NCLMimeType type) {
+        this.type = type;
+        return this;
+    }
+
+
+    /**
+     * Restringe a consulta às mídias de um tipo de mídia.
+     *
+     * @param mediaType
+     *          tipo das mídias.
+     * @return
+     *          a própria consulta.
+     *
+     * @see NCLMedia#getMediaType()
+     */
+    public NCLQuery mediaType(NCLMediaType mediaType) {
+        this.mediaType = mediaType;
+        return this;
+    }
+
+
+    /**
+     * Restringe a consulta aos elementos que usam um descritor.
+     *
+     * @param descriptor
+     *          descritor usado pelos elementos.
+     * @return
+     *          a própria consulta.
+     */
+    public NCLQuery descriptor(Object descriptor) {
+        this.descriptor = descriptor;
+        return this;
+    }
+
+
+    /**
+     * Restringe a consulta aos elos que usam um conector.
+     *
+     * @param connector
+     *          conector usado pelos elos.
+     * @return
+     *          a própria consulta.
+     */
+    public NCLQuery connector(Object connector) {
+        this.connector = connector;
+        return this;
+    }
+
+
+    /**
+     * Restringe a consulta aos filhos diretos de um elemento.
+     *
+     * @param parent
+     *          elemento pai.
+     * @return
+     *          a própria consulta.
+     */
+    public NCLQuery in(NCLElement parent) {
+        this.parent = parent;
+        return this;
+    }
+
+
+    /**
+     * Restringe a consulta aos elementos contidos, direta ou indiretamente, em
+     * um elemento, por exemplo um contexto.
+     *
+     * @param ancestor
+     *          elemento que contém os elementos.
+     * @return
+     *          a própria consulta.
+     */
+    public NCLQuery under(NCLElement ancestor) {
+        this.ancestor = ancestor;
+        return this;
+    }
+
+
+    /**
+     * Restringe a consulta ao elemento com um identificador.
+     *
+     * @param id
+     *          identificador do elemento.
+     * @return
+     *          a própria consulta.
+     */
+    public NCLQuery id(String id) {
+        this.id = id;
+        return this;
+    }
+
+
+    /**
+     * Restringe a consulta aos elementos que possuem uma propriedade, por
+     * exemplo as mídias e os contextos.
+     *
+     * @param name
+     *          nome da propriedade.
+     * @return
+     *          a própria consulta.
+     */
+    public NCLQuery property(String name) {
+        return property(name, null);
+    }
+
+
+    /**
+     * Restringe a consulta aos elementos que possuem uma propriedade com um
+     * valor.
+     *
+     * @param name
+     *          nome da propriedade.
+     * @param value
+     *          valor da propriedade ou nulo para aceitar qualquer valor.
+     * @return
+     *          a própria consulta.
+     */
+    public NCLQuery property(String name, String value) {
+        this.property = name;
+        this.propertyValue = value;
+        return this;
+    }
+
+
+    /**
+     * Restringe a consulta aos elementos com uma profundidade mínima. A
+     * profundidade é contada a partir do elemento passado para o método
+     * <i>under</i> ou, caso ele não tenha sido usado, a partir do documento.
+     * Por exemplo, as regiões aninhadas em mais de dois níveis de uma base de
+     * regiões são selecionadas por:
+     *
+     * <pre>
+     * index.select().kind(NCLRegion.class).under(regionBase).depth(3).list();
+     * </pre>
+     *
+     * @param min
+     *          profundidade mínima dos elementos. Os filhos diretos possuem
+     *          profundidade 1.
+     * @return
+     *          a própria consulta.
+     */
+    public NCLQuery depth(int min) {
+        this.depth = min;
+        return this;
+    }
+
+
+    /**
+     * Executa a consulta.
+     *
+     * @return
+     *          lista com os elementos que atendem a todos os critérios.
+     */
+    public List<NCLElement> list() {
+        return run(-1);
+    }
+
+
+    /**
+     * Executa a consulta e retorna o primeiro elemento encontrado.
+     *
+     * @return
+     *          elemento NCL ou nulo se nenhum elemento atender aos critérios.
+     */
+    public NCLElement first() {
+        List<NCLElement> result = run(1);
+        if(result.isEmpty())
+            return null;
+
+        return result.get(0);
+    }
+
+
+    /**
+     * Executa a consulta e retorna o número de elementos encontrados.
+     *
+     * @return
+     *          inteiro representando o número de elementos.
+     */
+    public int count() {
+        return run(-1).size();
+    }
+
+
+    private List<NCLElement> run(int limit) {
+        Map<Object, Object> descriptorUsers = null;
+        Map<Object, Object> connectorUsers = null;
+        Collection<NCLMedia> mediaTypeUsers = null;
+        Map<Object, Object> propertyOwners = null;
+        Collection seed = null;
+
+        // Parte do índice com menos elementos.
+        if(descriptor != null){
+            descriptorUsers = referrers(descriptor, "descriptor");
+            seed = descriptorUsers.keySet();
+        }
+        if(connector != null){
+            connectorUsers = referrers(connector, "xconnector");
+            seed = smallest(seed, connectorUsers.keySet());
+        }
+        if(type != null)
+            seed = smallest(seed, index.getMedias(type));
+        if(mediaType != null){
+            mediaTypeUsers = index.getMedias(mediaType);
+            seed = smallest(seed, mediaTypeUsers);
+        }
+        if(property != null){
+            propertyOwners = owners(property, propertyValue);
+            seed = smallest(seed, propertyOwners.keySet());
+        }
+        if(parent != null)
+            seed = smallest(seed, index.getChildren(parent));
+        if(seed == null && ancestor != null)
+            seed = index.getDescendants(ancestor);
+        if(seed == null && kind != null)
+            seed = index.getElements(kind);
+        if(seed == null){
+            List<Object> elements = new ArrayList<Object>();
+            NCLWalker.collect(index.getDoc(), elements);
+            seed = elements;
+        }
+
+        List<NCLElement> result = new ArrayList<NCLElement>();
+        for(Object e : seed){
+            if(!(e instanceof NCLElement))
+                continue;
+
+            NCLElement element = (NCLElement) e;
+            if(kind != null && !kind.isInstance(element))
+                continue;
+            if(type != null && (!(element instanceof NCLMedia) || ((NCLMedia) element).getType() != type))
+                continue;
+            if(mediaTypeUsers != null && !mediaTypeUsers.contains(element))
+                continue;
+            if(descriptorUsers != null && !descriptorUsers.containsKey(element))
+                continue;
+            if(connectorUsers != null && !connectorUsers.containsKey(element))
+                continue;
+            if(propertyOwners != null && !propertyOwners.containsKey(element))
+                continue;
+            if(parent != null && (element == parent || element.getParent() != parent))
+                continue;
+            if(ancestor != null && !isUnder(element, ancestor))
+                continue;
+            if(id != null && (!(element instanceof NCLIdentifiableElement) || !id.equals(((NCLIdentifiableElement) element).getId())))
+                continue;
+            if(depth > 0 && depthOf(element, ancestor) < depth)
+                continue;
+
+            result.add(element);
+            if(result.size() == limit)
+                break;
+        }
+
+        return result;
+    }
+
+
+    private Map<Object, Object> referrers(Object target, String attribute) {
+        Map<Object, Object> result = new IdentityHashMap<Object, Object>();
+        for(Reference ref : index.getReferenceIndex().getReferrers(target)){
+            if(ref.getAttribute().equals(attribute))
+                result.put(ref.getReferrer(), ref);
+        }
+
+        return result;
+    }
+
+
+    private Map<Object, Object> owners(String name, String value) {
+        Map<Object, Object> result = new IdentityHashMap<Object, Object>();
+        for(NCLElement e : index.getElements(NCLProperty.class)){
+            NCLProperty p = (NCLProperty) e;
+            if(name.equals(p.getName()) && (value == null || value.equals(p.getValue())))
+                result.put(p.getParent(), p);
+        }
+
+        return result;
+    }
+
+
+    private static Collection smallest(Collection current, Collection other) {
+        if(current == null || other.size() < current.size())
+            return other;
+
+        return current;
+    }
+
+
+    /*
+     * Profundidade do elemento em relação ao ancestral ou, se ele for nulo, em
+     * relação à raiz da árvore.
+     */
+    private static int depthOf(NCLElement element, NCLElement ancestor) {
+        int result = 0;
+        NCLElement p = element;
+        while(p != ancestor){
+            NCLElement next = p.getParent();
+            if(next == null || next == p)
+                break;
+            p = next;
+            result++;
+        }
+
+        return result;
+    }
+
+
+    private static boolean isUnder(NCLElement element, NCLElement ancestor) {
+        NCLElement p = element.getParent();
+        while(p != null && p != element){
+            if(p == ancestor)
+                return true;
+
+            NCLElement next = p.getParent();
+            if(next == p)
+                break;
+            p = next;
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,413 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.NCLValues.NCLMediaType;
+import br.uff.midiacom.ana.NCLValues.NCLMimeType;
+import br.uff.midiacom.ana.node.NCLMedia;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Esta classe define índices secundários para a consulta dos elementos de um
+ * documento da <i>Nested Context Language</i> (NCL).<br/>
+ *
+ * Os elementos do documento são agrupados pela sua classe e as mídias também
+ * pelo seu tipo MIME e pelo tipo de mídia. Os filhos de cada elemento também
+ * são indexados, de forma que as consultas por filhos e por descendentes
+ * percorrem apenas a subárvore consultada. As consultas por descritor e por
+ * conector usam o índice reverso de referências do documento, que é criado
+ * junto com este índice caso ainda não exista. Os índices são mantidos
+ * incrementalmente: os elementos avisam quando são inseridos ou retirados da
+ * árvore do documento e as mídias avisam quando seu tipo ou sua URI mudam.
+ *
+ * Os conjuntos retornados pelo índice não são copiados a cada consulta. Um
+ * conjunto entregue a uma consulta nunca é alterado: a próxima modificação do
+ * índice copia o conjunto antes de alterá-lo. Assim as consultas podem
+ * percorrer os conjuntos retornados enquanto o documento é alterado.
+ *
+ * As consultas são feitas através da classe <i>NCLQuery</i>, que parte do
+ * índice mais seletivo e filtra apenas os elementos encontrados nele.
+ *
+ * @see NCLQuery
+ * @see NCLDoc#setQueryIndex
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLQueryIndex {
+
+    private NCLDoc doc;
+    private NCLReferenceIndex referenceIndex;
+    private Map<Class, Set<NCLElement>> kinds = new LinkedHashMap<Class, Set<NCLElement>>();
+    private Map<NCLMimeType, Set<NCLMedia>> mimeTypes = new LinkedHashMap<NCLMimeType, Set<NCLMedia>>();
+    private Map<NCLMediaType, Set<NCLMedia>> mediaTypes = new LinkedHashMap<NCLMediaType, Set<NCLMedia>>();
+    private Map<NCLMedia, NCLMimeType> mimeKeys = new IdentityHashMap<NCLMedia, NCLMimeType>();
+    private Map<NCLMedia, NCLMediaType> mediaKeys = new IdentityHashMap<NCLMedia, NCLMediaType>();
+    private Map<NCLElement, Set<NCLElement>> children = new IdentityHashMap<NCLElement, Set<NCLElement>>();
+    private Map<NCLElement, NCLElement> parents = new IdentityHashMap<NCLElement, NCLElement>();
+    private Map<Object, Object> shared = new IdentityHashMap<Object, Object>();
+    private int size;
+
+
+    /**
+     * Constrói os índices de consulta de um documento NCL e os associa ao
+     * documento, que passa a mantê-los atualizados. Caso o documento ainda não
+     * possua um índice de referências, ele também é criado.
+     *
+     * @param doc
+     *          documento NCL.
+     */
+    public NCLQueryIndex(NCLDoc doc) {
+        this.doc = doc;
+
+        if(doc != null){
+            referenceIndex = doc.getReferenceIndex();
+            if(referenceIndex == null)
+                referenceIndex = new NCLReferenceIndex(doc);
+
+            register(doc, true);
+            doc.setQueryIndex(this);
+        }
+    }
+
+
+    /**
+     * Retorna o documento NCL indexado.
+     *
+     * @return
+     *          documento NCL.
+     */
+    public NCLDoc getDoc() {
+        return doc;
+    }
+
+
+    /**
+     * Retorna o índice de referências usado nas consultas por descritor e por
+     * conector.
+     *
+     * @return
+     *          índice de referências do documento.
+     */
+    public NCLReferenceIndex getReferenceIndex() {
+        return referenceIndex;
+    }
+
+
+    /**
+     * Retorna o número de elementos indexados.
+     *
+     * @return
+     *          inteiro representando o número de elementos.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+
+    /**
+     * Inicia uma nova consulta sobre o documento indexado.
+     *
+     * @return
+     *          consulta sem critérios, que seleciona todos os elementos.
+     */
+    public NCLQuery select() {
+        return new NCLQuery(this);
+    }
+
+
+    /**
+     * Retorna os elementos indexados de uma classe ou de suas subclasses, na
+     * ordem em que foram inseridos no índice.
+     *
+     * @param kind
+     *          classe dos elementos.
+     * @return
+     *          lista com os elementos da classe.
+     */
+    public synchronized List<NCLElement> getElements(Class kind) {
+        List<NCLElement> result = new ArrayList<NCLElement>();
+        for(Map.Entry<Class, Set<NCLElement>> entry : kinds.entrySet()){
+            if(kind.isAssignableFrom(entry.getKey()))
+                result.addAll(entry.getValue());
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Retorna as mídias indexadas com um tipo MIME.
+     *
+     * @param type
+     *          tipo MIME das mídias.
+     * @return
+     *          mídias do tipo no momento da chamada. A coleção não pode ser
+     *          modificada e não reflete as alterações posteriores do índice.
+     */
+    public synchronized Collection<NCLMedia> getMedias(NCLMimeType type) {
+        return share(mimeTypes, type);
+    }
+
+
+    /**
+     * Retorna as mídias indexadas com um tipo de mídia, definido pelo seu tipo
+     * MIME ou pela extensão de sua URI.
+     *
+     * @param type
+     *          tipo das mídias.
+     * @return
+     *          mídias do tipo no momento da chamada. A coleção não pode ser
+     *          modificada e não reflete as alterações posteriores do índice.
+     */
+    public synchronized Collection<NCLMedia> getMedias(NCLMediaType type) {
+        return share(mediaTypes, type);
+    }
+
+
+    /**
+     * Retorna os filhos diretos indexados de um elemento.
+     *
+     * @param parent
+     *          elemento pai.
+     * @return
+     *          filhos do elemento no momento da chamada. A coleção não pode
+     *          ser modificada e não reflete as alterações posteriores do
+     *          índice.
+     */
+    public synchronized Collection<NCLElement> getChildren(NCLElement parent) {
+        return share(children, parent);
+    }
+
+
+    /**
+     * Retorna os elementos indexados contidos, direta ou indiretamente, em um
+     * elemento. Apenas a subárvore do elemento é percorrida.
+     *
+     * @param ancestor
+     *          elemento que contém os elementos.
+     * @return
+     *          lista com os descendentes do elemento, em largura.
+     */
+    public synchronized List<NCLElement> getDescendants(NCLElement ancestor) {
+        List<NCLElement> result = new ArrayList<NCLElement>();
+        Set<NCLElement> set = children.get(ancestor);
+        if(set != null)
+            result.addAll(set);
+
+        for(int i = 0; i < result.size(); i++){
+            set = children.get(result.get(i));
+            if(set != null)
+                result.addAll(set);
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Avisa o índice do documento que o tipo ou a URI de uma mídia foi alterado.
+     *
+     * @param media
+     *          mídia alterada.
+     */
+    public static void update(NCLMedia media) {
+        NCLQueryIndex index = getIndex(media);
+        if(index == null)
+            return;
+
+        synchronized(index){
+            if(!index.mimeKeys.containsKey(media))
+                return;
+
+            index.putMedia(media, false);
+            index.putMedia(media, true);
+        }
+    }
+
+
+    /**
+     * Avisa o índice do documento que um elemento foi inserido na árvore do
+     * documento, ou que será retirado dela.
+     *
+     * @param element
+     *          elemento inserido ou retirado.
+     * @param attached
+     *          verdadeiro se o elemento foi inserido.
+     */
+    static void attach(NCLElement element, boolean attached) {
+        NCLQueryIndex index = getIndex(element);
+        if(index == null)
+            return;
+
+        synchronized(index){
+            index.register(element, attached);
+        }
+    }
+
+
+    private static NCLQueryIndex getIndex(NCLElement element) {
+        NCLElement parent;
+        while((parent = element.getParent()) != null && parent != element)
+            element = parent;
+
+        if(element instanceof NCLDoc)
+            return ((NCLDoc) element).getQueryIndex();
+
+        return null;
+    }
+
+
+    private void register(NCLElement root, boolean add) {
+        List<Object> elements = new ArrayList<Object>();
+        NCLWalker.collect(root, elements);
+
+        for(Object e : elements){
+            if(!(e instanceof NCLElement))
+                continue;
+
+            Set<NCLElement> set = kinds.get(e.getClass());
+            if(set == null){
+                set = new LinkedHashSet<NCLElement>();
+                kinds.put(e.getClass(), set);
+            }
+
+            if(add ? set.add((NCLElement) e) : set.remove(e)){
+                size += add ? 1 : -1;
+                putChild((NCLElement) e, add);
+                if(e instanceof NCLMedia)
+                    putMedia((NCLMedia) e, add);
+            }
+        }
+    }
+
+
+    private void putChild(NCLElement element, boolean add) {
+        if(!add){
+            NCLElement parent = parents.remove(element);
+            if(parent != null)
+                put(children, parent, element, false);
+            return;
+        }
+
+        NCLElement parent = element.getParent();
+        if(parent == null || parent == element)
+            return;
+
+        parents.put(element, parent);
+        put(children, parent, element, true);
+    }
+
+
+    private void putMedia(NCLMedia media, boolean add) {
+        if(!add){
+            NCLMimeType mime = mimeKeys.remove(media);
+            NCLMediaType type = mediaKeys.remove(media);
+            if(mime != null)
+                put(mimeTypes, mime, media, false);
+            if(type != null)
+                put(mediaTypes, type, media, false);
+            return;
+        }
+
+        NCLMimeType mime = media.getType();
+        NCLMediaType type = mediaTypeOf(media);
+
+        mimeKeys.put(media, mime);
+        mediaKeys.put(media, type);
+
+        if(mime != null)
+            put(mimeTypes, mime, media, true);
+        if(type != null)
+            put(mediaTypes, type, media, true);
+    }
+
+
+    /*
+     * Um conjunto já entregue a uma consulta é copiado antes de ser alterado.
+     */
+    private <K, V> void put(Map<K, Set<V>> map, K key, V value, boolean add) {
+        Set<V> set = map.get(key);
+        if(set == null){
+            if(!add)
+                return;
+            set = new LinkedHashSet<V>();
+            map.put(key, set);
+        }
+        else if(shared.remove(set) != null){
+            set = new LinkedHashSet<V>(set);
+            map.put(key, set);
+        }
+
+        if(add)
+            set.add(value);
+        else if(set.remove(value) && set.isEmpty())
+            map.remove(key);
+    }
+
+
+    private <K, V> Collection<V> share(Map<K, Set<V>> map, K key) {
+        Set<V> set = map.get(key);
+        if(set == null)
+            return Collections.emptySet();
+
+        shared.put(set, set);
+        return Collections.unmodifiableSet(set);
+    }
+
+
+    /*
+     * O tipo de uma mídia cuja URI não possui extensão não pode ser calculado.
+     */
+    private static NCLMediaType mediaTypeOf(NCLMedia media) {
+        try{
+            return media.getMediaType();
+        }
+        catch(IndexOutOfBoundsException ex){
+            return null;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import java.lang.reflect.InvocationTargetException;
+
+
+/**
+ * Esta classe define uma referência ainda não resolvida a um elemento
+ * identificável da <i>Nested Context Language</i> (NCL).<br/>
+ *
+ * Durante a leitura do documento, os atributos que referenciam outros
+ * elementos (por exemplo, os atributos <i>component</i> e <i>interface</i> de
+ * um bind ou <i>descriptor</i> de uma mídia) guardam apenas o identificador lido
+ * e a classe do elemento esperado. A referência é trocada pelo elemento
+ * referenciado quando o documento termina de ser lido.
+ *
+ * Caso o elemento referenciado não seja encontrado, um elemento com o
+ * identificador lido é criado somente quando a referência for consultada,
+ * mantendo o comportamento dos métodos de acesso dos elementos.
+ *
+ * @param <T>
+ *          tipo do elemento referenciado.
+ *
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLReference<T extends NCLIdentifiableElement> {
+
+    private Class type;
+    private String id;
+    private T target;
+
+
+    /**
+     * Construtor de uma referência não resolvida. O identificador não é
+     * verificado na construção, mas sim na validação do elemento que guarda a
+     * referência.
+     *
+     * @param type
+     *          classe do elemento criado caso a referência não seja resolvida.
+     *          A classe deve possuir um construtor que recebe o identificador.
+     * @param id
+     *          identificador do elemento referenciado.
+     *
+     * @see NCLReference#isValid
+     */
+    public NCLReference(Class type, String id) {
+        this.type = type;
+        this.id = id;
+    }
+
+
+    /**
+     * Retorna o identificador do elemento referenciado.
+     *
+     * @return
+     *          String representando o identificador.
+     */
+    public String getId() {
+        return id;
+    }
+
+
+    /**
+     * Retorna a classe do elemento referenciado.
+     *
+     * @return
+     *          classe do elemento.
+     */
+    public Class getType() {
+        return type;
+    }
+
+
+    /**
+     * Retorna o elemento que representa a referência, criando-o na primeira
+     * consulta. Uma referência com identificador inválido não possui elemento,
+     * assim como o atributo que a guarda ficaria vazio se o elemento fosse
+     * criado durante a leitura.
+     *
+     * @return
+     *          elemento com o identificador da referência ou nulo se o
+     *          identificador não for válido.
+     */
+    public synchronized T getTarget() {
+        if(target == null){
+            try{
+                target = (T) type.getConstructor(String.class).newInstance(id);
+            }
+            catch(InvocationTargetException ex){
+                if(ex.getCause() instanceof NCLInvalidIdentifierException)
+                    return null;
+                throw new IllegalStateException("Could not create reference to " + id, ex);
+            }
+            catch(Exception ex){
+                throw new IllegalStateException("Could not create reference to " + id, ex);
+            }
+        }
+
+        return target;
+    }
+
+
+    /**
+     * Retorna o elemento guardado em um atributo de referência. Caso o
+     * atributo guarde uma referência não resolvida, o elemento que a representa
+     * é retornado.
+     *
+     * @param value
+     *          valor do atributo, que pode ser o elemento, uma referência ou nulo.
+     * @return
+     *          elemento referenciado ou nulo.
+     */
+    public static <E> E get(Object value) {
+        if(value instanceof NCLReference)
+            return (E) ((NCLReference) value).getTarget();
+
+        return (E) value;
+    }
+
+
+    /**
+     * Retorna o elemento guardado em um atributo de referência sem criar o
+     * elemento que representa uma referência não resolvida.
+     *
+     * @param value
+     *          valor do atributo, que pode ser o elemento, uma referência ou nulo.
+     * @return
+     *          elemento referenciado ou nulo se a referência ainda não tiver sido
+     *          consultada.
+     */
+    public static Object peek(Object value) {
+        if(value instanceof NCLReference){
+            NCLReference ref = (NCLReference) value;
+            synchronized(ref){
+                return ref.target;
+            }
+        }
+
+        return value;
+    }
+
+
+    /**
+     * Verifica se o identificador guardado em um atributo de referência é
+     * válido. Deve ser chamado pela validação dos elementos que guardam
+     * referências.
+     *
+     * @param value
+     *          valor do atributo, que pode ser o elemento, uma referência ou nulo.
+     * @return
+     *          falso se o atributo guardar uma referência não resolvida com um
+     *          identificador inválido.
+     */
+    public static boolean isValid(Object value) {
+        if(value instanceof NCLReference)
+            return NCLIdentifiableElement.validate(((NCLReference) value).getId());
+
+        return true;
+    }
+
+
+    /**
+     * Retorna o identificador guardado em um atributo de referência sem criar
+     * o elemento que representa uma referência não resolvida.
+     *
+     * @param value
+     *          valor do atributo, que pode ser o elemento, uma referência ou nulo.
+     * @return
+     *          identificador do elemento referenciado ou nulo.
+     */
+    public static String id(Object value) {
+        if(value instanceof NCLReference)
+            return ((NCLReference) value).getId();
+        if(value instanceof NCLIdentifiableElement)
+            return ((NCLIdentifiableElement) value).getId();
+
+        return null;
+    }
+}
@@ -0,0 +1,685 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.connector.NCLCausalConnector;
+import br.uff.midiacom.ana.connector.NCLConnectorBase;
+import br.uff.midiacom.ana.descriptor.NCLDescriptor;
+import br.uff.midiacom.ana.descriptor.NCLDescriptorBase;
+import br.uff.midiacom.ana.descriptor.NCLDescriptorSwitch;
+import br.uff.midiacom.ana.descriptor.NCLLayoutDescriptor;
+import br.uff.midiacom.ana.interfaces.NCLArea;
+import br.uff.midiacom.ana.interfaces.NCLMapping;
+import br.uff.midiacom.ana.interfaces.NCLPort;
+import br.uff.midiacom.ana.interfaces.NCLProperty;
+import br.uff.midiacom.ana.interfaces.NCLSwitchPort;
+import br.uff.midiacom.ana.link.NCLBind;
+import br.uff.midiacom.ana.link.NCLLink;
+import br.uff.midiacom.ana.node.NCLBindRule;
+import br.uff.midiacom.ana.node.NCLContext;
+import br.uff.midiacom.ana.node.NCLMedia;
+import br.uff.midiacom.ana.node.NCLSwitch;
+import br.uff.midiacom.ana.region.NCLRegion;
+import br.uff.midiacom.ana.region.NCLRegionBase;
+import br.uff.midiacom.ana.reuse.NCLImport;
+import br.uff.midiacom.ana.reuse.NCLImportedDocumentBase;
+import br.uff.midiacom.ana.rule.NCLCompositeRule;
+import br.uff.midiacom.ana.rule.NCLRule;
+import br.uff.midiacom.ana.rule.NCLRuleBase;
+import br.uff.midiacom.ana.rule.NCLTestRule;
+import br.uff.midiacom.ana.transition.NCLTransition;
+import br.uff.midiacom.ana.transition.NCLTransitionBase;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Esta classe define um índice reverso das referências de um documento da
+ * <i>Nested Context Language</i> (NCL).<br/>
+ *
+ * Para cada elemento referenciado (nó, interface, descritor, região, regra,
+ * transição, conector ou papel) o índice guarda a lista dos elementos que o
+ * referenciam e o nome do atributo usado na referência. O índice é construído
+ * uma única vez a partir do documento e mantido incrementalmente: os atributos de
+ * referência avisam o índice quando são alterados e os elementos avisam quando
+ * são inseridos ou retirados da árvore do documento.
+ *
+ * A partir do índice, a busca pelos usos de um elemento, a renomeação de seu
+ * identificador e a sua remoção com a limpeza das referências que apontam para
+ * ele custam proporcionalmente ao número de elementos que o referenciam.
+ *
+ * @see NCLDoc#setReferenceIndex
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLReferenceIndex {
+
+    private NCLDoc doc;
+    private Map<Object, List<Reference>> referrers = new IdentityHashMap<Object, List<Reference>>();
+    private int size;
+    private boolean suspended;
+
+
+    /**
+     * Constrói o índice de referências de um documento NCL e o associa ao
+     * documento, que passa a mantê-lo atualizado.
+     *
+     * @param doc
+     *          documento NCL.
+     */
+    public NCLReferenceIndex(NCLDoc doc) {
+        this.doc = doc;
+
+        if(doc != null){
+            register(doc, true);
+            doc.setReferenceIndex(this);
+        }
+    }
+
+
+    /**
+     * Retorna o documento NCL indexado.
+     *
+     * @return
+     *          documento NCL.
+     */
+    public NCLDoc getDoc() {
+        return doc;
+    }
+
+
+    /**
+     * Retorna as referências feitas a um elemento, na ordem em que foram
+     * registradas. A lista retornada não pode ser modificada.
+     *
+     * @param target
+     *          elemento referenciado.
+     * @return
+     *          lista com as referências ao elemento.
+     */
+    public synchronized List<Reference> getReferrers(Object target) {
+        List<Reference> list = referrers.get(target);
+        if(list == null)
+            return Collections.emptyList();
+
+        return Collections.unmodifiableList(new ArrayList<Reference>(list));
+    }
+
+
+    /**
+     * Verifica se um elemento é referenciado por algum elemento do documento.
+     *
+     * @param target
+     *          elemento a ser verificado.
+     * @return
+     *          verdadeiro se o elemento for referenciado.
+     */
+    public boolean isReferenced(Object target) {
+        return referrers.containsKey(target);
+    }
+
+
+    /**
+     * Retorna o número de referências indexadas.
+     *
+     * @return
+     *          inteiro representando o número de referências.
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Altera o identificador de um elemento. O elemento é reposicionado no
+     * conjunto ordenado do elemento pai e as referências a ele passam a usar o
+     * novo identificador. Caso o elemento pai já possua outro elemento com o
+     * novo identificador, o identificador original é mantido.
+     *
+     * @param element
+     *          elemento a ser renomeado.
+     * @param id
+     *          novo identificador do elemento.
+     * @return
+     *          lista com as referências ao elemento renomeado.
+     *
+     * @throws NCLInvalidIdentifierException
+     *          se o identificador for inválido ou já for usado no elemento pai.
+     */
+    public List<Reference> rename(NCLIdentifiableElement element, String id) throws NCLInvalidIdentifierException {
+        String old = element.getId();
+        NCLElement parent = element.getParent();
+
+        // Os elementos que referenciam o elemento renomeado podem estar ordenados
+        // pelo identificador referenciado e também precisam ser reposicionados.
+        List<NCLElement> moved = new ArrayList<NCLElement>();
+        List<NCLElement> parents = new ArrayList<NCLElement>();
+
+        suspended = true;
+        try{
+            for(Reference ref : getReferrers(element)){
+                NCLElement r = ref.getReferrer();
+                NCLElement p = r.getParent();
+                if(!(r instanceof NCLIdentifiableElement) && !moved.contains(r) && p != null && remove(p, r)){
+                    moved.add(r);
+                    parents.add(p);
+                }
+            }
+
+            boolean detached = parent != null && remove(parent, element);
+            try{
+                element.setId(id);
+            }
+            finally{
+                if(detached && !add(parent, element)){
+                    element.setId(old);
+                    add(parent, element);
+                    throw new NCLInvalidIdentifierException("Identifier already in use: " + id);
+                }
+            }
+        }
+        finally{
+            for(int i = 0; i < moved.size(); i++)
+                add(parents.get(i), moved.get(i));
+            suspended = false;
+        }
+
+        return getReferrers(element);
+    }
+
+
+    /**
+     * Remove um elemento do documento e limpa as referências feitas a ele e aos
+     * elementos contidos nele.<br/>
+     *
+     * Os elementos que não fazem sentido sem o elemento referenciado (elos cujo
+     * conector foi removido, binds, portas e mapeamentos cujo nó, interface ou
+     * papel foi removido e regras de associação cujo constituinte ou regra foi
+     * removido) são removidos em cascata. As demais referências (descritor,
+     * região, transições, navegação, reuso, variável e padrões dos switches) são
+     * anuladas.
+     *
+     * @param element
+     *          elemento a ser removido.
+     * @return
+     *          verdadeiro se o elemento foi removido.
+     */
+    public boolean delete(NCLElement element) {
+        NCLElement parent = element.getParent();
+        if(parent == null || !remove(parent, element))
+            return false;
+
+        List<Object> targets = new ArrayList<Object>();
+        NCLWalker.collect(element, targets);
+
+        for(Object target : targets){
+            List<Reference> list = referrers.get(target);
+            if(list == null)
+                continue;
+
+            for(Reference ref : new ArrayList<Reference>(list)){
+                if(list.contains(ref))
+                    cascade(ref);
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Avisa o índice do documento de um elemento que um de seus atributos de
+     * referência será alterado.
+     *
+     * @param referrer
+     *          elemento que faz a referência.
+     * @param attribute
+     *          nome do atributo de referência.
+     * @param oldTarget
+     *          elemento referenciado antes da alteração.
+     * @param newTarget
+     *          elemento referenciado após a alteração.
+     */
+    public static void update(NCLElement referrer, String attribute, Object oldTarget, Object newTarget) {
+        NCLReferenceIndex index = getIndex(referrer);
+        if(index == null || index.suspended || oldTarget == newTarget)
+            return;
+
+        synchronized(index){
+            index.put(referrer, attribute, oldTarget, false);
+            index.put(referrer, attribute, newTarget, true);
+        }
+    }
+
+
+    /**
+     * Avisa o índice do documento que um elemento foi inserido na árvore do
+     * documento, ou que será retirado dela.
+     *
+     * @param element
+     *          elemento inserido ou retirado.
+     * @param attached
+     *          verdadeiro se o elemento foi inserido.
+     */
+    static void attach(NCLElement element, boolean attached) {
+        NCLReferenceIndex index = getIndex(element);
+        if(index == null || index.suspended)
+            return;
+
+        synchronized(index){
+            index.register(element, attached);
+        }
+    }
+
+
+    private static NCLReferenceIndex getIndex(NCLElement element) {
+        NCLElement parent;
+        while((parent = element.getParent()) != null && parent != element)
+            element = parent;
+
+        if(element instanceof NCLDoc)
+            return ((NCLDoc) element).getReferenceIndex();
+
+        return null;
+    }
+
+
+    private void register(NCLElement root, boolean add) {
+        List<Object> elements = new ArrayList<Object>();
+        NCLWalker.collect(root, elements);
+
+        for(Object e : elements){
+            if(e instanceof NCLElement)
+                references((NCLElement) e, add);
+        }
+    }
+
+
+    private void put(NCLElement referrer, String attribute, Object target, boolean add) {
+        if(target == null)
+            return;
+
+        List<Reference> list = referrers.get(target);
+        if(add){
+            if(list == null){
+                list = new ArrayList<Reference>(2);
+                referrers.put(target, list);
+            }
+            list.add(new Reference(referrer, attribute));
+            size++;
+        }
+        else if(list != null){
+            if(list.remove(new Reference(referrer, attribute))){
+                size--;
+                if(list.isEmpty())
+                    referrers.remove(target);
+            }
+        }
+    }
+
+
+    private void references(NCLElement e, boolean add) {
+        if(e instanceof NCLBind){
+            NCLBind bind = (NCLBind) e;
+            put(e, "role", bind.getRole(), add);
+            put(e, "component", bind.getComponent(), add);
+            put(e, "interface", bind.getInterface(), add);
+            put(e, "descriptor", bind.getDescriptor(), add);
+        }
+        else if(e instanceof NCLLink)
+            put(e, "xconnector", ((NCLLink) e).getXconnector(), add);
+        else if(e instanceof NCLMedia){
+            put(e, "descriptor", ((NCLMedia) e).getDescriptor(), add);
+            put(e, "refer", ((NCLMedia) e).getRefer(), add);
+        }
+        else if(e instanceof NCLContext)
+            put(e, "refer", ((NCLContext) e).getRefer(), add);
+        else if(e instanceof NCLSwitch){
+            put(e, "refer", ((NCLSwitch) e).getRefer(), add);
+            put(e, "defaultComponent", ((NCLSwitch) e).getDefaultComponent(), add);
+        }
+        else if(e instanceof NCLBindRule){
+            put(e, "constituent", ((NCLBindRule) e).getConstituent(), add);
+            put(e, "rule", ((NCLBindRule) e).getRule(), add);
+        }
+        else if(e instanceof br.uff.midiacom.ana.descriptor.NCLBindRule){
+            br.uff.midiacom.ana.descriptor.NCLBindRule rule = (br.uff.midiacom.ana.descriptor.NCLBindRule) e;
+            put(e, "constituent", rule.getConstituent(), add);
+            put(e, "rule", rule.getRule(), add);
+        }
+        else if(e instanceof NCLDescriptor){
+            NCLDescriptor descriptor = (NCLDescriptor) e;
+            put(e, "region", descriptor.getRegion(), add);
+            put(e, "transIn", descriptor.getTransIn(), add);
+            put(e, "transOut", descriptor.getTransOut(), add);
+            put(e, "moveLeft", descriptor.getMoveLeft(), add);
+            put(e, "moveRight", descriptor.getMoveRight(), add);
+            put(e, "moveUp", descriptor.getMoveUp(), add);
+            put(e, "moveDown", descriptor.getMoveDown(), add);
+        }
+        else if(e instanceof NCLDescriptorSwitch)
+            put(e, "defaultDescriptor", ((NCLDescriptorSwitch) e).getDefaultDescriptor(), add);
+        else if(e instanceof NCLRule)
+            put(e, "var", ((NCLRule) e).getVar(), add);
+        else if(e instanceof NCLPort){
+            put(e, "component", ((NCLPort) e).getComponent(), add);
+            put(e, "interface", ((NCLPort) e).getInterface(), add);
+        }
+        else if(e instanceof NCLMapping){
+            put(e, "component", ((NCLMapping) e).getComponent(), add);
+            put(e, "interface", ((NCLMapping) e).getInterface(), add);
+        }
+        else if(e instanceof NCLImport)
+            put(e, "region", ((NCLImport) e).getRegion(), add);
+    }
+
+
+    private void cascade(Reference ref) {
+        NCLElement e = ref.getReferrer();
+        String attribute = ref.getAttribute();
+
+        if(e instanceof NCLBind){
+            NCLBind bind = (NCLBind) e;
+            if(attribute.equals("descriptor"))
+                bind.setDescriptor(null);
+            else
+                delete(e);
+        }
+        else if(e instanceof NCLLink || e instanceof NCLPort || e instanceof NCLMapping
+                || e instanceof NCLBindRule || e instanceof br.uff.midiacom.ana.descriptor.NCLBindRule)
+            delete(e);
+        else if(e instanceof NCLMedia){
+            if(attribute.equals("descriptor"))
+                ((NCLMedia) e).setDescriptor(null);
+            else
+                ((NCLMedia) e).setRefer(null);
+        }
+        else if(e instanceof NCLContext)
+            ((NCLContext) e).setRefer(null);
+        else if(e instanceof NCLSwitch){
+            if(attribute.equals("refer"))
+                ((NCLSwitch) e).setRefer(null);
+            else
+                ((NCLSwitch) e).setDefaultComponent(null);
+        }
+        else if(e instanceof NCLDescriptor){
+            NCLDescriptor descriptor = (NCLDescriptor) e;
+            if(attribute.equals("region"))
+                descriptor.setRegion(null);
+            else if(attribute.equals("transIn"))
+                descriptor.setTransIn(null);
+            else if(attribute.equals("transOut"))
+                descriptor.setTransOut(null);
+            else if(attribute.equals("moveLeft"))
+                descriptor.setMoveLeft(null);
+            else if(attribute.equals("moveRight"))
+                descriptor.setMoveRight(null);
+            else if(attribute.equals("moveUp"))
+                descriptor.setMoveUp(null);
+            else
+                descriptor.setMoveDown(null);
+        }
+        else if(e instanceof NCLDescriptorSwitch)
+            ((NCLDescriptorSwitch) e).setDefaultDescriptor(null);
+        else if(e instanceof NCLRule)
+            ((NCLRule) e).setVar(null);
+        else if(e instanceof NCLImport)
+            ((NCLImport) e).setRegion(null);
+    }
+
+
+    /*
+     * Retira um elemento do conjunto correspondente do elemento pai.
+     */
+    static boolean remove(NCLElement parent, NCLElement e) {
+        if(parent instanceof NCLBody){
+            NCLBody body = (NCLBody) parent;
+            if(e instanceof NCLPort)
+                return body.removePort((NCLPort) e);
+            if(e instanceof NCLProperty)
+                return body.removeProperty((NCLProperty) e);
+            if(e instanceof NCLLink)
+                return body.removeLink((NCLLink) e);
+            return body.removeNode((br.uff.midiacom.ana.node.NCLNode) e);
+        }
+        if(parent instanceof NCLContext){
+            NCLContext context = (NCLContext) parent;
+            if(e instanceof NCLPort)
+                return context.removePort((NCLPort) e);
+            if(e instanceof NCLProperty)
+                return context.removeProperty((NCLProperty) e);
+            if(e instanceof NCLLink)
+                return context.removeLink((NCLLink) e);
+            return context.removeNode((br.uff.midiacom.ana.node.NCLNode) e);
+        }
+        if(parent instanceof NCLSwitch){
+            NCLSwitch swt = (NCLSwitch) parent;
+            if(e instanceof NCLSwitchPort)
+                return swt.removePort((NCLSwitchPort) e);
+            if(e instanceof NCLBindRule)
+                return swt.removeBind((NCLBindRule) e);
+            return swt.removeNode((br.uff.midiacom.ana.node.NCLNode) e);
+        }
+        if(parent instanceof NCLMedia){
+            if(e instanceof NCLArea)
+                return ((NCLMedia) parent).removeArea((NCLArea) e);
+            return ((NCLMedia) parent).removeProperty((NCLProperty) e);
+        }
+        if(parent instanceof NCLSwitchPort)
+            return ((NCLSwitchPort) parent).removeMapping((NCLMapping) e);
+        if(parent instanceof NCLLink)
+            return ((NCLLink) parent).removeBind((NCLBind) e);
+        if(parent instanceof NCLImportedDocumentBase)
+            return ((NCLImportedDocumentBase) parent).removeImportNCL((NCLImport) e);
+        if(parent instanceof NCLRuleBase){
+            if(e instanceof NCLImport)
+                return ((NCLRuleBase) parent).removeImportBase((NCLImport) e);
+            return ((NCLRuleBase) parent).removeRule((NCLTestRule) e);
+        }
+        if(parent instanceof NCLCompositeRule)
+            return ((NCLCompositeRule) parent).removeRule((NCLTestRule) e);
+        if(parent instanceof NCLTransitionBase){
+            if(e instanceof NCLImport)
+                return ((NCLTransitionBase) parent).removeImportBase((NCLImport) e);
+            return ((NCLTransitionBase) parent).removeTransition((NCLTransition) e);
+        }
+        if(parent instanceof NCLRegionBase){
+            if(e instanceof NCLImport)
+                return ((NCLRegionBase) parent).removeImportBase((NCLImport) e);
+            return ((NCLRegionBase) parent).removeRegion((NCLRegion) e);
+        }
+        if(parent instanceof NCLRegion)
+            return ((NCLRegion) parent).removeRegion((NCLRegion) e);
+        if(parent instanceof NCLDescriptorBase){
+            if(e instanceof NCLImport)
+                return ((NCLDescriptorBase) parent).removeImportBase((NCLImport) e);
+            return ((NCLDescriptorBase) parent).removeDescriptor((NCLLayoutDescriptor) e);
+        }
+        if(parent instanceof NCLDescriptorSwitch){
+            if(e instanceof br.uff.midiacom.ana.descriptor.NCLBindRule)
+                return ((NCLDescriptorSwitch) parent).removeBind((br.uff.midiacom.ana.descriptor.NCLBindRule) e);
+            return ((NCLDescriptorSwitch) parent).removeDescriptor((NCLDescriptor) e);
+        }
+        if(parent instanceof NCLConnectorBase){
+            if(e instanceof NCLImport)
+                return ((NCLConnectorBase) parent).removeImportBase((NCLImport) e);
+            return ((NCLConnectorBase) parent).removeCausalConnector((NCLCausalConnector) e);
+        }
+
+        return false;
+    }
+
+
+    /*
+     * Insere um elemento no conjunto correspondente do elemento pai.
+     */
+    private static boolean add(NCLElement parent, NCLElement e) {
+        if(parent instanceof NCLBody){
+            NCLBody body = (NCLBody) parent;
+            if(e instanceof NCLPort)
+                return body.addPort((NCLPort) e);
+            if(e instanceof NCLProperty)
+                return body.addProperty((NCLProperty) e);
+            if(e instanceof NCLLink)
+                return body.addLink((NCLLink) e);
+            return body.addNode((br.uff.midiacom.ana.node.NCLNode) e);
+        }
+        if(parent instanceof NCLContext){
+            NCLContext context = (NCLContext) parent;
+            if(e instanceof NCLPort)
+                return context.addPort((NCLPort) e);
+            if(e instanceof NCLProperty)
+                return context.addProperty((NCLProperty) e);
+            if(e instanceof NCLLink)
+                return context.addLink((NCLLink) e);
+            return context.addNode((br.uff.midiacom.ana.node.NCLNode) e);
+        }
+        if(parent instanceof NCLSwitch){
+            NCLSwitch swt = (NCLSwitch) parent;
+            if(e instanceof NCLSwitchPort)
+                return swt.addPort((NCLSwitchPort) e);
+            if(e instanceof NCLBindRule)
+                return swt.addBind((NCLBindRule) e);
+            return swt.addNode((br.uff.midiacom.ana.node.NCLNode) e);
+        }
+        if(parent instanceof NCLMedia){
+            if(e instanceof NCLArea)
+                return ((NCLMedia) parent).addArea((NCLArea) e);
+            return ((NCLMedia) parent).addProperty((NCLProperty) e);
+        }
+        if(parent instanceof NCLSwitchPort)
+            return ((NCLSwitchPort) parent).addMapping((NCLMapping) e);
+        if(parent instanceof NCLLink)
+            return ((NCLLink) parent).addBind((NCLBind) e);
+        if(parent instanceof NCLImportedDocumentBase)
+            return ((NCLImportedDocumentBase) parent).addImportNCL((NCLImport) e);
+        if(parent instanceof NCLRuleBase){
+            if(e instanceof NCLImport)
+                return ((NCLRuleBase) parent).addImportBase((NCLImport) e);
+            return ((NCLRuleBase) parent).addRule((NCLTestRule) e);
+        }
+        if(parent instanceof NCLCompositeRule)
+            return ((NCLCompositeRule) parent).addRule((NCLTestRule) e);
+        if(parent instanceof NCLTransitionBase){
+            if(e instanceof NCLImport)
+                return ((NCLTransitionBase) parent).addImportBase((NCLImport) e);
+            return ((NCLTransitionBase) parent).addTransition((NCLTransition) e);
+        }
+        if(parent instanceof NCLRegionBase){
+            if(e instanceof NCLImport)
+                return ((NCLRegionBase) parent).addImportBase((NCLImport) e);
+            return ((NCLRegionBase) parent).addRegion((NCLRegion) e);
+        }
+        if(parent instanceof NCLRegion)
+            return ((NCLRegion) parent).addRegion((NCLRegion) e);
+        if(parent instanceof NCLDescriptorBase){
+            if(e instanceof NCLImport)
+                return ((NCLDescriptorBase) parent).addImportBase((NCLImport) e);
+            return ((NCLDescriptorBase) parent).addDescriptor((NCLLayoutDescriptor) e);
+        }
+        if(parent instanceof NCLDescriptorSwitch){
+            if(e instanceof br.uff.midiacom.ana.descriptor.NCLBindRule)
+                return ((NCLDescriptorSwitch) parent).addBind((br.uff.midiacom.ana.descriptor.NCLBindRule) e);
+            return ((NCLDescriptorSwitch) parent).addDescriptor((NCLDescriptor) e);
+        }
+        if(parent instanceof NCLConnectorBase){
+            if(e instanceof NCLImport)
+                return ((NCLConnectorBase) parent).addImportBase((NCLImport) e);
+            return ((NCLConnectorBase) parent).addCausalConnector((NCLCausalConnector) e);
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Esta classe define uma referência indexada: o elemento que faz a
+     * referência e o nome do atributo usado.
+     */
+    public static class Reference {
+
+        private NCLElement referrer;
+        private String attribute;
+
+
+        Reference(NCLElement referrer, String attribute) {
+            this.referrer = referrer;
+            this.attribute = attribute;
+        }
+
+
+        /**
+         * Retorna o elemento que faz a referência.
+         *
+         * @return
+         *          elemento NCL.
+         */
+        public NCLElement getReferrer() {
+            return referrer;
+        }
+
+
+        /**
+         * Retorna o nome do atributo usado na referência.
+         *
+         * @return
+         *          String representando o nome do atributo.
+         */
+        public String getAttribute() {
+            return attribute;
+        }
+
+
+        @Override
+        public boolean equals(Object other) {
+            if(!(other instanceof Reference))
+                return false;
+
+            return referrer == ((Reference) other).referrer && attribute.equals(((Reference) other).attribute);
+        }
+
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(referrer) * 31 + attribute.hashCode();
+        }
+    }
+}
@@ -0,0 +1,411 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Esta classe define uma cache do código XML gerado para os elementos de
+ * documentos da <i>Nested Context Language</i> (NCL).<br/>
+ *
+ * O código de cada elemento é guardado junto com o resumo do conteúdo do elemento
+ * e o nível de indentação usado. Quando o código de um documento associado à
+ * cache é gerado novamente, os elementos cujo resumo não mudou retornam o código
+ * guardado sem percorrer os seus filhos, e apenas os ramos alterados são gerados.
+ * Elementos idênticos, inclusive de documentos diferentes, compartilham o mesmo
+ * código.
+ *
+ * Cada código guardado contém apenas o texto do próprio elemento e referências
+ * aos códigos guardados dos seus filhos, que são concatenados somente quando o
+ * código do documento é retornado. Assim, o texto de cada elemento é guardado
+ * uma única vez, independentemente da sua profundidade. A capacidade da cache é
+ * dada pelo número total de caracteres guardados; quando ela é ultrapassada, os
+ * códigos usados há mais tempo são descartados. Um código descartado continua
+ * em memória enquanto for referenciado pelo código guardado de um ancestral.
+ *
+ * @see NCLDoc#setSerializationCache
+ * @see NCLElement#getFingerprint
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLSerializationCache {
+
+    /**
+     * Capacidade padrão da cache, em caracteres.
+     */
+    public static final long DEFAULT_CAPACITY = 64L * 1024 * 1024;
+
+    private static final char MARK = '\u0001';
+    private static final ThreadLocal<Session> sessions = new ThreadLocal<Session>();
+
+    private final long capacity;
+    private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    private long length;
+    private int hits;
+    private int misses;
+
+
+    /**
+     * Constrói uma cache com a capacidade padrão.
+     */
+    public NCLSerializationCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+
+    /**
+     * Constrói uma cache de serialização.
+     *
+     * @param capacity
+     *          número máximo de caracteres guardados pela cache.
+     * @throws java.lang.IllegalArgumentException
+     *          se a capacidade não for positiva.
+     */
+    public NCLSerializationCache(long capacity) throws IllegalArgumentException {
+        if(capacity <= 0)
+            throw new IllegalArgumentException("Invalid capacity");
+
+        this.capacity = capacity;
+    }
+
+
+    /**
+     * Retorna o código guardado para um elemento.
+     *
+     * @param fingerprint
+     *          resumo do conteúdo do elemento.
+     * @param ident
+     *          nível de indentação do elemento.
+     * @return
+     *          String com o código do elemento ou nulo se o código não estiver na cache.
+     */
+    public String get(long fingerprint, int ident) {
+        Entry entry = lookup(new Key(fingerprint, ident));
+        return entry != null ? entry.toString() : null;
+    }
+
+
+    /**
+     * Guarda o código de um elemento. Códigos maiores que a capacidade da cache
+     * não são guardados.
+     *
+     * @param fingerprint
+     *          resumo do conteúdo do elemento.
+     * @param ident
+     *          nível de indentação do elemento.
+     * @param content
+     *          código do elemento.
+     */
+    public void put(long fingerprint, int ident, String content) {
+        store(new Key(fingerprint, ident), new Entry(new Object[]{content}));
+    }
+
+
+    /**
+     * Descarta todos os códigos guardados.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        length = 0;
+    }
+
+
+    /**
+     * Retorna o número de códigos guardados.
+     *
+     * @return
+     *          número de códigos na cache.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+
+    /**
+     * Retorna o número de caracteres guardados.
+     *
+     * @return
+     *          número total de caracteres dos códigos na cache, sem contar os
+     *          códigos dos filhos referenciados por eles.
+     */
+    public synchronized long getLength() {
+        return length;
+    }
+
+
+    /**
+     * Retorna a capacidade da cache.
+     *
+     * @return
+     *          número máximo de caracteres guardados.
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+
+    /**
+     * Retorna o número de consultas atendidas pela cache.
+     *
+     * @return
+     *          número de acertos.
+     */
+    public synchronized int getHits() {
+        return hits;
+    }
+
+
+    /**
+     * Retorna o número de consultas não atendidas pela cache.
+     *
+     * @return
+     *          número de falhas.
+     */
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+
+    /*
+     * Retorna o código guardado para um elemento, gerando-o e guardando-o caso
+     * não esteja na cache. Durante a geração, os filhos do elemento são trocados
+     * por marcas que apontam para os seus próprios códigos guardados.
+     */
+    Entry entry(NCLElement element, int ident) {
+        Key key = new Key(element.getFingerprint(), ident);
+        Entry entry = lookup(key);
+        if(entry != null)
+            return entry;
+
+        Session previous = sessions.get();
+        Session session = new Session(this, element);
+        sessions.set(session);
+        String content;
+        try{
+            content = element.parse(ident);
+        }
+        finally{
+            if(previous == null)
+                sessions.remove();
+            else
+                sessions.set(previous);
+        }
+
+        entry = session.split(content);
+        store(key, entry);
+        return entry;
+    }
+
+
+    /*
+     * Retorna o código a ser usado por um elemento no início do seu método parse
+     * ou nulo se o elemento deve ser gerado. Dentro da geração de um elemento
+     * para a cache, retorna a marca que aponta para o código do filho. Fora
+     * dela, apenas um documento com cache de serialização usa a cache.
+     */
+    static String part(NCLElement element, int ident, Object parked) {
+        Session session = sessions.get();
+        if(session == null){
+            if(parked instanceof Entry)
+                return parked.toString();
+            if(element instanceof NCLDoc && ((NCLDoc) element).getSerializationCache() != null)
+                return ((NCLDoc) element).getSerializationCache().entry(element, ident).toString();
+            return null;
+        }
+        if(session.element == element)
+            return null;
+
+        Entry entry = parked instanceof Entry ? (Entry) parked : session.cache.entry(element, ident);
+        return session.mark(entry);
+    }
+
+
+    private synchronized Entry lookup(Key key) {
+        Entry entry = entries.get(key);
+        if(entry == null)
+            misses++;
+        else
+            hits++;
+
+        return entry;
+    }
+
+
+    private synchronized void store(Key key, Entry entry) {
+        if(entry.length > capacity)
+            return;
+
+        Entry old = entries.put(key, entry);
+        if(old != null)
+            length -= old.length;
+        length += entry.length;
+
+        Iterator<Entry> it = entries.values().iterator();
+        while(length > capacity && it.hasNext()){
+            length -= it.next().length;
+            it.remove();
+        }
+    }
+
+
+    /*
+     * Geração do código de um elemento para a cache na thread atual.
+     */
+    private static class Session {
+
+        private final NCLSerializationCache cache;
+        private final NCLElement element;
+        private final List<Entry> children = new ArrayList<Entry>();
+
+
+        private Session(NCLSerializationCache cache, NCLElement element) {
+            this.cache = cache;
+            this.element = element;
+        }
+
+
+        private String mark(Entry entry) {
+            children.add(entry);
+            return MARK + Integer.toString(children.size() - 1) + MARK;
+        }
+
+
+        private Entry split(String content) {
+            if(children.isEmpty())
+                return new Entry(new Object[]{content});
+
+            List<Object> parts = new ArrayList<Object>(2 * children.size() + 1);
+            int start = 0;
+            int open;
+            while((open = content.indexOf(MARK, start)) != -1){
+                int close = content.indexOf(MARK, open + 1);
+                if(open > start)
+                    parts.add(content.substring(start, open));
+                parts.add(children.get(Integer.parseInt(content.substring(open + 1, close))));
+                start = close + 1;
+            }
+            if(start < content.length())
+                parts.add(content.substring(start));
+
+            return new Entry(parts.toArray());
+        }
+    }
+
+
+    /*
+     * Código guardado de um elemento: trechos de texto intercalados com os
+     * códigos guardados dos filhos.
+     */
+    static class Entry {
+
+        private final Object[] parts;
+        private final long length;
+        private final long total;
+
+
+        private Entry(Object[] parts) {
+            long own = 0;
+            long all = 0;
+            for(Object part : parts){
+                if(part instanceof String){
+                    own += ((String) part).length();
+                    all += ((String) part).length();
+                }
+                else
+                    all += ((Entry) part).total;
+            }
+            this.parts = parts;
+            this.length = own;
+            this.total = all;
+        }
+
+
+        private void append(StringBuilder content) {
+            for(Object part : parts){
+                if(part instanceof String)
+                    content.append((String) part);
+                else
+                    ((Entry) part).append(content);
+            }
+        }
+
+
+        @Override
+        public String toString() {
+            if(parts.length == 1 && parts[0] instanceof String)
+                return (String) parts[0];
+
+            StringBuilder content = new StringBuilder((int) Math.min(total, Integer.MAX_VALUE));
+            append(content);
+            return content.toString();
+        }
+    }
+
+
+    private static class Key {
+
+        private final long fingerprint;
+        private final int ident;
+
+
+        private Key(long fingerprint, int ident) {
+            this.fingerprint = fingerprint;
+            this.ident = ident;
+        }
+
+
+        @Override
+        public boolean equals(Object other) {
+            if(!(other instanceof Key))
+                return false;
+
+            return fingerprint == ((Key) other).fingerprint && ident == ((Key) other).ident;
+        }
+
+
+        @Override
+        public int hashCode() {
+            return (int) (fingerprint ^ (fingerprint >>> 32)) * 31 + ident;
+        }
+    }
+}
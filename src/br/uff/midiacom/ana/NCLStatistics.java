@@ -0,0 +1,209 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+
+/**
+ * Esta classe define estatísticas da árvore de um documento da
+ * <i>Nested Context Language</i> (NCL): o número de elementos de cada classe e a
+ * profundidade da árvore.<br/>
+ *
+ * As estatísticas são calculadas por um visitante da classe <i>NCLWalker</i>,
+ * sequencialmente ou em paralelo. Os papéis dos conectores também são contados.
+ *
+ * @see NCLWalker
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLStatistics {
+
+    private Map<Class, Integer> counts = new HashMap<Class, Integer>();
+    private int elements;
+    private int depth;
+
+
+    private NCLStatistics() {}
+
+
+    /**
+     * Calcula as estatísticas da árvore a partir de um elemento.
+     *
+     * @param root
+     *          elemento raiz.
+     * @return
+     *          estatísticas da árvore.
+     */
+    public static NCLStatistics of(Object root) {
+        return NCLWalker.walk(root, new Counter());
+    }
+
+
+    /**
+     * Calcula as estatísticas da árvore a partir de um elemento, dividindo o
+     * percurso entre as threads de um <i>ForkJoinPool</i>.
+     *
+     * @param root
+     *          elemento raiz.
+     * @param pool
+     *          pool onde o percurso é executado.
+     * @param threshold
+     *          número mínimo de elementos de uma subárvore para que ela seja
+     *          dividida em tarefas.
+     * @return
+     *          estatísticas da árvore.
+     */
+    public static NCLStatistics of(Object root, ForkJoinPool pool, int threshold) {
+        return NCLWalker.walk(root, new Counter(), pool, threshold);
+    }
+
+
+    /**
+     * Retorna o número total de elementos da árvore.
+     *
+     * @return
+     *          inteiro representando o número de elementos.
+     */
+    public int getElements() {
+        return elements;
+    }
+
+
+    /**
+     * Retorna a profundidade da árvore. Uma árvore com apenas a raiz tem
+     * profundidade 1.
+     *
+     * @return
+     *          inteiro representando a profundidade da árvore.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+
+    /**
+     * Retorna o número de elementos de uma classe ou de suas subclasses.
+     *
+     * @param kind
+     *          classe dos elementos.
+     * @return
+     *          inteiro representando o número de elementos.
+     */
+    public int getCount(Class kind) {
+        int result = 0;
+        for(Map.Entry<Class, Integer> entry : counts.entrySet()){
+            if(kind.isAssignableFrom(entry.getKey()))
+                result += entry.getValue();
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Retorna o número de elementos de cada classe encontrada na árvore.
+     *
+     * @return
+     *          mapa da classe para o número de elementos. O mapa não pode ser
+     *          modificado.
+     */
+    public Map<Class, Integer> getCounts() {
+        return Collections.unmodifiableMap(counts);
+    }
+
+
+    @Override
+    public String toString() {
+        return "elements=" + elements + ", depth=" + depth + ", counts=" + counts;
+    }
+
+
+    private void merge(NCLStatistics other) {
+        for(Map.Entry<Class, Integer> entry : other.counts.entrySet())
+            add(entry.getKey(), entry.getValue());
+
+        elements += other.elements;
+        depth = Math.max(depth, other.depth);
+    }
+
+
+    private void add(Class kind, int count) {
+        Integer current = counts.get(kind);
+        counts.put(kind, current == null ? count : current + count);
+    }
+
+
+    /*
+     * Combina as estatísticas dos filhos de cada elemento, aproveitando as
+     * estatísticas do filho com mais elementos.
+     */
+    private static class Counter implements NCLVisitor<NCLStatistics> {
+
+        public boolean visit(Object element, int depth) {
+            return true;
+        }
+
+
+        public NCLStatistics leave(Object element, int depth, List<NCLStatistics> results) {
+            NCLStatistics result = null;
+            for(NCLStatistics child : results){
+                if(result == null || child.elements > result.elements)
+                    result = child;
+            }
+
+            if(result == null)
+                result = new NCLStatistics();
+
+            for(NCLStatistics child : results){
+                if(child != result)
+                    result.merge(child);
+            }
+
+            result.add(element.getClass(), 1);
+            result.elements++;
+            result.depth++;
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.connector.NCLCausalConnector;
+import br.uff.midiacom.ana.descriptor.NCLDescriptor;
+import br.uff.midiacom.ana.interfaces.NCLPort;
+import br.uff.midiacom.ana.link.NCLLink;
+import br.uff.midiacom.ana.node.NCLContext;
+import br.uff.midiacom.ana.node.NCLMedia;
+import br.uff.midiacom.ana.node.NCLSwitch;
+import br.uff.midiacom.ana.region.NCLRegion;
+
+
+/**
+ * Esta classe define os métodos chamados pela classe <i>NCLStreamReader</i> à
+ * medida que os elementos de um documento da <i>Nested Context Language</i>
+ * (NCL) são lidos.<br/>
+ *
+ * Cada método é chamado quando o elemento termina de ser lido, com seus
+ * atributos e elementos filhos preenchidos. As referências a outros elementos
+ * não são resolvidas, pois a árvore do documento não é mantida. Os métodos desta
+ * classe não fazem nada e devem ser sobrescritos para os elementos de interesse.
+ *
+ * @see NCLStreamReader
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLStreamListener {
+
+    /**
+     * Chamado ao fim da leitura de uma mídia.
+     *
+     * @param media
+     *          mídia lida.
+     */
+    public void onMedia(NCLMedia media) {}
+
+
+    /**
+     * Chamado ao fim da leitura de um contexto, com seus nós, portas,
+     * propriedades e elos, que já foram entregues.
+     *
+     * @param context
+     *          contexto lido.
+     */
+    public void onContext(NCLContext context) {}
+
+
+    /**
+     * Chamado ao fim da leitura de um switch, com seus nós, portas e regras, que
+     * já foram entregues.
+     *
+     * @param swt
+     *          switch lido.
+     */
+    public void onSwitch(NCLSwitch swt) {}
+
+
+    /**
+     * Chamado ao fim da leitura de uma porta.
+     *
+     * @param port
+     *          porta lida.
+     */
+    public void onPort(NCLPort port) {}
+
+
+    /**
+     * Chamado ao fim da leitura de um elo, com seus binds e parâmetros.
+     *
+     * @param link
+     *          elo lido.
+     */
+    public void onLink(NCLLink link) {}
+
+
+    /**
+     * Chamado ao fim da leitura de uma região, com suas regiões internas.
+     *
+     * @param region
+     *          região lida.
+     */
+    public void onRegion(NCLRegion region) {}
+
+
+    /**
+     * Chamado ao fim da leitura de um descritor, com seus parâmetros.
+     *
+     * @param descriptor
+     *          descritor lido.
+     */
+    public void onDescriptor(NCLDescriptor descriptor) {}
+
+
+    /**
+     * Chamado ao fim da leitura de um conector, com sua condição e sua ação.
+     *
+     * @param connector
+     *          conector lido.
+     */
+    public void onConnector(NCLCausalConnector connector) {}
+
+
+    /**
+     * Chamado ao fim da leitura dos demais elementos.
+     *
+     * @param element
+     *          elemento lido.
+     */
+    public void onElement(NCLElement element) {}
+
+
+    /**
+     * Chamado ao fim da leitura do documento. O documento possui apenas seus
+     * atributos, o cabeçalho e o corpo, sem os elementos já entregues.
+     *
+     * @param doc
+     *          documento lido.
+     */
+    public void onDocument(NCLDoc doc) {}
+}
@@ -0,0 +1,239 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.connector.NCLCausalConnector;
+import br.uff.midiacom.ana.descriptor.NCLDescriptor;
+import br.uff.midiacom.ana.interfaces.NCLPort;
+import br.uff.midiacom.ana.link.NCLLink;
+import br.uff.midiacom.ana.meta.NCLMeta;
+import br.uff.midiacom.ana.meta.NCLMetadata;
+import br.uff.midiacom.ana.node.NCLContext;
+import br.uff.midiacom.ana.node.NCLMedia;
+import br.uff.midiacom.ana.node.NCLSwitch;
+import br.uff.midiacom.ana.region.NCLRegion;
+import java.io.IOException;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+
+/**
+ * Esta classe define um leitor de documentos da <i>Nested Context Language</i>
+ * (NCL) que entrega os elementos a um <i>NCLStreamListener</i> à medida que são
+ * lidos, sem manter a árvore do documento.<br/>
+ *
+ * A leitura usa as mesmas classes e os mesmos métodos do parser SAX da API. Cada
+ * elemento é entregue quando termina de ser lido e, se for filho do corpo ou de
+ * uma base, é em seguida retirado do elemento pai. Os filhos de um contexto ou de
+ * um switch são mantidos até que a composição seja entregue, com seus filhos, e
+ * retirada do seu pai. Assim, a memória usada é limitada pelo maior elemento
+ * filho do corpo ou de uma base e não pelo tamanho do documento. Como a árvore
+ * não é mantida, as referências entre os elementos não são resolvidas.
+ *
+ * @see NCLStreamListener
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLStreamReader {
+
+    private NCLStreamListener listener;
+    private NCLStringPool stringPool;
+
+
+    /**
+     * Construtor do leitor.
+     *
+     * @param listener
+     *          objeto que recebe os elementos lidos.
+     */
+    public NCLStreamReader(NCLStreamListener listener) {
+        if(listener == null)
+            throw new NullPointerException("Null listener");
+
+        this.listener = listener;
+    }
+
+
+    /**
+     * Atribui ao leitor um repositório de Strings, que passa a ser usado para os
+     * valores dos atributos lidos. Como os elementos lidos são descartados, o
+     * repositório é útil quando os elementos entregues são guardados, por exemplo
+     * o repositório compartilhado.
+     *
+     * @param stringPool
+     *          repositório de Strings ou nulo para não usar repositório.
+     *
+     * @see NCLStringPool#shared()
+     */
+    public void setStringPool(NCLStringPool stringPool) {
+        this.stringPool = stringPool;
+    }
+
+
+    /**
+     * Retorna o repositório de Strings usado pelo leitor.
+     *
+     * @return
+     *          repositório de Strings ou nulo se o leitor não usar repositório.
+     */
+    public NCLStringPool getStringPool() {
+        return stringPool;
+    }
+
+
+    /**
+     * Lê um documento NCL de um arquivo.
+     *
+     * @param path
+     *          String contendo o caminho ou a URI do arquivo.
+     * @throws NCLParsingException
+     *          se algum erro ocorrer durante a leitura do arquivo.
+     */
+    public void parse(String path) throws NCLParsingException {
+        parse(new InputSource(path));
+    }
+
+
+    /**
+     * Lê um documento NCL.
+     *
+     * @param source
+     *          fonte do código XML do documento.
+     * @throws NCLParsingException
+     *          se algum erro ocorrer durante a leitura do documento.
+     */
+    public void parse(InputSource source) throws NCLParsingException {
+        try{
+            XMLReader parser = XMLReaderFactory.createXMLReader();
+            if(stringPool != null)
+                parser = stringPool.filter(parser);
+
+            Filter reader = new Filter(parser);
+
+            NCLDoc doc = createDoc();
+            doc.setReader(reader);
+            reader.setContentHandler(doc);
+            reader.setErrorHandler(new NCLParsingErrorHandler(reader));
+            reader.parse(source);
+
+            listener.onDocument(doc);
+        }
+        catch(SAXException ex){
+            throw new NCLParsingException(ex.getMessage());
+        }
+        catch(IOException ex){
+            throw new NCLParsingException(ex.getMessage());
+        }
+    }
+
+
+    /**
+     * Função de criação do documento lido.
+     * Esta função deve ser sobrescrita em classes que estendem esta classe.
+     *
+     * @return
+     *          documento NCL vazio.
+     */
+    protected NCLDoc createDoc() {
+        return new NCLDoc();
+    }
+
+
+    private void completed(NCLElement element) {
+        if(element instanceof NCLMedia)
+            listener.onMedia((NCLMedia) element);
+        else if(element instanceof NCLContext)
+            listener.onContext((NCLContext) element);
+        else if(element instanceof NCLSwitch)
+            listener.onSwitch((NCLSwitch) element);
+        else if(element instanceof NCLPort)
+            listener.onPort((NCLPort) element);
+        else if(element instanceof NCLLink)
+            listener.onLink((NCLLink) element);
+        else if(element instanceof NCLRegion)
+            listener.onRegion((NCLRegion) element);
+        else if(element instanceof NCLDescriptor)
+            listener.onDescriptor((NCLDescriptor) element);
+        else if(element instanceof NCLCausalConnector)
+            listener.onConnector((NCLCausalConnector) element);
+        else
+            listener.onElement(element);
+
+        NCLElement parent = element.getParent();
+        if(parent == null || parent instanceof NCLDoc || parent instanceof NCLHead || !NCLWalker.isBoundary(parent))
+            return;
+        if(element instanceof NCLMeta || element instanceof NCLMetadata)
+            return;
+
+        // os filhos de uma composição são entregues junto com ela
+        if(parent instanceof NCLContext || parent instanceof NCLSwitch)
+            return;
+
+        NCLReferenceIndex.remove(parent, element);
+    }
+
+
+    /*
+     * Repassa os eventos do parser ao elemento que está sendo lido. Um elemento
+     * termina de ser lido quando, ao tratar o fim de uma marca, devolve a leitura
+     * ao elemento pai.
+     */
+    private class Filter extends XMLFilterImpl {
+
+        Filter(XMLReader parent) {
+            super(parent);
+        }
+
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            ContentHandler handler = getContentHandler();
+            super.endElement(uri, localName, qName);
+
+            if(handler instanceof NCLElement){
+                NCLElement element = (NCLElement) handler;
+                if(element.getParent() != null && getContentHandler() == element.getParent())
+                    completed(element);
+            }
+        }
+    }
+}
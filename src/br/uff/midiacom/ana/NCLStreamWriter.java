@@ -0,0 +1,619 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.NCLValues.NCLMimeType;
+import br.uff.midiacom.ana.NCLValues.NCLNamespace;
+import br.uff.midiacom.ana.connector.NCLCausalConnector;
+import br.uff.midiacom.ana.connector.NCLRole;
+import br.uff.midiacom.ana.descriptor.NCLDescriptor;
+import br.uff.midiacom.ana.interfaces.NCLPort;
+import br.uff.midiacom.ana.link.NCLBind;
+import br.uff.midiacom.ana.link.NCLLink;
+import br.uff.midiacom.ana.node.NCLContext;
+import br.uff.midiacom.ana.node.NCLMedia;
+import br.uff.midiacom.ana.reuse.NCLImportGraph;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * Esta classe define um gerador de documentos da <i>Nested Context Language</i>
+ * (NCL) que escreve o código XML diretamente em um fluxo de saída, sem construir
+ * a árvore do documento.<br/>
+ *
+ * O documento é descrito por uma sequência de chamadas, por exemplo:
+ *
+ * <pre>
+ * NCLStreamWriter writer = new NCLStreamWriter(out);
+ * writer.startDocument("doc", null, NCLNamespace.EDTV);
+ * writer.head(head);
+ * writer.startBody(null);
+ * writer.startContext("c1");
+ * writer.media("m1", "video.mpg", null, "d1");
+ * writer.media("m2", "audio.mp3", null, null);
+ * writer.link("l1", "onBeginStart", new NCLStreamWriter.Bind("onBegin", "m1"),
+ *                                   new NCLStreamWriter.Bind("start", "m2"));
+ * writer.endContext();
+ * writer.endDocument();
+ * </pre>
+ *
+ * Cada elemento é conferido ao ser escrito usando o método <i>validate</i> da
+ * classe correspondente sobre um elemento temporário, que é descartado em
+ * seguida. As restrições que dependem dos demais filhos de um contexto ou do
+ * corpo (identificadores repetidos e componentes de portas e binds fora da
+ * composição) são conferidas com os identificadores dos filhos das composições
+ * abertas, que são descartados quando a composição é fechada. Assim, a memória
+ * usada não depende do tamanho do documento, mas apenas do número de filhos das
+ * composições abertas.
+ *
+ * Os valores dos atributos são escritos com os caracteres especiais do XML, as
+ * quebras de linha, as tabulações e os caracteres fora do ISO-8859-1 substituídos
+ * por referências; caracteres que não podem aparecer em um documento XML são
+ * rejeitados antes que o elemento seja escrito. Quando os elementos são escritos na mesma ordem
+ * usada pelo método <i>parse</i>, o código gerado é igual ao gerado pelo
+ * método <i>parse</i> do documento equivalente.
+ *
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLStreamWriter {
+
+    private static final String NCL = "ncl";
+    private static final String BODY = "body";
+    private static final String CONTEXT = "context";
+
+    private Writer out;
+    private List<Composition> open = new ArrayList<Composition>();
+    private boolean started;
+    private boolean head;
+    private boolean body;
+
+
+    /**
+     * Construtor do gerador. O código é escrito com a codificação ISO-8859-1,
+     * declarada no início do documento.
+     *
+     * @param out
+     *          fluxo onde o código do documento é escrito.
+     */
+    public NCLStreamWriter(OutputStream out) {
+        try{
+            this.out = new BufferedWriter(new OutputStreamWriter(out, "ISO-8859-1"));
+        }
+        catch(IOException ex){
+            throw new IllegalStateException(ex.getMessage());
+        }
+    }
+
+
+    /**
+     * Inicia o documento, escrevendo a declaração XML e o elemento <i>ncl</i>.
+     *
+     * @param id
+     *          identificador do documento ou nulo.
+     * @param title
+     *          título do documento ou nulo.
+     * @param xmlns
+     *          perfil da linguagem usado no documento ou nulo.
+     * @throws IOException
+     *          se algum erro ocorrer na escrita.
+     */
+    public void startDocument(String id, String title, NCLNamespace xmlns) throws IOException {
+        if(started)
+            throw new IllegalStateException("Document already started");
+        if(id != null)
+            check(new NCLDoc(), id);
+        if(title != null && "".equals(title.trim()))
+            throw new IllegalArgumentException("Empty title String");
+
+        String attributes = attribute("id", id) + attribute("title", title)
+                + attribute("xmlns", xmlns == null ? null : xmlns.toString());
+
+        started = true;
+        out.write("<?xml version='1.0' encoding='ISO-8859-1'?>\n");
+        out.write("<!-- Generated with NCL API -->\n\n");
+        out.write("<ncl" + attributes + ">\n");
+
+        open.add(new Composition(NCL, 0));
+    }
+
+
+    /**
+     * Escreve o cabeçalho do documento. O cabeçalho é validado e escrito pelo
+     * seu método <i>parse</i>, pois costuma ser pequeno em relação ao corpo.
+     *
+     * @param head
+     *          cabeçalho do documento.
+     * @throws IOException
+     *          se algum erro ocorrer na escrita.
+     */
+    public void head(NCLHead head) throws IOException {
+        Composition top = top(NCL);
+        if(this.head || body)
+            throw new IllegalStateException("Head must be the first child of the document");
+
+        validate(head);
+        this.head = true;
+        out.write(head.parse(top.depth + 1));
+    }
+
+
+    /**
+     * Inicia o corpo do documento.
+     *
+     * @param id
+     *          identificador do corpo ou nulo.
+     * @throws IOException
+     *          se algum erro ocorrer na escrita.
+     */
+    public void startBody(String id) throws IOException {
+        Composition top = top(NCL);
+        if(body)
+            throw new IllegalStateException("Body already started");
+        if(id != null)
+            check(new NCLBody(), id);
+
+        String attributes = attribute("id", id);
+
+        body = true;
+        indent(top.depth + 1);
+        out.write("<body" + attributes + ">\n");
+
+        open.add(new Composition(BODY, top.depth + 1));
+    }
+
+
+    /**
+     * Termina o corpo do documento, conferindo os componentes referenciados por
+     * suas portas e binds.
+     *
+     * @throws IOException
+     *          se algum erro ocorrer na escrita.
+     */
+    public void endBody() throws IOException {
+        end(top(BODY));
+    }
+
+
+    /**
+     * Inicia um contexto dentro do corpo ou do contexto atual.
+     *
+     * @param id
+     *          identificador do contexto.
+     * @throws IOException
+     *          se algum erro ocorrer na escrita.
+     */
+    public void startContext(String id) throws IOException {
+        Composition top = child(id);
+        try{
+            validate(new NCLContext(id));
+        }
+        catch(NCLInvalidIdentifierException ex){
+            throw new IllegalArgumentException(ex.getMessage());
+        }
+
+        String attributes = attribute("id", id);
+
+        top.add(id);
+        indent(top.depth + 1);
+        out.write("<context" + attributes);
+
+        Composition c = new Composition(CONTEXT, top.depth + 1);
+        c.pending = true;
+        open.add(c);
+    }
+
+
+    /**
+     * Termina o contexto atual, conferindo os componentes referenciados por
+     * suas portas e binds.
+     *
+     * @throws IOException
+     *          se algum erro ocorrer na escrita.
+     */
+    public void endContext() throws IOException {
+        end(top(CONTEXT));
+    }
+
+
+    /**
+     * Escreve uma porta no corpo ou no contexto atual. O componente deve ser
+     * escrito no mesmo contexto, antes ou depois da porta.
+     *
+     * @param id
+     *          identificador da porta.
+     * @param component
+     *          identificador do nó referenciado pela porta.
+     * @param interfac
+     *          identificador da interface referenciada ou nulo.
+     * @throws IOException
+     *          se algum erro ocorrer na escrita.
+     */
+    public void port(String id, String component, String interfac) throws IOException {
+        Composition top = child(id);
+        try{
+            NCLPort port = new NCLPort(id);
+            if(component != null)
+                port.setComponent(new NCLContext(component));
+            validate(port);
+        }
+        catch(NCLInvalidIdentifierException ex){
+            throw new IllegalArgumentException(ex.getMessage());
+        }
+
+        String attributes = attribute("id", id) + attribute("component", component)
+                + attribute("interface", interfac);
+
+        top.add(id);
+        top.components.add(component);
+        open(top);
+        indent(top.depth + 1);
+        out.write("<port" + attributes + "/>\n");
+    }
+
+
+    /**
+     * Escreve uma mídia no corpo ou no contexto atual.
+     *
+     * @param id
+     *          identificador da mídia.
+     * @param src
+     *          URI do conteúdo da mídia ou nulo.
+     * @param type
+     *          tipo MIME da mídia ou nulo.
+     * @param descriptor
+     *          identificador do descritor da mídia ou nulo.
+     * @throws IOException
+     *          se algum erro ocorrer na escrita.
+     */
+    public void media(String id, String src, NCLMimeType type, String descriptor) throws IOException {
+        Composition top = child(id);
+        NCLMedia media;
+        try{
+            media = new NCLMedia(id);
+            media.setType(type);
+            media.setSrc(src);
+            if(descriptor != null)
+                media.setDescriptor(new NCLDescriptor(NCLImportGraph.localId(descriptor)));
+            validate(media);
+        }
+        catch(NCLInvalidIdentifierException ex){
+            throw new IllegalArgumentException(ex.getMessage());
+        }
+        catch(URISyntaxException ex){
+            throw new IllegalArgumentException(ex.getMessage());
+        }
+
+        String attributes = attribute("id", id) + attribute("src", media.getSrc())
+                + attribute("type", type == null ? null : type.toString())
+                + attribute("descriptor", descriptor);
+
+        top.add(id);
+        open(top);
+        indent(top.depth + 1);
+        out.write("<media" + attributes + "/>\n");
+    }
+
+
+    /**
+     * Escreve um elo no corpo ou no contexto atual. Os componentes dos binds
+     * devem ser escritos no mesmo contexto, antes ou depois do elo.
+     *
+     * @param id
+     *          identificador do elo ou nulo.
+     * @param xconnector
+     *          identificador do conector usado pelo elo.
+     * @param binds
+     *          binds do elo.
+     * @throws IOException
+     *          se algum erro ocorrer na escrita.
+     */
+    public void link(String id, String xconnector, Bind... binds) throws IOException {
+        Composition top = child(id);
+        try{
+            NCLLink link = new NCLLink();
+            if(id != null)
+                link.setId(id);
+            if(xconnector != null)
+                link.setXconnector(new NCLCausalConnector(NCLImportGraph.localId(xconnector)));
+            for(Bind b : binds){
+                NCLBind bind = new NCLBind();
+                if(b.role != null)
+                    bind.setRole(new NCLRole(b.role));
+                if(b.component != null)
+                    bind.setComponent(new NCLContext(b.component));
+                link.addBind(bind);
+            }
+            validate(link);
+        }
+        catch(NCLInvalidIdentifierException ex){
+            throw new IllegalArgumentException(ex.getMessage());
+        }
+
+        String attributes = attribute("id", id) + attribute("xconnector", xconnector);
+        String[] bindAttributes = new String[binds.length];
+        for(int i = 0; i < binds.length; i++){
+            Bind b = binds[i];
+            bindAttributes[i] = attribute("role", b.role) + attribute("component", b.component)
+                    + attribute("interface", b.interfac) + attribute("descriptor", b.descriptor);
+        }
+
+        if(id != null)
+            top.add(id);
+        for(Bind b : binds)
+            top.components.add(b.component);
+
+        open(top);
+        indent(top.depth + 1);
+        out.write("<link" + attributes + ">\n");
+        for(String bind : bindAttributes){
+            indent(top.depth + 2);
+            out.write("<bind" + bind + "/>\n");
+        }
+        indent(top.depth + 1);
+        out.write("</link>\n");
+    }
+
+
+    /**
+     * Escreve um elemento já construído no corpo ou no contexto atual, por
+     * exemplo um switch ou uma mídia com âncoras. O elemento é validado e escrito
+     * pelo seu método <i>parse</i>, que substitui os caracteres especiais dos
+     * valores dos atributos da mesma forma que este gerador.
+     *
+     * @param element
+     *          elemento a ser escrito.
+     * @throws IOException
+     *          se algum erro ocorrer na escrita.
+     */
+    public void element(NCLElement element) throws IOException {
+        String id = null;
+        if(element instanceof NCLIdentifiableElement)
+            id = ((NCLIdentifiableElement) element).getId();
+
+        Composition top = child(id);
+        validate(element);
+
+        if(id != null)
+            top.add(id);
+        open(top);
+        out.write(element.parse(top.depth + 1));
+    }
+
+
+    /**
+     * Termina o documento, fechando o corpo e os contextos ainda abertos, e
+     * esvazia o buffer de escrita. O fluxo de saída não é fechado.
+     *
+     * @throws IOException
+     *          se algum erro ocorrer na escrita.
+     */
+    public void endDocument() throws IOException {
+        if(!started || open.isEmpty())
+            throw new IllegalStateException("Document not started");
+
+        while(!open.isEmpty())
+            end(open.get(open.size() - 1));
+
+        out.flush();
+    }
+
+
+    private Composition top(String tag) {
+        if(open.isEmpty())
+            throw new IllegalStateException("Document not started");
+
+        Composition top = open.get(open.size() - 1);
+        if(!top.tag.equals(tag))
+            throw new IllegalStateException("Element <" + tag + "> is not open");
+
+        return top;
+    }
+
+
+    private Composition child(String id) {
+        if(open.isEmpty())
+            throw new IllegalStateException("Document not started");
+
+        Composition top = open.get(open.size() - 1);
+        if(top.tag.equals(NCL))
+            throw new IllegalStateException("Element <body> is not open");
+        if(id != null && top.ids.contains(id))
+            throw new IllegalArgumentException("Identifier already in use: " + id);
+
+        return top;
+    }
+
+
+    private void end(Composition c) throws IOException {
+        // Os componentes de portas e binds devem ser filhos da composição.
+        for(String component : c.components){
+            if(component == null || c.ids.contains(component))
+                continue;
+
+            if(c.tag.equals(CONTEXT))
+                throw new IllegalStateException("Atributo component deve referênciar elemento interno ao contexto.");
+            else
+                throw new IllegalStateException("Atributo component deve referênciar elemento interno ao corpo do documento.");
+        }
+
+        open.remove(open.size() - 1);
+        if(c.pending){
+            out.write("/>\n");
+            return;
+        }
+
+        indent(c.depth);
+        out.write("</" + c.tag + ">\n");
+    }
+
+
+    /*
+     * Fecha a marca de início de um contexto quando seu primeiro filho é escrito.
+     */
+    private void open(Composition c) throws IOException {
+        if(c.pending){
+            out.write(">\n");
+            c.pending = false;
+        }
+    }
+
+
+    private void check(NCLIdentifiableElement element, String id) {
+        try{
+            element.setId(id);
+        }
+        catch(NCLInvalidIdentifierException ex){
+            throw new IllegalArgumentException(ex.getMessage());
+        }
+    }
+
+
+    /*
+     * Apenas os erros impedem a escrita; os avisos, como o de um cabeçalho vazio,
+     * são ignorados.
+     */
+    private void validate(NCLElement element) {
+        if(element.validate())
+            return;
+
+        for(String error : element.getErrors())
+            throw new IllegalArgumentException(error);
+    }
+
+
+    private void indent(int depth) throws IOException {
+        for(int i = 0; i < depth; i++)
+            out.write('\t');
+    }
+
+
+    private String attribute(String name, String value) {
+        if(value == null)
+            return "";
+
+        for(int i = 0; i < value.length(); ){
+            int c = value.codePointAt(i);
+            i += Character.charCount(c);
+
+            boolean control = c < 0x20 && c != '\t' && c != '\n' && c != '\r';
+            if(control || (c >= 0xD800 && c <= 0xDFFF) || c == 0xFFFE || c == 0xFFFF)
+                throw new IllegalArgumentException("Invalid XML character 0x" + Integer.toHexString(c) + " in attribute " + name);
+        }
+
+        return " " + name + "='" + NCLElement.escape(value) + "'";
+    }
+
+
+    /*
+     * Composição aberta: o documento, o corpo ou um contexto.
+     */
+    private static class Composition {
+
+        private String tag;
+        private int depth;
+        private boolean pending;
+        private Set<String> ids = new HashSet<String>();
+        private List<String> components = new ArrayList<String>();
+
+
+        Composition(String tag, int depth) {
+            this.tag = tag;
+            this.depth = depth;
+        }
+
+
+        void add(String id) {
+            ids.add(id);
+        }
+    }
+
+
+    /**
+     * Esta classe define um bind de um elo escrito pelo gerador.
+     */
+    public static class Bind {
+
+        private String role;
+        private String component;
+        private String interfac;
+        private String descriptor;
+
+
+        /**
+         * Construtor do bind.
+         *
+         * @param role
+         *          nome do papel do conector.
+         * @param component
+         *          identificador do nó.
+         */
+        public Bind(String role, String component) {
+            this(role, component, null, null);
+        }
+
+
+        /**
+         * Construtor do bind.
+         *
+         * @param role
+         *          nome do papel do conector.
+         * @param component
+         *          identificador do nó.
+         * @param interfac
+         *          identificador da interface do nó ou nulo.
+         * @param descriptor
+         *          identificador do descritor ou nulo.
+         */
+        public Bind(String role, String component, String interfac, String descriptor) {
+            this.role = role;
+            this.component = component;
+            this.interfac = interfac;
+            this.descriptor = descriptor;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+
+/**
+ * Esta classe define um repositório de Strings usado durante a leitura de
+ * documentos da <i>Nested Context Language</i> (NCL).<br/>
+ *
+ * Os valores dos atributos lidos pelo parser SAX são substituídos por uma única
+ * instância de cada String. Assim, identificadores e valores repetidos no
+ * documento, como os identificadores dos descritores das mídias, dos conectores
+ * dos elos e dos papéis dos binds, passam a ocupar memória apenas uma vez. As
+ * referências ainda não resolvidas, criadas com o identificador lido, usam a
+ * mesma instância.
+ *
+ * Um repositório criado pelo construtor é normalmente usado na leitura de um
+ * único documento e descartado em seguida. O repositório compartilhado é usado
+ * por todos os documentos do processo e guarda as Strings por referências
+ * fracas, de forma que elas são descartadas quando nenhum documento as usa.
+ *
+ * @see NCLDoc#setStringPool
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLStringPool {
+
+    private static final NCLStringPool shared = new NCLStringPool(true);
+
+    private Map<String, Object> strings;
+    private boolean weak;
+    private long hits;
+    private long misses;
+
+
+    /**
+     * Construtor de um repositório vazio.
+     */
+    public NCLStringPool() {
+        this(false);
+    }
+
+
+    private NCLStringPool(boolean weak) {
+        this.weak = weak;
+        if(weak)
+            strings = new WeakHashMap<String, Object>();
+        else
+            strings = new HashMap<String, Object>();
+    }
+
+
+    /**
+     * Retorna o repositório compartilhado por todo o processo.
+     *
+     * @return
+     *          repositório compartilhado.
+     */
+    public static NCLStringPool shared() {
+        return shared;
+    }
+
+
+    /**
+     * Retorna a instância do repositório igual à String informada. Caso o
+     * repositório ainda não possua uma String igual, a String informada é
+     * guardada e retornada.
+     *
+     * @param value
+     *          String a ser procurada.
+     * @return
+     *          instância única da String ou nulo se a String for nula.
+     */
+    public synchronized String intern(String value) {
+        if(value == null)
+            return null;
+
+        Object entry = strings.get(value);
+        String result = null;
+        if(entry != null)
+            result = weak ? ((WeakReference<String>) entry).get() : (String) entry;
+
+        if(result != null){
+            hits++;
+            return result;
+        }
+
+        misses++;
+        strings.put(value, weak ? new WeakReference<String>(value) : value);
+        return value;
+    }
+
+
+    /**
+     * Retorna o número de Strings guardadas no repositório.
+     *
+     * @return
+     *          inteiro representando o número de Strings.
+     */
+    public synchronized int size() {
+        return strings.size();
+    }
+
+
+    /**
+     * Retorna o número de Strings substituídas por uma instância já guardada.
+     *
+     * @return
+     *          número de Strings repetidas.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+
+    /**
+     * Retorna o número de Strings guardadas pela primeira vez.
+     *
+     * @return
+     *          número de Strings novas.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+
+    /**
+     * Cria um filtro que substitui os valores dos atributos lidos por um parser
+     * SAX pelas instâncias deste repositório. O filtro deve ser usado no lugar do
+     * parser na leitura do documento.
+     *
+     * @param parent
+     *          parser SAX.
+     * @return
+     *          filtro sobre o parser.
+     */
+    public XMLReader filter(XMLReader parent) {
+        return new Filter(parent);
+    }
+
+
+    private class Filter extends XMLFilterImpl {
+
+        Filter(XMLReader parent) {
+            super(parent);
+        }
+
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            AttributesImpl interned = new AttributesImpl();
+            for(int i = 0; i < atts.getLength(); i++){
+                interned.addAttribute(atts.getURI(i), atts.getLocalName(i), atts.getQName(i), atts.getType(i),
+                        intern(atts.getValue(i)));
+            }
+
+            super.startElement(uri, localName, qName, interned);
+        }
+    }
+}
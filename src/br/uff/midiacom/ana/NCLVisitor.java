@@ -0,0 +1,92 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import java.util.List;
+
+
+/**
+ * Esta interface define um visitante dos elementos de um documento da
+ * <i>Nested Context Language</i> (NCL), usado pela classe <i>NCLWalker</i>.<br/>
+ *
+ * Cada elemento é visitado ao ser alcançado, antes de seus filhos, e deixado
+ * depois que todos os filhos foram visitados. Ao deixar um elemento, o visitante
+ * recebe os resultados calculados para os filhos, na ordem do documento, e
+ * retorna o resultado do próprio elemento.
+ *
+ * No percurso paralelo, elementos diferentes podem ser visitados ao mesmo tempo
+ * por threads diferentes. Nesse caso o visitante não deve alterar estado
+ * compartilhado sem sincronização.
+ *
+ * @param <R>
+ *          tipo do resultado calculado para cada elemento.
+ *
+ * @see NCLWalker
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public interface NCLVisitor<R> {
+
+    /**
+     * Visita um elemento antes de seus filhos.
+     *
+     * @param element
+     *          elemento visitado.
+     * @param depth
+     *          profundidade do elemento em relação à raiz do percurso.
+     * @return
+     *          verdadeiro se os filhos do elemento devem ser visitados.
+     */
+    public boolean visit(Object element, int depth);
+
+
+    /**
+     * Deixa um elemento depois que seus filhos foram visitados.
+     *
+     * @param element
+     *          elemento visitado.
+     * @param depth
+     *          profundidade do elemento em relação à raiz do percurso.
+     * @param results
+     *          resultados calculados para os filhos, na ordem do documento.
+     *          A lista é vazia se os filhos não foram visitados.
+     * @return
+     *          resultado calculado para o elemento.
+     */
+    public R leave(Object element, int depth, List<R> results);
+}
@@ -0,0 +1,469 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.connector.NCLAssessmentStatement;
+import br.uff.midiacom.ana.connector.NCLAttributeAssessment;
+import br.uff.midiacom.ana.connector.NCLCausalConnector;
+import br.uff.midiacom.ana.connector.NCLCompoundAction;
+import br.uff.midiacom.ana.connector.NCLCompoundCondition;
+import br.uff.midiacom.ana.connector.NCLCompoundStatement;
+import br.uff.midiacom.ana.connector.NCLConnectorBase;
+import br.uff.midiacom.ana.connector.NCLSimpleAction;
+import br.uff.midiacom.ana.connector.NCLSimpleCondition;
+import br.uff.midiacom.ana.descriptor.NCLDescriptor;
+import br.uff.midiacom.ana.descriptor.NCLDescriptorBase;
+import br.uff.midiacom.ana.descriptor.NCLDescriptorSwitch;
+import br.uff.midiacom.ana.interfaces.NCLSwitchPort;
+import br.uff.midiacom.ana.link.NCLBind;
+import br.uff.midiacom.ana.link.NCLLink;
+import br.uff.midiacom.ana.node.NCLContext;
+import br.uff.midiacom.ana.node.NCLMedia;
+import br.uff.midiacom.ana.node.NCLNode;
+import br.uff.midiacom.ana.node.NCLSwitch;
+import br.uff.midiacom.ana.region.NCLRegion;
+import br.uff.midiacom.ana.region.NCLRegionBase;
+import br.uff.midiacom.ana.reuse.NCLImportedDocumentBase;
+import br.uff.midiacom.ana.rule.NCLCompositeRule;
+import br.uff.midiacom.ana.rule.NCLRuleBase;
+import br.uff.midiacom.ana.transition.NCLTransitionBase;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+
+/**
+ * Esta classe define o percurso genérico da árvore de um documento da
+ * <i>Nested Context Language</i> (NCL).<br/>
+ *
+ * O percurso sequencial usa uma pilha explícita, de forma que documentos com
+ * aninhamento profundo não esgotam a pilha de chamadas. O percurso paralelo
+ * divide o trabalho em tarefas de um <i>ForkJoinPool</i> nos limites de
+ * contextos, switches e bases, quando a subárvore do elemento possui pelo menos
+ * o número de elementos indicado como limiar. Subárvores menores são percorridas
+ * sequencialmente dentro de uma única tarefa, assim como as subárvores abaixo de
+ * um número máximo de divisões aninhadas, para que o aninhamento das tarefas
+ * também não esgote a pilha.
+ *
+ * Os filhos de cada elemento são visitados na ordem em que aparecem no código
+ * gerado pelo método <i>parse</i>. Os papéis dos conectores também são visitados,
+ * como filhos das condições, ações e avaliações que os definem.
+ *
+ * @see NCLVisitor
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLWalker {
+
+    /**
+     * Limiar padrão, em número de elementos, para a divisão do percurso paralelo.
+     */
+    public static final int DEFAULT_THRESHOLD = 512;
+
+    private static final int MAX_SPLIT_DEPTH = 64;
+
+
+    private NCLWalker() {}
+
+
+    /**
+     * Percorre sequencialmente a árvore a partir de um elemento.
+     *
+     * @param root
+     *          elemento raiz do percurso.
+     * @param visitor
+     *          visitante dos elementos.
+     * @return
+     *          resultado calculado pelo visitante para a raiz.
+     */
+    public static <R> R walk(Object root, NCLVisitor<R> visitor) {
+        return walk(root, 0, visitor);
+    }
+
+
+    /**
+     * Percorre a árvore a partir de um elemento, dividindo o trabalho entre as
+     * threads de um <i>ForkJoinPool</i>.
+     *
+     * @param root
+     *          elemento raiz do percurso.
+     * @param visitor
+     *          visitante dos elementos. Deve poder ser usado por várias threads.
+     * @param pool
+     *          pool onde as tarefas são executadas.
+     * @param threshold
+     *          número mínimo de elementos de uma subárvore para que ela seja
+     *          dividida em tarefas.
+     * @return
+     *          resultado calculado pelo visitante para a raiz.
+     */
+    public static <R> R walk(Object root, NCLVisitor<R> visitor, ForkJoinPool pool, int threshold) {
+        if(pool == null)
+            throw new NullPointerException("Null pool");
+        if(threshold < 1)
+            throw new IllegalArgumentException("Invalid threshold");
+
+        return pool.invoke(new WalkTask<R>(root, 0, 0, visitor, threshold));
+    }
+
+
+    /**
+     * Coleta um elemento e todos os elementos contidos nele, em pré-ordem.
+     *
+     * @param root
+     *          elemento raiz.
+     * @param result
+     *          lista onde os elementos são adicionados.
+     */
+    public static void collect(Object root, List<Object> result) {
+        List<Object> stack = new ArrayList<Object>();
+        stack.add(root);
+
+        while(!stack.isEmpty()){
+            Object e = stack.remove(stack.size() - 1);
+            if(e == null)
+                continue;
+
+            result.add(e);
+
+            List<Object> children = children(e);
+            for(int i = children.size() - 1; i >= 0; i--)
+                stack.add(children.get(i));
+        }
+    }
+
+
+    /**
+     * Retorna os nós de um conjunto e os nós contidos, direta ou indiretamente,
+     * nos contextos e switches desse conjunto, em pré-ordem.
+     *
+     * @param nodes
+     *          conjunto de nós.
+     * @return
+     *          lista com os nós encontrados.
+     */
+    public static List<NCLNode> nodes(Iterable nodes) {
+        List<NCLNode> result = new ArrayList<NCLNode>();
+        List<Iterator> stack = new ArrayList<Iterator>();
+        stack.add(nodes.iterator());
+
+        while(!stack.isEmpty()){
+            Iterator it = stack.get(stack.size() - 1);
+            if(!it.hasNext()){
+                stack.remove(stack.size() - 1);
+                continue;
+            }
+
+            NCLNode n = (NCLNode) it.next();
+            result.add(n);
+
+            if(n instanceof NCLContext)
+                stack.add(((NCLContext) n).getNodes().iterator());
+            else if(n instanceof NCLSwitch)
+                stack.add(((NCLSwitch) n).getNodes().iterator());
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Verifica se um elemento é um ponto de divisão do percurso paralelo.
+     *
+     * @param element
+     *          elemento a ser verificado.
+     * @return
+     *          verdadeiro se o elemento for o documento, o cabeçalho, o corpo, um
+     *          contexto, um switch ou uma base.
+     */
+    public static boolean isBoundary(Object element) {
+        return element instanceof NCLDoc || element instanceof NCLHead || element instanceof NCLBody
+                || element instanceof NCLContext || element instanceof NCLSwitch
+                || element instanceof NCLImportedDocumentBase || element instanceof NCLRuleBase
+                || element instanceof NCLTransitionBase || element instanceof NCLRegionBase
+                || element instanceof NCLDescriptorBase || element instanceof NCLConnectorBase;
+    }
+
+
+    /**
+     * Retorna os filhos de um elemento, na ordem do documento.
+     *
+     * @param e
+     *          elemento.
+     * @return
+     *          lista com os filhos do elemento.
+     */
+    public static List<Object> children(Object e) {
+        List<Object> result = new ArrayList<Object>();
+
+        if(e instanceof NCLDoc){
+            add(result, ((NCLDoc) e).getHead());
+            add(result, ((NCLDoc) e).getBody());
+        }
+        else if(e instanceof NCLHead){
+            NCLHead head = (NCLHead) e;
+            add(result, head.getImportedDocumentBase());
+            add(result, head.getRuleBase());
+            add(result, head.getTransitionBase());
+            add(result, head.getRegionBase());
+            add(result, head.getDescriptorBase());
+            add(result, head.getConnectorBase());
+            add(result, head.getMetas());
+            add(result, head.getMetadatas());
+        }
+        else if(e instanceof NCLBody){
+            NCLBody body = (NCLBody) e;
+            add(result, body.getMetas());
+            add(result, body.getMetadatas());
+            add(result, body.getPorts());
+            add(result, body.getProperties());
+            add(result, body.getNodes());
+            add(result, body.getLinks());
+        }
+        else if(e instanceof NCLContext){
+            NCLContext context = (NCLContext) e;
+            add(result, context.getMetas());
+            add(result, context.getMetadatas());
+            add(result, context.getPorts());
+            add(result, context.getProperties());
+            add(result, context.getNodes());
+            add(result, context.getLinks());
+        }
+        else if(e instanceof NCLSwitch){
+            NCLSwitch swt = (NCLSwitch) e;
+            add(result, swt.getPorts());
+            add(result, swt.getBinds());
+            add(result, swt.getNodes());
+        }
+        else if(e instanceof NCLMedia){
+            add(result, ((NCLMedia) e).getAreas());
+            add(result, ((NCLMedia) e).getProperties());
+        }
+        else if(e instanceof NCLSwitchPort)
+            add(result, ((NCLSwitchPort) e).getMappings());
+        else if(e instanceof NCLLink){
+            add(result, ((NCLLink) e).getLinkParams());
+            add(result, ((NCLLink) e).getBinds());
+        }
+        else if(e instanceof NCLBind)
+            add(result, ((NCLBind) e).getBindParams());
+        else if(e instanceof NCLImportedDocumentBase)
+            add(result, ((NCLImportedDocumentBase) e).getImportNCLs());
+        else if(e instanceof NCLRuleBase){
+            add(result, ((NCLRuleBase) e).getImportBases());
+            add(result, ((NCLRuleBase) e).getRules());
+        }
+        else if(e instanceof NCLCompositeRule)
+            add(result, ((NCLCompositeRule) e).getRules());
+        else if(e instanceof NCLTransitionBase){
+            add(result, ((NCLTransitionBase) e).getImportBases());
+            add(result, ((NCLTransitionBase) e).getTransitions());
+        }
+        else if(e instanceof NCLRegionBase){
+            add(result, ((NCLRegionBase) e).getImportBases());
+            add(result, ((NCLRegionBase) e).getRegions());
+        }
+        else if(e instanceof NCLRegion)
+            add(result, ((NCLRegion) e).getRegions());
+        else if(e instanceof NCLDescriptorBase){
+            add(result, ((NCLDescriptorBase) e).getImportBases());
+            add(result, ((NCLDescriptorBase) e).getDescriptors());
+        }
+        else if(e instanceof NCLDescriptorSwitch){
+            add(result, ((NCLDescriptorSwitch) e).getBinds());
+            add(result, ((NCLDescriptorSwitch) e).getDescriptors());
+        }
+        else if(e instanceof NCLDescriptor)
+            add(result, ((NCLDescriptor) e).getDescriptorParams());
+        else if(e instanceof NCLConnectorBase){
+            add(result, ((NCLConnectorBase) e).getImportBases());
+            add(result, ((NCLConnectorBase) e).getCausalConnectors());
+        }
+        else if(e instanceof NCLCausalConnector){
+            add(result, ((NCLCausalConnector) e).getConnectorParams());
+            add(result, ((NCLCausalConnector) e).getCondition());
+            add(result, ((NCLCausalConnector) e).getAction());
+        }
+        else if(e instanceof NCLCompoundCondition){
+            add(result, ((NCLCompoundCondition) e).getConditions());
+            add(result, ((NCLCompoundCondition) e).getStatements());
+        }
+        else if(e instanceof NCLCompoundAction)
+            add(result, ((NCLCompoundAction) e).getActions());
+        else if(e instanceof NCLCompoundStatement)
+            add(result, ((NCLCompoundStatement) e).getStatements());
+        else if(e instanceof NCLAssessmentStatement)
+            add(result, ((NCLAssessmentStatement) e).getAttributeAssessments());
+        else if(e instanceof NCLSimpleCondition)
+            add(result, ((NCLSimpleCondition) e).getRole());
+        else if(e instanceof NCLSimpleAction)
+            add(result, ((NCLSimpleAction) e).getRole());
+        else if(e instanceof NCLAttributeAssessment)
+            add(result, ((NCLAttributeAssessment) e).getRole());
+
+        return result;
+    }
+
+
+    private static void add(List<Object> result, Object child) {
+        if(child == null)
+            return;
+
+        if(child instanceof Iterable){
+            for(Object c : (Iterable) child){
+                if(c != null)
+                    result.add(c);
+            }
+        }
+        else
+            result.add(child);
+    }
+
+
+    private static <R> R walk(Object root, int depth, NCLVisitor<R> visitor) {
+        if(!visitor.visit(root, depth))
+            return visitor.leave(root, depth, Collections.<R>emptyList());
+
+        List<Frame<R>> stack = new ArrayList<Frame<R>>();
+        stack.add(new Frame<R>(root, depth));
+
+        while(true){
+            Frame<R> top = stack.get(stack.size() - 1);
+
+            if(top.next < top.children.size()){
+                Object child = top.children.get(top.next++);
+                if(visitor.visit(child, top.depth + 1))
+                    stack.add(new Frame<R>(child, top.depth + 1));
+                else
+                    top.results.add(visitor.leave(child, top.depth + 1, Collections.<R>emptyList()));
+                continue;
+            }
+
+            stack.remove(stack.size() - 1);
+            R result = visitor.leave(top.element, top.depth, top.results);
+            if(stack.isEmpty())
+                return result;
+
+            stack.get(stack.size() - 1).results.add(result);
+        }
+    }
+
+
+    /*
+     * Verifica se a subárvore do elemento possui pelo menos o número de
+     * elementos do limiar, parando a contagem ao atingi-lo.
+     */
+    private static boolean isLarge(Object root, int threshold) {
+        List<Object> stack = new ArrayList<Object>();
+        stack.add(root);
+        int count = 0;
+
+        while(!stack.isEmpty()){
+            Object e = stack.remove(stack.size() - 1);
+            if(++count >= threshold)
+                return true;
+
+            stack.addAll(children(e));
+        }
+
+        return false;
+    }
+
+
+    private static class Frame<R> {
+
+        private Object element;
+        private int depth;
+        private List<Object> children;
+        private List<R> results = new ArrayList<R>();
+        private int next;
+
+
+        Frame(Object element, int depth) {
+            this.element = element;
+            this.depth = depth;
+            this.children = children(element);
+        }
+    }
+
+
+    private static class WalkTask<R> extends RecursiveTask<R> {
+
+        private static final long serialVersionUID = 1L;
+
+        private Object element;
+        private int depth;
+        private int splits;
+        private NCLVisitor<R> visitor;
+        private int threshold;
+
+
+        WalkTask(Object element, int depth, int splits, NCLVisitor<R> visitor, int threshold) {
+            this.element = element;
+            this.depth = depth;
+            this.splits = splits;
+            this.visitor = visitor;
+            this.threshold = threshold;
+        }
+
+
+        @Override
+        protected R compute() {
+            if(splits >= MAX_SPLIT_DEPTH || !isBoundary(element) || !isLarge(element, threshold))
+                return walk(element, depth, visitor);
+
+            if(!visitor.visit(element, depth))
+                return visitor.leave(element, depth, Collections.<R>emptyList());
+
+            List<WalkTask<R>> tasks = new ArrayList<WalkTask<R>>();
+            for(Object child : children(element))
+                tasks.add(new WalkTask<R>(child, depth + 1, splits + 1, visitor, threshold));
+
+            invokeAll(tasks);
+
+            List<R> results = new ArrayList<R>();
+            for(WalkTask<R> task : tasks)
+                results.add(task.join());
+
+            return visitor.leave(element, depth, results);
+        }
+    }
+}
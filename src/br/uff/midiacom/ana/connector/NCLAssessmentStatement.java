@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.connector;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLValues.NCLComparator;
 import java.util.ArrayList;
@@ -100,7 +101,10 @@ public class NCLAssessmentStatement<S extends NCLStatement, A extends NCLAttribu
      *          parametro do tipo <i>NCLComparator</i> utilizado pela assertiva.
      */
     public void setComparator(NCLComparator comparator) {
+        modified();
+        Object old = this.comparator;
         this.comparator = comparator;
+        changed("comparator", old, this.comparator);
     }
     
     
@@ -131,6 +135,8 @@ public class NCLAssessmentStatement<S extends NCLStatement, A extends NCLAttribu
      * @see NCLValueAssessment
      */
     public void setValueAssessment(V value) {
+        modified();
+        Object old = this.valueAssessment;
         //Retira o parentesco do valueAssessment atual
         if(this.valueAssessment != null)
             this.valueAssessment.setParent(null);
@@ -139,6 +145,7 @@ public class NCLAssessmentStatement<S extends NCLStatement, A extends NCLAttribu
         //Set valueAssessment existe, atribui este como seu parente
         if(this.valueAssessment != null)
             this.valueAssessment.setParent(this);
+        changed("valueAssessment", old, this.valueAssessment);
     }
     
     
@@ -168,12 +175,14 @@ public class NCLAssessmentStatement<S extends NCLStatement, A extends NCLAttribu
      * @see ArrayList#add
      */
     public boolean addAttributeAssessment(A attribute) throws Exception {
+        modified();
         if(attributeAssessments.size() == 2)
             throw new Exception("can't have more than two attributes");
         
         if(attribute != null && attributeAssessments.add(attribute)){
             //atribui este como parente do atributo
             attribute.setParent(this);
+            added("attributeAssessment", attribute);
 
             return true;
         }
@@ -193,10 +202,12 @@ public class NCLAssessmentStatement<S extends NCLStatement, A extends NCLAttribu
      * @see ArrayList#remove
      */
     public boolean removeAttributeAssessment(A attribute) {
+        modified();
         if(attributeAssessments.remove(attribute)){
             //Se attribute existe, retira o seu parentesco
             if(attribute != null)
                 attribute.setParent(null);
+            removed("attributeAssessment", attribute);
 
             return true;
         }
@@ -240,7 +251,12 @@ public class NCLAssessmentStatement<S extends NCLStatement, A extends NCLAttribu
     
     
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -250,22 +266,22 @@ public class NCLAssessmentStatement<S extends NCLStatement, A extends NCLAttribu
         for(int i = 0; i < ident; i++)
             space += "\t";
 
-        content = space + "<assessmentStatement";
+        content.append(space + "<assessmentStatement");
         if(getComparator() != null)
-            content += " comparator='" + getComparator().toString() + "'";
-        content += ">\n";
+            content.append(" comparator='" + escape(getComparator().toString()) + "'");
+        content.append(">\n");
 
         if(hasAttributeAssessment()){
             for(A attribute : attributeAssessments)
-                content += attribute.parse(ident + 1);
+                content.append(attribute.parse(ident + 1));
         }
 
         if(getValueAssessment() != null)
-            content += getValueAssessment().parse(ident + 1);
+            content.append(getValueAssessment().parse(ident + 1));
         
-        content += space + "</assessmentStatement>\n";
+        content.append(space + "</assessmentStatement>\n");
 
-        return content;
+        return content.toString();
     }
     
     
@@ -321,6 +337,27 @@ public class NCLAssessmentStatement<S extends NCLStatement, A extends NCLAttribu
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("comparator"))
+                setComparator((NCLComparator) value);
+            else if(property.equals("valueAssessment"))
+                setValueAssessment((V) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else if(property.equals("attributeAssessment")){
+            if(operation == Operation.ADD)
+                addAttributeAssessment((A) value);
+            else
+                removeAttributeAssessment((A) value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
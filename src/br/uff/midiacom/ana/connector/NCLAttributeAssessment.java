@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.connector;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
 import br.uff.midiacom.ana.NCLValues.NCLAttributeType;
@@ -101,6 +102,8 @@ public class NCLAttributeAssessment<A extends NCLAttributeAssessment, R extends
      *          Se o parâmetro não for do tipo requerido
      */
     public void setRole(R role) {
+        modified();
+        Object old = this.role;
         //Retira o parentesco do role atual
         if(this.role != null)
             this.role.setParent(null);
@@ -109,6 +112,7 @@ public class NCLAttributeAssessment<A extends NCLAttributeAssessment, R extends
         //Se role existe, atribui este como seu parente
         if(this.role != null)
             this.role.setParent(this);
+        changed("role", old, this.role);
     }
     
     
@@ -131,7 +135,10 @@ public class NCLAttributeAssessment<A extends NCLAttributeAssessment, R extends
      *          objeto do tipo <i>eventType</i> representando o tipo do evento.
      */
     public void setEventType(NCLEventType eventType) {
+        modified();
+        Object old = this.eventType;
         this.eventType = eventType;
+        changed("eventType", old, this.eventType);
     }
     
     
@@ -155,8 +162,11 @@ public class NCLAttributeAssessment<A extends NCLAttributeAssessment, R extends
      *          objeto representando uma tecla.
      */
     public void setKey(NCLKey key) {
+        modified();
+        Object old = either(this.parKey, this.key);
         this.key = key;
         this.parKey = null;
+        changed("key", old, either(this.parKey, this.key));
     }
 
 
@@ -169,8 +179,11 @@ public class NCLAttributeAssessment<A extends NCLAttributeAssessment, R extends
      *          objeto do tipo connectorParam que representa a tecla.
      */
     public void setKey(P key) {
+        modified();
+        Object old = either(this.parKey, this.key);
         this.parKey = key;
         this.key = null;
+        changed("key", old, either(this.parKey, this.key));
     }
     
     
@@ -203,7 +216,10 @@ public class NCLAttributeAssessment<A extends NCLAttributeAssessment, R extends
      *          Objeto representando o tipo do atributo.
      */
     public void setAttributeType(NCLAttributeType attributeType) {
+        modified();
+        Object old = this.attributeType;
         this.attributeType = attributeType;
+        changed("attributeType", old, this.attributeType);
     }
     
     
@@ -227,11 +243,14 @@ public class NCLAttributeAssessment<A extends NCLAttributeAssessment, R extends
      *          se o offset for inválido.
      */
     public void setOffset(Integer offset) throws IllegalArgumentException {
+        modified();
+        Object old = either(this.parOffset, this.offset);
         if(offset != null && offset < 0)
             throw new IllegalArgumentException("illegal offset");
         
         this.offset = offset;
         this.parOffset = null;
+        changed("offset", old, either(this.parOffset, this.offset));
     }
 
 
@@ -243,8 +262,11 @@ public class NCLAttributeAssessment<A extends NCLAttributeAssessment, R extends
      * ser utilizado no teste.
      */
     public void setOffset(P offset) {
+        modified();
+        Object old = either(this.parOffset, this.offset);
         this.parOffset = offset;
         this.offset = null;
+        changed("offset", old, either(this.parOffset, this.offset));
     }
     
     
@@ -272,6 +294,10 @@ public class NCLAttributeAssessment<A extends NCLAttributeAssessment, R extends
     
     
     public String parse(int ident) {
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
         String space, content;
 
         if(ident< 0)
@@ -284,19 +310,19 @@ public class NCLAttributeAssessment<A extends NCLAttributeAssessment, R extends
 
         content = space + "<attributeAssessment";
         if(getRole() != null)
-            content += " role='" + getRole().getName() + "'";
+            content += " role='" + escape(getRole().getName()) + "'";
         if(getEventType() != null)
-            content += " eventType='" + getEventType().toString() + "'";
+            content += " eventType='" + escape(getEventType().toString()) + "'";
         if(getKey() != null)
-            content += " key='" + getKey().toString() + "'";
+            content += " key='" + escape(getKey().toString()) + "'";
         if(getParamKey() != null)
-            content += " key='$" + getParamKey().getId() + "'";
+            content += " key='$" + escape(getParamKey().getId()) + "'";
         if(getAttributeType() != null)
-            content += " attributeType='" + getAttributeType().toString() + "'";        
+            content += " attributeType='" + escape(getAttributeType().toString()) + "'";        
         if(getOffset() != null)
-            content += " offset='" + getOffset() + "'";
+            content += " offset='" + escape(getOffset()) + "'";
         if(getParamOffset() != null)
-            content += " offset='$" + getParamOffset().getId() + "'";
+            content += " offset='$" + escape(getParamOffset().getId()) + "'";
         content += "/>\n";
 
         return content;
@@ -373,6 +399,35 @@ public class NCLAttributeAssessment<A extends NCLAttributeAssessment, R extends
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("role"))
+                setRole((R) value);
+            else if(property.equals("eventType"))
+                setEventType((NCLEventType) value);
+            else if(property.equals("key")){
+                if(value == null || value instanceof NCLKey)
+                    setKey((NCLKey) value);
+                else
+                    setKey((P) value);
+            }
+            else if(property.equals("attributeType"))
+                setAttributeType((NCLAttributeType) value);
+            else if(property.equals("offset")){
+                if(value == null || value instanceof Integer)
+                    setOffset((Integer) value);
+                else
+                    setOffset((P) value);
+            }
+            else
+                super.applyChange(operation, property, value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
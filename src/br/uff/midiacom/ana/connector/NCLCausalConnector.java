@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.connector;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
@@ -109,6 +110,8 @@ public class NCLCausalConnector<C extends NCLCausalConnector, Co extends NCLCond
      *          Objeto representando uma condição do conector.
      */
     public void setCondition(Co condition) {
+        modified();
+        Object old = this.condition;
         //Retira o parentesco do condition atual
         if(this.condition != null)
             this.condition.setParent(null);
@@ -117,6 +120,7 @@ public class NCLCausalConnector<C extends NCLCausalConnector, Co extends NCLCond
         //Se condition existe, atribui este como seu parente
         if(this.condition != null)
             this.condition.setParent(this);
+        changed("condition", old, this.condition);
     }
     
     
@@ -138,6 +142,8 @@ public class NCLCausalConnector<C extends NCLCausalConnector, Co extends NCLCond
      *          elemento representando uma ação do conector.
      */
     public void setAction(Ac action) {
+        modified();
+        Object old = this.action;
         //Retira o parentesco do action atual
         if(this.action != null)
             this.action.setParent(null);
@@ -146,6 +152,7 @@ public class NCLCausalConnector<C extends NCLCausalConnector, Co extends NCLCond
         //Se action existe, atribui este como seu parente
         if(this.action != null)
             this.action.setParent(this);
+        changed("action", old, this.action);
     }
     
     
@@ -171,10 +178,12 @@ public class NCLCausalConnector<C extends NCLCausalConnector, Co extends NCLCond
      * @see TreeSet#add
      */
     public boolean addConnectorParam(P param) throws NCLInvalidIdentifierException {
+        modified();
         if(conn_params.add(param)){
             //Se param existe, atribui este como seu parente
             if(param != null)
                 param.setParent(this);
+            added("connectorParam", param);
 
             return true;
         }
@@ -191,6 +200,7 @@ public class NCLCausalConnector<C extends NCLCausalConnector, Co extends NCLCond
      *          verdadeiro se o parâmetro for removido.
      */
     public boolean removeConnectorParam(String name) {
+        modified();
         for(P connp : conn_params){
             if(connp.getName().equals(name))
                 return removeConnectorParam(connp);
@@ -209,10 +219,12 @@ public class NCLCausalConnector<C extends NCLCausalConnector, Co extends NCLCond
      *          verdadeiro se o parâmetro for removido.
      */
     public boolean removeConnectorParam(P param) {
+        modified();
         if(conn_params.remove(param)){
             //Se param existe, retira o seu parentesco
             if(param != null)
                 param.setParent(null);
+            removed("connectorParam", param);
 
             return true;
         }
@@ -261,7 +273,12 @@ public class NCLCausalConnector<C extends NCLCausalConnector, Co extends NCLCond
 
     
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -271,23 +288,23 @@ public class NCLCausalConnector<C extends NCLCausalConnector, Co extends NCLCond
         for(int i = 0; i < ident; i++)
             space += "\t";
 
-        content = space + "<causalConnector";
+        content.append(space + "<causalConnector");
         if(getId() != null)
-            content += " id='" + getId() + "'";
-        content += ">\n";
+            content.append(" id='" + escape(getId()) + "'");
+        content.append(">\n");
 
         if(hasConnectorParam()){
             for(P connp : conn_params)
-                content += connp.parse(ident + 1);
+                content.append(connp.parse(ident + 1));
         }
         if(getCondition() != null)
-            content += getCondition().parse(ident + 1);
+            content.append(getCondition().parse(ident + 1));
         if(getAction() != null)
-            content += getAction().parse(ident + 1);
+            content.append(getAction().parse(ident + 1));
 
-        content += space + "</causalConnector>\n";
+        content.append(space + "</causalConnector>\n");
 
-        return content;
+        return content.toString();
     }
 
     
@@ -296,6 +313,27 @@ public class NCLCausalConnector<C extends NCLCausalConnector, Co extends NCLCond
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("condition"))
+                setCondition((Co) value);
+            else if(property.equals("action"))
+                setAction((Ac) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else if(property.equals("connectorParam")){
+            if(operation == Operation.ADD)
+                addConnectorParam((P) value);
+            else
+                removeConnectorParam((P) value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.connector;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
 import br.uff.midiacom.ana.NCLValues.NCLActionOperator;
@@ -98,7 +99,10 @@ public class NCLCompoundAction<A extends NCLAction, P extends NCLConnectorParam>
      *          elemento representando o operador a ser atribuido.
      */
     public void setOperator(NCLActionOperator operator) {
+        modified();
+        Object old = this.operator;
         this.operator = operator;
+        changed("operator", old, this.operator);
     }
     
     
@@ -124,9 +128,11 @@ public class NCLCompoundAction<A extends NCLAction, P extends NCLConnectorParam>
      * @see ArrayList#add(java.lang.Object)
      */
     public boolean addAction(A action) {
+        modified();
         if(action != null && actions.add(action)){
             //atribui este como parente da acao
             action.setParent(this);
+            added("action", action);
 
             return true;
         }
@@ -145,10 +151,12 @@ public class NCLCompoundAction<A extends NCLAction, P extends NCLConnectorParam>
      * @see ArrayList#remove(java.lang.Object)
      */
     public boolean removeAction(A action) {
+        modified();
         if(actions.remove(action)){
             //Se action existe, retira o seu parentesco
             if(action != null)
                 action.setParent(null);
+            removed("action", action);
 
             return true;
         }
@@ -192,17 +200,23 @@ public class NCLCompoundAction<A extends NCLAction, P extends NCLConnectorParam>
 
 
     public void setDelay(Integer delay) throws IllegalArgumentException {
+        modified();
+        Object old = either(this.parDelay, this.delay);
         if(delay != null && delay < 0)
             throw new IllegalArgumentException("Invalid delay");
 
         this.delay = delay;
         this.parDelay = null;
+        changed("delay", old, either(this.parDelay, this.delay));
     }
 
 
     public void setDelay(P delay) {
+        modified();
+        Object old = either(this.parDelay, this.delay);
         this.parDelay = delay;
         this.delay = null;
+        changed("delay", old, either(this.parDelay, this.delay));
     }
 
 
@@ -217,7 +231,12 @@ public class NCLCompoundAction<A extends NCLAction, P extends NCLConnectorParam>
     
     
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -227,23 +246,23 @@ public class NCLCompoundAction<A extends NCLAction, P extends NCLConnectorParam>
         for(int i = 0; i < ident; i++)
             space += "\t";
 
-        content = space + "<compoundAction";
+        content.append(space + "<compoundAction");
         if(getOperator() != null)
-            content += " operator='" + getOperator() + "'";
+            content.append(" operator='" + escape(getOperator()) + "'");
         if(getDelay() != null)
-            content += " delay='" + getDelay() + "s'";
+            content.append(" delay='" + getDelay() + "s'");
         if(getParamDelay() != null)
-            content += " delay='$" + getParamDelay().getId() + "'";
-        content += ">\n";
+            content.append(" delay='$" + escape(getParamDelay().getId()) + "'");
+        content.append(">\n");
 
         if(hasAction()){
             for(A action : actions)
-                content += action.parse(ident + 1);
+                content.append(action.parse(ident + 1));
         }
 
-        content += space + "</compoundAction>\n";
+        content.append(space + "</compoundAction>\n");
 
-        return content;
+        return content.toString();
     }
 
 
@@ -307,6 +326,31 @@ public class NCLCompoundAction<A extends NCLAction, P extends NCLConnectorParam>
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("operator"))
+                setOperator((NCLActionOperator) value);
+            else if(property.equals("delay")){
+                if(value == null || value instanceof Integer)
+                    setDelay((Integer) value);
+                else
+                    setDelay((P) value);
+            }
+            else
+                super.applyChange(operation, property, value);
+        }
+        else if(property.equals("action")){
+            if(operation == Operation.ADD)
+                addAction((A) value);
+            else
+                removeAction((A) value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
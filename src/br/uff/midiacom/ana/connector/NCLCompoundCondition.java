@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.connector;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
 import br.uff.midiacom.ana.NCLValues.NCLConditionOperator;
@@ -108,7 +109,10 @@ public class NCLCompoundCondition<C extends NCLCondition, S extends NCLStatement
      * operador a ser atribuido.
      */
     public void setOperator(NCLConditionOperator operator) {
+        modified();
+        Object old = this.operator;
         this.operator = operator;
+        changed("operator", old, this.operator);
     }
     
     /**
@@ -133,9 +137,11 @@ public class NCLCompoundCondition<C extends NCLCondition, S extends NCLStatement
      * @see ArrayList#add
      */
     public boolean addCondition(C condition) {
+        modified();
         if(condition != null && conditions.add(condition)){
             //atribui este como parente da condicao
             condition.setParent(this);
+            added("condition", condition);
 
             return true;
         }
@@ -154,10 +160,12 @@ public class NCLCompoundCondition<C extends NCLCondition, S extends NCLStatement
      * @see ArrayList#remove
      */
     public boolean removeCondition(C condition) {
+        modified();
         if(conditions.remove(condition)){
             //Se condition existe, retira o seu parentesco
             if(condition != null)
                 condition.setParent(null);
+            removed("condition", condition);
 
             return true;
         }
@@ -211,9 +219,11 @@ public class NCLCompoundCondition<C extends NCLCondition, S extends NCLStatement
      * @see ArrayList#add
      */
     public boolean addStatement(S statement) {
+        modified();
         if(statement != null && statements.add(statement)){
             //atribui este como parente do statement
             statement.setParent(this);
+            added("statement", statement);
 
             return true;
         }
@@ -232,10 +242,12 @@ public class NCLCompoundCondition<C extends NCLCondition, S extends NCLStatement
      * @see ArrayList#remove
      */
     public boolean removeStatement(S statement) {
+        modified();
         if(statements.remove(statement)){
             //Se statement existe, retira o seu parentesco
             if(statement != null)
                 statement.setParent(null);
+            removed("statement", statement);
 
             return true;
         }
@@ -279,17 +291,23 @@ public class NCLCompoundCondition<C extends NCLCondition, S extends NCLStatement
 
 
     public void setDelay(Integer delay) throws IllegalArgumentException {
+        modified();
+        Object old = either(this.parDelay, this.delay);
         if(delay != null && delay < 0)
             throw new IllegalArgumentException("Invalid delay");
 
         this.delay = delay;
         this.parDelay= null;
+        changed("delay", old, either(this.parDelay, this.delay));
     }
 
 
     public void setDelay(P delay) {
+        modified();
+        Object old = either(this.parDelay, this.delay);
         this.parDelay = delay;
         this.delay = null;
+        changed("delay", old, either(this.parDelay, this.delay));
     }
 
 
@@ -304,7 +322,12 @@ public class NCLCompoundCondition<C extends NCLCondition, S extends NCLStatement
 
 
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -314,27 +337,27 @@ public class NCLCompoundCondition<C extends NCLCondition, S extends NCLStatement
         for(int i = 0; i < ident; i++)
             space += "\t";
 
-        content = space + "<compoundCondition";
+        content.append(space + "<compoundCondition");
         if(getOperator() != null)
-            content += " operator='" + getOperator().toString() + "'";
+            content.append(" operator='" + escape(getOperator().toString()) + "'");
         if(getDelay() != null)
-            content += " delay='" + getDelay() + "s'";
+            content.append(" delay='" + getDelay() + "s'");
         if(getParamDelay() != null)
-            content += " delay='$" + getParamDelay().getId() + "'";
-        content += ">\n";
+            content.append(" delay='$" + escape(getParamDelay().getId()) + "'");
+        content.append(">\n");
 
         if(hasCondition()){
             for(C condition : conditions)
-                content += condition.parse(ident + 1);
+                content.append(condition.parse(ident + 1));
         }
         if(hasStatement()){
             for(S statement : statements)
-                content += statement.parse(ident + 1);
+                content.append(statement.parse(ident + 1));
         }
 
-        content += space + "</compoundCondition>\n";
+        content.append(space + "</compoundCondition>\n");
 
-        return content;
+        return content.toString();
     }
     
     
@@ -413,6 +436,37 @@ public class NCLCompoundCondition<C extends NCLCondition, S extends NCLStatement
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("operator"))
+                setOperator((NCLConditionOperator) value);
+            else if(property.equals("delay")){
+                if(value == null || value instanceof Integer)
+                    setDelay((Integer) value);
+                else
+                    setDelay((P) value);
+            }
+            else
+                super.applyChange(operation, property, value);
+        }
+        else if(property.equals("condition")){
+            if(operation == Operation.ADD)
+                addCondition((C) value);
+            else
+                removeCondition((C) value);
+        }
+        else if(property.equals("statement")){
+            if(operation == Operation.ADD)
+                addStatement((S) value);
+            else
+                removeStatement((S) value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.connector;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLValues.NCLOperator;
 import java.util.ArrayList;
@@ -106,7 +107,10 @@ public class NCLCompoundStatement<S extends NCLStatement> extends NCLElement imp
     * atribuido.
     */
     public void setOperator(NCLOperator operator) {
+        modified();
+        Object old = this.operator;
         this.operator = operator;
+        changed("operator", old, this.operator);
     }
     
     
@@ -129,7 +133,10 @@ public class NCLCompoundStatement<S extends NCLStatement> extends NCLElement imp
      *          booleano que define se a assertiva está negada.
      */
     public void setIsNegated(Boolean isNegated) {
+        modified();
+        Object old = this.isNegated;
         this.isNegated = isNegated;
+        changed("isNegated", old, this.isNegated);
     }
     
     
@@ -156,9 +163,11 @@ public class NCLCompoundStatement<S extends NCLStatement> extends NCLElement imp
      * @see ArrayList#add
      */
     public boolean addStatement(S statement) {
+        modified();
         if(statement!= null && statements.add(statement)){
             //atribui este como parente do atributo
             statement.setParent(this);
+            added("statement", statement);
 
             return true;
         }
@@ -178,10 +187,12 @@ public class NCLCompoundStatement<S extends NCLStatement> extends NCLElement imp
      * @see ArrayList#remove
      */
     public boolean removeStatement(S statement) {
+        modified();
         if(statements.remove(statement)){
             //Se statement existe, retira o seu parentesco
             if(statement != null)
                 statement.setParent(null);
+            removed("statement", statement);
 
             return true;
         }
@@ -225,7 +236,12 @@ public class NCLCompoundStatement<S extends NCLStatement> extends NCLElement imp
     
     
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -235,21 +251,21 @@ public class NCLCompoundStatement<S extends NCLStatement> extends NCLElement imp
         for(int i = 0; i < ident; i++)
             space += "\t";
 
-        content = space + "<compoundStatement";
+        content.append(space + "<compoundStatement");
         if(getOperator() != null)
-            content += " operator='" + getOperator().toString() + "'";
+            content.append(" operator='" + escape(getOperator().toString()) + "'");
         if(getIsNegated() != null)
-            content += " isNegated='" + getIsNegated().toString() + "'";
-        content += ">\n";
+            content.append(" isNegated='" + escape(getIsNegated().toString()) + "'");
+        content.append(">\n");
 
         if(hasStatement()){
             for(S statement : statements)
-                content += statement.parse(ident + 1);
+                content.append(statement.parse(ident + 1));
         }
 
-        content += space + "</compoundStatement>\n";
+        content.append(space + "</compoundStatement>\n");
 
-        return content;
+        return content.toString();
     }
     
     
@@ -299,6 +315,27 @@ public class NCLCompoundStatement<S extends NCLStatement> extends NCLElement imp
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("operator"))
+                setOperator((NCLOperator) value);
+            else if(property.equals("isNegated"))
+                setIsNegated((Boolean) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else if(property.equals("statement")){
+            if(operation == Operation.ADD)
+                addStatement((S) value);
+            else
+                removeStatement((S) value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.connector;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
@@ -100,10 +101,12 @@ public class NCLConnectorBase<C extends NCLCausalConnector, I extends NCLImport>
      * @see TreeSet#add(java.lang.Object)
      */
     public boolean addCausalConnector(C connector) {
+        modified();
         if(connectors.add(connector)){
             //Se connector existe, atribui este como seu parente
             if(connector != null)
                 connector.setParent(this);
+            added("causalConnector", connector);
 
             return true;
         }
@@ -122,10 +125,12 @@ public class NCLConnectorBase<C extends NCLCausalConnector, I extends NCLImport>
      * @see TreeSet#remove(java.lang.Object)
      */    
     public boolean removeCausalConnector(C connector) {
+        modified();
         if(connectors.remove(connector)){
             //Se connector existe, retira o seu parentesco
             if(connector != null)
                 connector.setParent(null);
+            removed("causalConnector", connector);
 
             return true;
         }
@@ -177,10 +182,12 @@ public class NCLConnectorBase<C extends NCLCausalConnector, I extends NCLImport>
      * @see TreeSet#add
      */
     public boolean addImportBase(I importBase) {
+        modified();
         if(imports.add(importBase)){
             //Se importBase existe, atribui este como seu parente
             if(importBase != null)
                 importBase.setParent(this);
+            added("importBase", importBase);
 
             return true;
         }
@@ -197,10 +204,12 @@ public class NCLConnectorBase<C extends NCLCausalConnector, I extends NCLImport>
      * @see TreeSet#remove
      */
     public boolean removeImportBase(I importBase) {
+        modified();
         if(imports.remove(importBase)){
             //Se importBase existe, retira o seu parentesco
             if(importBase != null)
                 importBase.setParent(null);
+            removed("importBase", importBase);
 
             return true;
         }
@@ -242,7 +251,12 @@ public class NCLConnectorBase<C extends NCLCausalConnector, I extends NCLImport>
     
     
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -252,33 +266,56 @@ public class NCLConnectorBase<C extends NCLCausalConnector, I extends NCLImport>
         for(int i = 0; i < ident; i++)
             space += "\t";
 
-        content = space + "<connectorBase";
+        content.append(space + "<connectorBase");
         if(getId() != null)
-            content += " id='" + getId() + "'";
+            content.append(" id='" + escape(getId()) + "'");
 
         if(hasImportBase() || hasCausalConnector()){
-            content += ">\n";
+            content.append(">\n");
 
             if(hasImportBase()){
                 for(I imp : imports)
-                    content += imp.parse(ident + 1);
+                    content.append(imp.parse(ident + 1));
             }
 
             if(hasCausalConnector()){
                 for(C connector: connectors)
-                    content += connector.parse(ident + 1);
+                    content.append(connector.parse(ident + 1));
             }
 
-            content += space + "</connectorBase>\n";
+            content.append(space + "</connectorBase>\n");
         }
         else
-            content += "/>\n";
+            content.append("/>\n");
 
-        return content;
+        return content.toString();
+    }
+
+
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(property.equals("causalConnector")){
+            if(operation == Operation.ADD)
+                addCausalConnector((C) value);
+            else
+                removeCausalConnector((C) value);
+        }
+        else if(property.equals("importBase")){
+            if(operation == Operation.ADD)
+                addImportBase((I) value);
+            else
+                removeImportBase((I) value);
+        }
+        else
+            super.applyChange(operation, property, value);
     }
 
 
     public boolean validate() {
+        Boolean validated = getValidation();
+        if(validated != null)
+            return validated;
+
         cleanWarnings();
         cleanErrors();
 
@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.connector;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
@@ -97,6 +98,7 @@ public class NCLConnectorParam<P extends NCLConnectorParam> extends NCLIdentifia
      *          se o nome do parâmetro for inválido.
      */
     public void setName(String name) throws NCLInvalidIdentifierException {
+        modified();
         setId(name);
     }
     
@@ -121,10 +123,13 @@ public class NCLConnectorParam<P extends NCLConnectorParam> extends NCLIdentifia
      *          se a String for vazia.
      */
     public void setType(String type) {
+        modified();
+        Object old = this.type;
         if(type != null && "".equals(type.trim()))
             throw new IllegalArgumentException("Empty type String");
 
         this.type = type;
+        changed("type", old, this.type);
     }
 
 
@@ -140,6 +145,10 @@ public class NCLConnectorParam<P extends NCLConnectorParam> extends NCLIdentifia
     
     
     public String parse(int ident) {
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
         String space, content;
 
         if(ident < 0)
@@ -152,9 +161,9 @@ public class NCLConnectorParam<P extends NCLConnectorParam> extends NCLIdentifia
 
         content = space + "<connectorParam";
         if(getName() != null)
-            content += " name='" + getName() + "'";
+            content += " name='" + escape(getName()) + "'";
         if(getType() != null)
-            content += " type='" + getType() + "'";        
+            content += " type='" + escape(getType()) + "'";        
         content += "/>\n";
 
         return content;
@@ -166,6 +175,19 @@ public class NCLConnectorParam<P extends NCLConnectorParam> extends NCLIdentifia
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("type"))
+                setType((String) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
@@ -37,6 +37,8 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.connector;
 
+import br.uff.midiacom.ana.NCLAttributes;
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
 import br.uff.midiacom.ana.NCLValues.NCLActionOperator;
@@ -59,25 +61,13 @@ import org.xml.sax.XMLReader;
  */
 public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends NCLConnectorParam> extends NCLElement implements NCLAction<A, P> {
 
-    private String value;
-    private Integer min;
-    private Integer max;
-    private NCLActionOperator qualifier;
-    private NCLEventType eventType;
-    private NCLEventAction actionType;
-    private Integer repeat;
-    private Integer repeatDelay;
-    private Integer duration;
-    private Integer by;
-    private R role;
-    private Integer delay;
-
-    private P parValue;
-    private P parRepeat;
-    private P parRepeatDelay;
-    private P parDuration;
-    private P parBy;
-    private P parDelay;
+    private enum Attribute {
+        VALUE, MIN, MAX, QUALIFIER, EVENT_TYPE, ACTION_TYPE, REPEAT, REPEAT_DELAY,
+        DURATION, BY, ROLE, DELAY, PAR_VALUE, PAR_REPEAT, PAR_REPEAT_DELAY, PAR_DURATION,
+        PAR_BY, PAR_DELAY
+    }
+
+    private NCLAttributes<Attribute> attributes = new NCLAttributes<Attribute>();
 
 
     /**
@@ -112,11 +102,14 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          Dispara uma exceção caso o valor a ser atribuído seja uma String vazia.
      */
     public void setValue(String value) {
+        modified();
+        Object old = either(attributes.get(Attribute.PAR_VALUE), attributes.get(Attribute.VALUE));
         if(value != null && "".equals(value.trim()))
             throw new IllegalArgumentException("Empty value String");
 
-        this.value = value;
-        this.parValue = null;
+        attributes.set(Attribute.VALUE, value);
+        attributes.set(Attribute.PAR_VALUE, null);
+        changed("value", old, either(attributes.get(Attribute.PAR_VALUE), attributes.get(Attribute.VALUE)));
     }
 
 
@@ -129,8 +122,11 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      * o valor de atribuição.
      */
     public void setValue(P value) {
-        this.parValue = value;
-        this.value = null;
+        modified();
+        Object old = either(attributes.get(Attribute.PAR_VALUE), attributes.get(Attribute.VALUE));
+        attributes.set(Attribute.PAR_VALUE, value);
+        attributes.set(Attribute.VALUE, null);
+        changed("value", old, either(attributes.get(Attribute.PAR_VALUE), attributes.get(Attribute.VALUE)));
     }
     
         
@@ -142,7 +138,7 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          String representando o valor de atribuição.
      */
     public String getValue() {
-        return value;
+        return attributes.get(Attribute.VALUE);
     }
 
 
@@ -154,7 +150,7 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          Parâmetro representando o valor de atribuição.
      */
     public P getParamValue() {
-        return parValue;
+        return attributes.get(Attribute.PAR_VALUE);
     }
     
     
@@ -166,10 +162,13 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          inteiro positivo representando o número mínimo.
      */
     public void setMin(Integer min) {
+        modified();
+        Object old = attributes.getInteger(Attribute.MIN);
         if(min != null && min < 0)
             throw new IllegalArgumentException("Invalid min");
         
-        this.min = min;
+        attributes.setInteger(Attribute.MIN, min);
+        changed("min", old, attributes.getInteger(Attribute.MIN));
     }
 
     /**
@@ -180,7 +179,7 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      */
     
     public Integer getMin() {
-        return min;
+        return attributes.getInteger(Attribute.MIN);
     }
 
 
@@ -193,10 +192,13 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          caso o número máximo seja a String "umbouded".
      */
     public void setMax(Integer max) {
+        modified();
+        Object old = attributes.getInteger(Attribute.MAX);
         if(max != null && max < 0)
-            this.max = -1;
+            attributes.setInteger(Attribute.MAX, -1);
         else
-            this.max = max;
+            attributes.setInteger(Attribute.MAX, max);
+        changed("max", old, attributes.getInteger(Attribute.MAX));
     }
 
 
@@ -208,7 +210,7 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          caso o número máximo seja a String "umbouded".
      */
     public Integer getMax() {
-        return max;
+        return attributes.getInteger(Attribute.MAX);
     }
 
 
@@ -220,7 +222,10 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          operador que representa como os binds serão disparados.
      */
     public void setQualifier(NCLActionOperator qualifier) {
-        this.qualifier = qualifier;
+        modified();
+        Object old = attributes.get(Attribute.QUALIFIER);
+        attributes.set(Attribute.QUALIFIER, qualifier);
+        changed("qualifier", old, attributes.get(Attribute.QUALIFIER));
     }
 
 
@@ -233,7 +238,7 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          operador que representa como os binds serão disparados.
      */
     public NCLActionOperator getQualifier() {
-        return qualifier;
+        return attributes.get(Attribute.QUALIFIER);
     }
 
 
@@ -244,14 +249,17 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          elemento representando o nome do papel.
      */
     public void setRole(R role) {
+        modified();
+        Object old = attributes.get(Attribute.ROLE);
         //Retira o parentesco do role atual
-        if(this.role != null)
-            this.role.setParent(null);
+        if(getRole() != null)
+            getRole().setParent(null);
 
-        this.role = role;
+        attributes.set(Attribute.ROLE, role);
         //Se role existe, atribui este como seu parente
-        if(this.role != null)
-            this.role.setParent(this);
+        if(getRole() != null)
+            getRole().setParent(this);
+        changed("role", old, attributes.get(Attribute.ROLE));
     }
 
 
@@ -262,7 +270,7 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          elemento representando o papel.
      */
     public R getRole() {
-        return role;
+        return attributes.get(Attribute.ROLE);
     }
 
 
@@ -274,7 +282,10 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          elemento representando o tipo do evento da ação.
      */
     public void setEventType(NCLEventType eventType) {
-        this.eventType = eventType;
+        modified();
+        Object old = attributes.get(Attribute.EVENT_TYPE);
+        attributes.set(Attribute.EVENT_TYPE, eventType);
+        changed("eventType", old, attributes.get(Attribute.EVENT_TYPE));
     }
 
 
@@ -285,7 +296,7 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          elemento representando o tipo do evento da ação.
      */
     public NCLEventType getEventType() {
-        return eventType;
+        return attributes.get(Attribute.EVENT_TYPE);
     }
 
     /**
@@ -295,7 +306,10 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          elemento representando a ação do evento.
      */
     public void setActionType(NCLEventAction actionType) {
-        this.actionType = actionType;
+        modified();
+        Object old = attributes.get(Attribute.ACTION_TYPE);
+        attributes.set(Attribute.ACTION_TYPE, actionType);
+        changed("actionType", old, attributes.get(Attribute.ACTION_TYPE));
     }
 
 
@@ -306,7 +320,7 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          elemento representando o tipo de ação do evento
      */
     public NCLEventAction getActionType() {
-        return actionType;
+        return attributes.get(Attribute.ACTION_TYPE);
     }
 
 
@@ -318,8 +332,11 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          inteiro representando o número de vezes que a ação será realizada.
      */
     public void setRepeat(Integer repeat) {
-        this.repeat = repeat;
-        this.parRepeat = null;
+        modified();
+        Object old = either(attributes.get(Attribute.PAR_REPEAT), attributes.getInteger(Attribute.REPEAT));
+        attributes.setInteger(Attribute.REPEAT, repeat);
+        attributes.set(Attribute.PAR_REPEAT, null);
+        changed("repeat", old, either(attributes.get(Attribute.PAR_REPEAT), attributes.getInteger(Attribute.REPEAT)));
     }
 
 
@@ -331,8 +348,11 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          Parâmetro representando o número de repetições.
      */
     public void setRepeat(P repeat) {
-        this.parRepeat = repeat;
-        this.repeat = null;
+        modified();
+        Object old = either(attributes.get(Attribute.PAR_REPEAT), attributes.getInteger(Attribute.REPEAT));
+        attributes.set(Attribute.PAR_REPEAT, repeat);
+        attributes.setInteger(Attribute.REPEAT, null);
+        changed("repeat", old, either(attributes.get(Attribute.PAR_REPEAT), attributes.getInteger(Attribute.REPEAT)));
     }
 
 
@@ -343,7 +363,7 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          inteiro representando o número de repetições.
      */
     public Integer getRepeat() {
-        return repeat;
+        return attributes.getInteger(Attribute.REPEAT);
     }
 
 
@@ -354,7 +374,7 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          Objeto do tipo conectorParam representando o número de repetições.
      */
     public P getParamRepeat() {
-        return parRepeat;
+        return attributes.get(Attribute.PAR_REPEAT);
     }
 
 
@@ -365,8 +385,11 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          inteiro representando o delay entre repetições.
      */
     public void setRepeatDelay(Integer repeatDelay) {
-        this.repeatDelay = repeatDelay;
-        this.parRepeatDelay = null;
+        modified();
+        Object old = either(attributes.get(Attribute.PAR_REPEAT_DELAY), attributes.getInteger(Attribute.REPEAT_DELAY));
+        attributes.setInteger(Attribute.REPEAT_DELAY, repeatDelay);
+        attributes.set(Attribute.PAR_REPEAT_DELAY, null);
+        changed("repeatDelay", old, either(attributes.get(Attribute.PAR_REPEAT_DELAY), attributes.getInteger(Attribute.REPEAT_DELAY)));
     }
 
 
@@ -377,8 +400,11 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          parâmetro representando o delay entre repetições.
      */
     public void setRepeatDelay(P repeatDelay) {
-        this.parRepeatDelay = repeatDelay;
-        this.repeatDelay = null;
+        modified();
+        Object old = either(attributes.get(Attribute.PAR_REPEAT_DELAY), attributes.getInteger(Attribute.REPEAT_DELAY));
+        attributes.set(Attribute.PAR_REPEAT_DELAY, repeatDelay);
+        attributes.setInteger(Attribute.REPEAT_DELAY, null);
+        changed("repeatDelay", old, either(attributes.get(Attribute.PAR_REPEAT_DELAY), attributes.getInteger(Attribute.REPEAT_DELAY)));
     }
 
 
@@ -389,7 +415,7 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          inteiro representando o delay entre repetições.
      */
     public Integer getRepeatDelay() {
-        return repeatDelay;
+        return attributes.getInteger(Attribute.REPEAT_DELAY);
     }
 
 
@@ -400,7 +426,7 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          Retorna um objeto conectorParam representando o delay entre repetições.
      */
     public P getParamRepeatDelay() {
-        return parRepeatDelay;
+        return attributes.get(Attribute.PAR_REPEAT_DELAY);
     }
 
 
@@ -411,8 +437,11 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          inteiro representando a duração da atribuição.
      */
     public void setDuration(Integer duration) {
-        this.duration = duration;
-        this.parDuration = null;
+        modified();
+        Object old = either(attributes.get(Attribute.PAR_DURATION), attributes.getInteger(Attribute.DURATION));
+        attributes.setInteger(Attribute.DURATION, duration);
+        attributes.set(Attribute.PAR_DURATION, null);
+        changed("duration", old, either(attributes.get(Attribute.PAR_DURATION), attributes.getInteger(Attribute.DURATION)));
     }
 
 
@@ -423,8 +452,11 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          parâmetro representando a duração da atribuição.
      */
     public void setDuration(P duration) {
-        this.parDuration = duration;
-        this.duration = null;
+        modified();
+        Object old = either(attributes.get(Attribute.PAR_DURATION), attributes.getInteger(Attribute.DURATION));
+        attributes.set(Attribute.PAR_DURATION, duration);
+        attributes.setInteger(Attribute.DURATION, null);
+        changed("duration", old, either(attributes.get(Attribute.PAR_DURATION), attributes.getInteger(Attribute.DURATION)));
     }
 
 
@@ -435,7 +467,7 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          inteiro representando a duração da atribuição.
      */
     public Integer getDuration() {
-        return duration;
+        return attributes.getInteger(Attribute.DURATION);
     }
 
 
@@ -446,7 +478,7 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          parâmetro representando a duração da atribuição.
      */
     public P getParamDuration() {
-        return parDuration;
+        return attributes.get(Attribute.PAR_DURATION);
     }
 
 
@@ -461,12 +493,15 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          caso o passo seja definido como a String "indefinite".
      */
     public void setBy(Integer by) {
+        modified();
+        Object old = either(attributes.get(Attribute.PAR_BY), attributes.getInteger(Attribute.BY));
         if(by != null && by < 0)
-            this.by = -1;
+            attributes.setInteger(Attribute.BY, -1);
         else
-            this.by = by;
+            attributes.setInteger(Attribute.BY, by);
         
-        this.parBy = null;
+        attributes.set(Attribute.PAR_BY, null);
+        changed("by", old, either(attributes.get(Attribute.PAR_BY), attributes.getInteger(Attribute.BY)));
     }
 
 
@@ -480,8 +515,11 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *          objeto do tipo conectorParam representando o passo da atribuição.
      */
     public void setBy(P by) {
-        this.parBy = by;
-        this.by = null;
+        modified();
+        Object old = either(attributes.get(Attribute.PAR_BY), attributes.getInteger(Attribute.BY));
+        attributes.set(Attribute.PAR_BY, by);
+        attributes.setInteger(Attribute.BY, null);
+        changed("by", old, either(attributes.get(Attribute.PAR_BY), attributes.getInteger(Attribute.BY)));
     }
 
 
@@ -494,7 +532,7 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *
      */
     public Integer getBy() {
-        return by;
+        return attributes.getInteger(Attribute.BY);
     }
 
 
@@ -505,36 +543,46 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
      *        Objeto do tipo connectorParam representando o passo da atribuição.
      */
     public P getParamBy() {
-        return parBy;
+        return attributes.get(Attribute.PAR_BY);
     }
 
 
     public void setDelay(Integer delay) throws IllegalArgumentException {
+        modified();
+        Object old = either(attributes.get(Attribute.PAR_DELAY), attributes.getInteger(Attribute.DELAY));
         if(delay != null && delay < 0)
             throw new IllegalArgumentException("Invalid delay");
 
-        this.delay = delay;
-        this.parDelay= null;
+        attributes.setInteger(Attribute.DELAY, delay);
+        attributes.set(Attribute.PAR_DELAY, null);
+        changed("delay", old, either(attributes.get(Attribute.PAR_DELAY), attributes.getInteger(Attribute.DELAY)));
     }
 
 
     public void setDelay(P delay) {
-        this.parDelay = delay;
-        this.delay = null;
+        modified();
+        Object old = either(attributes.get(Attribute.PAR_DELAY), attributes.getInteger(Attribute.DELAY));
+        attributes.set(Attribute.PAR_DELAY, delay);
+        attributes.setInteger(Attribute.DELAY, null);
+        changed("delay", old, either(attributes.get(Attribute.PAR_DELAY), attributes.getInteger(Attribute.DELAY)));
     }
 
 
     public Integer getDelay() {
-        return delay;
+        return attributes.getInteger(Attribute.DELAY);
     }
 
 
     public P getParamDelay() {
-        return parDelay;
+        return attributes.get(Attribute.PAR_DELAY);
     }
     
     
     public String parse(int ident) {
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
         String space, content;
 
         if(ident < 0)
@@ -547,49 +595,49 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
 
         content = space + "<simpleAction";
         if(getRole() != null)
-            content += " role='" + getRole().getName() + "'";
+            content += " role='" + escape(getRole().getName()) + "'";
         if(getValue() != null)
-            content += " value='" + getValue() + "'";
+            content += " value='" + escape(getValue()) + "'";
         if(getParamValue() != null)
-            content += " value='$" + getParamValue().getId() + "'";
+            content += " value='$" + escape(getParamValue().getId()) + "'";
         if(getDelay() != null)
             content += " delay='" + getDelay() + "s'";
         if(getParamDelay() != null)
-            content += " delay='$" + getParamDelay().getId() + "'";
+            content += " delay='$" + escape(getParamDelay().getId()) + "'";
         if(getMin() != null)
-            content += " min='" + getMin() + "'";
+            content += " min='" + escape(getMin()) + "'";
         if(getMax() != null){
             if(getMax() < 0)
                 content += " max='unbounded'";
             else
-                content += " max='" + getMax() + "'";
+                content += " max='" + escape(getMax()) + "'";
         }
         if(getQualifier() != null)
-            content += " qualifier='" + getQualifier().toString() + "'";
+            content += " qualifier='" + escape(getQualifier().toString()) + "'";
         if(getEventType() != null)
-            content += " eventType='" + getEventType().toString() + "'";
+            content += " eventType='" + escape(getEventType().toString()) + "'";
         if(getActionType() != null)
-            content += " actionType='" + getActionType().toString() + "'";
+            content += " actionType='" + escape(getActionType().toString()) + "'";
         if(getRepeat() != null)
-            content += " repeat='" + getRepeat() + "'";
+            content += " repeat='" + escape(getRepeat()) + "'";
         if(getParamRepeat() != null)
-            content += " repeat='$" + getParamRepeat().getId() + "'";
+            content += " repeat='$" + escape(getParamRepeat().getId()) + "'";
         if(getRepeatDelay() != null)
             content += " repeatDelay='" + getRepeatDelay() + "s'";
         if(getParamRepeatDelay() != null)
-            content += " repeatDelay='$" + getParamRepeatDelay().getId() + "'";
+            content += " repeatDelay='$" + escape(getParamRepeatDelay().getId()) + "'";
         if(getDuration() != null)
             content += " duration='" + getDuration() + "s'";
         if(getParamDuration() != null)
-            content += " duration='$" + getParamDuration().getId() + "'";
+            content += " duration='$" + escape(getParamDuration().getId()) + "'";
         if(getBy() != null){
             if(getBy() < 0)
                 content += " by='indefinite'";
             else
-                content += " by='" + getBy() + "'";
+                content += " by='" + escape(getBy()) + "'";
         }
         if(getParamBy() != null)
-            content += " by='$" + getParamBy().getId() + "'";
+            content += " by='$" + escape(getParamBy().getId()) + "'";
         content += "/>\n";
 
         return content;
@@ -774,6 +822,65 @@ public class NCLSimpleAction<A extends NCLAction, R extends NCLRole, P extends N
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("value")){
+                if(value == null || value instanceof String)
+                    setValue((String) value);
+                else
+                    setValue((P) value);
+            }
+            else if(property.equals("min"))
+                setMin((Integer) value);
+            else if(property.equals("max"))
+                setMax((Integer) value);
+            else if(property.equals("qualifier"))
+                setQualifier((NCLActionOperator) value);
+            else if(property.equals("role"))
+                setRole((R) value);
+            else if(property.equals("eventType"))
+                setEventType((NCLEventType) value);
+            else if(property.equals("actionType"))
+                setActionType((NCLEventAction) value);
+            else if(property.equals("repeat")){
+                if(value == null || value instanceof Integer)
+                    setRepeat((Integer) value);
+                else
+                    setRepeat((P) value);
+            }
+            else if(property.equals("repeatDelay")){
+                if(value == null || value instanceof Integer)
+                    setRepeatDelay((Integer) value);
+                else
+                    setRepeatDelay((P) value);
+            }
+            else if(property.equals("duration")){
+                if(value == null || value instanceof Integer)
+                    setDuration((Integer) value);
+                else
+                    setDuration((P) value);
+            }
+            else if(property.equals("by")){
+                if(value == null || value instanceof Integer)
+                    setBy((Integer) value);
+                else
+                    setBy((P) value);
+            }
+            else if(property.equals("delay")){
+                if(value == null || value instanceof Integer)
+                    setDelay((Integer) value);
+                else
+                    setDelay((P) value);
+            }
+            else
+                super.applyChange(operation, property, value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
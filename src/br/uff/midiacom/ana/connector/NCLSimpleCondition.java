@@ -37,6 +37,8 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.connector;
 
+import br.uff.midiacom.ana.NCLAttributes;
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
 import br.uff.midiacom.ana.NCLValues.NCLConditionOperator;
@@ -60,17 +62,13 @@ import org.xml.sax.XMLReader;
  */
 public class NCLSimpleCondition<C extends NCLCondition, R extends NCLRole, P extends NCLConnectorParam> extends NCLElement implements NCLCondition<C, P> {
 
-    private NCLKey key;
-    private Integer min;
-    private Integer max;
-    private NCLConditionOperator qualifier;
-    private NCLEventType eventType;
-    private NCLEventTransition transition;
-    private R role;
-    private Integer delay;
-
-    private P parKey;
-    private P parDelay;
+    private enum Attribute {
+        KEY, MIN, MAX, QUALIFIER, EVENT_TYPE, TRANSITION, ROLE, DELAY, PAR_KEY,
+        PAR_DELAY
+    }
+
+    private NCLAttributes<Attribute> attributes = new NCLAttributes<Attribute>();
+
     
 
     /**
@@ -103,10 +101,13 @@ public class NCLSimpleCondition<C extends NCLCondition, R extends NCLRole, P ext
      *          inteiro positivo representando o número mínimo.
      */
     public void setMin(Integer min) {
+        modified();
+        Object old = attributes.getInteger(Attribute.MIN);
         if(min != null && min < 0)
             throw new IllegalArgumentException("Invalid min");
         
-        this.min = min;
+        attributes.setInteger(Attribute.MIN, min);
+        changed("min", old, attributes.getInteger(Attribute.MIN));
     }
 
 
@@ -118,7 +119,7 @@ public class NCLSimpleCondition<C extends NCLCondition, R extends NCLRole, P ext
      *          inteiro positivo representando o número mínimo.
      */
     public Integer getMin() {
-        return min;
+        return attributes.getInteger(Attribute.MIN);
     }
     
 
@@ -130,10 +131,13 @@ public class NCLSimpleCondition<C extends NCLCondition, R extends NCLRole, P ext
      *          caso o número máximo seja a String "umbouded".
      */
     public void setMax(Integer max) {
+        modified();
+        Object old = attributes.getInteger(Attribute.MAX);
         if(max != null && max < 0)
-            this.max = -1;
+            attributes.setInteger(Attribute.MAX, -1);
         
-        this.max = max;
+        attributes.setInteger(Attribute.MAX, max);
+        changed("max", old, attributes.getInteger(Attribute.MAX));
     }
 
 
@@ -145,7 +149,7 @@ public class NCLSimpleCondition<C extends NCLCondition, R extends NCLRole, P ext
      *          caso o número máximo seja a String "umbouded".
      */
     public Integer getMax() {
-        return max;
+        return attributes.getInteger(Attribute.MAX);
     }
 
 
@@ -159,7 +163,10 @@ public class NCLSimpleCondition<C extends NCLCondition, R extends NCLRole, P ext
      *          operador lógico que representa como os binds serão avaliados.
      */
     public void setQualifier(NCLConditionOperator qualifier) {
-        this.qualifier = qualifier;
+        modified();
+        Object old = attributes.get(Attribute.QUALIFIER);
+        attributes.set(Attribute.QUALIFIER, qualifier);
+        changed("qualifier", old, attributes.get(Attribute.QUALIFIER));
     }
 
 
@@ -173,7 +180,7 @@ public class NCLSimpleCondition<C extends NCLCondition, R extends NCLRole, P ext
      *          operador lógico que representa como os binds serão avaliados.
      */
     public NCLConditionOperator getQualifier() {
-        return qualifier;
+        return attributes.get(Attribute.QUALIFIER);
     }
 
 
@@ -185,14 +192,17 @@ public class NCLSimpleCondition<C extends NCLCondition, R extends NCLRole, P ext
      *          elemento representando o nome do papel.
      */
     public void setRole(R role) {
+        modified();
+        Object old = attributes.get(Attribute.ROLE);
         //Retira o parentesco do role atual
-        if(this.role != null)
-            this.role.setParent(null);
+        if(getRole() != null)
+            getRole().setParent(null);
 
-        this.role = role;
+        attributes.set(Attribute.ROLE, role);
         //Se role existe, atribui este como seu parente
-        if(this.role != null)
-            this.role.setParent(this);
+        if(getRole() != null)
+            getRole().setParent(this);
+        changed("role", old, attributes.get(Attribute.ROLE));
     }
 
 
@@ -203,7 +213,7 @@ public class NCLSimpleCondition<C extends NCLCondition, R extends NCLRole, P ext
      *          retorna um objeto do tipo role representando o papel da condição.
      */
     public R getRole() {
-        return role;
+        return attributes.get(Attribute.ROLE);
     }
 
 
@@ -216,8 +226,11 @@ public class NCLSimpleCondition<C extends NCLCondition, R extends NCLRole, P ext
      *         objeto representando a tecla associada a condição.
      */
     public void setKey(NCLKey key) {
-        this.key = key;
-        this.parKey = null;
+        modified();
+        Object old = either(attributes.get(Attribute.PAR_KEY), attributes.get(Attribute.KEY));
+        attributes.set(Attribute.KEY, key);
+        attributes.set(Attribute.PAR_KEY, null);
+        changed("key", old, either(attributes.get(Attribute.PAR_KEY), attributes.get(Attribute.KEY)));
     }
 
     /**
@@ -229,8 +242,11 @@ public class NCLSimpleCondition<C extends NCLCondition, R extends NCLRole, P ext
      *          objeto representando o parâmetro que define  a tecla da condição.
      */
     public void setKey(P key) {
-        this.parKey = key;
-        this.key = null;
+        modified();
+        Object old = either(attributes.get(Attribute.PAR_KEY), attributes.get(Attribute.KEY));
+        attributes.set(Attribute.PAR_KEY, key);
+        attributes.set(Attribute.KEY, null);
+        changed("key", old, either(attributes.get(Attribute.PAR_KEY), attributes.get(Attribute.KEY)));
     }
 
 
@@ -242,7 +258,7 @@ public class NCLSimpleCondition<C extends NCLCondition, R extends NCLRole, P ext
      *          elemento representando a tecla da condição.
      */
     public NCLKey getKey() {
-        return key;
+        return attributes.get(Attribute.KEY);
     }
 
 
@@ -254,7 +270,7 @@ public class NCLSimpleCondition<C extends NCLCondition, R extends NCLRole, P ext
      *         elemento representando o parâmetro que define a tecla da condição.
      */
     public P getParamKey() {
-        return parKey;
+        return attributes.get(Attribute.PAR_KEY);
     }
 
 
@@ -268,7 +284,10 @@ public class NCLSimpleCondition<C extends NCLCondition, R extends NCLRole, P ext
      *          elemento representando o tipo do evento da condição.
      */
     public void setEventType(NCLEventType eventType) {
-        this.eventType = eventType;
+        modified();
+        Object old = attributes.get(Attribute.EVENT_TYPE);
+        attributes.set(Attribute.EVENT_TYPE, eventType);
+        changed("eventType", old, attributes.get(Attribute.EVENT_TYPE));
     }
 
 
@@ -280,7 +299,7 @@ public class NCLSimpleCondition<C extends NCLCondition, R extends NCLRole, P ext
      *          elemento representando o tipo do evento da condição.
      */
     public NCLEventType getEventType() {
-        return eventType;
+        return attributes.get(Attribute.EVENT_TYPE);
     }
 
 
@@ -294,7 +313,10 @@ public class NCLSimpleCondition<C extends NCLCondition, R extends NCLRole, P ext
      *          elemento representando a transição do evento da condição.
      */
     public void setTransition(NCLEventTransition transition) {
-        this.transition = transition;
+        modified();
+        Object old = attributes.get(Attribute.TRANSITION);
+        attributes.set(Attribute.TRANSITION, transition);
+        changed("transition", old, attributes.get(Attribute.TRANSITION));
     }
 
 
@@ -306,36 +328,46 @@ public class NCLSimpleCondition<C extends NCLCondition, R extends NCLRole, P ext
      *          elemento representando a transição do evento da condição.
      */
     public NCLEventTransition getTransition() {
-        return transition;
+        return attributes.get(Attribute.TRANSITION);
     }
 
 
     public void setDelay(Integer delay) throws IllegalArgumentException {
+        modified();
+        Object old = either(attributes.get(Attribute.PAR_DELAY), attributes.getInteger(Attribute.DELAY));
         if(delay != null && delay < 0)
             throw new IllegalArgumentException("Invalid delay");
 
-        this.delay = delay;
-        this.parDelay= null;
+        attributes.setInteger(Attribute.DELAY, delay);
+        attributes.set(Attribute.PAR_DELAY, null);
+        changed("delay", old, either(attributes.get(Attribute.PAR_DELAY), attributes.getInteger(Attribute.DELAY)));
     }
 
 
     public void setDelay(P delay) {
-        this.parDelay = delay;
-        this.delay = null;
+        modified();
+        Object old = either(attributes.get(Attribute.PAR_DELAY), attributes.getInteger(Attribute.DELAY));
+        attributes.set(Attribute.PAR_DELAY, delay);
+        attributes.setInteger(Attribute.DELAY, null);
+        changed("delay", old, either(attributes.get(Attribute.PAR_DELAY), attributes.getInteger(Attribute.DELAY)));
     }
 
 
     public Integer getDelay() {
-        return delay;
+        return attributes.getInteger(Attribute.DELAY);
     }
 
 
     public P getParamDelay() {
-        return parDelay;
+        return attributes.get(Attribute.PAR_DELAY);
     }
 
 
     public String parse(int ident) {
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
         String space, content;
 
         if(ident < 0)
@@ -348,29 +380,29 @@ public class NCLSimpleCondition<C extends NCLCondition, R extends NCLRole, P ext
 
         content = space + "<simpleCondition";
         if(getRole() != null)
-            content += " role='" + getRole().getName() + "'";
+            content += " role='" + escape(getRole().getName()) + "'";
         if(getKey() != null)
-            content += " key='" + getKey().toString() + "'";
+            content += " key='" + escape(getKey().toString()) + "'";
         if(getParamKey() != null)
-            content += " key='$" + getParamKey().getId() + "'";
+            content += " key='$" + escape(getParamKey().getId()) + "'";
         if(getDelay() != null)
             content += " delay='" + getDelay() + "s'";
         if(getParamDelay() != null)
-            content += " delay='$" + getParamDelay().getId() + "'";
+            content += " delay='$" + escape(getParamDelay().getId()) + "'";
         if(getMin() != null)
-            content += " min='" + getMin() + "'";        
+            content += " min='" + escape(getMin()) + "'";        
         if(getMax() != null){
             if(getMax() < 0)
                 content += " max='unbounded'";
             else
-                content += " max='" + getMax() + "'";
+                content += " max='" + escape(getMax()) + "'";
         }
         if(getQualifier() != null)
-            content += " qualifier='" + getQualifier().toString() + "'";
+            content += " qualifier='" + escape(getQualifier().toString()) + "'";
         if(getEventType() != null)
-            content += " eventType='" + getEventType().toString() + "'";
+            content += " eventType='" + escape(getEventType().toString()) + "'";
         if(getTransition() != null)
-            content += " transition='" + getTransition().toString() + "'";
+            content += " transition='" + escape(getTransition().toString()) + "'";
         content += "/>\n";
 
         return content;
@@ -477,6 +509,41 @@ public class NCLSimpleCondition<C extends NCLCondition, R extends NCLRole, P ext
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("min"))
+                setMin((Integer) value);
+            else if(property.equals("max"))
+                setMax((Integer) value);
+            else if(property.equals("qualifier"))
+                setQualifier((NCLConditionOperator) value);
+            else if(property.equals("role"))
+                setRole((R) value);
+            else if(property.equals("key")){
+                if(value == null || value instanceof NCLKey)
+                    setKey((NCLKey) value);
+                else
+                    setKey((P) value);
+            }
+            else if(property.equals("eventType"))
+                setEventType((NCLEventType) value);
+            else if(property.equals("transition"))
+                setTransition((NCLEventTransition) value);
+            else if(property.equals("delay")){
+                if(value == null || value instanceof Integer)
+                    setDelay((Integer) value);
+                else
+                    setDelay((P) value);
+            }
+            else
+                super.applyChange(operation, property, value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.connector;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
 import br.uff.midiacom.ana.NCLValues.NCLDefaultValueAssessment;
@@ -106,6 +107,8 @@ public class NCLValueAssessment<V extends NCLValueAssessment, P extends NCLConne
      *          Se o valor a ser atribuído for uma String vazia.
      */
     public void setValue(String value) throws IllegalArgumentException {
+        modified();
+        Object old = either(this.parValue, either(this.defValue, this.value));
         if(value != null && "".equals(value.trim()))
             throw new IllegalArgumentException("Empty value String");
 
@@ -121,6 +124,7 @@ public class NCLValueAssessment<V extends NCLValueAssessment, P extends NCLConne
         this.value = value;
         this.defValue = null;
         this.parValue = null;
+        changed("value", old, either(this.parValue, either(this.defValue, this.value)));
     }
 
 
@@ -133,9 +137,12 @@ public class NCLValueAssessment<V extends NCLValueAssessment, P extends NCLConne
      *          Objeto do tipo <i>connectorParam</i> contendo o valor da assertiva.
      */
     public void setValue(P value) {
+        modified();
+        Object old = either(this.parValue, either(this.defValue, this.value));
         this.parValue = value;
         this.value = null;
         this.defValue = null;
+        changed("value", old, either(this.parValue, either(this.defValue, this.value)));
     }
 
 
@@ -146,9 +153,12 @@ public class NCLValueAssessment<V extends NCLValueAssessment, P extends NCLConne
      *          elemento representando o valor da assertiva.
      */
     public void setValue(NCLDefaultValueAssessment value) {
+        modified();
+        Object old = either(this.parValue, either(this.defValue, this.value));
         this.defValue = value;
         this.value = null;
         this.parValue = null;
+        changed("value", old, either(this.parValue, either(this.defValue, this.value)));
     }
     
 
@@ -191,6 +201,10 @@ public class NCLValueAssessment<V extends NCLValueAssessment, P extends NCLConne
     
     
     public String parse(int ident) {
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
         String space, content;
 
         if(ident < 0)
@@ -203,9 +217,9 @@ public class NCLValueAssessment<V extends NCLValueAssessment, P extends NCLConne
 
         content = space + "<valueAssessment";
         if(getValue() != null)
-            content += " value='" + getValue() + "'";
+            content += " value='" + escape(getValue()) + "'";
         if(getParamValue() != null)
-            content += " value='$" + getParamValue().getId() + "'";
+            content += " value='$" + escape(getParamValue().getId()) + "'";
         content += "/>\n";
 
         return content;
@@ -237,6 +251,25 @@ public class NCLValueAssessment<V extends NCLValueAssessment, P extends NCLConne
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("value")){
+                if(value == null || value instanceof String)
+                    setValue((String) value);
+                else if(value instanceof NCLDefaultValueAssessment)
+                    setValue((NCLDefaultValueAssessment) value);
+                else
+                    setValue((P) value);
+            }
+            else
+                super.applyChange(operation, property, value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
@@ -37,9 +37,11 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.descriptor;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLHead;
-import br.uff.midiacom.ana.NCLInvalidIdentifierException;
+import br.uff.midiacom.ana.NCLReference;
+import br.uff.midiacom.ana.NCLReferenceIndex;
 import br.uff.midiacom.ana.rule.NCLRule;
 import br.uff.midiacom.ana.rule.NCLTestRule;
 import org.xml.sax.Attributes;
@@ -55,8 +57,8 @@ import org.xml.sax.XMLReader;
  */
 public class NCLBindRule<B extends NCLBindRule, D extends NCLDescriptor, R extends NCLTestRule> extends NCLElement implements Comparable<B> {
 
-    private D constituent;
-    private R rule;
+    private Object constituent;
+    private Object rule;
 
 
     /**
@@ -88,7 +90,11 @@ public class NCLBindRule<B extends NCLBindRule, D extends NCLDescriptor, R exten
      *          elemento representando o descritor mapeado pelo bind.
      */
     public void setConstituent(D constituent) {
+        modified();
+        Object old = NCLReference.peek(this.constituent);
+        NCLReferenceIndex.update(this, "constituent", NCLReference.peek(this.constituent), constituent);
         this.constituent = constituent;
+        changed("constituent", old, NCLReference.peek(this.constituent));
     }
 
 
@@ -99,7 +105,7 @@ public class NCLBindRule<B extends NCLBindRule, D extends NCLDescriptor, R exten
      *          elemento representando o descritor mapeado pelo bind.
      */
     public D getConstituent() {
-        return constituent;
+        return NCLReference.get(constituent);
     }
 
 
@@ -110,7 +116,11 @@ public class NCLBindRule<B extends NCLBindRule, D extends NCLDescriptor, R exten
      *          elemento representando a regra de avaliação do bind.
      */
     public void setRule(R rule) {
+        modified();
+        Object old = NCLReference.peek(this.rule);
+        NCLReferenceIndex.update(this, "rule", NCLReference.peek(this.rule), rule);
         this.rule = rule;
+        changed("rule", old, NCLReference.peek(this.rule));
     }
 
 
@@ -121,11 +131,15 @@ public class NCLBindRule<B extends NCLBindRule, D extends NCLDescriptor, R exten
      *          elemento representando a regra de avaliação do bind.
      */
     public R getRule() {
-        return rule;
+        return NCLReference.get(rule);
     }
 
 
     public String parse(int ident) {
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
         String space, content;
 
         if(ident < 0)
@@ -137,10 +151,10 @@ public class NCLBindRule<B extends NCLBindRule, D extends NCLDescriptor, R exten
             space += "\t";
 
         content = space + "<bindRule";
-        if(getRule() != null)
-            content += " rule='" + getRule().getId() + "'";
-        if(getConstituent() != null)
-            content += " constituent='" + getConstituent().getId() + "'";
+        if(rule != null)
+            content += " rule='" + escape(NCLReference.id(rule)) + "'";
+        if(constituent != null)
+            content += " constituent='" + escape(NCLReference.id(constituent)) + "'";
         content += "/>\n";
 
 
@@ -161,15 +175,15 @@ public class NCLBindRule<B extends NCLBindRule, D extends NCLDescriptor, R exten
         int comp = 0;
 
         // Compara pela regra
-        if(getRule() != null)
-            comp = getRule().compareTo(other.getRule());
+        if(rule != null)
+            comp = NCLReference.id(rule).compareTo(NCLReference.id(((NCLBindRule) other).rule));
         else
             comp = -1;
 
         // Compara pelo constituent
         if(comp == 0){
-            if(getConstituent() != null)
-                comp = getConstituent().compareTo(other.getConstituent());
+            if(constituent != null)
+                comp = NCLReference.id(constituent).compareTo(NCLReference.id(((NCLBindRule) other).constituent));
             else
                 comp = -1;
         }
@@ -178,22 +192,47 @@ public class NCLBindRule<B extends NCLBindRule, D extends NCLDescriptor, R exten
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("constituent"))
+                setConstituent((D) value);
+            else if(property.equals("rule"))
+                setRule((R) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
 
         boolean valid = true;
 
-        if(getRule() == null){
+        if(!NCLReference.isValid(rule)){
+            addError("Atributo rule possui um identificador inválido.");
+            valid = false;
+        }
+
+        if(!NCLReference.isValid(constituent)){
+            addError("Atributo constituent possui um identificador inválido.");
+            valid = false;
+        }
+
+        if(rule == null){
             addError("Elemento não possui atributo obrigatório rule.");
             valid = false;
         }
-        if(getConstituent() == null){
+        if(constituent == null){
             addError("Elemento não possui atributo obrigatório constituent.");
             valid = false;
         }
 
-        if(getConstituent() != null && !((NCLDescriptorSwitch) getParent()).hasDescriptor(getConstituent())){
+        if(constituent != null && !((NCLDescriptorSwitch) getParent()).hasDescriptor(getConstituent())){
             addError("Atributo constituent deve fazer referência a um descritor contido no descriptorSwitch.");
             valid = false;
         }
@@ -204,18 +243,13 @@ public class NCLBindRule<B extends NCLBindRule, D extends NCLDescriptor, R exten
 
     @Override
     public void startElement(String uri, String localName, String qName, Attributes attributes) {
-        try{
-            cleanWarnings();
-            cleanErrors();
-            for(int i = 0; i < attributes.getLength(); i++){
-                if(attributes.getLocalName(i).equals("rule"))
-                    setRule((R) new NCLRule(attributes.getValue(i)));//cast retirado na correcao das referencias
-                else if(attributes.getLocalName(i).equals("constituent"))
-                    setConstituent((D) new NCLDescriptor(attributes.getValue(i)));//cast retirado na correcao das referencias
-            }
-        }
-        catch(NCLInvalidIdentifierException ex){
-            addError(ex.getMessage());
+        cleanWarnings();
+        cleanErrors();
+        for(int i = 0; i < attributes.getLength(); i++){
+            if(attributes.getLocalName(i).equals("rule"))
+                rule = new NCLReference(NCLRule.class, attributes.getValue(i));
+            else if(attributes.getLocalName(i).equals("constituent"))
+                constituent = new NCLReference(NCLDescriptor.class, attributes.getValue(i));
         }
     }
 
@@ -225,10 +259,10 @@ public class NCLBindRule<B extends NCLBindRule, D extends NCLDescriptor, R exten
         if(getParent() == null)
             return;
 
-        if(getConstituent() != null)
+        if(constituent != null)
             constituentReference();
 
-        if(getRule() != null)
+        if(rule != null)
             ruleReference();
     }
 
@@ -267,13 +301,13 @@ public class NCLBindRule<B extends NCLBindRule, D extends NCLDescriptor, R exten
         Iterable<D> descriptors = ((NCLDescriptorSwitch) getParent()).getDescriptors();
 
         for(D descriptor : descriptors){
-            if(descriptor.getId().equals(getConstituent().getId())){
+            if(descriptor.getId().equals(NCLReference.id(constituent))){
                 setConstituent(descriptor);
                 return;
             }
         }
 
-        addWarning("Could not find descriptor in descriptorSwitch with id: " + getConstituent().getId());
+        addWarning("Could not find descriptor in descriptorSwitch with id: " + NCLReference.id(constituent));
     }
 
      /**
@@ -289,13 +323,13 @@ public class NCLBindRule<B extends NCLBindRule, D extends NCLDescriptor, R exten
             return;
 
         for(R rul : rules){
-            if(rul.getId().equals(getRule().getId())){
+            if(rul.getId().equals(NCLReference.id(rule))){
                 setRule(rul);
                 return;
             }
         }
         //@todo: regras internas a regras compostas podem ser utilizadas?
 
-        addWarning("Could not find rule in ruleBase with id: " + getRule().getId());
+        addWarning("Could not find rule in ruleBase with id: " + NCLReference.id(rule));
     }
 }
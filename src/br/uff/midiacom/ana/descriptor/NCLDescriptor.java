@@ -37,12 +37,17 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.descriptor;
 
+import br.uff.midiacom.ana.NCLAttributes;
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLHead;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
+import br.uff.midiacom.ana.NCLReference;
+import br.uff.midiacom.ana.NCLReferenceIndex;
 import br.uff.midiacom.ana.NCLValues.NCLColor;
 import br.uff.midiacom.ana.region.NCLRegion;
+import br.uff.midiacom.ana.reuse.NCLImportGraph;
 import br.uff.midiacom.ana.transition.NCLTransition;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -66,23 +71,14 @@ import org.xml.sax.XMLReader;
  */
 public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L extends NCLLayoutDescriptor, T extends NCLTransition, P extends NCLDescriptorParam> extends NCLIdentifiableElement implements NCLLayoutDescriptor<L> {
 
-    private String player;
-    private Integer explicitDur;
-    private Boolean freeze;
-    private D moveLeft;
-    private D moveRight;
-    private D moveUp;
-    private D moveDown;
-    private Integer focusIndex;
-    private NCLColor focusBorderColor;
-    private Integer focusBorderWidth;
-    private Integer focusBorderTransparency;
-    private String focusSrc;
-    private String focusSelSrc;
-    private NCLColor selBorderColor;
-    private T transIn;
-    private T transOut;
-    private R region;
+    private enum Attribute {
+        PLAYER, EXPLICIT_DUR, FREEZE, MOVE_LEFT, MOVE_RIGHT, MOVE_UP, MOVE_DOWN,
+        FOCUS_INDEX, FOCUS_BORDER_COLOR, FOCUS_BORDER_WIDTH, FOCUS_BORDER_TRANSPARENCY,
+        FOCUS_SRC, FOCUS_SEL_SRC, SEL_BORDER_COLOR, TRANS_IN, TRANS_OUT, REGION,
+        REGION_ALIAS
+    }
+
+    private NCLAttributes<Attribute> attributes = new NCLAttributes<Attribute>();
 
     private Set<P> params = new TreeSet<P>();
 
@@ -129,10 +125,13 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          Dispara uma exceção caso a String passada como parâmetro seja vazia.
      */
     public void setPlayer(String player) throws IllegalArgumentException {
+        modified();
+        Object old = attributes.get(Attribute.PLAYER);
         if(player != null && "".equals(player.trim()))
             throw new IllegalArgumentException("Empty player String");
 
-        this.player = player;
+        attributes.set(Attribute.PLAYER, player);
+        changed("player", old, attributes.get(Attribute.PLAYER));
     }
 
 
@@ -143,7 +142,7 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          String representando o nome da ferramenta.
      */
     public String getPlayer() {
-        return player;
+        return attributes.get(Attribute.PLAYER);
     }
 
 
@@ -156,7 +155,10 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          inteiro representando a duração a ser usada pelo descritor em segundos.
      */
     public void setExplicitDur(Integer explicitDur) {
-        this.explicitDur = explicitDur;
+        modified();
+        Object old = attributes.getInteger(Attribute.EXPLICIT_DUR);
+        attributes.setInteger(Attribute.EXPLICIT_DUR, explicitDur);
+        changed("explicitDur", old, attributes.getInteger(Attribute.EXPLICIT_DUR));
     }
 
 
@@ -167,7 +169,7 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          inteiro representando a duração definida no descritor em segundos.
      */
     public Integer getExplicitDur() {
-        return explicitDur;
+        return attributes.getInteger(Attribute.EXPLICIT_DUR);
     }
 
 
@@ -180,7 +182,10 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      * (true) ou não (false).
      */
     public void setFreeze(Boolean freeze) {
-        this.freeze = freeze;
+        modified();
+        Object old = attributes.getBoolean(Attribute.FREEZE);
+        attributes.setBoolean(Attribute.FREEZE, freeze);
+        changed("freeze", old, attributes.getBoolean(Attribute.FREEZE));
     }
 
 
@@ -192,7 +197,7 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          Verdadeiro se o último quadro deverá ser exibido continuamente.
      */
     public Boolean getFreeze() {
-        return freeze;
+        return attributes.getBoolean(Attribute.FREEZE);
     }
 
     
@@ -205,7 +210,11 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          elemento representando o descritor que receberá foco.
      */
     public void setMoveLeft(D descriptor) {
-        this.moveLeft = descriptor;
+        modified();
+        Object old = attributes.get(Attribute.MOVE_LEFT);
+        NCLReferenceIndex.update(this, "moveLeft", getMoveLeft(), descriptor);
+        attributes.set(Attribute.MOVE_LEFT, descriptor);
+        changed("moveLeft", old, attributes.get(Attribute.MOVE_LEFT));
     }
 
 
@@ -217,7 +226,7 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          elemento representando o descritor que receberá foco.
      */
     public D getMoveLeft() {
-        return moveLeft;
+        return attributes.get(Attribute.MOVE_LEFT);
     }
 
 
@@ -230,7 +239,11 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          elemento representando o descritor que receberá foco.
      */
     public void setMoveRight(D descriptor) {
-        this.moveRight = descriptor;
+        modified();
+        Object old = attributes.get(Attribute.MOVE_RIGHT);
+        NCLReferenceIndex.update(this, "moveRight", getMoveRight(), descriptor);
+        attributes.set(Attribute.MOVE_RIGHT, descriptor);
+        changed("moveRight", old, attributes.get(Attribute.MOVE_RIGHT));
     }
 
 
@@ -242,7 +255,7 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          elemento representando o descritor que receberá foco.
      */
     public D getMoveRight() {
-        return moveRight;
+        return attributes.get(Attribute.MOVE_RIGHT);
     }
 
 
@@ -255,7 +268,11 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          elemento representando o descritor que receberá foco.
      */
     public void setMoveUp(D descriptor) {
-        this.moveUp = descriptor;
+        modified();
+        Object old = attributes.get(Attribute.MOVE_UP);
+        NCLReferenceIndex.update(this, "moveUp", getMoveUp(), descriptor);
+        attributes.set(Attribute.MOVE_UP, descriptor);
+        changed("moveUp", old, attributes.get(Attribute.MOVE_UP));
     }
 
 
@@ -267,7 +284,7 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          elemento representando o descritor que receberá foco.
      */
     public D getMoveUp() {
-        return moveUp;
+        return attributes.get(Attribute.MOVE_UP);
     }
 
 
@@ -280,7 +297,11 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          elemento representando o descritor que receberá foco.
      */
     public void setMoveDown(D descriptor) {
-        this.moveDown = descriptor;
+        modified();
+        Object old = attributes.get(Attribute.MOVE_DOWN);
+        NCLReferenceIndex.update(this, "moveDown", getMoveDown(), descriptor);
+        attributes.set(Attribute.MOVE_DOWN, descriptor);
+        changed("moveDown", old, attributes.get(Attribute.MOVE_DOWN));
     }
 
     
@@ -292,7 +313,7 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          elemento representando o descritor que receberá foco.
      */
     public D getMoveDown() {
-        return moveDown;
+        return attributes.get(Attribute.MOVE_DOWN);
     }  
     
     
@@ -304,7 +325,10 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          inteiro representando o índice de foco do descritor.
      */
     public void setFocusIndex(Integer focusIndex) {
-        this.focusIndex = focusIndex;
+        modified();
+        Object old = attributes.getInteger(Attribute.FOCUS_INDEX);
+        attributes.setInteger(Attribute.FOCUS_INDEX, focusIndex);
+        changed("focusIndex", old, attributes.getInteger(Attribute.FOCUS_INDEX));
     }
 
 
@@ -315,7 +339,7 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          inteiro representando o índice de foco do descritor.
      */
     public Integer getFocusIndex() {
-        return focusIndex;
+        return attributes.getInteger(Attribute.FOCUS_INDEX);
     }
 
 
@@ -326,7 +350,10 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          cor da borda do descritor.
      */
     public void setFocusBorderColor(NCLColor focusBorderColor) {
-        this.focusBorderColor = focusBorderColor;
+        modified();
+        Object old = attributes.get(Attribute.FOCUS_BORDER_COLOR);
+        attributes.set(Attribute.FOCUS_BORDER_COLOR, focusBorderColor);
+        changed("focusBorderColor", old, attributes.get(Attribute.FOCUS_BORDER_COLOR));
     }
 
 
@@ -337,7 +364,7 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          cor da borda do descritor.
      */
     public NCLColor getFocusBorderColor() {
-        return focusBorderColor;
+        return attributes.get(Attribute.FOCUS_BORDER_COLOR);
     }
 
     
@@ -348,7 +375,10 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          inteiro representando a largura da borda em pixels.
      */
     public void setFocusBorderWidth(Integer focusBorderWidth) {
-        this.focusBorderWidth = focusBorderWidth;
+        modified();
+        Object old = attributes.getInteger(Attribute.FOCUS_BORDER_WIDTH);
+        attributes.setInteger(Attribute.FOCUS_BORDER_WIDTH, focusBorderWidth);
+        changed("focusBorderWidth", old, attributes.getInteger(Attribute.FOCUS_BORDER_WIDTH));
     }
 
 
@@ -359,7 +389,7 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          inteiro representando a largura da borda em pixels.
      */
     public Integer getFocusBorderWidth() {
-        return focusBorderWidth;
+        return attributes.getInteger(Attribute.FOCUS_BORDER_WIDTH);
     }
 
 
@@ -373,10 +403,13 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          Dispara uma exceção caso o valor fornecido esteja fora do intervalo.
      */
     public void setFocusBorderTransparency(Integer focusBorderTransparency) throws IllegalArgumentException {
+        modified();
+        Object old = attributes.getInteger(Attribute.FOCUS_BORDER_TRANSPARENCY);
         if(focusBorderTransparency != null && (focusBorderTransparency < 0 || focusBorderTransparency > 100))
             throw new IllegalArgumentException("Ilegal value");
 
-        this.focusBorderTransparency = focusBorderTransparency;
+        attributes.setInteger(Attribute.FOCUS_BORDER_TRANSPARENCY, focusBorderTransparency);
+        changed("focusBorderTransparency", old, attributes.getInteger(Attribute.FOCUS_BORDER_TRANSPARENCY));
     }
 
 
@@ -388,7 +421,7 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          o inteiro está no intervalo [0,100].
      */
     public Integer getFocusBorderTransparency() {
-        return focusBorderTransparency;
+        return attributes.getInteger(Attribute.FOCUS_BORDER_TRANSPARENCY);
     }
 
 
@@ -404,10 +437,13 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      * @see java.net.URI
      */
     public void setFocusSrc(String focusSrc) throws URISyntaxException {
+        modified();
+        Object old = attributes.get(Attribute.FOCUS_SRC);
         if(focusSrc != null)
-            this.focusSrc = new URI(focusSrc).toString();
+            attributes.set(Attribute.FOCUS_SRC, new URI(focusSrc).toString());
 
-        this.focusSrc = focusSrc;
+        attributes.set(Attribute.FOCUS_SRC, focusSrc);
+        changed("focusSrc", old, attributes.get(Attribute.FOCUS_SRC));
     }
 
 
@@ -419,7 +455,7 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          String contendo a URI do conteúdo alternativo.
      */
     public String getFocusSrc() {
-        return focusSrc;
+        return attributes.get(Attribute.FOCUS_SRC);
     }
 
 
@@ -433,10 +469,13 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          Exceção disparada caso seja fornecida uma URI não for válida.
      */
     public void setFocusSelSrc(String focusSelSrc) throws URISyntaxException {
+        modified();
+        Object old = attributes.get(Attribute.FOCUS_SEL_SRC);
         if(focusSelSrc != null)
-            this.focusSelSrc = new URI(focusSelSrc).toString();
+            attributes.set(Attribute.FOCUS_SEL_SRC, new URI(focusSelSrc).toString());
 
-        this.focusSelSrc = focusSelSrc;
+        attributes.set(Attribute.FOCUS_SEL_SRC, focusSelSrc);
+        changed("focusSelSrc", old, attributes.get(Attribute.FOCUS_SEL_SRC));
     }
 
 
@@ -448,7 +487,7 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          String contendo a URI do conteúdo alternativo.
      */
     public String getFocusSelSrc() {
-        return focusSelSrc;
+        return attributes.get(Attribute.FOCUS_SEL_SRC);
     }
 
 
@@ -459,7 +498,10 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          cor da borda do descritor.
      */
     public void setSelBorderColor(NCLColor selBorderColor) {
-        this.selBorderColor = selBorderColor;
+        modified();
+        Object old = attributes.get(Attribute.SEL_BORDER_COLOR);
+        attributes.set(Attribute.SEL_BORDER_COLOR, selBorderColor);
+        changed("selBorderColor", old, attributes.get(Attribute.SEL_BORDER_COLOR));
     }
 
 
@@ -470,7 +512,7 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          cor da borda do descritor.
      */
     public NCLColor getSelBorderColor() {
-        return selBorderColor;
+        return attributes.get(Attribute.SEL_BORDER_COLOR);
     }
 
 
@@ -481,7 +523,11 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          elemento representando uma transição.
      */
     public void setTransIn(T transIn) {
-        this.transIn = transIn;
+        modified();
+        Object old = NCLReference.peek(attributes.get(Attribute.TRANS_IN));
+        NCLReferenceIndex.update(this, "transIn", NCLReference.peek(attributes.get(Attribute.TRANS_IN)), transIn);
+        attributes.set(Attribute.TRANS_IN, transIn);
+        changed("transIn", old, NCLReference.peek(attributes.get(Attribute.TRANS_IN)));
     }
 
 
@@ -492,7 +538,7 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          elemento representando uma transição.
      */
     public T getTransIn() {
-        return transIn;
+        return NCLReference.get(attributes.get(Attribute.TRANS_IN));
     }
 
 
@@ -503,7 +549,11 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          elemento representando uma transição.
      */
     public void setTransOut(T transOut) {
-        this.transOut = transOut;
+        modified();
+        Object old = NCLReference.peek(attributes.get(Attribute.TRANS_OUT));
+        NCLReferenceIndex.update(this, "transOut", NCLReference.peek(attributes.get(Attribute.TRANS_OUT)), transOut);
+        attributes.set(Attribute.TRANS_OUT, transOut);
+        changed("transOut", old, NCLReference.peek(attributes.get(Attribute.TRANS_OUT)));
     }
 
 
@@ -514,18 +564,44 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          elemento representando uma transição.
      */
     public T getTransOut() {
-        return transOut;
+        return NCLReference.get(attributes.get(Attribute.TRANS_OUT));
     }
 
 
     /**
-     * Atribui uma região ao descritor.
+     * Atribui uma região ao descritor. O apelido de importação da região é
+     * descartado.
      *
      * @param region
      *          elemento representando uma região.
      */
     public void setRegion(R region) {
-        this.region = region;
+        setRegion(region, null);
+    }
+
+
+    /**
+     * Atribui ao descritor uma região definida em um documento importado.
+     *
+     * @param region
+     *          elemento representando uma região.
+     * @param regionAlias
+     *          String representando o apelido da importação ou nulo se a região
+     *          for do próprio documento.
+     *
+     * @see NCLImportGraph
+     */
+    public void setRegion(R region, String regionAlias) {
+        // o apelido é atribuído antes da região para que as alterações
+        // possam ser desfeitas na ordem inversa
+        if(regionAlias == null ? getRegionAlias() != null : !regionAlias.equals(getRegionAlias()))
+            setRegionAlias(regionAlias);
+
+        modified();
+        Object old = NCLReference.peek(attributes.get(Attribute.REGION));
+        NCLReferenceIndex.update(this, "region", NCLReference.peek(attributes.get(Attribute.REGION)), region);
+        attributes.set(Attribute.REGION, region);
+        changed("region", old, NCLReference.peek(attributes.get(Attribute.REGION)));
     }
 
 
@@ -536,7 +612,37 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      *          elemento representando uma região.
      */
     public R getRegion() {
-        return region;
+        return NCLReference.get(attributes.get(Attribute.REGION));
+    }
+
+
+    /**
+     * Atribui o apelido do documento importado onde a região referenciada pelo
+     * atributo <i>region</i> está definida. O apelido é nulo quando a
+     * referência é feita a um elemento do próprio documento.
+     *
+     * @param regionAlias
+     *          String representando o apelido, por exemplo "conn" em "conn#id".
+     *
+     * @see NCLImportGraph
+     */
+    public void setRegionAlias(String regionAlias) {
+        modified();
+        Object old = attributes.get(Attribute.REGION_ALIAS);
+        attributes.set(Attribute.REGION_ALIAS, regionAlias);
+        changed("regionAlias", old, attributes.get(Attribute.REGION_ALIAS));
+    }
+
+
+    /**
+     * Retorna o apelido do documento importado onde a região referenciada pelo
+     * atributo <i>region</i> está definida.
+     *
+     * @return
+     *          String representando o apelido ou nulo se a referência for local.
+     */
+    public String getRegionAlias() {
+        return attributes.get(Attribute.REGION_ALIAS);
     }
 
 
@@ -549,10 +655,12 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      * @see TreeSet#add
      */
     public boolean addDescriptorParam(P descriptorParam) {
+        modified();
         if(params.add(descriptorParam)){
             //Se descriptorParam existe, atribui este como seu parente
             if(descriptorParam != null)
                 descriptorParam.setParent(this);
+            added("descriptorParam", descriptorParam);
 
             return true;
         }
@@ -569,10 +677,12 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      * @see TreeSet#remove
      */
     public boolean removeDescriptorParam(P descriptorParam) {
+        modified();
         if(params.remove(descriptorParam)){
             //Se descriptorParam existe, retira o seu parentesco
             if(descriptorParam != null)
                 descriptorParam.setParent(null);
+            removed("descriptorParam", descriptorParam);
 
             return true;
         }
@@ -614,7 +724,12 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
 
 
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -624,58 +739,58 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
         for(int i = 0; i < ident; i++)
             space += "\t";
 
-        content = space + "<descriptor";
+        content.append(space + "<descriptor");
         if(getId() != null)
-            content += " id='" + getId() + "'";
-        if(getRegion() != null)
-            content += " region='" + getRegion().getId() + "'";
+            content.append(" id='" + escape(getId()) + "'");
+        if(attributes.contains(Attribute.REGION))
+            content.append(" region='" + escape(NCLImportGraph.qualify(getRegionAlias(), NCLReference.id(attributes.get(Attribute.REGION)))) + "'");
         if(getExplicitDur() != null)
-            content += " explicitDur='" + getExplicitDur() + "s'";
+            content.append(" explicitDur='" + getExplicitDur() + "s'");
         if(getFreeze() != null)
-            content += " freeze='" + getFreeze().toString() + "'";
+            content.append(" freeze='" + escape(getFreeze().toString()) + "'");
         if(getPlayer() != null)
-            content += " player='" + getPlayer() + "'";
+            content.append(" player='" + escape(getPlayer()) + "'");
         if(getMoveLeft() != null)
-            content += " moveLeft='" + getMoveLeft().getFocusIndex() + "'";
+            content.append(" moveLeft='" + escape(getMoveLeft().getFocusIndex()) + "'");
         if(getMoveRight() != null)
-            content += " moveRight='" + getMoveRight().getFocusIndex() + "'";
+            content.append(" moveRight='" + escape(getMoveRight().getFocusIndex()) + "'");
         if(getMoveDown() != null)
-            content += " moveDown='" + getMoveDown().getFocusIndex() + "'";
+            content.append(" moveDown='" + escape(getMoveDown().getFocusIndex()) + "'");
         if(getMoveUp() != null)
-            content += " moveUp='" + getMoveUp().getFocusIndex() + "'";
+            content.append(" moveUp='" + escape(getMoveUp().getFocusIndex()) + "'");
         if(getFocusIndex() != null)
-            content += " focusIndex='" + getFocusIndex() + "'";
+            content.append(" focusIndex='" + escape(getFocusIndex()) + "'");
         if(getFocusBorderColor() != null)
-            content += " focusBorderColor='" + getFocusBorderColor().toString() + "'";
+            content.append(" focusBorderColor='" + escape(getFocusBorderColor().toString()) + "'");
         if(getFocusBorderWidth() != null)
-            content += " focusBorderWidth='" + getFocusBorderWidth() + "'";
+            content.append(" focusBorderWidth='" + escape(getFocusBorderWidth()) + "'");
         if(getFocusBorderTransparency() != null)
-            content += " focusBorderTransparency='" + getFocusBorderTransparency() + "%'";
+            content.append(" focusBorderTransparency='" + getFocusBorderTransparency() + "%'");
         if(getFocusSrc() != null)
-            content += " focusSrc='" + getFocusSrc() + "'";
+            content.append(" focusSrc='" + escape(getFocusSrc()) + "'");
         if(getFocusSelSrc() != null)
-            content += " focusSelSrc='" + getFocusSelSrc() + "'";
+            content.append(" focusSelSrc='" + escape(getFocusSelSrc()) + "'");
         if(getSelBorderColor() != null)
-            content += " SelBorderColor='" + getSelBorderColor().toString() + "'";
-        if(getTransIn() != null)
-            content += " transIn='" + getTransIn().getId() + "'";
-        if(getTransOut() != null)
-            content += " transOut='" + getTransOut().getId() + "'";
+            content.append(" SelBorderColor='" + escape(getSelBorderColor().toString()) + "'");
+        if(attributes.contains(Attribute.TRANS_IN))
+            content.append(" transIn='" + escape(NCLReference.id(attributes.get(Attribute.TRANS_IN))) + "'");
+        if(attributes.contains(Attribute.TRANS_OUT))
+            content.append(" transOut='" + escape(NCLReference.id(attributes.get(Attribute.TRANS_OUT))) + "'");
 
         // Test if the descriptor has content
         if(hasDescriptorParam()){
-            content += ">\n";
+            content.append(">\n");
 
             for(P param : params)
-                content += param.parse(ident + 1);
+                content.append(param.parse(ident + 1));
 
-            content += space + "</descriptor>\n";
+            content.append(space + "</descriptor>\n");
         }
         else
-            content += "/>\n";
+            content.append("/>\n");
 
         
-        return content;
+        return content.toString();
     }
 
     /**
@@ -691,12 +806,80 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("player"))
+                setPlayer((String) value);
+            else if(property.equals("explicitDur"))
+                setExplicitDur((Integer) value);
+            else if(property.equals("freeze"))
+                setFreeze((Boolean) value);
+            else if(property.equals("moveLeft"))
+                setMoveLeft((D) value);
+            else if(property.equals("moveRight"))
+                setMoveRight((D) value);
+            else if(property.equals("moveUp"))
+                setMoveUp((D) value);
+            else if(property.equals("moveDown"))
+                setMoveDown((D) value);
+            else if(property.equals("focusIndex"))
+                setFocusIndex((Integer) value);
+            else if(property.equals("focusBorderColor"))
+                setFocusBorderColor((NCLColor) value);
+            else if(property.equals("focusBorderWidth"))
+                setFocusBorderWidth((Integer) value);
+            else if(property.equals("focusBorderTransparency"))
+                setFocusBorderTransparency((Integer) value);
+            else if(property.equals("focusSrc"))
+                setFocusSrc((String) value);
+            else if(property.equals("focusSelSrc"))
+                setFocusSelSrc((String) value);
+            else if(property.equals("selBorderColor"))
+                setSelBorderColor((NCLColor) value);
+            else if(property.equals("transIn"))
+                setTransIn((T) value);
+            else if(property.equals("transOut"))
+                setTransOut((T) value);
+            else if(property.equals("region"))
+                setRegion((R) value, getRegionAlias());
+            else if(property.equals("regionAlias"))
+                setRegionAlias((String) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else if(property.equals("descriptorParam")){
+            if(operation == Operation.ADD)
+                addDescriptorParam((P) value);
+            else
+                removeDescriptorParam((P) value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
 
         boolean valid = true;
 
+        if(!NCLReference.isValid(attributes.get(Attribute.REGION))){
+            addError("Atributo region possui um identificador inválido.");
+            valid = false;
+        }
+
+        if(!NCLReference.isValid(attributes.get(Attribute.TRANS_IN))){
+            addError("Atributo transIn possui um identificador inválido.");
+            valid = false;
+        }
+
+        if(!NCLReference.isValid(attributes.get(Attribute.TRANS_OUT))){
+            addError("Atributo transOut possui um identificador inválido.");
+            valid = false;
+        }
+
         if(getId() == null){
             addError("Elemento não possui atributo obrigatório id.");
             valid = false;
@@ -723,8 +906,10 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
                 for(int i = 0; i < attributes.getLength(); i++){
                     if(attributes.getLocalName(i).equals("id"))
                         setId(attributes.getValue(i));
-                    else if(attributes.getLocalName(i).equals("region"))
-                        setRegion((R) new NCLRegion(attributes.getValue(i)));//cast retirado na correcao das referencias
+                    else if(attributes.getLocalName(i).equals("region")){
+                        setRegionAlias(NCLImportGraph.alias(attributes.getValue(i)));
+                        this.attributes.set(Attribute.REGION, new NCLReference(NCLRegion.class, NCLImportGraph.localId(attributes.getValue(i))));
+                    }
                     else if(attributes.getLocalName(i).equals("explicitDur")){
                         String value = attributes.getValue(i);
                         if(value.contains("s"))
@@ -782,9 +967,9 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
                         }
                     }
                     else if(attributes.getLocalName(i).equals("transIn"))
-                        setTransIn((T) new NCLTransition(attributes.getValue(i)));//cast retirado na correcao das referencias
+                        this.attributes.set(Attribute.TRANS_IN, new NCLReference(NCLTransition.class, attributes.getValue(i)));
                     else if(attributes.getLocalName(i).equals("transOut"))
-                        setTransOut((T) new NCLTransition(attributes.getValue(i)));//cast retirado na correcao das referencias
+                        this.attributes.set(Attribute.TRANS_OUT, new NCLReference(NCLTransition.class, attributes.getValue(i)));
                 }
             }
             else if(localName.equals("descriptorParam")){
@@ -805,17 +990,17 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
     @Override
     public void endDocument() {
         if(getParent() != null){
-            if(getRegion() != null)
+            if(attributes.contains(Attribute.REGION))
                 regionReference();
 
             if(getMoveUp() != null || getMoveDown() != null || getMoveLeft() != null || getMoveRight() != null)
                 descriptorReference();
 
-            if(getTransIn() != null)
-                setTransIn(transitionReference(getTransIn()));
+            if(attributes.contains(Attribute.TRANS_IN))
+                setTransIn(transitionReference(attributes.get(Attribute.TRANS_IN)));
 
-            if(getTransOut() != null)
-                setTransOut(transitionReference(getTransOut()));
+            if(attributes.contains(Attribute.TRANS_OUT))
+                setTransOut(transitionReference(attributes.get(Attribute.TRANS_OUT)));
         }
 
         if(hasDescriptorParam()){
@@ -833,6 +1018,20 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      * ou uma base de regiões, advertencias são adicionadas a lista d advertencias.
      */
     private void regionReference() {
+        //Search for the region inside an imported base
+        if(getRegionAlias() != null){
+            NCLImportGraph graph = NCLImportGraph.getGraph(this);
+            if(graph == null)
+                return;
+
+            NCLRegion reg = graph.findRegion(this, getRegionAlias(), NCLReference.id(attributes.get(Attribute.REGION)));
+            if(reg != null)
+                setRegion((R) reg, getRegionAlias());
+            else
+                addWarning("Could not find region in imported base with id: " + NCLImportGraph.qualify(getRegionAlias(), NCLReference.id(attributes.get(Attribute.REGION))));
+            return;
+        }
+
         //Search for the interface inside the node
         NCLElement head = getParent();
 
@@ -869,12 +1068,12 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
                     return (R) r;
             }
             else{
-                if(reg.getId().equals(getRegion().getId()))
+                if(reg.getId().equals(NCLReference.id(attributes.get(Attribute.REGION))))
                     return (R) reg;
             }
         }
 
-        addWarning("Could not find region in regionBase with id: " + getRegion().getId());
+        addWarning("Could not find region in regionBase with id: " + NCLReference.id(attributes.get(Attribute.REGION)));
         return null;
     }
 
@@ -947,7 +1146,7 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
      * @return
      *  a transição, da forma como foi definida na base.
      */
-    private T transitionReference(T transition) {
+    private T transitionReference(Object transition) {
         //Search for the interface inside the node
         NCLElement head = getParent();
 
@@ -966,11 +1165,11 @@ public class NCLDescriptor<D extends NCLDescriptor, R extends NCLRegion, L exten
 
         Iterable<T> transitions = ((NCLHead) head).getTransitionBase().getTransitions();
         for(T trans : transitions){
-            if(trans.getId().equals(transition.getId()))
+            if(trans.getId().equals(NCLReference.id(transition)))
              return (T) trans;
         }
 
-        addWarning("Could not find transition in transitionBase with id: " + transition.getId());
+        addWarning("Could not find transition in transitionBase with id: " + NCLReference.id(transition));
         return null;
     }
 
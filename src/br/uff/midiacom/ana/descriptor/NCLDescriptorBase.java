@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.descriptor;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
@@ -99,10 +100,12 @@ public class NCLDescriptorBase<D extends NCLLayoutDescriptor, I extends NCLImpor
      * @see TreeSet#add
      */
     public boolean addDescriptor(D descriptor) {
+        modified();
         if(descriptors.add(descriptor)){
             //Se descriptor existe, atribui este como seu parente
             if(descriptor != null)
                 descriptor.setParent(this);
+            added("descriptor", descriptor);
 
             return true;
         }
@@ -121,6 +124,7 @@ public class NCLDescriptorBase<D extends NCLLayoutDescriptor, I extends NCLImpor
      * @see TreeSet#remove
      */
     public boolean removeDescriptor(String id) {
+        modified();
         for(D descriptor : descriptors){
             if(descriptor.getId().equals(id))
                 return removeDescriptor(descriptor);
@@ -139,10 +143,12 @@ public class NCLDescriptorBase<D extends NCLLayoutDescriptor, I extends NCLImpor
      * @see TreeSet#remove
      */
     public boolean removeDescriptor(D descriptor) {
+        modified();
         if(descriptors.remove(descriptor)){
             //Se descriptor existe, retira o seu parentesco
             if(descriptor != null)
                 descriptor.setParent(null);
+            removed("descriptor", descriptor);
 
             return true;
         }
@@ -192,10 +198,12 @@ public class NCLDescriptorBase<D extends NCLLayoutDescriptor, I extends NCLImpor
      * @see TreeSet#add
      */
     public boolean addImportBase(I importBase) {
+        modified();
         if(imports.add(importBase)){
             //Se importBase existe, atribui este como seu parente
             if(importBase != null)
                 importBase.setParent(this);
+            added("importBase", importBase);
 
             return true;
         }
@@ -211,10 +219,12 @@ public class NCLDescriptorBase<D extends NCLLayoutDescriptor, I extends NCLImpor
      * @see TreeSet#remove
      */
     public boolean removeImportBase(I importBase) {
+        modified();
         if(imports.remove(importBase)){
             //Se importBase existe, retira o seu parentesco
             if(importBase != null)
                 importBase.setParent(null);
+            removed("importBase", importBase);
 
             return true;
         }
@@ -258,7 +268,12 @@ public class NCLDescriptorBase<D extends NCLLayoutDescriptor, I extends NCLImpor
 
 
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -268,33 +283,56 @@ public class NCLDescriptorBase<D extends NCLLayoutDescriptor, I extends NCLImpor
         for(int i = 0; i < ident; i++)
             space += "\t";
 
-        content = space + "<descriptorBase";
+        content.append(space + "<descriptorBase");
         if(getId() != null)
-            content += " id='" + getId() + "'";
+            content.append(" id='" + escape(getId()) + "'");
 
         if(hasDescriptor() || hasImportBase()){
-            content += ">\n";
+            content.append(">\n");
 
             if(hasImportBase()){
                 for(I imp : imports)
-                    content += imp.parse(ident + 1);
+                    content.append(imp.parse(ident + 1));
             }
 
             if(hasDescriptor()){
                 for(D descriptor : descriptors)
-                    content += descriptor.parse(ident + 1);
+                    content.append(descriptor.parse(ident + 1));
             }
             
-            content += space + "</descriptorBase>\n";
+            content.append(space + "</descriptorBase>\n");
         }
         else
-            content += "/>\n";
+            content.append("/>\n");
 
-        return content;
+        return content.toString();
+    }
+
+
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(property.equals("descriptor")){
+            if(operation == Operation.ADD)
+                addDescriptor((D) value);
+            else
+                removeDescriptor((D) value);
+        }
+        else if(property.equals("importBase")){
+            if(operation == Operation.ADD)
+                addImportBase((I) value);
+            else
+                removeImportBase((I) value);
+        }
+        else
+            super.applyChange(operation, property, value);
     }
 
 
     public boolean validate() {
+        Boolean validated = getValidation();
+        if(validated != null)
+            return validated;
+
         cleanWarnings();
         cleanErrors();
 
@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.descriptor;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLValues.NCLAttributes;
 import org.xml.sax.Attributes;
@@ -86,7 +87,10 @@ public class NCLDescriptorParam<P extends NCLDescriptorParam> extends NCLElement
      *          Elemento representando o nome do parâmetro.
      */
     public void setName(NCLAttributes name) {
+        modified();
+        Object old = this.name;
         this.name = name;
+        changed("name", old, this.name);
     }
 
 
@@ -110,10 +114,13 @@ public class NCLDescriptorParam<P extends NCLDescriptorParam> extends NCLElement
      *          Dispara uma exceção caso a String representando o valor seja vazia.
      */
     public void setValue(String value) throws IllegalArgumentException {
+        modified();
+        Object old = this.value;
         if(value != null && "".equals(value.trim()))
             throw new IllegalArgumentException("Empty value String");
 
         this.value = value;
+        changed("value", old, this.value);
     }
 
 
@@ -129,6 +136,10 @@ public class NCLDescriptorParam<P extends NCLDescriptorParam> extends NCLElement
 
 
     public String parse(int ident) {
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
         String space, content;
 
         if(ident < 0)
@@ -143,9 +154,9 @@ public class NCLDescriptorParam<P extends NCLDescriptorParam> extends NCLElement
         // param element and attributes declaration
         content = space + "<descriptorParam";
         if(getName() != null)
-            content += " name='" + getName().toString() + "'";
+            content += " name='" + escape(getName().toString()) + "'";
         if(getValue() != null)
-            content += " value='" + getValue() + "'";
+            content += " value='" + escape(getValue()) + "'";
         content += "/>\n";
 
         return content;
@@ -165,6 +176,21 @@ public class NCLDescriptorParam<P extends NCLDescriptorParam> extends NCLElement
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("name"))
+                setName((NCLAttributes) value);
+            else if(property.equals("value"))
+                setValue((String) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
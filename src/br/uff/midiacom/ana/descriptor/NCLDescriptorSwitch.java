@@ -37,9 +37,12 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.descriptor;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
+import br.uff.midiacom.ana.NCLReference;
+import br.uff.midiacom.ana.NCLReferenceIndex;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -61,7 +64,7 @@ public class NCLDescriptorSwitch<D extends NCLDescriptor, B extends NCLBindRule,
 
     private Set<D> descriptors = new TreeSet<D>();
     private List<B> binds = new ArrayList<B>();
-    private D defaultDescriptor;
+    private Object defaultDescriptor;
 
 
     /**
@@ -102,10 +105,12 @@ public class NCLDescriptorSwitch<D extends NCLDescriptor, B extends NCLBindRule,
      * @see TreeSet#add
      */
     public boolean addDescriptor(D descriptor) {
+        modified();
         if(descriptors.add(descriptor)){
             //Se descriptor existe, atribui este como seu parente
             if(descriptor != null)
                 descriptor.setParent(this);
+            added("descriptor", descriptor);
 
             return true;
         }
@@ -124,6 +129,7 @@ public class NCLDescriptorSwitch<D extends NCLDescriptor, B extends NCLBindRule,
      * @see TreeSet#remove
      */
     public boolean removeDescriptor(String id) {
+        modified();
         for(D descriptor : descriptors){
             if(descriptor.getId().equals(id))
                 return removeDescriptor(descriptor);
@@ -143,10 +149,12 @@ public class NCLDescriptorSwitch<D extends NCLDescriptor, B extends NCLBindRule,
      * @see TreeSet#remove
      */
     public boolean removeDescriptor(D descriptor) {
+        modified();
         if(descriptors.remove(descriptor)){
             //Se descriptor existe, retira o seu parentesco
             if(descriptor != null)
                 descriptor.setParent(null);
+            removed("descriptor", descriptor);
 
             return true;
         }
@@ -196,9 +204,11 @@ public class NCLDescriptorSwitch<D extends NCLDescriptor, B extends NCLBindRule,
      * @see TreeSet#add
      */
     public boolean addBind(B bind) {
+        modified();
         if(bind != null && binds.add(bind)){
             //atribui este como parente do bind
             bind.setParent(this);
+            added("bind", bind);
 
             return true;
         }
@@ -215,10 +225,12 @@ public class NCLDescriptorSwitch<D extends NCLDescriptor, B extends NCLBindRule,
      * @see TreeSet#remove
      */
     public boolean removeBind(B bind) {
+        modified();
         if(binds.remove(bind)){
             //Se bind existe, retira o seu parentesco
             if(bind != null)
                 bind.setParent(null);
+            removed("bind", bind);
 
             return true;
         }
@@ -266,7 +278,11 @@ public class NCLDescriptorSwitch<D extends NCLDescriptor, B extends NCLBindRule,
      *          elemento representando o descritor padrão.
      */
     public void setDefaultDescriptor(D defaultDescriptor) {
+        modified();
+        Object old = NCLReference.peek(this.defaultDescriptor);
+        NCLReferenceIndex.update(this, "defaultDescriptor", NCLReference.peek(this.defaultDescriptor), defaultDescriptor);
         this.defaultDescriptor = defaultDescriptor;
+        changed("defaultDescriptor", old, NCLReference.peek(this.defaultDescriptor));
     }
 
 
@@ -277,12 +293,17 @@ public class NCLDescriptorSwitch<D extends NCLDescriptor, B extends NCLBindRule,
      *          elemento representando o descritor padrão.
      */
     public D getDefaultDescriptor() {
-        return defaultDescriptor;
+        return NCLReference.get(defaultDescriptor);
     }
 
 
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -292,28 +313,28 @@ public class NCLDescriptorSwitch<D extends NCLDescriptor, B extends NCLBindRule,
         for(int i = 0; i < ident; i++)
             space += "\t";
 
-        content = space + "<descriptorSwitch";
+        content.append(space + "<descriptorSwitch");
         if(getId() != null)
-            content += " id='" + getId() + "'";
-        content += ">\n";
+            content.append(" id='" + escape(getId()) + "'");
+        content.append(">\n");
 
         if(hasBind()){
             for(B bind : binds)
-                content += bind.parse(ident + 1);
+                content.append(bind.parse(ident + 1));
         }
 
-        if(getDefaultDescriptor() != null)
-            content += space + "\t" + "<defaultDescriptor descriptor='" + getDefaultDescriptor().getId() + "'/>\n";
+        if(defaultDescriptor != null)
+            content.append(space + "\t" + "<defaultDescriptor descriptor='" + escape(NCLReference.id(defaultDescriptor)) + "'/>\n");
 
         if(hasDescriptor()){
             for(D descriptor : descriptors)
-                content += descriptor.parse(ident + 1);
+                content.append(descriptor.parse(ident + 1));
         }
 
-        content += space + "</descriptorSwitch>\n";
+        content.append(space + "</descriptorSwitch>\n");
 
 
-        return content;
+        return content.toString();
     }
 
     /**
@@ -333,12 +354,42 @@ public class NCLDescriptorSwitch<D extends NCLDescriptor, B extends NCLBindRule,
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("defaultDescriptor"))
+                setDefaultDescriptor((D) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else if(property.equals("descriptor")){
+            if(operation == Operation.ADD)
+                addDescriptor((D) value);
+            else
+                removeDescriptor((D) value);
+        }
+        else if(property.equals("bind")){
+            if(operation == Operation.ADD)
+                addBind((B) value);
+            else
+                removeBind((B) value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
 
         boolean valid = true;
 
+        if(!NCLReference.isValid(defaultDescriptor)){
+            addError("Atributo defaultDescriptor possui um identificador inválido.");
+            valid = false;
+        }
+
         if(getId() == null){
             addError("Elemento não possui atributo obrigatório id.");
             valid = false;
@@ -363,7 +414,7 @@ public class NCLDescriptorSwitch<D extends NCLDescriptor, B extends NCLBindRule,
             }
         }
 
-        if(getDefaultDescriptor() != null){
+        if(defaultDescriptor != null){
             if(!(getDefaultDescriptor().getParent() instanceof NCLDescriptorSwitch)){
                 addError("Atributo descriptor do elemento defaultDescriptor deve referênciar um descritor contido no descriptorSwitch.");
                 valid = false;
@@ -402,7 +453,7 @@ public class NCLDescriptorSwitch<D extends NCLDescriptor, B extends NCLBindRule,
             else if(localName.equals("defaultDescriptor")){
                 for(int i = 0; i < attributes.getLength(); i++){
                     if(attributes.getLocalName(i).equals("descriptor"))
-                        setDefaultDescriptor((D) new NCLDescriptor(attributes.getValue(i)));//cast retirado na correcao das referencias
+                        defaultDescriptor = new NCLReference(NCLDescriptor.class, attributes.getValue(i));
                 }
             }
         }
@@ -421,7 +472,7 @@ public class NCLDescriptorSwitch<D extends NCLDescriptor, B extends NCLBindRule,
 
     @Override
     public void endDocument() {
-        if(getDefaultDescriptor() != null)
+        if(defaultDescriptor != null)
             defaultDescriptorReference();
 
         if(hasBind()){
@@ -448,13 +499,13 @@ public class NCLDescriptorSwitch<D extends NCLDescriptor, B extends NCLBindRule,
     private void defaultDescriptorReference() {
         //Search for a component node in its parent
         for(D descriptor : descriptors){
-            if(descriptor.getId().equals(getDefaultDescriptor().getId())){
+            if(descriptor.getId().equals(NCLReference.id(defaultDescriptor))){
                 setDefaultDescriptor(descriptor);
                 return;
             }
         }
 
-        addWarning("Could not find descriptor in descriptorSwitch with id: " + getDefaultDescriptor().getId());
+        addWarning("Could not find descriptor in descriptorSwitch with id: " + NCLReference.id(defaultDescriptor));
     }
 
 
@@ -0,0 +1,414 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana.descriptor;
+
+import br.uff.midiacom.ana.NCLDoc;
+import br.uff.midiacom.ana.NCLValues.NCLKey;
+import br.uff.midiacom.ana.node.NCLContext;
+import br.uff.midiacom.ana.node.NCLMedia;
+import br.uff.midiacom.ana.node.NCLNode;
+import br.uff.midiacom.ana.node.NCLSwitch;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Esta classe define o grafo de navegação por teclas de um documento da
+ * <i>Nested Context Language</i> (NCL).<br/>
+ *
+ * O grafo é construído a partir dos atributos <i>focusIndex</i>, <i>moveLeft</i>,
+ * <i>moveRight</i>, <i>moveUp</i> e <i>moveDown</i> dos descritores associados
+ * às mídias do documento. Cada mídia que pode receber foco recebe um índice e
+ * as transições de foco são guardadas em um vetor indexado por esse índice e
+ * pela direção, permitindo que a próxima mídia a receber foco seja obtida em
+ * tempo constante.
+ *
+ * Durante a construção são verificadas, em uma única passagem linear, as
+ * referências a índices de foco inexistentes, as transições assimétricas, as
+ * mídias inalcançáveis a partir do foco inicial e os ciclos em uma mesma direção.
+ * As mensagens encontradas podem ser recuperadas através de <i>getWarnings</i>.
+ *
+ * @see NCLDescriptor
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLFocusGraph {
+
+    /**
+     * Índice retornado quando não há mídia para onde o foco possa ser movido.
+     */
+    public static final int NONE = -1;
+
+    private static final int LEFT = 0;
+    private static final int RIGHT = 1;
+    private static final int UP = 2;
+    private static final int DOWN = 3;
+    private static final String[] DIRECTIONS = {"moveLeft", "moveRight", "moveUp", "moveDown"};
+
+    private NCLMedia[] medias;
+    private int[] focusIndexes;
+    private int[] moves;
+    private int initial = NONE;
+    private Map<NCLMedia, Integer> indexes = new HashMap<NCLMedia, Integer>();
+    private Map<Integer, Integer> byFocusIndex = new HashMap<Integer, Integer>();
+    private List<String> warnings = new ArrayList<String>();
+
+
+    /**
+     * Constrói o grafo de navegação de um documento NCL.
+     *
+     * @param doc
+     *          documento NCL.
+     */
+    public NCLFocusGraph(NCLDoc doc) {
+        List<NCLMedia> found = new ArrayList<NCLMedia>();
+        if(doc != null && doc.getBody() != null){
+            Iterable<NCLNode> nodes = doc.getBody().getNodes();
+            collect(nodes, found);
+        }
+
+        medias = found.toArray(new NCLMedia[found.size()]);
+        focusIndexes = new int[medias.length];
+        moves = new int[medias.length * 4];
+        Arrays.fill(moves, NONE);
+
+        for(int i = 0; i < medias.length; i++){
+            int fi = medias[i].getDescriptor().getFocusIndex();
+            focusIndexes[i] = fi;
+            indexes.put(medias[i], i);
+            if(!byFocusIndex.containsKey(fi))
+                byFocusIndex.put(fi, i);
+            if(initial == NONE || fi < focusIndexes[initial])
+                initial = i;
+        }
+
+        buildMoves();
+        checkSymmetry();
+        checkReachability();
+        checkCycles();
+        checkDescriptors(doc);
+    }
+
+
+    /**
+     * Retorna o número de mídias que podem receber foco.
+     *
+     * @return
+     *          número de mídias do grafo.
+     */
+    public int size() {
+        return medias.length;
+    }
+
+
+    /**
+     * Retorna a mídia associada a um índice do grafo.
+     *
+     * @param index
+     *          índice da mídia no grafo.
+     * @return
+     *          mídia associada ao índice.
+     */
+    public NCLMedia getMedia(int index) {
+        return medias[index];
+    }
+
+
+    /**
+     * Retorna o índice de uma mídia no grafo.
+     *
+     * @param media
+     *          mídia a ser procurada.
+     * @return
+     *          índice da mídia ou NONE se a mídia não puder receber foco.
+     */
+    public int indexOf(NCLMedia media) {
+        Integer index = indexes.get(media);
+        if(index == null)
+            return NONE;
+
+        return index;
+    }
+
+
+    /**
+     * Retorna o índice da mídia cujo descritor possui um índice de foco.
+     *
+     * @param focusIndex
+     *          índice de foco do descritor.
+     * @return
+     *          índice da mídia ou NONE se nenhuma mídia possuir o índice de foco.
+     */
+    public int indexOfFocus(int focusIndex) {
+        Integer index = byFocusIndex.get(focusIndex);
+        if(index == null)
+            return NONE;
+
+        return index;
+    }
+
+
+    /**
+     * Retorna o índice de foco do descritor de uma mídia do grafo.
+     *
+     * @param index
+     *          índice da mídia no grafo.
+     * @return
+     *          índice de foco do descritor da mídia.
+     */
+    public int getFocusIndex(int index) {
+        return focusIndexes[index];
+    }
+
+
+    /**
+     * Retorna o índice da mídia que recebe o foco inicialmente, isto é, a
+     * mídia com o menor índice de foco.
+     *
+     * @return
+     *          índice da mídia ou NONE se o grafo for vazio.
+     */
+    public int getInitialFocus() {
+        return initial;
+    }
+
+
+    /**
+     * Retorna a mídia que recebe o foco quando uma tecla direcional é pressionada.
+     *
+     * @param index
+     *          índice da mídia que possui o foco.
+     * @param key
+     *          tecla pressionada. Deve ser uma das teclas direcionais.
+     * @return
+     *          índice da mídia que recebe o foco ou NONE se o foco não for movido.
+     */
+    public int move(int index, NCLKey key) {
+        int dir = direction(key);
+        if(dir < 0 || index < 0 || index >= medias.length)
+            return NONE;
+
+        return moves[index * 4 + dir];
+    }
+
+
+    /**
+     * Retorna a mídia que recebe o foco quando uma tecla direcional é pressionada.
+     *
+     * @param media
+     *          mídia que possui o foco.
+     * @param key
+     *          tecla pressionada. Deve ser uma das teclas direcionais.
+     * @return
+     *          mídia que recebe o foco ou null se o foco não for movido.
+     */
+    public NCLMedia move(NCLMedia media, NCLKey key) {
+        int next = move(indexOf(media), key);
+        if(next == NONE)
+            return null;
+
+        return medias[next];
+    }
+
+
+    /**
+     * Retorna as mensagens de aviso geradas durante a construção do grafo.
+     *
+     * @return
+     *          lista de mensagens de aviso.
+     */
+    public Iterable<String> getWarnings() {
+        return warnings;
+    }
+
+
+    private void collect(Iterable<NCLNode> nodes, List<NCLMedia> found) {
+        for(NCLNode n : nodes){
+            if(n instanceof NCLMedia){
+                Object desc = ((NCLMedia) n).getDescriptor();
+                if(desc instanceof NCLDescriptor && ((NCLDescriptor) desc).getFocusIndex() != null)
+                    found.add((NCLMedia) n);
+            }
+            else if(n instanceof NCLContext){
+                Iterable<NCLNode> cnodes = ((NCLContext) n).getNodes();
+                collect(cnodes, found);
+            }
+            else if(n instanceof NCLSwitch){
+                Iterable<NCLNode> snodes = ((NCLSwitch) n).getNodes();
+                collect(snodes, found);
+            }
+        }
+    }
+
+
+    private void buildMoves() {
+        for(int i = 0; i < medias.length; i++){
+            NCLDescriptor desc = medias[i].getDescriptor();
+            move(i, LEFT, desc.getMoveLeft());
+            move(i, RIGHT, desc.getMoveRight());
+            move(i, UP, desc.getMoveUp());
+            move(i, DOWN, desc.getMoveDown());
+        }
+    }
+
+
+    private void move(int index, int dir, NCLDescriptor target) {
+        if(target == null || target.getFocusIndex() == null)
+            return;
+
+        Integer next = byFocusIndex.get(target.getFocusIndex());
+        if(next == null){
+            warnings.add("Atributo " + DIRECTIONS[dir] + " da mídia " + medias[index].getId() +
+                    " referencia um índice de foco inexistente: " + target.getFocusIndex());
+            return;
+        }
+
+        moves[index * 4 + dir] = next;
+    }
+
+
+    private void checkSymmetry() {
+        for(int i = 0; i < medias.length; i++){
+            for(int dir = 0; dir < 4; dir++){
+                int next = moves[i * 4 + dir];
+                if(next == NONE || next == i)
+                    continue;
+
+                if(moves[next * 4 + opposite(dir)] != i)
+                    warnings.add("Navegação assimétrica: " + DIRECTIONS[dir] + " da mídia " + medias[i].getId() +
+                            " leva a " + medias[next].getId() + ", mas " + DIRECTIONS[opposite(dir)] + " não retorna.");
+            }
+        }
+    }
+
+
+    private void checkReachability() {
+        if(initial == NONE)
+            return;
+
+        boolean[] reached = new boolean[medias.length];
+        int[] queue = new int[medias.length];
+        int head = 0, tail = 0;
+
+        reached[initial] = true;
+        queue[tail++] = initial;
+        while(head < tail){
+            int i = queue[head++];
+            for(int dir = 0; dir < 4; dir++){
+                int next = moves[i * 4 + dir];
+                if(next != NONE && !reached[next]){
+                    reached[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        for(int i = 0; i < medias.length; i++){
+            // mídias que compartilham o índice de foco de uma mídia alcançada também são alcançadas
+            if(!reached[i] && !reached[byFocusIndex.get(focusIndexes[i])])
+                warnings.add("Mídia " + medias[i].getId() + " não pode receber foco a partir do foco inicial.");
+        }
+    }
+
+
+    private void checkCycles() {
+        // Em cada direção cada mídia tem no máximo uma transição, logo cada
+        // caminho termina em uma mídia sem transição ou em um ciclo.
+        for(int dir = 0; dir < 4; dir++){
+            int[] state = new int[medias.length];
+            for(int i = 0; i < medias.length; i++){
+                if(state[i] != 0)
+                    continue;
+
+                int j = i;
+                while(j != NONE && state[j] == 0){
+                    state[j] = 1;
+                    j = moves[j * 4 + dir];
+                }
+
+                if(j != NONE && state[j] == 1)
+                    warnings.add("Ciclo de navegação pelo atributo " + DIRECTIONS[dir] + " a partir da mídia " + medias[j].getId() + ".");
+
+                j = i;
+                while(j != NONE && state[j] == 1){
+                    state[j] = 2;
+                    j = moves[j * 4 + dir];
+                }
+            }
+        }
+    }
+
+
+    private void checkDescriptors(NCLDoc doc) {
+        if(doc == null || doc.getHead() == null || doc.getHead().getDescriptorBase() == null)
+            return;
+
+        Set<Integer> used = new HashSet<Integer>(byFocusIndex.keySet());
+        Iterable<NCLLayoutDescriptor> descriptors = doc.getHead().getDescriptorBase().getDescriptors();
+        for(NCLLayoutDescriptor desc : descriptors){
+            if(desc instanceof NCLDescriptor && ((NCLDescriptor) desc).getFocusIndex() != null){
+                if(!used.contains(((NCLDescriptor) desc).getFocusIndex()))
+                    warnings.add("Descritor " + desc.getId() + " possui índice de foco mas não é usado por nenhuma mídia.");
+            }
+        }
+    }
+
+
+    private int direction(NCLKey key) {
+        if(key == NCLKey.LEFT)
+            return LEFT;
+        if(key == NCLKey.RIGHT)
+            return RIGHT;
+        if(key == NCLKey.UP)
+            return UP;
+        if(key == NCLKey.DOWN)
+            return DOWN;
+
+        return -1;
+    }
+
+
+    private int opposite(int dir) {
+        return dir ^ 1;
+    }
+}
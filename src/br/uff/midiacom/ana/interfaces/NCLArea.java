@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.interfaces;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
@@ -105,6 +106,8 @@ public class NCLArea<I extends NCLInterface> extends NCLIdentifiableElement impl
      *          se alguma das coordenadas for inválida.
      */
     public void setCoords(int[] coords) throws IllegalArgumentException {
+        modified();
+        Object old = this.coords;
         if(coords != null){
             for(int coord : coords){
                 if(coord < 0)
@@ -113,6 +116,7 @@ public class NCLArea<I extends NCLInterface> extends NCLIdentifiableElement impl
         }
 
         this.coords = coords;
+        changed("coords", old, this.coords);
     }
     
     
@@ -137,7 +141,11 @@ public class NCLArea<I extends NCLInterface> extends NCLIdentifiableElement impl
      * @see NCLTime
      */
     public void setBegin(NCLTime begin) {
+        modified();
+        Object old = this.begin;
         this.begin = begin;
+        changed();
+        changed("begin", old, this.begin);
     }
     
     
@@ -162,7 +170,11 @@ public class NCLArea<I extends NCLInterface> extends NCLIdentifiableElement impl
      * @see NCLTime
      */
     public void setEnd(NCLTime end) {
+        modified();
+        Object old = this.end;
         this.end = end;
+        changed();
+        changed("end", old, this.end);
     }
     
     
@@ -186,10 +198,13 @@ public class NCLArea<I extends NCLInterface> extends NCLIdentifiableElement impl
      *          se a String for vazia.
      */
     public void setText(String text) throws IllegalArgumentException {
+        modified();
+        Object old = this.text;
         if(text != null && "".equals(text.trim()))
             throw new IllegalArgumentException("Empty value String");
 
         this.text = text;
+        changed("text", old, this.text);
     }
     
     
@@ -213,10 +228,13 @@ public class NCLArea<I extends NCLInterface> extends NCLIdentifiableElement impl
      *          se a posição for um valor negativo.
      */
     public void setPosition(Integer position) throws IllegalArgumentException {
+        modified();
+        Object old = this.position;
         if(position != null && position < 0)
             throw new IllegalArgumentException("Invalid position");
 
         this.position = position;
+        changed("position", old, this.position);
     }
     
     
@@ -240,7 +258,11 @@ public class NCLArea<I extends NCLInterface> extends NCLIdentifiableElement impl
      * @see NCLSample
      */
     public void setFirst(NCLSample first) {
+        modified();
+        Object old = this.first;
         this.first = first;
+        changed();
+        changed("first", old, this.first);
     }
     
     
@@ -264,7 +286,11 @@ public class NCLArea<I extends NCLInterface> extends NCLIdentifiableElement impl
      * @see NCLSample
      */
     public void setLast(NCLSample last) {
+        modified();
+        Object old = this.last;
         this.last = last;
+        changed();
+        changed("last", old, this.last);
     }
     
     
@@ -290,10 +316,13 @@ public class NCLArea<I extends NCLInterface> extends NCLIdentifiableElement impl
      *          se a String for vazia.
      */
     public void setLabel(String label) throws IllegalArgumentException {
+        modified();
+        Object old = this.label;
         if(label != null && "".equals(label.trim()))
             throw new IllegalArgumentException("Empty label String");
 
         this.label = label;
+        changed("label", old, this.label);
     }
     
     
@@ -308,7 +337,17 @@ public class NCLArea<I extends NCLInterface> extends NCLIdentifiableElement impl
     }
     
     
+    private void changed() {
+        if(getParent() instanceof NCLMedia)
+            ((NCLMedia) getParent()).invalidateAreaIndex();
+    }
+
+
     public String parse(int ident) {
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
         String space, content;
 
         if(ident < 0)
@@ -322,23 +361,23 @@ public class NCLArea<I extends NCLInterface> extends NCLIdentifiableElement impl
         // <area> element and attributes declaration
         content = space + "<area";
         if(getId() != null)
-            content += " id='" + getId() + "'";
+            content += " id='" + escape(getId()) + "'";
         if(getCoords() != null)
-            content += " coords='" + coordsToString() + "'";
+            content += " coords='" + escape(coordsToString()) + "'";
         if(getBegin() != null)
-            content += " begin='" + getBegin().toString() + "'";
+            content += " begin='" + escape(getBegin().toString()) + "'";
         if(getEnd() != null)
-            content += " end='" + getEnd().toString() + "'";
+            content += " end='" + escape(getEnd().toString()) + "'";
         if(getText() != null)
-            content += " text='" + getText() + "'";
+            content += " text='" + escape(getText()) + "'";
         if(getPosition() != null)
-            content += " position='" + getPosition() + "'";
+            content += " position='" + escape(getPosition()) + "'";
         if(getFirst() != null)
-            content += " first='" + getFirst().toString() + "'";
+            content += " first='" + escape(getFirst().toString()) + "'";
         if(getLast() != null)
-            content += " last='" + getLast().toString() + "'";
+            content += " last='" + escape(getLast().toString()) + "'";
         if(getLabel() != null)
-            content += " label='" + getLabel() + "'";
+            content += " label='" + escape(getLabel()) + "'";
         content += "/>\n";
         
         return content;
@@ -367,6 +406,33 @@ public class NCLArea<I extends NCLInterface> extends NCLIdentifiableElement impl
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("coords"))
+                setCoords((int[]) value);
+            else if(property.equals("begin"))
+                setBegin((NCLTime) value);
+            else if(property.equals("end"))
+                setEnd((NCLTime) value);
+            else if(property.equals("text"))
+                setText((String) value);
+            else if(property.equals("position"))
+                setPosition((Integer) value);
+            else if(property.equals("first"))
+                setFirst((NCLSample) value);
+            else if(property.equals("last"))
+                setLast((NCLSample) value);
+            else if(property.equals("label"))
+                setLabel((String) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
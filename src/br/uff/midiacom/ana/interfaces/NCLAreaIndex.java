@@ -0,0 +1,348 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana.interfaces;
+
+import br.uff.midiacom.ana.NCLValues.NCLSampleType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+
+
+/**
+ * Esta classe define um índice temporal das âncoras de conteúdo de uma mídia
+ * da <i>Nested Context Language</i> (NCL).<br/>
+ *
+ * São indexadas as âncoras que definem uma porção temporal, através dos atributos
+ * <i>begin</i> e <i>end</i> ou através de amostras <i>first</i> e <i>last</i>
+ * expressas em segundos ("s" ou "npt"). Âncoras definidas por quadros ("f")
+ * dependem da taxa de quadros do conteúdo e não são indexadas. Uma âncora sem
+ * início começa no instante zero e uma âncora sem fim permanece ativa até o fim
+ * da mídia.
+ *
+ * As âncoras são ordenadas pelo instante de início e organizadas em uma árvore
+ * implícita que guarda o maior instante de fim de cada faixa, o que permite
+ * recuperar as âncoras ativas em um instante visitando apenas as faixas que
+ * contêm alguma âncora ativa. Os instantes de início e fim de todas as âncoras
+ * são mantidos em um vetor ordenado, usado na busca da próxima fronteira.
+ *
+ * @see NCLArea
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLAreaIndex<A extends NCLArea> {
+
+    private Object[] anchors;
+    private double[] begins;
+    private double[] ends;
+    private double[] maxEnds;
+    private double[] boundaries;
+    private int leaves;
+
+
+    /**
+     * Constrói o índice temporal a partir de um conjunto de âncoras.
+     *
+     * @param areas
+     *          âncoras a serem indexadas.
+     */
+    public NCLAreaIndex(Iterable<A> areas) {
+        List<Object[]> entries = new ArrayList<Object[]>();
+        if(areas != null){
+            for(A area : areas){
+                double[] interval = interval(area);
+                if(interval != null)
+                    entries.add(new Object[]{area, interval});
+            }
+        }
+
+        Object[][] sorted = entries.toArray(new Object[entries.size()][]);
+        Arrays.sort(sorted, new Comparator<Object[]>() {
+            public int compare(Object[] o1, Object[] o2) {
+                return Double.compare(((double[]) o1[1])[0], ((double[]) o2[1])[0]);
+            }
+        });
+
+        int n = sorted.length;
+        anchors = new Object[n];
+        begins = new double[n];
+        ends = new double[n];
+        double[] all = new double[n * 2];
+        int count = 0;
+        for(int i = 0; i < n; i++){
+            double[] interval = (double[]) sorted[i][1];
+            anchors[i] = sorted[i][0];
+            begins[i] = interval[0];
+            ends[i] = interval[1];
+            all[count++] = interval[0];
+            if(!Double.isInfinite(interval[1]))
+                all[count++] = interval[1];
+        }
+
+        Arrays.sort(all, 0, count);
+        int unique = 0;
+        for(int i = 0; i < count; i++){
+            if(unique == 0 || all[i] != all[unique - 1])
+                all[unique++] = all[i];
+        }
+        boundaries = Arrays.copyOf(all, unique);
+
+        leaves = 1;
+        while(leaves < n)
+            leaves *= 2;
+        maxEnds = new double[leaves * 2];
+        Arrays.fill(maxEnds, Double.NEGATIVE_INFINITY);
+        for(int i = 0; i < n; i++)
+            maxEnds[leaves + i] = ends[i];
+        for(int i = leaves - 1; i > 0; i--)
+            maxEnds[i] = Math.max(maxEnds[2 * i], maxEnds[2 * i + 1]);
+    }
+
+
+    /**
+     * Retorna o número de âncoras temporais indexadas.
+     *
+     * @return
+     *          número de âncoras do índice.
+     */
+    public int size() {
+        return anchors.length;
+    }
+
+
+    /**
+     * Retorna as âncoras ativas em um instante, isto é, as âncoras cujo início
+     * é menor ou igual ao instante e cujo fim é maior que o instante. As âncoras
+     * são retornadas em ordem de início.
+     *
+     * @param time
+     *          instante, em segundos, a partir do início da mídia.
+     * @return
+     *          lista com as âncoras ativas no instante.
+     */
+    public List<A> getActive(double time) {
+        List<A> result = new ArrayList<A>();
+
+        // apenas as âncoras que começam até o instante podem estar ativas
+        int limit = upper(begins, time);
+        if(limit > 0)
+            collect(1, 0, leaves, limit, time, result);
+
+        return result;
+    }
+
+
+    /**
+     * Retorna as âncoras ativas em um instante.
+     *
+     * @param time
+     *          instante a partir do início da mídia.
+     * @return
+     *          lista com as âncoras ativas no instante.
+     *
+     * @see #getActive(double)
+     */
+    public List<A> getActive(NCLTime time) {
+        return getActive(toSeconds(time));
+    }
+
+
+    /**
+     * Verifica se uma âncora está ativa em um instante.
+     *
+     * @param area
+     *          âncora a ser verificada.
+     * @param time
+     *          instante, em segundos, a partir do início da mídia.
+     * @return
+     *          verdadeiro se a âncora estiver indexada e ativa no instante.
+     */
+    public boolean isActive(A area, double time) {
+        for(int i = 0; i < anchors.length; i++){
+            if(anchors[i] == area)
+                return begins[i] <= time && time < ends[i];
+        }
+        return false;
+    }
+
+
+    /**
+     * Retorna o primeiro instante, posterior ao instante informado, em que alguma
+     * âncora começa ou termina.
+     *
+     * @param time
+     *          instante, em segundos, a partir do início da mídia.
+     * @return
+     *          instante da próxima fronteira ou <i>Double.POSITIVE_INFINITY</i>
+     *          se não houver fronteira posterior ao instante.
+     */
+    public double nextBoundary(double time) {
+        int index = upper(boundaries, time);
+        if(index < boundaries.length)
+            return boundaries[index];
+        else
+            return Double.POSITIVE_INFINITY;
+    }
+
+
+    /**
+     * Retorna o primeiro instante, posterior ao instante informado, em que alguma
+     * âncora começa ou termina.
+     *
+     * @param time
+     *          instante a partir do início da mídia.
+     * @return
+     *          instante da próxima fronteira, em segundos.
+     *
+     * @see #nextBoundary(double)
+     */
+    public double nextBoundary(NCLTime time) {
+        return nextBoundary(toSeconds(time));
+    }
+
+
+    /**
+     * Converte um valor de tempo em segundos. Valores no formato UTC são
+     * convertidos em segundos desde 1 de janeiro de 1970.
+     *
+     * @param time
+     *          elemento representando o valor de tempo.
+     * @return
+     *          valor em segundos ou <i>Double.NaN</i> se o valor for incompleto.
+     */
+    public static double toSeconds(NCLTime time) {
+        if(time == null || time.getSecond() == null)
+            return Double.NaN;
+
+        double seconds = time.getSecond() + fraction(time.getFraction());
+
+        if(time.getYear() != null && time.getMonth() != null && time.getDay() != null){
+            Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+            calendar.clear();
+            calendar.set(time.getYear(), time.getMonth() - 1, time.getDay(),
+                    value(time.getHour()), value(time.getMinute()), 0);
+            return calendar.getTimeInMillis() / 1000.0 + seconds;
+        }
+
+        return (value(time.getHour()) * 60 + value(time.getMinute())) * 60 + seconds;
+    }
+
+
+    /**
+     * Converte uma amostra em segundos.
+     *
+     * @param sample
+     *          elemento representando a amostra.
+     * @return
+     *          valor em segundos ou <i>Double.NaN</i> se a amostra for expressa em quadros.
+     */
+    public static double toSeconds(NCLSample sample) {
+        if(sample == null || sample.getType() == null || sample.getType().equals(NCLSampleType.F))
+            return Double.NaN;
+
+        return sample.getValue();
+    }
+
+
+    private double[] interval(A area) {
+        double begin, end;
+
+        if(area.getBegin() != null || area.getEnd() != null){
+            begin = area.getBegin() != null ? toSeconds(area.getBegin()) : 0;
+            end = area.getEnd() != null ? toSeconds(area.getEnd()) : Double.POSITIVE_INFINITY;
+        }
+        else if(area.getFirst() != null || area.getLast() != null){
+            begin = area.getFirst() != null ? toSeconds(area.getFirst()) : 0;
+            end = area.getLast() != null ? toSeconds(area.getLast()) : Double.POSITIVE_INFINITY;
+        }
+        else
+            return null;
+
+        if(Double.isNaN(begin) || Double.isNaN(end) || end < begin)
+            return null;
+
+        return new double[]{begin, end};
+    }
+
+
+    private void collect(int node, int from, int to, int limit, double time, List<A> result) {
+        if(from >= limit || maxEnds[node] <= time)
+            return;
+
+        if(node >= leaves){
+            result.add((A) anchors[node - leaves]);
+            return;
+        }
+
+        int middle = (from + to) / 2;
+        collect(2 * node, from, middle, limit, time, result);
+        collect(2 * node + 1, middle, to, limit, time, result);
+    }
+
+
+    private static int upper(double[] values, double time) {
+        int low = 0, high = values.length;
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            if(values[middle] <= time)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+
+    private static double fraction(Integer fraction) {
+        if(fraction == null || fraction <= 0)
+            return 0;
+
+        double result = fraction;
+        while(result >= 1)
+            result /= 10;
+        return result;
+    }
+
+
+    private static int value(Integer value) {
+        return value != null ? value : 0;
+    }
+}
@@ -37,8 +37,10 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.interfaces;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
-import br.uff.midiacom.ana.NCLInvalidIdentifierException;
+import br.uff.midiacom.ana.NCLReference;
+import br.uff.midiacom.ana.NCLReferenceIndex;
 import br.uff.midiacom.ana.node.NCLContext;
 import br.uff.midiacom.ana.node.NCLMedia;
 import br.uff.midiacom.ana.node.NCLNode;
@@ -55,8 +57,9 @@ import org.xml.sax.XMLReader;
  */
 public class NCLMapping<M extends NCLMapping, N extends NCLNode, I extends NCLInterface> extends NCLElement implements Comparable<M> {
 
-    private N component;
-    private I interfac;
+    private Object component;
+    private Object interfac;
+    NCLPortResolver resolver;
 
 
     /**
@@ -88,7 +91,12 @@ public class NCLMapping<M extends NCLMapping, N extends NCLNode, I extends NCLIn
      *          elemento representando o componente mapeado.
      */
     public void setComponent(N component) {
+        modified();
+        Object old = NCLReference.peek(this.component);
+        NCLReferenceIndex.update(this, "component", NCLReference.peek(this.component), component);
         this.component = component;
+        changed();
+        changed("component", old, NCLReference.peek(this.component));
     }
 
 
@@ -99,7 +107,7 @@ public class NCLMapping<M extends NCLMapping, N extends NCLNode, I extends NCLIn
      *          elemento representando o componente mapeado.
      */
     public N getComponent() {
-        return component;
+        return NCLReference.get(component);
     }
 
 
@@ -110,7 +118,12 @@ public class NCLMapping<M extends NCLMapping, N extends NCLNode, I extends NCLIn
      *          elemento representando a interface mapeada.
      */
     public void setInterface(I interfac) {
+        modified();
+        Object old = NCLReference.peek(this.interfac);
+        NCLReferenceIndex.update(this, "interface", NCLReference.peek(this.interfac), interfac);
         this.interfac = interfac;
+        changed();
+        changed("interface", old, NCLReference.peek(this.interfac));
     }
 
 
@@ -121,11 +134,21 @@ public class NCLMapping<M extends NCLMapping, N extends NCLNode, I extends NCLIn
      *          elemento representando a interface mapeada.
      */
     public I getInterface() {
-        return interfac;
+        return NCLReference.get(interfac);
+    }
+
+
+    private void changed() {
+        if(resolver != null)
+            resolver.invalidate(this);
     }
 
 
     public String parse(int ident) {
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
         String space, content;
 
         if(ident < 0)
@@ -139,10 +162,10 @@ public class NCLMapping<M extends NCLMapping, N extends NCLNode, I extends NCLIn
 
         // param element and attributes declaration
         content = space + "<mapping";
-        if(getComponent() != null)
-            content += " component='" + getComponent().getId() + "'";
-        if(getInterface() != null)
-            content += " interface='" + getInterface().getId() + "'";
+        if(component != null)
+            content += " component='" + escape(NCLReference.id(component)) + "'";
+        if(interfac != null)
+            content += " interface='" + escape(NCLReference.id(interfac)) + "'";
         content += "/>\n";
 
         return content;
@@ -152,29 +175,54 @@ public class NCLMapping<M extends NCLMapping, N extends NCLNode, I extends NCLIn
         int comp = 0;
 
         // Compara pelo componente
-        comp = getComponent().compareTo(other.getComponent());
+        comp = NCLReference.id(component).compareTo(NCLReference.id(((NCLMapping) other).component));
 
         // Compara pela interface
         if(comp == 0){
-            comp = getInterface().compareTo(other.getInterface());
+            comp = NCLReference.id(interfac).compareTo(NCLReference.id(((NCLMapping) other).interfac));
         }
 
         return comp;
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("component"))
+                setComponent((N) value);
+            else if(property.equals("interface"))
+                setInterface((I) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
 
         boolean valid = true;
 
-        if(getComponent() == null){
+        if(!NCLReference.isValid(component)){
+            addError("Atributo component possui um identificador inválido.");
+            valid = false;
+        }
+
+        if(!NCLReference.isValid(interfac)){
+            addError("Atributo interface possui um identificador inválido.");
+            valid = false;
+        }
+
+        if(component == null){
             addError("Elemento não possui atributo obrigatório component.");
             valid = false;
         }
 
-        if(getComponent() != null && getParent() != null && getParent().getParent() != null){
+        if(component != null && getParent() != null && getParent().getParent() != null){
             if(getComponent().compareTo(getParent().getParent()) == 0){
                 addError("Atributo component deve referênciar elemento interno ao switch.");
                 valid = false;
@@ -186,7 +234,7 @@ public class NCLMapping<M extends NCLMapping, N extends NCLNode, I extends NCLIn
             }
         }
 
-        if(getInterface() != null && getComponent() != null && getParent() != null && getParent().getParent() != null){
+        if(interfac != null && component != null && getParent() != null && getParent().getParent() != null){
             if(getComponent() instanceof NCLMedia){
                 if(getInterface() instanceof NCLArea && !((NCLMedia) getComponent()).hasArea((NCLArea) getInterface())){
                     addError("Atributo interface deve referênciar interface contida no elemento referênciado em component.");
@@ -235,18 +283,13 @@ public class NCLMapping<M extends NCLMapping, N extends NCLNode, I extends NCLIn
 
     @Override
     public void startElement(String uri, String localName, String qName, Attributes attributes) {
-        try{
-            cleanWarnings();
-            cleanErrors();
-            for(int i = 0; i < attributes.getLength(); i++){
-                if(attributes.getLocalName(i).equals("component"))
-                    setComponent((N) new NCLContext(attributes.getValue(i)));//cast retirado na correcao das referencias
-                else if(attributes.getLocalName(i).equals("interface"))
-                    setInterface((I) new NCLPort(attributes.getValue(i)));//cast retirado na correcao das referencias
-            }
-        }
-        catch(NCLInvalidIdentifierException ex){
-            addError(ex.getMessage());
+        cleanWarnings();
+        cleanErrors();
+        for(int i = 0; i < attributes.getLength(); i++){
+            if(attributes.getLocalName(i).equals("component"))
+                component = new NCLReference(NCLContext.class, attributes.getValue(i));
+            else if(attributes.getLocalName(i).equals("interface"))
+                interfac = new NCLReference(NCLPort.class, attributes.getValue(i));
         }
     }
 
@@ -256,10 +299,10 @@ public class NCLMapping<M extends NCLMapping, N extends NCLNode, I extends NCLIn
         if(getParent() == null)
             return;
 
-        if(getComponent() != null)
+        if(component != null)
             componentReference();
 
-        if(getComponent() != null && getInterface() != null)
+        if(component != null && interfac != null)
             interfaceReference();
     }
 
@@ -274,13 +317,13 @@ public class NCLMapping<M extends NCLMapping, N extends NCLNode, I extends NCLIn
         Iterable<N> nodes = ((NCLSwitch) getParent().getParent()).getNodes();
 
         for(N node : nodes){
-            if(node.getId().equals(getComponent().getId())){
+            if(node.getId().equals(NCLReference.id(component))){
                 setComponent(node);
                 return;
             }
         }
 
-        addWarning("Could not find node in switch with id: " + getComponent().getId());
+        addWarning("Could not find node in switch with id: " + NCLReference.id(component));
     }
 
 
@@ -290,14 +333,14 @@ public class NCLMapping<M extends NCLMapping, N extends NCLNode, I extends NCLIn
         if(getComponent() instanceof NCLMedia){
             ifaces = ((NCLMedia) getComponent()).getAreas();
             for(I iface : ifaces){
-                if(iface.getId().equals(getInterface().getId())){
+                if(iface.getId().equals(NCLReference.id(interfac))){
                     setInterface(iface);
                     return;
                 }
             }
             ifaces = ((NCLMedia) getComponent()).getProperties();
             for(I iface : ifaces){
-                if(iface.getId().equals(getInterface().getId())){
+                if(iface.getId().equals(NCLReference.id(interfac))){
                     setInterface(iface);
                     return;
                 }
@@ -306,14 +349,14 @@ public class NCLMapping<M extends NCLMapping, N extends NCLNode, I extends NCLIn
         else if(getComponent() instanceof NCLContext){
             ifaces = ((NCLContext) getComponent()).getPorts();
             for(I iface : ifaces){
-                if(iface.getId().equals(getInterface().getId())){
+                if(iface.getId().equals(NCLReference.id(interfac))){
                     setInterface(iface);
                     return;
                 }
             }
             ifaces = ((NCLContext) getComponent()).getProperties();
             for(I iface : ifaces){
-                if(iface.getId().equals(getInterface().getId())){
+                if(iface.getId().equals(NCLReference.id(interfac))){
                     setInterface(iface);
                     return;
                 }
@@ -322,13 +365,13 @@ public class NCLMapping<M extends NCLMapping, N extends NCLNode, I extends NCLIn
         else if(getComponent() instanceof NCLSwitch){
             ifaces = ((NCLSwitch) getComponent()).getPorts();
             for(I iface : ifaces){
-                if(iface.getId().equals(getInterface().getId())){
+                if(iface.getId().equals(NCLReference.id(interfac))){
                     setInterface(iface);
                     return;
                 }
             }
         }
 
-        addWarning("Could not find interface with id: " + getInterface().getId());
+        addWarning("Could not find interface with id: " + NCLReference.id(interfac));
     }
 }
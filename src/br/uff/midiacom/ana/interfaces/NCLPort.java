@@ -38,9 +38,12 @@
 package br.uff.midiacom.ana.interfaces;
 
 import br.uff.midiacom.ana.NCLBody;
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
+import br.uff.midiacom.ana.NCLReference;
+import br.uff.midiacom.ana.NCLReferenceIndex;
 import br.uff.midiacom.ana.node.NCLContext;
 import br.uff.midiacom.ana.node.NCLMedia;
 import br.uff.midiacom.ana.node.NCLNode;
@@ -58,8 +61,9 @@ import org.xml.sax.XMLReader;
  */
 public class NCLPort<N extends NCLNode, I extends NCLInterface> extends NCLIdentifiableElement implements NCLInterface<I> {
 
-    private N component;
-    private I interfac;
+    private Object component;
+    private Object interfac;
+    NCLPortResolver resolver;
 
 
     /**
@@ -98,7 +102,12 @@ public class NCLPort<N extends NCLNode, I extends NCLInterface> extends NCLIdent
      *          elemento representando o nó.
      */
     public void setComponent(N component) {
+        modified();
+        Object old = NCLReference.peek(this.component);
+        NCLReferenceIndex.update(this, "component", NCLReference.peek(this.component), component);
         this.component = component;
+        changed();
+        changed("component", old, NCLReference.peek(this.component));
     }
     
     
@@ -109,7 +118,7 @@ public class NCLPort<N extends NCLNode, I extends NCLInterface> extends NCLIdent
      *          elemento representando o nó.
      */
     public N getComponent() {
-        return component;
+        return NCLReference.get(component);
     }
     
     
@@ -120,7 +129,12 @@ public class NCLPort<N extends NCLNode, I extends NCLInterface> extends NCLIdent
      *          elemento representando a interface do nó.
      */
     public void setInterface(I interfac) {
+        modified();
+        Object old = NCLReference.peek(this.interfac);
+        NCLReferenceIndex.update(this, "interface", NCLReference.peek(this.interfac), interfac);
         this.interfac = interfac;
+        changed();
+        changed("interface", old, NCLReference.peek(this.interfac));
     }
     
     
@@ -131,11 +145,21 @@ public class NCLPort<N extends NCLNode, I extends NCLInterface> extends NCLIdent
      *          elemento representando a interface do nó.
      */
     public I getInterface() {
-        return interfac;
+        return NCLReference.get(interfac);
     }
     
     
+    private void changed() {
+        if(resolver != null)
+            resolver.invalidate(this);
+    }
+
+
     public String parse(int ident) {
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
         String space, content;
 
         if(ident < 0)
@@ -150,11 +174,11 @@ public class NCLPort<N extends NCLNode, I extends NCLInterface> extends NCLIdent
         // <port> element and attributes declaration
         content = space + "<port";
         if(getId() != null)
-            content += " id='" + getId() + "'";
-        if(getComponent() != null)
-            content += " component='" + getComponent().getId() + "'";
-        if(getInterface() != null)
-            content += " interface='" + getInterface().getId() + "'";
+            content += " id='" + escape(getId()) + "'";
+        if(component != null)
+            content += " component='" + escape(NCLReference.id(component)) + "'";
+        if(interfac != null)
+            content += " interface='" + escape(NCLReference.id(interfac)) + "'";
         content += "/>\n";
         
         return content;
@@ -166,22 +190,47 @@ public class NCLPort<N extends NCLNode, I extends NCLInterface> extends NCLIdent
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("component"))
+                setComponent((N) value);
+            else if(property.equals("interface"))
+                setInterface((I) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
 
         boolean valid = true;
 
+        if(!NCLReference.isValid(component)){
+            addError("Atributo component possui um identificador inválido.");
+            valid = false;
+        }
+
+        if(!NCLReference.isValid(interfac)){
+            addError("Atributo interface possui um identificador inválido.");
+            valid = false;
+        }
+
         if(getId() == null){
             addError("Elemento não possui atributo obrigatório id.");
             valid = false;
         }
-        if(getComponent() == null){
+        if(component == null){
             addError("Elemento não possui atributo obrigatório component.");
             valid = false;
         }
 
-        if(getComponent() != null && getParent() != null){
+        if(component != null && getParent() != null){
             if(getParent() instanceof NCLNode && getComponent() instanceof NCLNode && getComponent().compareTo(getParent()) == 0){
                 addError("Atributo component deve referênciar elemento interno ao contexto.");
                 valid = false;
@@ -197,7 +246,7 @@ public class NCLPort<N extends NCLNode, I extends NCLInterface> extends NCLIdent
             }
         }
 
-        if(getInterface() != null && getComponent() != null){
+        if(interfac != null && component != null){
             if(getComponent() instanceof NCLMedia){
                 if(getInterface() instanceof NCLArea && !((NCLMedia) getComponent()).hasArea((NCLArea) getInterface())){
                     addError("Atributo interface deve referênciar interface contida no elemento referênciado em component.");
@@ -253,9 +302,9 @@ public class NCLPort<N extends NCLNode, I extends NCLInterface> extends NCLIdent
                 if(attributes.getLocalName(i).equals("id"))
                     setId(attributes.getValue(i));
                 else if(attributes.getLocalName(i).equals("component"))
-                    setComponent((N) new NCLContext(attributes.getValue(i)));//cast retirado na correcao das referencias
+                    component = new NCLReference(NCLContext.class, attributes.getValue(i));
                 else if(attributes.getLocalName(i).equals("interface"))
-                    setInterface((I) new NCLPort(attributes.getValue(i)));//cast retirado na correcao das referencias
+                    interfac = new NCLReference(NCLPort.class, attributes.getValue(i));
             }
         }
         catch(NCLInvalidIdentifierException ex){
@@ -269,10 +318,10 @@ public class NCLPort<N extends NCLNode, I extends NCLInterface> extends NCLIdent
         if(getParent() == null)
             return;
 
-        if(getComponent() != null)
+        if(component != null)
             componentReference();
 
-        if(getComponent() != null && getInterface() != null)
+        if(component != null && interfac != null)
             interfaceReference();
     }
 
@@ -287,13 +336,13 @@ public class NCLPort<N extends NCLNode, I extends NCLInterface> extends NCLIdent
             nodes = ((NCLContext) getParent()).getNodes();
 
         for(N node : nodes){
-            if(node.getId().equals(getComponent().getId())){
+            if(node.getId().equals(NCLReference.id(component))){
                 setComponent(node);
                 return;
             }
         }
 
-        addWarning("Could not find node with id: " + getComponent().getId());
+        addWarning("Could not find node with id: " + NCLReference.id(component));
     }
 
 
@@ -304,14 +353,14 @@ public class NCLPort<N extends NCLNode, I extends NCLInterface> extends NCLIdent
         if(getComponent() instanceof NCLMedia){
             ifaces = ((NCLMedia) getComponent()).getAreas();
             for(I iface : ifaces){
-                if(iface.getId().equals(getInterface().getId())){
+                if(iface.getId().equals(NCLReference.id(interfac))){
                     setInterface(iface);
                     return;
                 }
             }
             ifaces = ((NCLMedia) getComponent()).getProperties();
             for(I iface : ifaces){
-                if(iface.getId().equals(getInterface().getId())){
+                if(iface.getId().equals(NCLReference.id(interfac))){
                     setInterface(iface);
                     return;
                 }
@@ -320,14 +369,14 @@ public class NCLPort<N extends NCLNode, I extends NCLInterface> extends NCLIdent
         else if(getComponent() instanceof NCLContext){
             ifaces = ((NCLContext) getComponent()).getPorts();
             for(I iface : ifaces){
-                if(iface.getId().equals(getInterface().getId())){
+                if(iface.getId().equals(NCLReference.id(interfac))){
                     setInterface(iface);
                     return;
                 }
             }
             ifaces = ((NCLContext) getComponent()).getProperties();
             for(I iface : ifaces){
-                if(iface.getId().equals(getInterface().getId())){
+                if(iface.getId().equals(NCLReference.id(interfac))){
                     setInterface(iface);
                     return;
                 }
@@ -336,13 +385,13 @@ public class NCLPort<N extends NCLNode, I extends NCLInterface> extends NCLIdent
         else if(getComponent() instanceof NCLSwitch){
             ifaces = ((NCLSwitch) getComponent()).getPorts();
             for(I iface : ifaces){
-                if(iface.getId().equals(getInterface().getId())){
+                if(iface.getId().equals(NCLReference.id(interfac))){
                     setInterface(iface);
                     return;
                 }
             }
         }
 
-        addWarning("Could not find interface with id: " + getInterface().getId());
+        addWarning("Could not find interface with id: " + NCLReference.id(interfac));
     }
 }
@@ -0,0 +1,379 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana.interfaces;
+
+import br.uff.midiacom.ana.NCLBody;
+import br.uff.midiacom.ana.NCLDoc;
+import br.uff.midiacom.ana.NCLElement;
+import br.uff.midiacom.ana.node.NCLContext;
+import br.uff.midiacom.ana.node.NCLNode;
+import br.uff.midiacom.ana.node.NCLSwitch;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Esta classe define um resolvedor das cadeias de portas de um documento da
+ * <i>Nested Context Language</i> (NCL).<br/>
+ *
+ * Uma porta pode apontar para a porta de um contexto interno ou para a porta de
+ * um switch, cujos mapeamentos apontam, por sua vez, para outros nós e interfaces.
+ * O resolvedor percorre essas cadeias uma única vez e guarda, para cada porta,
+ * a lista plana de alvos terminais (nó e interface) alcançados por ela. As portas
+ * de switch são expandidas em todos os seus mapeamentos, na ordem em que estes
+ * aparecem.
+ *
+ * As portas, portas de switch e mapeamentos visitados avisam o resolvedor quando
+ * seus atributos ou mapeamentos são alterados, e apenas as portas cujas cadeias
+ * passam pelo elemento alterado são recalculadas. Um elemento avisa somente o
+ * último resolvedor que o visitou. O corpo, os contextos e os switches avisam o
+ * resolvedor do documento quando portas são adicionadas ou removidas e quando
+ * nós são removidos. Portas e componentes retirados do documento não produzem
+ * alvos.
+ *
+ * @see NCLPort
+ * @see NCLSwitchPort
+ * @see NCLMapping
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLPortResolver {
+
+    private NCLDoc<?, ?> doc;
+    private Map<NCLInterface<?>, List<Target>> targets = new IdentityHashMap<NCLInterface<?>, List<Target>>();
+    private Map<Object, Set<NCLInterface<?>>> dependents = new IdentityHashMap<Object, Set<NCLInterface<?>>>();
+    private Set<NCLInterface<?>> visiting = Collections.newSetFromMap(new IdentityHashMap<NCLInterface<?>, Boolean>());
+    private Set<NCLInterface<?>> cycles = Collections.newSetFromMap(new IdentityHashMap<NCLInterface<?>, Boolean>());
+    private List<Target> entryPoints;
+    private List<String> warnings = new ArrayList<String>();
+
+
+    /**
+     * Constrói o resolvedor das portas de um documento NCL, resolvendo as cadeias
+     * de todas as portas do corpo, dos contextos e dos switches do documento. O
+     * corpo do documento passa a avisar o resolvedor quando portas são
+     * adicionadas ou removidas.
+     *
+     * @param doc
+     *          documento NCL.
+     */
+    public NCLPortResolver(NCLDoc<?, ?> doc) {
+        this.doc = doc;
+
+        if(doc != null && doc.getBody() != null){
+            doc.getBody().setPortResolver(this);
+            for(Object port : doc.getBody().getPorts())
+                getTargets((NCLInterface<?>) port);
+
+            resolveAll(doc.getBody().getNodes());
+        }
+    }
+
+
+    /**
+     * Retorna os alvos terminais de uma porta ou porta de switch. A lista
+     * retornada não pode ser modificada.
+     *
+     * @param port
+     *          porta ou porta de switch.
+     * @return
+     *          lista com os alvos terminais da porta.
+     */
+    public List<Target> getTargets(NCLInterface<?> port) {
+        List<Target> result = targets.get(port);
+        if(result == null){
+            if(port instanceof NCLPort || port instanceof NCLSwitchPort)
+                result = resolve(port);
+            else
+                result = Collections.emptyList();
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Retorna os alvos terminais das portas do corpo do documento, isto é, os
+     * pontos de entrada do documento. A lista retornada não pode ser modificada.
+     *
+     * @return
+     *          lista com os alvos terminais das portas do corpo do documento.
+     */
+    public List<Target> getEntryPoints() {
+        if(entryPoints == null){
+            List<Target> result = new ArrayList<Target>();
+            if(doc != null && doc.getBody() != null){
+                for(Object port : doc.getBody().getPorts())
+                    result.addAll(getTargets((NCLInterface<?>) port));
+            }
+            entryPoints = Collections.unmodifiableList(result);
+        }
+
+        return entryPoints;
+    }
+
+
+    /**
+     * Retorna o resolvedor de portas do documento que contém um elemento.
+     *
+     * @param element
+     *          elemento NCL.
+     * @return
+     *          resolvedor atribuído ao corpo do documento ou nulo.
+     */
+    public static NCLPortResolver of(NCLElement element) {
+        NCLElement e = element;
+        while(e != null && !(e instanceof NCLBody) && e.getParent() != e)
+            e = e.getParent();
+
+        return e instanceof NCLBody ? ((NCLBody) e).getPortResolver() : null;
+    }
+
+
+    /**
+     * Descarta os alvos das portas cujas cadeias passam por um elemento. Chamado
+     * pelas portas, portas de switch e mapeamentos quando são alterados e pelo
+     * corpo, pelos contextos e pelos switches quando uma porta é adicionada ou
+     * removida ou quando um nó é removido.
+     *
+     * @param element
+     *          porta, porta de switch, mapeamento ou nó alterado.
+     */
+    public void invalidate(Object element) {
+        if(element instanceof NCLInterface)
+            targets.remove(element);
+
+        Set<NCLInterface<?>> ports = dependents.remove(element);
+        if(ports != null){
+            for(NCLInterface<?> port : ports)
+                invalidate(port);
+        }
+
+        entryPoints = null;
+    }
+
+
+    /**
+     * Descarta todos os alvos calculados.
+     */
+    public void clear() {
+        targets.clear();
+        dependents.clear();
+        entryPoints = null;
+        warnings.clear();
+    }
+
+
+    /**
+     * Retorna o número de portas com alvos calculados.
+     *
+     * @return
+     *          número de portas resolvidas.
+     */
+    public int size() {
+        return targets.size();
+    }
+
+
+    /**
+     * Retorna as mensagens encontradas durante a resolução das portas.
+     *
+     * @return
+     *          objeto Iterable contendo as mensagens.
+     */
+    public Iterable<String> getWarnings() {
+        return warnings;
+    }
+
+
+    private void resolveAll(Iterable<?> nodes) {
+        for(Object n : nodes){
+            if(n instanceof NCLContext){
+                NCLContext<?, ?, ?, ?, ?, ?, ?> ctx = (NCLContext<?, ?, ?, ?, ?, ?, ?>) n;
+                for(Object port : ctx.getPorts())
+                    getTargets((NCLInterface<?>) port);
+
+                resolveAll(ctx.getNodes());
+            }
+            else if(n instanceof NCLSwitch){
+                NCLSwitch<?, ?, ?, ?> sw = (NCLSwitch<?, ?, ?, ?>) n;
+                for(Object port : sw.getPorts())
+                    getTargets((NCLInterface<?>) port);
+
+                resolveAll(sw.getNodes());
+            }
+        }
+    }
+
+
+    private List<Target> resolve(NCLInterface<?> port) {
+        if(!visiting.add(port)){
+            // as portas ainda abertas na cadeia terão resultados parciais
+            warnings.add("Cadeia de portas cíclica na porta " + port.getId() + ".");
+            cycles.add(port);
+            return Collections.emptyList();
+        }
+
+        Set<Target> found = new LinkedHashSet<Target>();
+        if(port instanceof NCLPort){
+            NCLPort<?, ?> p = (NCLPort<?, ?>) port;
+            p.resolver = this;
+            follow(p, p.getComponent(), p.getInterface(), found);
+        }
+        else{
+            NCLSwitchPort<?, ?> sp = (NCLSwitchPort<?, ?>) port;
+            sp.resolver = this;
+            for(Object m : sp.getMappings()){
+                NCLMapping<?, ?, ?> mapping = (NCLMapping<?, ?, ?>) m;
+                mapping.resolver = this;
+                depend(mapping, port);
+                follow(mapping, mapping.getComponent(), mapping.getInterface(), found);
+            }
+        }
+
+        visiting.remove(port);
+        cycles.remove(port);
+
+        Target[] flat = found.toArray(new Target[found.size()]);
+        List<Target> result = Collections.unmodifiableList(Arrays.asList(flat));
+
+        // só guarda o resultado se nenhuma cadeia cíclica ainda estiver aberta
+        if(cycles.isEmpty())
+            targets.put(port, result);
+
+        return result;
+    }
+
+
+    private void follow(Object owner, Object component, Object interfac, Set<Target> found) {
+        if(component == null)
+            return;
+
+        NCLInterface<?> dependent = owner instanceof NCLMapping ? (NCLInterface<?>) ((NCLMapping<?, ?, ?>) owner).getParent() : (NCLInterface<?>) owner;
+
+        // a porta é recalculada quando o componente é retirado do documento
+        depend(component, dependent);
+        if(((NCLNode<?>) component).getParent() == null){
+            warnings.add("Componente da porta " + dependent.getId() + " não pertence ao documento.");
+            return;
+        }
+
+        if(interfac instanceof NCLPort || interfac instanceof NCLSwitchPort){
+            NCLInterface<?> port = (NCLInterface<?>) interfac;
+            depend(port, dependent);
+            if(port.getParent() == null){
+                warnings.add("Interface da porta " + dependent.getId() + " não pertence ao documento.");
+                return;
+            }
+            found.addAll(getTargets(port));
+        }
+        else
+            found.add(new Target((NCLNode<?>) component, (NCLInterface<?>) interfac));
+    }
+
+
+    private void depend(Object element, NCLInterface<?> port) {
+        Set<NCLInterface<?>> ports = dependents.get(element);
+        if(ports == null){
+            ports = Collections.newSetFromMap(new IdentityHashMap<NCLInterface<?>, Boolean>());
+            dependents.put(element, ports);
+        }
+        ports.add(port);
+    }
+
+
+    /**
+     * Alvo terminal de uma cadeia de portas, formado pelo nó e pela interface
+     * alcançados. A interface é nula quando a cadeia termina no próprio nó.
+     */
+    public static class Target {
+
+        private NCLNode<?> node;
+        private NCLInterface<?> interfac;
+
+
+        Target(NCLNode<?> node, NCLInterface<?> interfac) {
+            this.node = node;
+            this.interfac = interfac;
+        }
+
+
+        /**
+         * Retorna o nó alcançado pela cadeia de portas.
+         *
+         * @return
+         *          elemento representando o nó.
+         */
+        public NCLNode<?> getNode() {
+            return node;
+        }
+
+
+        /**
+         * Retorna a interface alcançada pela cadeia de portas.
+         *
+         * @return
+         *          elemento representando a interface ou nulo.
+         */
+        public NCLInterface<?> getInterface() {
+            return interfac;
+        }
+
+
+        @Override
+        public boolean equals(Object other) {
+            if(!(other instanceof Target))
+                return false;
+
+            Target t = (Target) other;
+            return node == t.node && interfac == t.interfac;
+        }
+
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(node) * 31 + System.identityHashCode(interfac);
+        }
+    }
+}
@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.interfaces;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
@@ -110,6 +111,7 @@ public class NCLProperty<I extends NCLInterface> extends NCLIdentifiableElement
      *          se o nome da propriedade não for válido.
      */
     public void setName(String name) throws NCLInvalidIdentifierException {
+        modified();
         setId(name);
     }    
 
@@ -123,6 +125,7 @@ public class NCLProperty<I extends NCLInterface> extends NCLIdentifiableElement
      *          se o nome da propriedade não for válido.
      */
     public void setName(NCLSystemVariable name) throws NCLInvalidIdentifierException {
+        modified();
         if(name == null)
             throw new NCLInvalidIdentifierException("Invalid name");
 
@@ -150,10 +153,13 @@ public class NCLProperty<I extends NCLInterface> extends NCLIdentifiableElement
      *          se a String for vazia.
      */
     public void setValue(String value) throws IllegalArgumentException {
+        modified();
+        Object old = this.value;
         if(value != null && "".equals(value.trim()))
             throw new IllegalArgumentException("Empty value String");
 
         this.value = value;
+        changed("value", old, this.value);
     }
     
     
@@ -169,6 +175,10 @@ public class NCLProperty<I extends NCLInterface> extends NCLIdentifiableElement
     
     
     public String parse(int ident) {
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
         String space, content;
 
         if(ident < 0)
@@ -182,9 +192,9 @@ public class NCLProperty<I extends NCLInterface> extends NCLIdentifiableElement
         // <property> element and attributes declaration
         content = space + "<property";
         if(getName() != null)
-            content += " name='" + getName() + "'";
+            content += " name='" + escape(getName()) + "'";
         if(getValue() != null)
-            content += " value='" + getValue() + "'";
+            content += " value='" + escape(getValue()) + "'";
         content += "/>\n";
         
         
@@ -197,6 +207,19 @@ public class NCLProperty<I extends NCLInterface> extends NCLIdentifiableElement
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("value"))
+                setValue((String) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
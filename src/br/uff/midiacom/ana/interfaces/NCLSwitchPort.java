@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.interfaces;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
@@ -55,6 +56,7 @@ import org.xml.sax.XMLReader;
 public class NCLSwitchPort<I extends NCLInterface, M extends NCLMapping> extends NCLIdentifiableElement implements NCLInterface<I> {
 
     private Set<M> mappings = new TreeSet<M>();
+    NCLPortResolver resolver;
 
 
     /**
@@ -97,10 +99,13 @@ public class NCLSwitchPort<I extends NCLInterface, M extends NCLMapping> extends
      * @see TreeSet#add
      */
     public boolean addMapping(M mapping) {
+        modified();
         if(mappings.add(mapping)){
             //Se mapping existe, atribui este como seu parente
             if(mapping != null)
                 mapping.setParent(this);
+            added("mapping", mapping);
+            changed();
 
             return true;
         }
@@ -119,10 +124,13 @@ public class NCLSwitchPort<I extends NCLInterface, M extends NCLMapping> extends
      * @see TreeSet#remove
      */
     public boolean removeMapping(M mapping) {
+        modified();
         if(mappings.remove(mapping)){
             //Se mapping existe, retira o seu parentesco
             if(mapping != null)
                 mapping.setParent(null);
+            removed("mapping", mapping);
+            changed();
 
             return true;
         }
@@ -165,8 +173,19 @@ public class NCLSwitchPort<I extends NCLInterface, M extends NCLMapping> extends
     }
 
 
+    private void changed() {
+        if(resolver != null)
+            resolver.invalidate(this);
+    }
+
+
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -178,19 +197,19 @@ public class NCLSwitchPort<I extends NCLInterface, M extends NCLMapping> extends
 
 
         // <port> element and attributes declaration
-        content = space + "<switchPort";
+        content.append(space + "<switchPort");
         if(getId() != null)
-            content += " id='" + getId() + "'";
-        content += ">\n";
+            content.append(" id='" + escape(getId()) + "'");
+        content.append(">\n");
 
         if(hasMapping()){
             for(M mapping : mappings)
-                content += mapping.parse(ident + 1);
+                content.append(mapping.parse(ident + 1));
         }
 
-        content += "</switchPort>\n";
+        content.append("</switchPort>\n");
 
-        return content;
+        return content.toString();
     }
 
 
@@ -199,6 +218,19 @@ public class NCLSwitchPort<I extends NCLInterface, M extends NCLMapping> extends
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(property.equals("mapping")){
+            if(operation == Operation.ADD)
+                addMapping((M) value);
+            else
+                removeMapping((M) value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
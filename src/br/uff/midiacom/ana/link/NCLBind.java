@@ -38,13 +38,17 @@
 package br.uff.midiacom.ana.link;
 
 import br.uff.midiacom.ana.connector.*;
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
+import br.uff.midiacom.ana.NCLReference;
 import br.uff.midiacom.ana.descriptor.NCLDescriptor;
+import br.uff.midiacom.ana.descriptor.NCLLayoutDescriptor;
 import br.uff.midiacom.ana.interfaces.*;
 import br.uff.midiacom.ana.NCLBody;
 import br.uff.midiacom.ana.NCLDoc;
 import br.uff.midiacom.ana.NCLElement;
-import br.uff.midiacom.ana.NCLInvalidIdentifierException;
+import br.uff.midiacom.ana.NCLReferenceIndex;
 import br.uff.midiacom.ana.NCLValues.NCLParamInstance;
+import br.uff.midiacom.ana.reuse.NCLImportGraph;
 import br.uff.midiacom.ana.node.NCLContext;
 import br.uff.midiacom.ana.node.NCLMedia;
 import br.uff.midiacom.ana.node.NCLNode;
@@ -73,9 +77,10 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
         extends NCLElement implements Comparable<B>{
 
     private R role;
-    private N component;
-    private I interfac;
-    private D descriptor;
+    private Object component;
+    private Object interfac;
+    private Object descriptor;
+    private String descriptorAlias;
     
     private Set<P> bindParams = new TreeSet<P>();
     
@@ -109,7 +114,11 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
      *          Objeto do tipo role representando o papel ao qual o bind será associado.
      */
     public void setRole(R role) {
+        modified();
+        Object old = this.role;
+        NCLReferenceIndex.update(this, "role", this.role, role);
         this.role = role;
+        changed("role", old, this.role);
     }
     
     
@@ -131,7 +140,11 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
      *          Objeto representando o nó a ser mapeado pelo bind.
      */
     public void setComponent(N component) {
+        modified();
+        Object old = NCLReference.peek(this.component);
+        NCLReferenceIndex.update(this, "component", NCLReference.peek(this.component), component);
         this.component = component;
+        changed("component", old, NCLReference.peek(this.component));
     }
     
     
@@ -142,7 +155,7 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
      *           Objeto representando o nó mapeado pelo bind.
      */
     public N getComponent() {
-        return component;
+        return NCLReference.get(component);
     }
     
     
@@ -153,7 +166,11 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
      *          Objeto representando a interface do nó a ser atribuida.
      */
     public void setInterface(I interfac) {
+        modified();
+        Object old = NCLReference.peek(this.interfac);
+        NCLReferenceIndex.update(this, "interface", NCLReference.peek(this.interfac), interfac);
         this.interfac = interfac;
+        changed("interface", old, NCLReference.peek(this.interfac));
     }
     
     
@@ -164,7 +181,7 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
      *          Objeto representando a interface do nó.
      */
     public I getInterface() {
-        return interfac;
+        return NCLReference.get(interfac);
     }
     
     
@@ -172,11 +189,38 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
     /**
      * Atribui um descritor ao bind.
      *
+     * O apelido de importação do descritor é descartado.
+     *
      * @param descriptor
      *          Objeto representando o descritor a ser atribuido.
      */
     public void setDescriptor(D descriptor) {
+        setDescriptor(descriptor, null);
+    }
+
+
+    /**
+     * Atribui ao bind um descritor definido em um documento importado.
+     *
+     * @param descriptor
+     *          Objeto representando o descritor a ser atribuido.
+     * @param descriptorAlias
+     *          String representando o apelido da importação ou nulo se o descritor
+     *          for do próprio documento.
+     *
+     * @see NCLImportGraph
+     */
+    public void setDescriptor(D descriptor, String descriptorAlias) {
+        // o apelido é atribuído antes do descritor para que as alterações
+        // possam ser desfeitas na ordem inversa
+        if(descriptorAlias == null ? this.descriptorAlias != null : !descriptorAlias.equals(this.descriptorAlias))
+            setDescriptorAlias(descriptorAlias);
+
+        modified();
+        Object old = NCLReference.peek(this.descriptor);
+        NCLReferenceIndex.update(this, "descriptor", NCLReference.peek(this.descriptor), descriptor);
         this.descriptor = descriptor;
+        changed("descriptor", old, NCLReference.peek(this.descriptor));
     }
     
     
@@ -187,7 +231,37 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
      *          Objeto representando o descritor a ser atribuido.
      */
     public D getDescriptor() {
-        return descriptor;
+        return NCLReference.get(descriptor);
+    }
+
+
+    /**
+     * Atribui o apelido do documento importado onde o descritor referenciado pelo
+     * atributo <i>descriptor</i> está definido. O apelido é nulo quando a
+     * referência é feita a um elemento do próprio documento.
+     *
+     * @param descriptorAlias
+     *          String representando o apelido, por exemplo "conn" em "conn#id".
+     *
+     * @see NCLImportGraph
+     */
+    public void setDescriptorAlias(String descriptorAlias) {
+        modified();
+        Object old = this.descriptorAlias;
+        this.descriptorAlias = descriptorAlias;
+        changed("descriptorAlias", old, this.descriptorAlias);
+    }
+
+
+    /**
+     * Retorna o apelido do documento importado onde o descritor referenciado pelo
+     * atributo <i>descriptor</i> está definido.
+     *
+     * @return
+     *          String representando o apelido ou nulo se a referência for local.
+     */
+    public String getDescriptorAlias() {
+        return descriptorAlias;
     }
     
     
@@ -202,10 +276,12 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
      * @see TreeSet#add
      */
     public boolean addBindParam(P param) {
+        modified();
         if(bindParams.add(param)){
             //Se param existe, atribui este como seu parente
             if(param != null)
                 param.setParent(this);
+            added("bindParam", param);
 
             return true;
         }
@@ -224,10 +300,12 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
      * @see TreeSet#remove
      */
     public boolean removeBindParam(P param) {
+        modified();
         if(bindParams.remove(param)){
             //Se param existe, retira o seu parentesco
             if(param != null)
                 param.setParent(null);
+            removed("bindParam", param);
 
             return true;
         }
@@ -271,7 +349,12 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
     
     
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -283,29 +366,29 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
         
         
         // <bind> element and attributes declaration
-        content = space + "<bind";
+        content.append(space + "<bind");
         if(getRole() != null)
-            content += " role='" + getRole().getName() + "'";
-        if(getComponent() != null)
-            content += " component='" + getComponent().getId() + "'";
-        if(getInterface() != null)
-            content += " interface='" + getInterface().getId() + "'";
-        if(getDescriptor() != null)
-            content += " descriptor='" + getDescriptor().getId() + "'";
+            content.append(" role='" + escape(getRole().getName()) + "'");
+        if(component != null)
+            content.append(" component='" + escape(NCLReference.id(component)) + "'");
+        if(interfac != null)
+            content.append(" interface='" + escape(NCLReference.id(interfac)) + "'");
+        if(descriptor != null)
+            content.append(" descriptor='" + escape(NCLImportGraph.qualify(getDescriptorAlias(), NCLReference.id(descriptor))) + "'");
         
         // <bind> element content
         if(hasBindParam()){
-            content += ">\n";
+            content.append(">\n");
 
             for(P param : bindParams)
-                content += param.parse(ident + 1);
+                content.append(param.parse(ident + 1));
             
-            content += space + "</bind>\n";
+            content.append(space + "</bind>\n");
         }
         else
-            content += "/>\n";
+            content.append("/>\n");
         
-        return content;
+        return content.toString();
     }
     
     /**
@@ -328,25 +411,28 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
 
         // Compara pelo componente
         if(comp == 0){
-            if(getComponent() != null)
-                comp = getComponent().compareTo(other.getComponent());
-            else
+            Object other_component = ((NCLBind) other).component;
+            if(component != null)
+                comp = NCLReference.id(component).compareTo(NCLReference.id(other_component));
+            else if(other_component != null)
                 comp = -1;
         }
 
         // Compara pela interface
         if(comp == 0){
-            if(getInterface() != null)
-                comp = getInterface().compareTo(other.getInterface());
-            else
+            Object other_interfac = ((NCLBind) other).interfac;
+            if(interfac != null)
+                comp = NCLReference.id(interfac).compareTo(NCLReference.id(other_interfac));
+            else if(other_interfac != null)
                 comp = -1;
         }
 
         // Compara pelo descritor
         if(comp == 0){
-            if(getDescriptor() != null)
-                comp = getDescriptor().compareTo(other.getDescriptor());
-            else
+            Object other_descriptor = ((NCLBind) other).descriptor;
+            if(descriptor != null)
+                comp = NCLReference.id(descriptor).compareTo(NCLReference.id(other_descriptor));
+            else if(other_descriptor != null)
                 comp = -1;
         }
 
@@ -370,22 +456,64 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("role"))
+                setRole((R) value);
+            else if(property.equals("component"))
+                setComponent((N) value);
+            else if(property.equals("interface"))
+                setInterface((I) value);
+            else if(property.equals("descriptor"))
+                setDescriptor((D) value, getDescriptorAlias());
+            else if(property.equals("descriptorAlias"))
+                setDescriptorAlias((String) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else if(property.equals("bindParam")){
+            if(operation == Operation.ADD)
+                addBindParam((P) value);
+            else
+                removeBindParam((P) value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
 
         boolean valid = true;
 
+        if(!NCLReference.isValid(component)){
+            addError("Atributo component possui um identificador inválido.");
+            valid = false;
+        }
+
+        if(!NCLReference.isValid(interfac)){
+            addError("Atributo interface possui um identificador inválido.");
+            valid = false;
+        }
+
+        if(!NCLReference.isValid(descriptor)){
+            addError("Atributo descriptor possui um identificador inválido.");
+            valid = false;
+        }
+
         if(getRole() == null){
             addError("Elemento não possui atributo obrigatório role.");
             valid = false;
         }
-        if(getComponent() == null){
+        if(component == null){
             addError("Elemento não possui atributo obrigatório component.");
             valid = false;
         }
 
-        if(getComponent() != null && getParent() != null && getParent().getParent() != null){
+        if(component != null && getParent() != null && getParent().getParent() != null){
             if(getParent().getParent() instanceof NCLNode && getComponent() instanceof NCLNode && getComponent().compareTo(getParent().getParent()) == 0){
                 addError("Atributo component deve referênciar elemento interno a composição.");
                 valid = false;
@@ -401,7 +529,7 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
             }
         }
 
-        if(getInterface() != null && getComponent() != null){
+        if(interfac != null && component != null){
             if(getComponent() instanceof NCLMedia){
                 if(getInterface() instanceof NCLArea && !((NCLMedia) getComponent()).hasArea((NCLArea) getInterface())){
                     addError("Atributo interface deve referênciar interface contida no elemento referênciado em component.");
@@ -462,29 +590,26 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
 
     @Override
     public void startElement(String uri, String localName, String qName, Attributes attributes) {
-        try{
-            if(localName.equals("bind")){
-                cleanWarnings();
-                cleanErrors();
-                for(int i = 0; i < attributes.getLength(); i++){
-                    if(attributes.getLocalName(i).equals("role"))
-                        setRole((R) new NCLRole(attributes.getValue(i)));//cast retirado na correcao das referencias
-                    else if(attributes.getLocalName(i).equals("component"))
-                        setComponent((N) new NCLContext(attributes.getValue(i)));//cast retirado na correcao das referencias
-                    else if(attributes.getLocalName(i).equals("interface"))
-                        setInterface((I) new NCLPort(attributes.getValue(i)));//cast retirado na correcao das referencias
-                    else if(attributes.getLocalName(i).equals("descriptor"))
-                        setDescriptor((D) new NCLDescriptor(attributes.getValue(i)));//cast retirado na correcao das referencias
+        if(localName.equals("bind")){
+            cleanWarnings();
+            cleanErrors();
+            for(int i = 0; i < attributes.getLength(); i++){
+                if(attributes.getLocalName(i).equals("role"))
+                    setRole((R) new NCLRole(attributes.getValue(i)));//cast retirado na correcao das referencias
+                else if(attributes.getLocalName(i).equals("component"))
+                    component = new NCLReference(NCLContext.class, attributes.getValue(i));
+                else if(attributes.getLocalName(i).equals("interface"))
+                    interfac = new NCLReference(NCLPort.class, attributes.getValue(i));
+                else if(attributes.getLocalName(i).equals("descriptor")){
+                    setDescriptorAlias(NCLImportGraph.alias(attributes.getValue(i)));
+                    descriptor = new NCLReference(NCLDescriptor.class, NCLImportGraph.localId(attributes.getValue(i)));
                 }
             }
-            else if(localName.equals("bindParam")){
-                P child = createBindParam();
-                child.startElement(uri, localName, qName, attributes);
-                addBindParam(child);
-            }
         }
-        catch(NCLInvalidIdentifierException ex){
-            addError(ex.getMessage());
+        else if(localName.equals("bindParam")){
+            P child = createBindParam();
+            child.startElement(uri, localName, qName, attributes);
+            addBindParam(child);
         }
     }
 
@@ -494,11 +619,11 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
         if(getParent() != null){
             if(getRole() != null)
                 roleReference();
-            if(getComponent() != null)
+            if(component != null)
                 componentReference();
-            if(getComponent() != null && getInterface() != null)
+            if(component != null && interfac != null)
                 interfaceReference();
-            if(getDescriptor() != null)
+            if(descriptor != null)
                 descriptorReference();
         }
 
@@ -663,13 +788,13 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
             nodes = ((NCLContext) getParent().getParent()).getNodes();
 
         for(N node : nodes){
-            if(node.getId().equals(getComponent().getId())){
+            if(node.getId().equals(NCLReference.id(component))){
                 setComponent(node);
                 return;
             }
         }
 
-        addWarning("Could not find role in node with id: " + getComponent().getId());
+        addWarning("Could not find role in node with id: " + NCLReference.id(component));
     }
 
     /**
@@ -682,14 +807,14 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
         if(getComponent() instanceof NCLMedia){
             ifaces = ((NCLMedia) getComponent()).getAreas();
             for(I iface : ifaces){
-                if(iface.getId().equals(getInterface().getId())){
+                if(iface.getId().equals(NCLReference.id(interfac))){
                     setInterface(iface);
                     return;
                 }
             }
             ifaces = ((NCLMedia) getComponent()).getProperties();
             for(I iface : ifaces){
-                if(iface.getId().equals(getInterface().getId())){
+                if(iface.getId().equals(NCLReference.id(interfac))){
                     setInterface(iface);
                     return;
                 }
@@ -698,14 +823,14 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
         else if(getComponent() instanceof NCLContext){
             ifaces = ((NCLContext) getComponent()).getPorts();
             for(I iface : ifaces){
-                if(iface.getId().equals(getInterface().getId())){
+                if(iface.getId().equals(NCLReference.id(interfac))){
                     setInterface(iface);
                     return;
                 }
             }
             ifaces = ((NCLContext) getComponent()).getProperties();
             for(I iface : ifaces){
-                if(iface.getId().equals(getInterface().getId())){
+                if(iface.getId().equals(NCLReference.id(interfac))){
                     setInterface(iface);
                     return;
                 }
@@ -714,14 +839,14 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
         else if(getComponent() instanceof NCLSwitch){
             ifaces = ((NCLSwitch) getComponent()).getPorts();
             for(I iface : ifaces){
-                if(iface.getId().equals(getInterface().getId())){
+                if(iface.getId().equals(NCLReference.id(interfac))){
                     setInterface(iface);
                     return;
                 }
             }
         }
 
-        addWarning("Could not find interface with id: " + getInterface().getId());
+        addWarning("Could not find interface with id: " + NCLReference.id(interfac));
     }
 
     /**
@@ -759,17 +884,31 @@ public class NCLBind<B extends NCLBind, R extends NCLRole, N extends NCLNode, I
      * advertencias.
      */
     private void descriptorReference() {
+        //Search for the descriptor inside an imported base
+        if(getDescriptorAlias() != null){
+            NCLImportGraph graph = NCLImportGraph.getGraph(this);
+            if(graph == null)
+                return;
+
+            NCLLayoutDescriptor desc = graph.findDescriptor(this, getDescriptorAlias(), NCLReference.id(descriptor));
+            if(desc instanceof NCLDescriptor)
+                setDescriptor((D) desc, getDescriptorAlias());
+            else
+                addWarning("Could not find descriptor in imported base with id: " + NCLImportGraph.qualify(getDescriptorAlias(), NCLReference.id(descriptor)));
+            return;
+        }
+
         //Search for the descriptor inside the node
         Iterable<D> descriptors = getDescriptors();
         for(D desc : descriptors){
-            if(desc.getId().equals(getDescriptor().getId())){
+            if(desc.getId().equals(NCLReference.id(descriptor))){
                 setDescriptor(desc);
                 return;
             }
         }
         //@todo: descritores internos a switch de descritores podem ser utilizados?
 
-        addWarning("Could not find descriptor in descriptorBase with id: " + getDescriptor().getId());
+        addWarning("Could not find descriptor in descriptorBase with id: " + NCLReference.id(descriptor));
     }
 
 
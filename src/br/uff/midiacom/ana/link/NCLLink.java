@@ -37,12 +37,16 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.link;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
+import br.uff.midiacom.ana.NCLReference;
 import br.uff.midiacom.ana.connector.NCLCausalConnector;
 import br.uff.midiacom.ana.NCLDoc;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
+import br.uff.midiacom.ana.NCLReferenceIndex;
 import br.uff.midiacom.ana.NCLValues.NCLParamInstance;
+import br.uff.midiacom.ana.reuse.NCLImportGraph;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -68,7 +72,8 @@ import org.xml.sax.XMLReader;
  */
 public class NCLLink<L extends NCLLink, P extends NCLParam, B extends NCLBind, C extends NCLCausalConnector> extends NCLIdentifiableElement implements Comparable<L>{
 
-    private C xconnector;
+    private Object xconnector;
+    private String xconnectorAlias;
     
     private Set<P> linkParams = new TreeSet<P>();
     private List<B> binds = new ArrayList<B>();
@@ -100,11 +105,38 @@ public class NCLLink<L extends NCLLink, P extends NCLParam, B extends NCLBind, C
      * Atribui um conector ao link. Ele será responsável por definir a forma do relacionamento, isto é, as condições que deverão ser satisfeitas e as
      * ações que serão executadas caso as condições sejam satisfeita.
      *
+     * O apelido de importação do conector é descartado.
+     *
      * @param xconnector
      *          Objeto representando o conector a ser atribuido ao link.
      */
     public void setXconnector(C xconnector) {
+        setXconnector(xconnector, null);
+    }
+
+
+    /**
+     * Atribui ao link um conector definido em um documento importado.
+     *
+     * @param xconnector
+     *          Objeto representando o conector a ser atribuido ao link.
+     * @param xconnectorAlias
+     *          String representando o apelido da importação ou nulo se o conector
+     *          for do próprio documento.
+     *
+     * @see NCLImportGraph
+     */
+    public void setXconnector(C xconnector, String xconnectorAlias) {
+        // o apelido é atribuído antes do conector para que as alterações
+        // possam ser desfeitas na ordem inversa
+        if(xconnectorAlias == null ? this.xconnectorAlias != null : !xconnectorAlias.equals(this.xconnectorAlias))
+            setXconnectorAlias(xconnectorAlias);
+
+        modified();
+        Object old = NCLReference.peek(this.xconnector);
+        NCLReferenceIndex.update(this, "xconnector", NCLReference.peek(this.xconnector), xconnector);
         this.xconnector = xconnector;
+        changed("xconnector", old, NCLReference.peek(this.xconnector));
     }
     
     
@@ -115,7 +147,37 @@ public class NCLLink<L extends NCLLink, P extends NCLParam, B extends NCLBind, C
      *          Objeto representando o conector associado ao link.
      */
     public C getXconnector() {
-        return xconnector;
+        return NCLReference.get(xconnector);
+    }
+
+
+    /**
+     * Atribui o apelido do documento importado onde o conector referenciado pelo
+     * atributo <i>xconnector</i> está definido. O apelido é nulo quando a
+     * referência é feita a um elemento do próprio documento.
+     *
+     * @param xconnectorAlias
+     *          String representando o apelido, por exemplo "conn" em "conn#id".
+     *
+     * @see NCLImportGraph
+     */
+    public void setXconnectorAlias(String xconnectorAlias) {
+        modified();
+        Object old = this.xconnectorAlias;
+        this.xconnectorAlias = xconnectorAlias;
+        changed("xconnectorAlias", old, this.xconnectorAlias);
+    }
+
+
+    /**
+     * Retorna o apelido do documento importado onde o conector referenciado pelo
+     * atributo <i>xconnector</i> está definido.
+     *
+     * @return
+     *          String representando o apelido ou nulo se a referência for local.
+     */
+    public String getXconnectorAlias() {
+        return xconnectorAlias;
     }
     
     
@@ -130,10 +192,12 @@ public class NCLLink<L extends NCLLink, P extends NCLParam, B extends NCLBind, C
      * @see TreeSet#add
      */
     public boolean addLinkParam(P param) {
+        modified();
         if(linkParams.add(param)){
             //Se param existe, atribui este como seu parente
             if(param != null)
                 param.setParent(this);
+            added("linkParam", param);
 
             return true;
         }
@@ -152,10 +216,12 @@ public class NCLLink<L extends NCLLink, P extends NCLParam, B extends NCLBind, C
      * @see TreeSet#remove
      */
     public boolean removeLinkParam(P param) {
+        modified();
         if(linkParams.remove(param)){
             //Se param existe, retira o seu parentesco
             if(param != null)
                 param.setParent(null);
+            removed("linkParam", param);
 
             return true;
         }
@@ -210,9 +276,11 @@ public class NCLLink<L extends NCLLink, P extends NCLParam, B extends NCLBind, C
      * @see TreeSet#add
      */
     public boolean addBind(B bind) {
+        modified();
         if(bind != null && binds.add(bind)){
             //atribui este como parente do bind
             bind.setParent(this);
+            added("bind", bind);
 
             return true;
         }
@@ -231,10 +299,12 @@ public class NCLLink<L extends NCLLink, P extends NCLParam, B extends NCLBind, C
      * @see TreeSet#remove
      */
     public boolean removeBind(B bind) {
+        modified();
         if(binds.remove(bind)){
             //Se bind existe, retira o seu parentesco
             if(bind != null)
                 bind.setParent(null);
+            removed("bind", bind);
 
             return true;
         }
@@ -278,7 +348,12 @@ public class NCLLink<L extends NCLLink, P extends NCLParam, B extends NCLBind, C
     
     
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -290,27 +365,27 @@ public class NCLLink<L extends NCLLink, P extends NCLParam, B extends NCLBind, C
         
         
         // <link> element and attributes declaration
-        content = space + "<link";
+        content.append(space + "<link");
         if(getId() != null)
-            content += " id='" + getId() + "'";
-        if(getXconnector() != null)
-            content += " xconnector='" + getXconnector().getId() + "'";
-        content += ">\n";
+            content.append(" id='" + escape(getId()) + "'");
+        if(xconnector != null)
+            content.append(" xconnector='" + escape(NCLImportGraph.qualify(getXconnectorAlias(), NCLReference.id(xconnector))) + "'");
+        content.append(">\n");
         
         // <link> element content
         if(hasLinkParam()){
             for(P param : linkParams)
-                content += param.parse(ident + 1);
+                content.append(param.parse(ident + 1));
         }
         if(hasBind()){
             for(B bind : binds)
-                content += bind.parse(ident + 1);
+                content.append(bind.parse(ident + 1));
         }
 
         // <link> element end declaration
-        content += space + "</link>\n";
+        content.append(space + "</link>\n");
         
-        return content;
+        return content.toString();
     }
 
     /**
@@ -326,9 +401,10 @@ public class NCLLink<L extends NCLLink, P extends NCLParam, B extends NCLBind, C
         int comp = 0;
 
         // Compara pelo xconnector
-        if(getXconnector() != null)
-            comp = getXconnector().compareTo(other.getXconnector());
-        else
+        Object other_xconnector = ((NCLLink) other).xconnector;
+        if(xconnector != null)
+            comp = NCLReference.id(xconnector).compareTo(NCLReference.id(other_xconnector));
+        else if(other_xconnector != null)
             comp = 1;
 
         // Compara o número de parâmetros
@@ -337,7 +413,7 @@ public class NCLLink<L extends NCLLink, P extends NCLParam, B extends NCLBind, C
 
         // Compara o número de binds
         if(comp == 0)
-            comp = binds.size() - ((Set) other.getBinds()).size();
+            comp = binds.size() - ((List) other.getBinds()).size();
 
         // Compara os parâmetros
         if(comp == 0){
@@ -366,13 +442,45 @@ public class NCLLink<L extends NCLLink, P extends NCLParam, B extends NCLBind, C
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("xconnector"))
+                setXconnector((C) value, getXconnectorAlias());
+            else if(property.equals("xconnectorAlias"))
+                setXconnectorAlias((String) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else if(property.equals("linkParam")){
+            if(operation == Operation.ADD)
+                addLinkParam((P) value);
+            else
+                removeLinkParam((P) value);
+        }
+        else if(property.equals("bind")){
+            if(operation == Operation.ADD)
+                addBind((B) value);
+            else
+                removeBind((B) value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
 
         boolean valid = true;
 
-        if(getXconnector() == null){
+        if(!NCLReference.isValid(xconnector)){
+            addError("Atributo xconnector possui um identificador inválido.");
+            valid = false;
+        }
+
+        if(xconnector == null){
             addError("Elemento não possui atriuto obrigatório xconnector.");
             valid = false;
         }
@@ -413,8 +521,10 @@ public class NCLLink<L extends NCLLink, P extends NCLParam, B extends NCLBind, C
                 for(int i = 0; i < attributes.getLength(); i++){
                     if(attributes.getLocalName(i).equals("id"))
                         setId(attributes.getValue(i));
-                    else if(attributes.getLocalName(i).equals("xconnector"))
-                        setXconnector((C) new NCLCausalConnector(attributes.getValue(i)));//cast retirado na correcao das referencias
+                    else if(attributes.getLocalName(i).equals("xconnector")){
+                        setXconnectorAlias(NCLImportGraph.alias(attributes.getValue(i)));
+                        xconnector = new NCLReference(NCLCausalConnector.class, NCLImportGraph.localId(attributes.getValue(i)));
+                    }
                 }
             }
             else if(localName.equals("linkParam")){
@@ -437,7 +547,7 @@ public class NCLLink<L extends NCLLink, P extends NCLParam, B extends NCLBind, C
     @Override
     public void endDocument() {
         if(getParent() != null){
-            if(getXconnector() != null)
+            if(xconnector != null)
                 connectorReference();
         }
 
@@ -490,21 +600,35 @@ public class NCLLink<L extends NCLLink, P extends NCLParam, B extends NCLBind, C
      * documento. Caso nãop exista, adiciona uma advertencias a lista de advertencias.
      */
     private void connectorReference() {
+        //Search for the connector inside an imported base
+        if(getXconnectorAlias() != null){
+            NCLImportGraph graph = NCLImportGraph.getGraph(this);
+            if(graph == null)
+                return;
+
+            NCLCausalConnector connector = graph.findConnector(this, getXconnectorAlias(), NCLReference.id(xconnector));
+            if(connector != null)
+                setXconnector((C) connector, getXconnectorAlias());
+            else
+                addWarning("Could not find connector in imported base with id: " + NCLImportGraph.qualify(getXconnectorAlias(), NCLReference.id(xconnector)));
+            return;
+        }
+
         //Search for the connector inside the base
         Iterable<C> connectors = getConnectors();
         if(connectors == null){
-            addWarning("Could not find connector in connectorBase with id: " + getXconnector().getId());
+            addWarning("Could not find connector in connectorBase with id: " + NCLReference.id(xconnector));
             return;
         }
 
         for(C connector : connectors){
-            if(connector.getId().equals(getXconnector().getId())){
+            if(connector.getId().equals(NCLReference.id(xconnector))){
                 setXconnector(connector);
                 return;
             }
         }
 
-        addWarning("Could not find connector in connectorBase with id: " + getXconnector().getId());
+        addWarning("Could not find connector in connectorBase with id: " + NCLReference.id(xconnector));
     }
 
 
@@ -37,9 +37,10 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.link;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
+import br.uff.midiacom.ana.NCLReference;
 import br.uff.midiacom.ana.connector.NCLConnectorParam;
 import br.uff.midiacom.ana.NCLElement;
-import br.uff.midiacom.ana.NCLInvalidIdentifierException;
 import br.uff.midiacom.ana.NCLValues.NCLParamInstance;
 import org.xml.sax.Attributes;
 import org.xml.sax.XMLReader;
@@ -59,7 +60,7 @@ import org.xml.sax.XMLReader;
  */
 public class NCLParam<P extends NCLParam, C extends NCLConnectorParam> extends NCLElement implements Comparable<P>{
 
-    private C name;
+    private Object name;
     private String value;
 
     private NCLParamInstance paramType;
@@ -114,7 +115,10 @@ public class NCLParam<P extends NCLParam, C extends NCLConnectorParam> extends N
      *          Objeto representando o parâmetro do conector ao qual este parâmetro se refere.
      */
     public void setName(C connectorParam) {
+        modified();
+        Object old = NCLReference.peek(this.name);
         this.name = connectorParam;
+        changed("name", old, NCLReference.peek(this.name));
     }
     
     /**
@@ -123,7 +127,7 @@ public class NCLParam<P extends NCLParam, C extends NCLConnectorParam> extends N
      * @return NCLConnectorParam representando o nome do parâmetro.
      */
     public C getName() {
-        return name;
+        return NCLReference.get(name);
     }
     
     
@@ -164,6 +168,10 @@ public class NCLParam<P extends NCLParam, C extends NCLConnectorParam> extends N
     
     
     public String parse(int ident) {
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
         String space, content;
 
         if(ident < 0)
@@ -177,10 +185,10 @@ public class NCLParam<P extends NCLParam, C extends NCLConnectorParam> extends N
         
         // param element and attributes declaration
         content = space + "<" + paramType.toString();
-        if(getName() != null)
-            content += " name='" + getName().getName() + "'";
+        if(name != null)
+            content += " name='" + escape(NCLReference.id(name)) + "'";
         if(getValue() != null)
-            content += " value='" + getValue() + "'";
+            content += " value='" + escape(getValue()) + "'";
         content += "/>\n";
         
         return content;
@@ -195,7 +203,20 @@ public class NCLParam<P extends NCLParam, C extends NCLConnectorParam> extends N
      * 1 ou -1, caso sejam diferentes
      */
     public int compareTo(P other) {
-        return getName().compareTo(other.getName());
+        return NCLReference.id(name).compareTo(NCLReference.id(((NCLParam) other).name));
+    }
+
+
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("name"))
+                setName((C) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else
+            super.applyChange(operation, property, value);
     }
 
 
@@ -205,7 +226,12 @@ public class NCLParam<P extends NCLParam, C extends NCLConnectorParam> extends N
 
         boolean valid = true;
 
-        if(getName() == null){
+        if(!NCLReference.isValid(name)){
+            addError("Atributo name possui um identificador inválido.");
+            valid = false;
+        }
+
+        if(name == null){
             addError("Elemento não possui atributo obrigatório name.");
             valid = false;
         }
@@ -214,11 +240,11 @@ public class NCLParam<P extends NCLParam, C extends NCLConnectorParam> extends N
             valid = false;
         }
 
-        if(getParent() instanceof NCLLink && ((NCLLink) getParent()).getXconnector() != null && !((NCLLink) getParent()).getXconnector().hasConnectorParam(getName().getName())){
+        if(getParent() instanceof NCLLink && ((NCLLink) getParent()).getXconnector() != null && !((NCLLink) getParent()).getXconnector().hasConnectorParam(NCLReference.id(name))){
             addError("Atributo name deve referênciar um parâmetro especificado pelo conector utilizado no link.");
             valid = false;
         }
-        else if(getParent().getParent() != null && ((NCLLink) getParent().getParent()).getXconnector() != null && !((NCLLink) getParent().getParent()).getXconnector().hasConnectorParam(getName().getName())){
+        else if(getParent().getParent() != null && ((NCLLink) getParent().getParent()).getXconnector() != null && !((NCLLink) getParent().getParent()).getXconnector().hasConnectorParam(NCLReference.id(name))){
             addError("Atributo name deve referênciar um parâmetro especificado pelo conector utilizado no link.");
             valid = false;
         }
@@ -229,18 +255,13 @@ public class NCLParam<P extends NCLParam, C extends NCLConnectorParam> extends N
 
     @Override
     public void startElement(String uri, String localName, String qName, Attributes attributes) {
-        try{
-            cleanWarnings();
-            cleanErrors();
-            for(int i = 0; i < attributes.getLength(); i++){
-                if(attributes.getLocalName(i).equals("name"))
-                    setName((C) new NCLConnectorParam(attributes.getValue(i)));//cast retirado na correcao das referencias
-                else if(attributes.getLocalName(i).equals("value"))
-                    setValue(attributes.getValue(i));
-            }
-        }
-        catch(NCLInvalidIdentifierException ex){
-            addError(ex.getMessage());
+        cleanWarnings();
+        cleanErrors();
+        for(int i = 0; i < attributes.getLength(); i++){
+            if(attributes.getLocalName(i).equals("name"))
+                name = new NCLReference(NCLConnectorParam.class, attributes.getValue(i));
+            else if(attributes.getLocalName(i).equals("value"))
+                setValue(attributes.getValue(i));
         }
     }
 
@@ -250,7 +271,7 @@ public class NCLParam<P extends NCLParam, C extends NCLConnectorParam> extends N
         if(getParent() == null)
             return;
 
-        if(getName() != null)
+        if(name != null)
             nameReference();
     }
 
@@ -280,12 +301,12 @@ public class NCLParam<P extends NCLParam, C extends NCLConnectorParam> extends N
         Iterable<C> params = ((NCLLink) link).getXconnector().getConnectorParams();
 
         for(C param : params){
-            if(param.getName().equals(getName().getName())){
+            if(param.getName().equals(NCLReference.id(name))){
                 setName(param);
                 return;
             }
         }
 
-        addWarning("Could not find connectorParam in connector with name: " + getName().getName());
+        addWarning("Could not find connectorParam in connector with name: " + NCLReference.id(name));
     }
 }
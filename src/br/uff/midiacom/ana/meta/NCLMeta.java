@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.meta;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import org.xml.sax.Attributes;
 import org.xml.sax.XMLReader;
@@ -87,10 +88,13 @@ public class NCLMeta<M extends NCLMeta> extends NCLElement implements Comparable
      *          se a String for vazia.
      */
     public void setName(String name) throws IllegalArgumentException {
+        modified();
+        Object old = this.name;
         if (name != null && "".equals(name.trim()))
             throw new IllegalArgumentException("Empty String");
 
         this.name = name;
+        changed("name", old, this.name);
     }
 
 
@@ -114,10 +118,13 @@ public class NCLMeta<M extends NCLMeta> extends NCLElement implements Comparable
      *          se a String for vazia.
      */
     public void setContent(String content) throws IllegalArgumentException {
+        modified();
+        Object old = this.mcontent;
         if (content != null && "".equals(content.trim()))
             throw new IllegalArgumentException("Empty String");
 
         this.mcontent = content;
+        changed("content", old, this.mcontent);
     }
 
 
@@ -133,6 +140,10 @@ public class NCLMeta<M extends NCLMeta> extends NCLElement implements Comparable
 
     
     public String parse(int ident) {
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
         String space, content;
 
         if(ident < 0)
@@ -147,9 +158,9 @@ public class NCLMeta<M extends NCLMeta> extends NCLElement implements Comparable
         // param element and attributes declaration
         content = space + "<meta";
         if(getName() != null)
-            content += " name='" + getName() + "'";
+            content += " name='" + escape(getName()) + "'";
         if(getContent() != null)
-            content += " content='" + getContent() + "'";
+            content += " content='" + escape(getContent()) + "'";
         content += "/>\n";
 
         return content;
@@ -169,6 +180,21 @@ public class NCLMeta<M extends NCLMeta> extends NCLElement implements Comparable
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("name"))
+                setName((String) value);
+            else if(property.equals("content"))
+                setContent((String) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.meta;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import org.xml.sax.Attributes;
 import org.xml.sax.XMLReader;
@@ -85,10 +86,13 @@ public class NCLMetadata<M extends NCLMetadata> extends NCLElement implements Co
      *          se a String for vazia.
      */
     public void setRDFTree(String rdfTree) throws IllegalArgumentException {
+        modified();
+        Object old = this.rdfTree;
         if (rdfTree != null && "".equals(rdfTree.trim()))
             throw new IllegalArgumentException("Empty String");
 
         this.rdfTree = rdfTree;
+        changed("rDFTree", old, this.rdfTree);
     }
 
 
@@ -104,6 +108,10 @@ public class NCLMetadata<M extends NCLMetadata> extends NCLElement implements Co
 
 
     public String parse(int ident) {
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
         String space, content;
 
         if(ident < 0)
@@ -139,6 +147,19 @@ public class NCLMetadata<M extends NCLMetadata> extends NCLElement implements Co
     }
 
     
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("rDFTree"))
+                setRDFTree((String) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
@@ -37,9 +37,11 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.node;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLDoc;
 import br.uff.midiacom.ana.NCLElement;
-import br.uff.midiacom.ana.NCLInvalidIdentifierException;
+import br.uff.midiacom.ana.NCLReference;
+import br.uff.midiacom.ana.NCLReferenceIndex;
 import br.uff.midiacom.ana.rule.NCLRule;
 import br.uff.midiacom.ana.rule.NCLTestRule;
 import org.xml.sax.Attributes;
@@ -57,8 +59,8 @@ import org.xml.sax.XMLReader;
  */
 public class NCLBindRule<B extends NCLBindRule, N extends NCLNode, R extends NCLTestRule> extends NCLElement implements Comparable<B> {
 
-    private N constituent;
-    private R rule;
+    private Object constituent;
+    private Object rule;
 
 
     /**
@@ -90,7 +92,11 @@ public class NCLBindRule<B extends NCLBindRule, N extends NCLNode, R extends NCL
      *          elemento representando o nó mapeado pelo bind.
      */
     public void setConstituent(N constituent) {
+        modified();
+        Object old = NCLReference.peek(this.constituent);
+        NCLReferenceIndex.update(this, "constituent", NCLReference.peek(this.constituent), constituent);
         this.constituent = constituent;
+        changed("constituent", old, NCLReference.peek(this.constituent));
     }
 
 
@@ -101,7 +107,7 @@ public class NCLBindRule<B extends NCLBindRule, N extends NCLNode, R extends NCL
      *          elemento representando o nó mapeado pelo bind.
      */
     public N getConstituent() {
-        return constituent;
+        return NCLReference.get(constituent);
     }
 
 
@@ -112,7 +118,11 @@ public class NCLBindRule<B extends NCLBindRule, N extends NCLNode, R extends NCL
      *          elemento representando a regra de avaliação do bind.
      */
     public void setRule(R rule) {
+        modified();
+        Object old = NCLReference.peek(this.rule);
+        NCLReferenceIndex.update(this, "rule", NCLReference.peek(this.rule), rule);
         this.rule = rule;
+        changed("rule", old, NCLReference.peek(this.rule));
     }
 
 
@@ -123,11 +133,15 @@ public class NCLBindRule<B extends NCLBindRule, N extends NCLNode, R extends NCL
      *          elemento representando a regra de avaliação do bind.
      */
     public R getRule() {
-        return rule;
+        return NCLReference.get(rule);
     }
 
 
     public String parse(int ident) {
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
         String space, content;
 
         if(ident < 0)
@@ -139,10 +153,10 @@ public class NCLBindRule<B extends NCLBindRule, N extends NCLNode, R extends NCL
             space += "\t";
 
         content = space + "<bindRule";
-        if(getRule() != null)
-            content += " rule='" + getRule().getId() + "'";
-        if(getConstituent() != null)
-            content += " constituent='" + getConstituent().getId() + "'";
+        if(rule != null)
+            content += " rule='" + escape(NCLReference.id(rule)) + "'";
+        if(constituent != null)
+            content += " constituent='" + escape(NCLReference.id(constituent)) + "'";
         content += "/>\n";
 
 
@@ -163,15 +177,15 @@ public class NCLBindRule<B extends NCLBindRule, N extends NCLNode, R extends NCL
         int comp = 0;
 
         // Compara pela regra
-        if(getRule() != null)
-            comp = getRule().compareTo(other.getRule());
+        if(rule != null)
+            comp = NCLReference.id(rule).compareTo(NCLReference.id(((NCLBindRule) other).rule));
         else
             comp = -1;
 
         // Compara pelo constituent
         if(comp == 0){
-            if(getConstituent() != null)
-                comp = getConstituent().compareTo(other.getConstituent());
+            if(constituent != null)
+                comp = NCLReference.id(constituent).compareTo(NCLReference.id(((NCLBindRule) other).constituent));
             else
                 comp = -1;
         }
@@ -180,22 +194,47 @@ public class NCLBindRule<B extends NCLBindRule, N extends NCLNode, R extends NCL
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("constituent"))
+                setConstituent((N) value);
+            else if(property.equals("rule"))
+                setRule((R) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
 
         boolean valid = true;
 
-        if(getRule() == null){
+        if(!NCLReference.isValid(rule)){
+            addError("Atributo rule possui um identificador inválido.");
+            valid = false;
+        }
+
+        if(!NCLReference.isValid(constituent)){
+            addError("Atributo constituent possui um identificador inválido.");
+            valid = false;
+        }
+
+        if(rule == null){
             addError("Elemento não possui atributo obrigatório rule.");
             valid = false;
         }
-        if(getConstituent() == null){
+        if(constituent == null){
             addError("Elemento não possui atributo obrigatório constituent.");
             valid = false;
         }
 
-        if(getConstituent() != null && !((NCLSwitch) getParent()).hasNode(getConstituent())){
+        if(constituent != null && !((NCLSwitch) getParent()).hasNode(getConstituent())){
             addError("Atributo constituent deve fazer referência a um descritor contido no switch.");
             valid = false;
         }
@@ -206,18 +245,13 @@ public class NCLBindRule<B extends NCLBindRule, N extends NCLNode, R extends NCL
 
     @Override
     public void startElement(String uri, String localName, String qName, Attributes attributes) {
-        try{
-            cleanWarnings();
-            cleanErrors();
-            for(int i = 0; i < attributes.getLength(); i++){
-                if(attributes.getLocalName(i).equals("rule"))
-                    setRule((R) new NCLRule(attributes.getValue(i)));//cast retirado na correcao das referencias
-                else if(attributes.getLocalName(i).equals("constituent"))
-                    setConstituent((N) new NCLContext(attributes.getValue(i)));//cast retirado na correcao das referencias
-            }
-        }
-        catch(NCLInvalidIdentifierException ex){
-            addError(ex.getMessage());
+        cleanWarnings();
+        cleanErrors();
+        for(int i = 0; i < attributes.getLength(); i++){
+            if(attributes.getLocalName(i).equals("rule"))
+                rule = new NCLReference(NCLRule.class, attributes.getValue(i));
+            else if(attributes.getLocalName(i).equals("constituent"))
+                constituent = new NCLReference(NCLContext.class, attributes.getValue(i));
         }
     }
 
@@ -227,10 +261,10 @@ public class NCLBindRule<B extends NCLBindRule, N extends NCLNode, R extends NCL
         if(getParent() == null)
             return;
 
-        if(getConstituent() != null)
+        if(constituent != null)
             constituentReference();
 
-        if(getRule() != null)
+        if(rule != null)
             ruleReference();
     }
 
@@ -272,13 +306,13 @@ public class NCLBindRule<B extends NCLBindRule, N extends NCLNode, R extends NCL
         Iterable<N> nodes = ((NCLSwitch) getParent()).getNodes();
 
         for(N node : nodes){
-            if(node.getId().equals(getConstituent().getId())){
+            if(node.getId().equals(NCLReference.id(constituent))){
                 setConstituent(node);
                 return;
             }
         }
 
-        addWarning("Could not find node in switch with id: " + getConstituent().getId());
+        addWarning("Could not find node in switch with id: " + NCLReference.id(constituent));
     }
 
     /**
@@ -292,13 +326,13 @@ public class NCLBindRule<B extends NCLBindRule, N extends NCLNode, R extends NCL
             return;
         
         for(R rul : rules){
-            if(rul.getId().equals(getRule().getId())){
+            if(rul.getId().equals(NCLReference.id(rule))){
                 setRule(rul);
                 return;
             }
         }
         //@todo: regras internas a regras compostas podem ser utilizadas?
 
-        addWarning("Could not find rule in ruleBase with id: " + getRule().getId());
+        addWarning("Could not find rule in ruleBase with id: " + NCLReference.id(rule));
     }
 }
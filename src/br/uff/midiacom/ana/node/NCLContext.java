@@ -37,7 +37,10 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.node;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
+import br.uff.midiacom.ana.NCLReference;
 import br.uff.midiacom.ana.interfaces.NCLPort;
+import br.uff.midiacom.ana.interfaces.NCLPortResolver;
 import br.uff.midiacom.ana.interfaces.NCLProperty;
 import br.uff.midiacom.ana.link.NCLLink;
 import br.uff.midiacom.ana.meta.NCLMeta;
@@ -46,6 +49,8 @@ import br.uff.midiacom.ana.NCLBody;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
+import br.uff.midiacom.ana.NCLReferenceIndex;
+import br.uff.midiacom.ana.NCLWalker;
 import java.util.Set;
 import java.util.TreeSet;
 import org.xml.sax.Attributes;
@@ -64,7 +69,7 @@ import org.xml.sax.XMLReader;
 public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCLProperty, N extends NCLNode, L extends NCLLink, M extends NCLMeta, MT extends NCLMetadata>
         extends NCLIdentifiableElement implements NCLNode<N> {
 
-    private C refer;
+    private Object refer;
     private Set<Pt> ports = new TreeSet<Pt>();
     private Set<Pp> properties = new TreeSet<Pp>();
     private Set<N> nodes = new TreeSet<N>();
@@ -113,7 +118,11 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
      *          elemento representando o contexto a ser reutilizado.
      */
     public void setRefer(C refer) {
+        modified();
+        Object old = NCLReference.peek(this.refer);
+        NCLReferenceIndex.update(this, "refer", NCLReference.peek(this.refer), refer);
         this.refer = refer;
+        changed("refer", old, NCLReference.peek(this.refer));
     }
 
 
@@ -124,7 +133,7 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
      *          elemento representando o contexto a ser reutilizado.
      */
     public C getRefer() {
-        return refer;
+        return NCLReference.get(refer);
     }
     
     
@@ -139,10 +148,13 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
      * @see TreeSet#add
      */
     public boolean addPort(Pt port) {
+        modified();
         if(ports.add(port)){
             //Se port existe, atribui este como seu parente
             if(port != null)
                 port.setParent(this);
+            added("port", port);
+            notifyResolver(port);
 
             return true;
         }
@@ -161,6 +173,7 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
      * @see TreeSet#remove
      */
     public boolean removePort(String id) {
+        modified();
         for(Pt port : ports){
             if(port.getId().equals(id))
                 return removePort(port);
@@ -180,10 +193,13 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
      * @see TreeSet#remove
      */
     public boolean removePort(Pt port) {
+        modified();
         if(ports.remove(port)){
             //Se port existe, retira o seu parentesco
             if(port != null)
                 port.setParent(null);
+            removed("port", port);
+            notifyResolver(port);
 
             return true;
         }
@@ -254,10 +270,12 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
      * @see TreeSet#add
      */
     public boolean addProperty(Pp property) {
+        modified();
         if(properties.add(property)){
             //Se property existe, atribui este como seu parente
             if(property != null)
                 property.setParent(this);
+            added("property", property);
 
             return true;
         }
@@ -276,6 +294,7 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
      * @see TreeSet#remove
      */
     public boolean removeProperty(String name) {
+        modified();
         for(Pp property : properties){
             if(property.getId().equals(name))
                 return removeProperty(property);
@@ -295,10 +314,12 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
      * @see TreeSet#remove
      */
     public boolean removeProperty(Pp property) {
+        modified();
         if(properties.remove(property)){
             //Se property existe, retira o seu parentesco
             if(property != null)
                 property.setParent(null);
+            removed("property", property);
 
             return true;
         }
@@ -371,10 +392,12 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
      * @see TreeSet#add
      */
     public boolean addNode(N node) {
+        modified();
         if(nodes.add(node)){
             //Se node existe, atribui este como seu parente
             if(node != null)
                 node.setParent(this);
+            added("node", node);
 
             return true;
         }
@@ -393,6 +416,7 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
      * @see TreeSet#remove
      */
     public boolean removeNode(String id) {
+        modified();
         for(N node : nodes){
             if(node.getId().equals(id))
                 return removeNode(node);
@@ -412,10 +436,13 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
      * @see TreeSet#remove
      */
     public boolean removeNode(N node) {
+        modified();
         if(nodes.remove(node)){
             //Se node existe, retira o seu parentesco
             if(node != null)
                 node.setParent(null);
+            removed("node", node);
+            notifyResolver(node);
 
             return true;
         }
@@ -486,10 +513,12 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
      * @see TreeSet#add
      */
     public boolean addLink(L link) {
+        modified();
         if(links.add(link)){
             //Se link existe, atribui este como seu parente
             if(link != null)
                 link.setParent(this);
+            added("link", link);
 
             return true;
         }
@@ -508,10 +537,12 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
      * @see TreeSet#remove
      */
     public boolean removeLink(L link) {
+        modified();
         if(links.remove(link)){
             //Se link existe, retira o seu parentesco
             if(link != null)
                 link.setParent(null);
+            removed("link", link);
 
             return true;
         }
@@ -565,10 +596,12 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
      * @see TreeSet#add
      */
     public boolean addMeta(M meta) {
+        modified();
         if(metas.add(meta)){
             //Se meta existe, atribui este como seu parente
             if(meta != null)
                 meta.setParent(this);
+            added("meta", meta);
 
             return true;
         }
@@ -587,10 +620,12 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
      * @see TreeSet#remove
      */
     public boolean removeMeta(M meta) {
+        modified();
         if(metas.remove(meta)){
             //Se meta existe, retira o seu parentesco
             if(meta != null)
                 meta.setParent(null);
+            removed("meta", meta);
 
             return true;
         }
@@ -644,10 +679,12 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
      * @see TreeSet#add
      */
     public boolean addMetadata(MT metadata) {
+        modified();
         if(metadatas.add(metadata)){
             //Se metadata existe, atribui este como seu parente
             if(metadata != null)
                 metadata.setParent(this);
+            added("metadata", metadata);
 
             return true;
         }
@@ -666,10 +703,12 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
      * @see TreeSet#remove
      */
     public boolean removeMetadata(MT metadata) {
+        modified();
         if(metadatas.remove(metadata)){
             //Se metadata existe, retira o seu parentesco
             if(metadata != null)
                 metadata.setParent(null);
+            removed("metadata", metadata);
 
             return true;
         }
@@ -714,7 +753,12 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
 
     
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -726,48 +770,48 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
         
         
         // <context> element and attributes declaration
-        content = space + "<context";
+        content.append(space + "<context");
         if(getId() != null)
-            content += " id='" + getId() + "'";
-        if(getRefer() != null)
-            content += " refer='" + getRefer().getId() + "'";
+            content.append(" id='" + escape(getId()) + "'");
+        if(refer != null)
+            content.append(" refer='" + escape(NCLReference.id(refer)) + "'");
         
         // Test if the media has content
         if(hasMeta() || hasMetadata() || hasPort() || hasProperty() || hasNode() || hasLink()){
-            content += ">\n";
+            content.append(">\n");
 
             if(hasMeta()){
                 for(M meta : metas)
-                    content += meta.parse(ident + 1);
+                    content.append(meta.parse(ident + 1));
             }
             if(hasMetadata()){
                 for(MT metadata : metadatas)
-                    content += metadata.parse(ident + 1);
+                    content.append(metadata.parse(ident + 1));
             }
             if(hasPort()){
                 for(Pt port : ports)
-                    content += port.parse(ident + 1);
+                    content.append(port.parse(ident + 1));
             }
             if(hasProperty()){
                 for(Pp property : properties)
-                    content += property.parse(ident + 1);
+                    content.append(property.parse(ident + 1));
             }
             if(hasNode()){
                 for(N node : nodes)
-                    content += node.parse(ident + 1);
+                    content.append(node.parse(ident + 1));
             }
             if(hasLink()){
                 for(L link : links)
-                    content += link.parse(ident + 1);
+                    content.append(link.parse(ident + 1));
             }
             
             // <context> element end declaration
-            content += space + "</context>\n";
+            content.append(space + "</context>\n");
         }
         else
-            content += "/>\n";
+            content.append("/>\n");
         
-        return content;
+        return content.toString();
     }
 
     /**
@@ -784,17 +828,86 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
     }
 
 
+    /*
+     * Avisa o resolvedor de portas do documento que uma porta ou um nó foi
+     * adicionado ou removido, como faz o corpo do documento.
+     */
+    private void notifyResolver(Object element) {
+        NCLPortResolver resolver = NCLPortResolver.of(this);
+        if(resolver != null)
+            resolver.invalidate(element);
+    }
+
+
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("refer"))
+                setRefer((C) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else if(property.equals("port")){
+            if(operation == Operation.ADD)
+                addPort((Pt) value);
+            else
+                removePort((Pt) value);
+        }
+        else if(property.equals("property")){
+            if(operation == Operation.ADD)
+                addProperty((Pp) value);
+            else
+                removeProperty((Pp) value);
+        }
+        else if(property.equals("node")){
+            if(operation == Operation.ADD)
+                addNode((N) value);
+            else
+                removeNode((N) value);
+        }
+        else if(property.equals("link")){
+            if(operation == Operation.ADD)
+                addLink((L) value);
+            else
+                removeLink((L) value);
+        }
+        else if(property.equals("meta")){
+            if(operation == Operation.ADD)
+                addMeta((M) value);
+            else
+                removeMeta((M) value);
+        }
+        else if(property.equals("metadata")){
+            if(operation == Operation.ADD)
+                addMetadata((MT) value);
+            else
+                removeMetadata((MT) value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
+        Boolean validated = getValidation();
+        if(validated != null)
+            return validated;
+
         cleanWarnings();
         cleanErrors();
 
         boolean valid = true;
 
+        if(!NCLReference.isValid(refer)){
+            addError("Atributo refer possui um identificador inválido.");
+            valid = false;
+        }
+
         if(getId() == null){
             addError("Elemento não possui atributo obrigatório id.");
             valid = false;
         }
-        if(getRefer() != null && (getRefer().compareTo(this) == 0 || findContext(nodes) != null)){
+        if(refer != null && (getRefer().compareTo(this) == 0 || findContext(nodes) != null)){
             addError("Elemento não pode fazer referência a si mesmo.");
             valid = false;
         }
@@ -857,7 +970,7 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
                     if(attributes.getLocalName(i).equals("id"))
                         setId(attributes.getValue(i));
                     else if(attributes.getLocalName(i).equals("refer"))
-                        setRefer((C) new NCLContext(attributes.getValue(i)));//cast retirado na correcao das referencias
+                        refer = new NCLReference(NCLContext.class, attributes.getValue(i));
                 }
             }
             else if(localName.equals("meta")){
@@ -910,7 +1023,7 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
     @Override
     public void endDocument() {
         if(getParent() != null){
-            if(getRefer() != null)
+            if(refer != null)
                 contextReference();
         }
 
@@ -989,28 +1102,12 @@ public class NCLContext<C extends NCLContext, Pt extends NCLPort, Pp extends NCL
      * adiciona uma advertencia a lista d asvertencias e retorna null.
      */
     private C findContext(Iterable<N> nodes) {
-        for(N n : nodes){
-            if(n instanceof NCLContext){
-                if(n.getId().equals(getRefer().getId()))
-                    return (C) n;
-                else if( ((NCLContext) n).hasNode()){
-                    Iterable<N> cnodes = ((NCLContext) n).getNodes();
-                    C c = findContext(cnodes);
-                    if(c != null)
-                        return (C) c;
-                }
-            }
-            else if(n instanceof NCLSwitch){
-                if( ((NCLSwitch) n).hasNode()){
-                    Iterable<N> snodes = ((NCLSwitch) n).getNodes();
-                    C c = findContext(snodes);
-                    if(c != null)
-                        return (C) c;
-                }
-            }
+        for(NCLNode n : NCLWalker.nodes(nodes)){
+            if(n instanceof NCLContext && n.getId().equals(NCLReference.id(refer)))
+                return (C) n;
         }
 
-        addWarning("Could not find media with id: " + getRefer().getId());
+        addWarning("Could not find media with id: " + NCLReference.id(refer));
         return null;
     }
 
@@ -37,6 +37,8 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.node;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
+import br.uff.midiacom.ana.NCLReference;
 import br.uff.midiacom.ana.descriptor.NCLDescriptor;
 import br.uff.midiacom.ana.interfaces.*;
 import br.uff.midiacom.ana.NCLBody;
@@ -44,10 +46,13 @@ import br.uff.midiacom.ana.NCLDoc;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
+import br.uff.midiacom.ana.NCLQueryIndex;
+import br.uff.midiacom.ana.NCLReferenceIndex;
 import br.uff.midiacom.ana.NCLValues.NCLInstanceType;
 import br.uff.midiacom.ana.NCLValues.NCLMediaType;
 import br.uff.midiacom.ana.NCLValues.NCLMimeType;
 import br.uff.midiacom.ana.NCLValues.NCLUriType;
+import br.uff.midiacom.ana.NCLWalker;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Set;
@@ -73,12 +78,13 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
 
     private String src;
     private NCLMimeType type;
-    private D descriptor;
-    private M refer;
+    private Object descriptor;
+    private Object refer;
     private NCLInstanceType instance;
     
     private Set<A> areas = new TreeSet<A>();
     private Set<P> properties = new TreeSet<P>();
+    private NCLAreaIndex<A> areaIndex;
     
     
     /**
@@ -121,10 +127,14 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
      *
      * @see java.net.URI
      */    public void setSrc(String src) throws URISyntaxException {
+        modified();
+        Object old = this.src;
         if(src != null)
             this.src = new URI(src).toString();
         
         this.src = src;
+        NCLQueryIndex.update(this);
+        changed("src", old, this.src);
     }
     
     
@@ -144,6 +154,7 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
      * @see java.net.URI
      */
     public void setSrc(NCLUriType type, String src) throws URISyntaxException, IllegalArgumentException {
+        modified();
         if(getType() == NCLMimeType.APPLICATION_X_GINGA_SETTINGS)
             throw new IllegalArgumentException("This media don't have src");
         
@@ -168,10 +179,14 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
      * @see NCLTime#isUTC()
      */
     public void setSrc(NCLTime time) throws IllegalArgumentException {
+        modified();
+        Object old = this.src;
         if(!time.isUTC() || getType() != NCLMimeType.APPLICATION_X_GINGA_TIME)
             throw new IllegalArgumentException("Invalid src");
 
         this.src = time.toString();
+        NCLQueryIndex.update(this);
+        changed("src", old, this.src);
     }
     
     
@@ -198,7 +213,11 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
      *          tipo da mídia.
      */
     public void setType(NCLMimeType type) {
+        modified();
+        Object old = this.type;
         this.type = type;
+        NCLQueryIndex.update(this);
+        changed("type", old, this.type);
     }
     
     
@@ -220,7 +239,11 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
      *          elemento representando o descritor da mídia.
      */
     public void setDescriptor(D descriptor) {
+        modified();
+        Object old = NCLReference.peek(this.descriptor);
+        NCLReferenceIndex.update(this, "descriptor", NCLReference.peek(this.descriptor), descriptor);
         this.descriptor = descriptor;
+        changed("descriptor", old, NCLReference.peek(this.descriptor));
     }
     
     
@@ -231,7 +254,7 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
      *          elemento representando o descritor da mídia.
      */
     public D getDescriptor() {
-        return descriptor;
+        return NCLReference.get(descriptor);
     }
 
 
@@ -242,7 +265,11 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
      *          elemento representando a media a ser reutilizada.
      */
     public void setRefer(M refer) {
+        modified();
+        Object old = NCLReference.peek(this.refer);
+        NCLReferenceIndex.update(this, "refer", NCLReference.peek(this.refer), refer);
         this.refer = refer;
+        changed("refer", old, NCLReference.peek(this.refer));
     }
 
 
@@ -253,7 +280,7 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
      *          elemento representando a mídia reutilizada.
      */
     public M getRefer() {
-        return refer;
+        return NCLReference.get(refer);
     }
 
 
@@ -271,7 +298,10 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
      *          elemento representando o tipo de instancia.
      */
     public void setInstance(NCLInstanceType instance) {
+        modified();
+        Object old = this.instance;
         this.instance = instance;
+        changed("instance", old, this.instance);
     }
 
 
@@ -302,10 +332,13 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
      * @see TreeSet#add
      */
     public boolean addArea(A area) {
+        modified();
         if(areas.add(area)){
             //Se area existe, atribui este como seu parente
             if(area != null)
                 area.setParent(this);
+            added("area", area);
+            invalidateAreaIndex();
 
             return true;
         }
@@ -324,6 +357,7 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
      * @see TreeSet#remove
      */
     public boolean removeArea(String id) {
+        modified();
         for(A area : areas){
             if(area.getId().equals(id))
                 return removeArea(area);
@@ -343,10 +377,13 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
      * @see TreeSet#add
      */
     public boolean removeArea(A area) {
+        modified();
         if(areas.remove(area)){
             //Se area existe, retira o seu parentesco
             if(area != null)
                 area.setParent(null);
+            removed("area", area);
+            invalidateAreaIndex();
 
             return true;
         }
@@ -404,6 +441,32 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
     public Iterable<A> getAreas() {
         return areas;
     }
+
+
+    /**
+     * Retorna o índice temporal das âncoras da mídia. O índice é construído na
+     * primeira consulta e reconstruído apenas após alguma alteração nas âncoras.
+     *
+     * @return
+     *          índice temporal das âncoras da mídia.
+     *
+     * @see NCLAreaIndex
+     */
+    public NCLAreaIndex<A> getAreaIndex() {
+        if(areaIndex == null)
+            areaIndex = new NCLAreaIndex<A>(areas);
+
+        return areaIndex;
+    }
+
+
+    /**
+     * Descarta o índice temporal das âncoras da mídia. Chamado quando uma âncora
+     * é adicionada, removida ou tem seus limites temporais alterados.
+     */
+    public void invalidateAreaIndex() {
+        areaIndex = null;
+    }
     
     
     /**
@@ -419,10 +482,12 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
      * @see TreeSet#add
      */
     public boolean addProperty(P property) {
+        modified();
         if(properties.add(property)){
             //Se property existe, atribui este como seu parente
             if(property != null)
                 property.setParent(this);
+            added("property", property);
 
             return true;
         }
@@ -441,6 +506,7 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
      * @see TreeSet#remove
      */
     public boolean removeProperty(String name) {
+        modified();
         for(P property : properties){
             if(property.getId().equals(name))
                 return removeProperty(property);
@@ -460,10 +526,12 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
      * @see TreeSet#remove
      */
     public boolean removeProperty(P property) {
+        modified();
         if(properties.remove(property)){
             //Se property existe, retira o seu parentesco
             if(property != null)
                 property.setParent(null);
+            removed("property", property);
 
             return true;
         }
@@ -620,7 +688,12 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
     
     
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -632,39 +705,39 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
         
         
         // <media> element and attributes declaration
-        content = space + "<media";
+        content.append(space + "<media");
         if(getId() != null)
-            content += " id='" + getId() + "'";
+            content.append(" id='" + escape(getId()) + "'");
         if(getSrc() != null)
-            content += " src='" + getSrc() + "'";
+            content.append(" src='" + escape(getSrc()) + "'");
         if(getType() != null)
-            content += " type='" + getType().toString() + "'";
-        if(getDescriptor() != null)
-            content += " descriptor='" + getDescriptor().getId() + "'";
-        if(getRefer() != null)
-            content += " refer='" + getRefer().getId() + "'";
+            content.append(" type='" + escape(getType().toString()) + "'");
+        if(descriptor != null)
+            content.append(" descriptor='" + escape(NCLReference.id(descriptor)) + "'");
+        if(refer != null)
+            content.append(" refer='" + escape(NCLReference.id(refer)) + "'");
         if(getInstance() != null)
-            content += " instance='" + getInstance().toString() + "'";
+            content.append(" instance='" + escape(getInstance().toString()) + "'");
         
         // Test if the media has content
         if(hasArea() || hasProperty()){
-            content += ">\n";
+            content.append(">\n");
             
             if(hasArea()){
                 for(A area : areas)
-                    content += area.parse(ident + 1);
+                    content.append(area.parse(ident + 1));
             }
             if(hasProperty()){
                 for(P prop : properties)
-                    content += prop.parse(ident + 1);
+                    content.append(prop.parse(ident + 1));
             }
             
-            content += space + "</media>\n";
+            content.append(space + "</media>\n");
         }
         else
-            content += "/>\n";
+            content.append("/>\n");
         
-        return content;
+        return content.toString();
     }
 
 
@@ -673,22 +746,65 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("src"))
+                setSrc((String) value);
+            else if(property.equals("type"))
+                setType((NCLMimeType) value);
+            else if(property.equals("descriptor"))
+                setDescriptor((D) value);
+            else if(property.equals("refer"))
+                setRefer((M) value);
+            else if(property.equals("instance"))
+                setInstance((NCLInstanceType) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else if(property.equals("area")){
+            if(operation == Operation.ADD)
+                addArea((A) value);
+            else
+                removeArea((A) value);
+        }
+        else if(property.equals("property")){
+            if(operation == Operation.ADD)
+                addProperty((P) value);
+            else
+                removeProperty((P) value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
 
         boolean valid = true;
 
+        if(!NCLReference.isValid(descriptor)){
+            addError("Atributo descriptor possui um identificador inválido.");
+            valid = false;
+        }
+
+        if(!NCLReference.isValid(refer)){
+            addError("Atributo refer possui um identificador inválido.");
+            valid = false;
+        }
+
         if(getId() == null){
             addError("Elemento não possui atributo obrigatório id.");
             valid = false;
         }
-        if(getRefer() != null && getRefer().compareTo(this) == 0){
+        if(refer != null && getRefer().compareTo(this) == 0){
             addError("Elemento não pode fazer referência a si mesmo.");
             valid = false;
         }
 
-        if(getInstance() != null && getRefer() == null){
+        if(getInstance() != null && refer == null){
             addWarning("Atributo instance deve ser referênciado junto com atributo refer.");
             valid = false;
         }
@@ -736,9 +852,9 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
                         }
                     }
                     else if(attributes.getLocalName(i).equals("descriptor"))
-                        setDescriptor((D) new NCLDescriptor(attributes.getValue(i)));//cast retirado na correcao das referencias
+                        descriptor = new NCLReference(NCLDescriptor.class, attributes.getValue(i));
                     else if(attributes.getLocalName(i).equals("refer"))
-                        setRefer((M) new NCLMedia(attributes.getValue(i)));//cast retirado na correcao das referencias
+                        refer = new NCLReference(NCLMedia.class, attributes.getValue(i));
                     else if(attributes.getLocalName(i).equals("instance")){
                         for(NCLInstanceType in : NCLInstanceType.values()){
                             if(in.toString().equals(attributes.getValue(i)))
@@ -767,9 +883,9 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
     @Override
     public void endDocument() {
         if(getParent() != null){
-            if(getDescriptor() != null)
+            if(descriptor != null)
                 descriptorReference();
-            if(getRefer() != null)
+            if(refer != null)
                 mediaReference();
         }
 
@@ -818,14 +934,14 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
         //Search for the interface inside the node
         Iterable<D> descriptors = getDescriptors();
         for(D desc : descriptors){
-            if(desc.getId().equals(getDescriptor().getId())){
+            if(desc.getId().equals(NCLReference.id(descriptor))){
                 setDescriptor(desc);
                 return;
             }
         }
         //@todo: descritores internos a switch de descritores podem ser utilizados?
 
-        addWarning("Could not find descriptor in descriptorBase with id: " + getDescriptor().getId());
+        addWarning("Could not find descriptor in descriptorBase with id: " + NCLReference.id(descriptor));
     }
 
 
@@ -846,30 +962,12 @@ public class NCLMedia<A extends NCLArea, P extends NCLProperty, N extends NCLNod
 
 
     private M findMedia(Iterable<N> nodes) {
-        for(N n : nodes){
-            if(n instanceof NCLMedia){
-                if(n.getId().equals(getRefer().getId()))
-                    return (M) n;
-            }
-            else if(n instanceof NCLContext){
-                if( ((NCLContext) n).hasNode()){
-                    Iterable<N> cnodes = ((NCLContext) n).getNodes();
-                    M m = findMedia(cnodes);
-                    if(m != null)
-                        return (M) m;
-                }
-            }
-            else if(n instanceof NCLSwitch){
-                if( ((NCLSwitch) n).hasNode()){
-                    Iterable<N> snodes = ((NCLSwitch) n).getNodes();
-                    M m = findMedia(snodes);
-                    if(m != null)
-                        return (M) m;
-                }
-            }
+        for(NCLNode n : NCLWalker.nodes(nodes)){
+            if(n instanceof NCLMedia && n.getId().equals(NCLReference.id(refer)))
+                return (M) n;
         }
 
-        addWarning("Could not find media with id: " + getRefer().getId());
+        addWarning("Could not find media with id: " + NCLReference.id(refer));
         return null;
     }
 
@@ -37,11 +37,16 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.node;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
+import br.uff.midiacom.ana.NCLReference;
+import br.uff.midiacom.ana.interfaces.NCLPortResolver;
 import br.uff.midiacom.ana.interfaces.NCLSwitchPort;
 import br.uff.midiacom.ana.NCLBody;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
+import br.uff.midiacom.ana.NCLReferenceIndex;
+import br.uff.midiacom.ana.NCLWalker;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -66,8 +71,8 @@ import org.xml.sax.XMLReader;
  */
 public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwitchPort, B extends NCLBindRule> extends NCLIdentifiableElement implements NCLNode<N> {
 
-    private S refer;
-    private N defaultComponent;
+    private Object refer;
+    private Object defaultComponent;
     private Set<P> ports = new TreeSet<P>();
     private List<B> binds = new ArrayList<B>();
     private Set<N> nodes = new TreeSet<N>();
@@ -113,7 +118,11 @@ public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwit
      *          Objeto representando o switch a ser reutilizado.
      */
     public void setRefer(S refer) {
+        modified();
+        Object old = NCLReference.peek(this.refer);
+        NCLReferenceIndex.update(this, "refer", NCLReference.peek(this.refer), refer);
         this.refer = refer;
+        changed("refer", old, NCLReference.peek(this.refer));
     }
 
 
@@ -124,7 +133,7 @@ public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwit
      *          elemento representando o switch a ser reutilizado.
      */
     public S getRefer() {
-        return refer;
+        return NCLReference.get(refer);
     }
 
 
@@ -141,10 +150,13 @@ public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwit
      * @see TreeSet#add
      */
     public boolean addPort(P port) {
+        modified();
         if(ports.add(port)){
             //Se port existe, atribui este como seu parente
             if(port != null)
                 port.setParent(this);
+            added("port", port);
+            notifyResolver(port);
 
             return true;
         }
@@ -163,6 +175,7 @@ public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwit
      * @see TreeSet#remove
      */
     public boolean removePort(String id) {
+        modified();
         for(P port : ports){
             if(port.getId().equals(id))
                 return removePort(port);
@@ -182,10 +195,13 @@ public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwit
      * @see TreeSet#remove
      */
     public boolean removePort(P port) {
+        modified();
         if(ports.remove(port)){
             //Se port existe, retira o seu parentesco
             if(port != null)
                 port.setParent(null);
+            removed("port", port);
+            notifyResolver(port);
 
             return true;
         }
@@ -253,7 +269,11 @@ public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwit
      *          elemento representando o componente padrão.
      */
     public void setDefaultComponent(N defaultComponent) {
+        modified();
+        Object old = NCLReference.peek(this.defaultComponent);
+        NCLReferenceIndex.update(this, "defaultComponent", NCLReference.peek(this.defaultComponent), defaultComponent);
         this.defaultComponent = defaultComponent;
+        changed("defaultComponent", old, NCLReference.peek(this.defaultComponent));
     }
 
 
@@ -264,7 +284,7 @@ public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwit
      *          elemento representando o componente padrão.
      */
     public N getDefaultComponent() {
-        return defaultComponent;
+        return NCLReference.get(defaultComponent);
     }
 
 
@@ -277,9 +297,11 @@ public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwit
      * @see TreeSet#add
      */
     public boolean addBind(B bind) {
+        modified();
         if(bind != null && binds.add(bind)){
             //atribui este como parente do bind
             bind.setParent(this);
+            added("bind", bind);
 
             return true;
         }
@@ -296,10 +318,12 @@ public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwit
      * @see TreeSet#remove
      */
     public boolean removeBind(B bind) {
+        modified();
         if(binds.remove(bind)){
             //Se bind existe, retira o seu parentesco
             if(bind != null)
                 bind.setParent(null);
+            removed("bind", bind);
 
             return true;
         }
@@ -352,10 +376,12 @@ public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwit
      * @see TreeSet#add
      */
     public boolean addNode(N node) {
+        modified();
         if(nodes.add(node)){
             //Se node existe, atribui este como seu parente
             if(node != null)
                 node.setParent(this);
+            added("node", node);
 
             return true;
         }
@@ -374,6 +400,7 @@ public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwit
      * @see TreeSet#remove
      */
     public boolean removeNode(String id) {
+        modified();
         for(N node : nodes){
             if(node.getId().equals(id))
                 return removeNode(node);
@@ -393,10 +420,13 @@ public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwit
      * @see TreeSet#remove
      */
     public boolean removeNode(N node) {
+        modified();
         if(nodes.remove(node)){
             //Se node existe, retira o seu parentesco
             if(node != null)
                 node.setParent(null);
+            removed("node", node);
+            notifyResolver(node);
 
             return true;
         }
@@ -456,7 +486,12 @@ public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwit
 
     
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -466,39 +501,39 @@ public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwit
         for(int i = 0; i < ident; i++)
             space += "\t";
 
-        content = space + "<switch";
+        content.append(space + "<switch");
         if(getId() != null)
-            content += " id='" + getId() + "'";
-        if(getRefer() != null)
-            content += " refer='" + getRefer() + "'";
+            content.append(" id='" + escape(getId()) + "'");
+        if(refer != null)
+            content.append(" refer='" + escape(getRefer()) + "'");
 
         if(hasPort() || hasBind() || hasNode()){
-            content += ">\n";
+            content.append(">\n");
 
             if(hasPort()){
                 for(P port : ports)
-                    content += port.parse(ident + 1);
+                    content.append(port.parse(ident + 1));
             }
 
             if(hasBind()){
                 for(B bind : binds)
-                    content += bind.parse(ident + 1);
+                    content.append(bind.parse(ident + 1));
             }
 
-            if(getDefaultComponent() != null)
-                content += space + "\t" + "<defaultComponent component='" + getDefaultComponent().getId() + "'/>\n";
+            if(defaultComponent != null)
+                content.append(space + "\t" + "<defaultComponent component='" + escape(NCLReference.id(defaultComponent)) + "'/>\n");
 
             if(hasNode()){
                 for(N node : nodes)
-                    content += node.parse(ident + 1);
+                    content.append(node.parse(ident + 1));
             }
 
-            content += space + "</switch>\n";
+            content.append(space + "</switch>\n");
         }
         else
-            content += "/>\n";
+            content.append("/>\n");
 
-        return content;
+        return content.toString();
     }
 
     /**
@@ -514,17 +549,75 @@ public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwit
     }
 
 
+    /*
+     * Avisa o resolvedor de portas do documento que uma porta ou um nó foi
+     * adicionado ou removido, como faz o corpo do documento.
+     */
+    private void notifyResolver(Object element) {
+        NCLPortResolver resolver = NCLPortResolver.of(this);
+        if(resolver != null)
+            resolver.invalidate(element);
+    }
+
+
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("refer"))
+                setRefer((S) value);
+            else if(property.equals("defaultComponent"))
+                setDefaultComponent((N) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else if(property.equals("port")){
+            if(operation == Operation.ADD)
+                addPort((P) value);
+            else
+                removePort((P) value);
+        }
+        else if(property.equals("bind")){
+            if(operation == Operation.ADD)
+                addBind((B) value);
+            else
+                removeBind((B) value);
+        }
+        else if(property.equals("node")){
+            if(operation == Operation.ADD)
+                addNode((N) value);
+            else
+                removeNode((N) value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
+        Boolean validated = getValidation();
+        if(validated != null)
+            return validated;
+
         cleanWarnings();
         cleanErrors();
 
         boolean valid = true;
 
+        if(!NCLReference.isValid(refer)){
+            addError("Atributo refer possui um identificador inválido.");
+            valid = false;
+        }
+
+        if(!NCLReference.isValid(defaultComponent)){
+            addError("Atributo defaultComponent possui um identificador inválido.");
+            valid = false;
+        }
+
         if(getId() == null){
             addError("Elemento não possui atributo obrigatório id.");
             valid = false;
         }
-        if(getRefer() != null && (getRefer().compareTo(this) == 0 || findSwitch(nodes) != null)){
+        if(refer != null && (getRefer().compareTo(this) == 0 || findSwitch(nodes) != null)){
             addError("Elemento não pode fazer referência a si mesmo ou a um elemento interno.");
             valid = false;
         }
@@ -555,7 +648,7 @@ public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwit
             }
         }
 
-        if(getDefaultComponent() != null){
+        if(defaultComponent != null){
             if(!(getDefaultComponent().getParent() instanceof NCLSwitch)){
                 addError("Atributo component do elemento defaultComponent deve referênciar um nó contido no switch.");
                 valid = false;
@@ -581,7 +674,7 @@ public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwit
                     if(attributes.getLocalName(i).equals("id"))
                         setId(attributes.getValue(i));
                     else if(attributes.getLocalName(i).equals("refer"))
-                        setRefer((S) new NCLSwitch(attributes.getValue(i)));//cast retirado na correcao das referencias
+                        refer = new NCLReference(NCLSwitch.class, attributes.getValue(i));
                 }
             }
             else if(localName.equals("bindRule")){
@@ -592,7 +685,7 @@ public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwit
             else if(localName.equals("defaultComponent")){
                 for(int i = 0; i < attributes.getLength(); i++){
                     if(attributes.getLocalName(i).equals("component"))
-                        setDefaultComponent((N) new NCLContext(attributes.getValue(i)));//cast retirado na correcao das referencias
+                        defaultComponent = new NCLReference(NCLContext.class, attributes.getValue(i));
                 }
             }
             else if(localName.equals("switchPort")){
@@ -631,9 +724,9 @@ public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwit
 
     @Override
     public void endDocument() {
-        if(getDefaultComponent() != null)
+        if(defaultComponent != null)
             defaultComponentReference();
-        if(getParent() != null && getRefer() != null)
+        if(getParent() != null && refer != null)
                 switchReference();
 
         if(hasBind()){
@@ -667,13 +760,13 @@ public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwit
     private void defaultComponentReference() {
         //Search for a component node in its parent
         for(N node : nodes){
-            if(node.getId().equals(getDefaultComponent().getId())){
+            if(node.getId().equals(NCLReference.id(defaultComponent))){
                 setDefaultComponent(node);
                 return;
             }
         }
 
-        addWarning("Could not find node in switch with id: " + getDefaultComponent().getId());
+        addWarning("Could not find node in switch with id: " + NCLReference.id(defaultComponent));
     }
 
     /**
@@ -706,28 +799,12 @@ public class NCLSwitch<N extends NCLNode, S extends NCLSwitch, P extends NCLSwit
      *   O nó referenciado, caso exista.
      */
     private S findSwitch(Iterable<N> nodes) {
-        for(N n : nodes){
-            if(n instanceof NCLContext){
-                if( ((NCLContext) n).hasNode()){
-                    Iterable<N> cnodes = ((NCLContext) n).getNodes();
-                        S s = findSwitch(cnodes);
-                        if(s != null)
-                            return (S) s;
-                }
-            }
-            else if(n instanceof NCLSwitch){
-                if(n.getId().equals(getRefer().getId()))
-                    return (S) n;
-                else if( ((NCLSwitch) n).hasNode()){
-                    Iterable<N> snodes = ((NCLSwitch) n).getNodes();
-                    S s = findSwitch(snodes);
-                    if(s != null)
-                        return (S) s;
-                }
-            }
+        for(NCLNode n : NCLWalker.nodes(nodes)){
+            if(n instanceof NCLSwitch && n.getId().equals(NCLReference.id(refer)))
+                return (S) n;
         }
 
-        addWarning("Could not find switch with id: " + getRefer().getId());
+        addWarning("Could not find switch with id: " + NCLReference.id(refer));
         return null;
     }
 
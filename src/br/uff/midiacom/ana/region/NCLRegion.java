@@ -37,6 +37,8 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.region;
 
+import br.uff.midiacom.ana.NCLAttributes;
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
@@ -85,21 +87,12 @@ import org.xml.sax.XMLReader;
  */
 public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement implements Comparable<R> {
 
-    private String title;
-    private Integer left;
-    private Integer right;
-    private Integer top;
-    private Integer bottom;
-    private Integer height;
-    private Integer width;
-    private Integer zIndex;
-
-    private boolean relativeLeft;
-    private boolean relativeRight;
-    private boolean relativeTop;
-    private boolean relativeBottom;
-    private boolean relativeHeight;
-    private boolean relativeWidth;
+    private enum Attribute {
+        TITLE, LEFT, RIGHT, TOP, BOTTOM, HEIGHT, WIDTH, Z_INDEX, RELATIVE_LEFT,
+        RELATIVE_RIGHT, RELATIVE_TOP, RELATIVE_BOTTOM, RELATIVE_HEIGHT, RELATIVE_WIDTH
+    }
+
+    private NCLAttributes<Attribute> attributes = new NCLAttributes<Attribute>();
 
     private Set<R> regions = new TreeSet<R>();
 
@@ -146,10 +139,13 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      *          se o título for uma String vazia.
      */
     public void setTitle(String title) throws IllegalArgumentException {
+        modified();
+        Object old = attributes.get(Attribute.TITLE);
         if(title != null && "".equals(title.trim()))
             throw new IllegalArgumentException("Empty title String");
 
-        this.title = title;
+        attributes.set(Attribute.TITLE, title);
+        changed("title", old, attributes.get(Attribute.TITLE));
     }
 
 
@@ -160,7 +156,7 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      *          String representando o título da região.
      */
     public String getTitle() {
-        return title;
+        return attributes.get(Attribute.TITLE);
     }
 
 
@@ -177,13 +173,16 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      * intervalo [0,100]
      */
     public void setLeft(Integer left, boolean relative) throws IllegalArgumentException {
+        modified();
+        Object old = attributes.getInteger(Attribute.LEFT);
         setRelativeLeft(relative);
 
         if(isRelativeLeft() && left != null && (left < 0 || left > 100))
             throw new IllegalArgumentException("Invalid percentage position value (%left= " +
                     left + "). It must be between 0 and 100.");
 
-        this.left = left;
+        attributes.setInteger(Attribute.LEFT, left);
+        changed("left", old, attributes.getInteger(Attribute.LEFT));
     }
 
 
@@ -199,7 +198,7 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      * @see NCLRegion#isRelativeLeft
      */
     public Integer getLeft() {
-        return left;
+        return attributes.getInteger(Attribute.LEFT);
     }
 
 
@@ -214,13 +213,16 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      *          se a posição for uma porcentagem e seu valor estiver fora do intervalo [0,100]
      */
     public void setRight(Integer right, boolean relative) throws IllegalArgumentException {
+        modified();
+        Object old = attributes.getInteger(Attribute.RIGHT);
         setRelativeRight(relative);
 
         if(isRelativeRight() && right != null && (right < 0 || right > 100))
             throw new IllegalArgumentException("Invalid percentage position value (%right= " +
                     right + "). It must be between 0 and 100.");
 
-        this.right = right;
+        attributes.setInteger(Attribute.RIGHT, right);
+        changed("right", old, attributes.getInteger(Attribute.RIGHT));
     }
 
 
@@ -236,7 +238,7 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      * @see NCLRegion#isRelativeRight
      */
     public Integer getRight() {
-        return right;
+        return attributes.getInteger(Attribute.RIGHT);
     }
 
 
@@ -251,13 +253,16 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      *          se a posição for uma porcentagem e seu valor estiver fora do intervalo [0,100]
      */
     public void setTop(Integer top, boolean relative) throws IllegalArgumentException {
+        modified();
+        Object old = attributes.getInteger(Attribute.TOP);
         setRelativeTop(relative);
 
         if(isRelativeTop() && top != null && (top < 0 || top > 100))
             throw new IllegalArgumentException("Invalid percentage position value (%top= " +
                     top + "). It must be between 0 and 100.");
 
-        this.top = top;
+        attributes.setInteger(Attribute.TOP, top);
+        changed("top", old, attributes.getInteger(Attribute.TOP));
     }
 
 
@@ -273,7 +278,7 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      * @see NCLRegion#isRelativeRight
      */
     public Integer getTop() {
-        return top;
+        return attributes.getInteger(Attribute.TOP);
     }
 
 
@@ -288,6 +293,8 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      *          se a posição for uma porcentagem e seu valor estiver fora do intervalo [0,100]
      */
     public void setBottom(Integer bottom, boolean relative) throws IllegalArgumentException {
+        modified();
+        Object old = attributes.getInteger(Attribute.BOTTOM);
         setRelativeBottom(relative);
 
         if(isRelativeBottom() && bottom != null && (bottom < 0 || bottom > 100))
@@ -295,7 +302,8 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
                     bottom + "). It must be between 0 and 100.");
 
 
-        this.bottom = bottom;
+        attributes.setInteger(Attribute.BOTTOM, bottom);
+        changed("bottom", old, attributes.getInteger(Attribute.BOTTOM));
     }
 
 
@@ -311,7 +319,7 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      * @see NCLRegion#isRelativeBottom
      */
     public Integer getBottom() {
-        return bottom;
+        return attributes.getInteger(Attribute.BOTTOM);
     }
 
 
@@ -326,13 +334,16 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      *          se a posição for uma porcentagem e seu valor estiver fora do intervalo [0,100]
      */
     public void setHeight(Integer height, boolean relative) throws IllegalArgumentException {
+        modified();
+        Object old = attributes.getInteger(Attribute.HEIGHT);
         setRelativeHeight(relative);
 
         if(isRelativeHeight() && height != null && (height < 0 || height > 100))
             throw new IllegalArgumentException("Valor não percentual para atributo relativo de posicionamento (%height= "
                             + height + ")");
 
-        this.height = height;
+        attributes.setInteger(Attribute.HEIGHT, height);
+        changed("height", old, attributes.getInteger(Attribute.HEIGHT));
     }
 
 
@@ -348,7 +359,7 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      * @see NCLRegion#isRelativeHeight
      */
     public Integer getHeight() {
-        return height;
+        return attributes.getInteger(Attribute.HEIGHT);
     }
 
 
@@ -363,13 +374,16 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      *          se a posição for uma porcentagem e seu valor estiver fora do intervalo [0,100]
      */
     public void setWidth(Integer width, boolean relative) throws IllegalArgumentException {
+        modified();
+        Object old = attributes.getInteger(Attribute.WIDTH);
         setRelativeWidth(relative);
 
         if(isRelativeWidth() && width != null && (width < 0 || width > 100))
             throw new IllegalArgumentException("Valor não porcentual para atributo relativo de posicionamento (%width= "
                             + width + ")");
 
-        this.width = width;
+        attributes.setInteger(Attribute.WIDTH, width);
+        changed("width", old, attributes.getInteger(Attribute.WIDTH));
     }
 
 
@@ -385,7 +399,7 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      * @see NCLRegion#isRelativeWidth
      */
     public Integer getWidth() {
-        return width;
+        return attributes.getInteger(Attribute.WIDTH);
     }
 
 
@@ -398,10 +412,13 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      *          se o índice for um valor negativo.
      */
     public void setzIndex(Integer zIndex) throws IllegalArgumentException {
+        modified();
+        Object old = attributes.getInteger(Attribute.Z_INDEX);
         if(zIndex != null && zIndex < 0)
             throw new IllegalArgumentException("Illegal index value");
 
-        this.zIndex = zIndex;
+        attributes.setInteger(Attribute.Z_INDEX, zIndex);
+        changed("zIndex", old, attributes.getInteger(Attribute.Z_INDEX));
     }
 
 
@@ -412,7 +429,7 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      *          inteiro representando o índice da região.
      */
     public Integer getzIndex() {
-        return zIndex;
+        return attributes.getInteger(Attribute.Z_INDEX);
     }
 
 
@@ -423,7 +440,7 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      *          booleano indicando se a posição a esquerda da região é uma porcentagem.
      */
     private void setRelativeLeft(boolean relativeLeft) {
-        this.relativeLeft = relativeLeft;
+        attributes.setBoolean(Attribute.RELATIVE_LEFT, relativeLeft);
     }
 
 
@@ -434,7 +451,7 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      *          booleano indicando se a posição a esquerda da região é uma porcentagem.
      */
     private boolean isRelativeLeft() {
-        return relativeLeft;
+        return Boolean.TRUE.equals(attributes.getBoolean(Attribute.RELATIVE_LEFT));
     }
 
 
@@ -445,7 +462,7 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      *          booleano indicando se a posição a direita da região é uma porcentagem.
      */
     private void setRelativeRight(boolean relativeRight) {
-        this.relativeRight = relativeRight;
+        attributes.setBoolean(Attribute.RELATIVE_RIGHT, relativeRight);
     }
 
 
@@ -456,7 +473,7 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      *          booleano indicando se a posição a direita da região é uma porcentagem.
      */
     private boolean isRelativeRight() {
-        return relativeRight;
+        return Boolean.TRUE.equals(attributes.getBoolean(Attribute.RELATIVE_RIGHT));
     }
 
 
@@ -467,7 +484,7 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      *          booleano indicando se a posição de topo da região é uma porcentagem.
      */
     private void setRelativeTop(boolean relativeTop) {
-        this.relativeTop = relativeTop;
+        attributes.setBoolean(Attribute.RELATIVE_TOP, relativeTop);
     }
 
 
@@ -478,7 +495,7 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      *          booleano indicando se a posição de topo da região é uma porcentagem.
      */
     private boolean isRelativeTop() {
-        return relativeTop;
+        return Boolean.TRUE.equals(attributes.getBoolean(Attribute.RELATIVE_TOP));
     }
 
 
@@ -489,7 +506,7 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      *          booleano indicando se a posição inferior da região é uma porcentagem.
      */
     private void setRelativeBottom(boolean relativeBottom) {
-        this.relativeBottom = relativeBottom;
+        attributes.setBoolean(Attribute.RELATIVE_BOTTOM, relativeBottom);
     }
 
 
@@ -500,7 +517,7 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      *          booleano indicando se a posição inferior da região é uma porcentagem.
      */
     private boolean isRelativeBottom() {
-        return relativeBottom;
+        return Boolean.TRUE.equals(attributes.getBoolean(Attribute.RELATIVE_BOTTOM));
     }
 
 
@@ -511,7 +528,7 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      *          booleano indicando se a altura da região é uma porcentagem.
      */
     private void setRelativeHeight(boolean relativeHeight) {
-        this.relativeHeight = relativeHeight;
+        attributes.setBoolean(Attribute.RELATIVE_HEIGHT, relativeHeight);
     }
 
 
@@ -522,7 +539,7 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      *          booleano indicando se a altura da região é uma porcentagem.
      */
     private boolean isRelativeHeight() {
-        return relativeHeight;
+        return Boolean.TRUE.equals(attributes.getBoolean(Attribute.RELATIVE_HEIGHT));
     }
 
 
@@ -533,7 +550,7 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      *          booleano indicando se a largura da região é uma porcentagem.
      */
     private void setRelativeWidth(boolean relativeWidth) {
-        this.relativeWidth = relativeWidth;
+        attributes.setBoolean(Attribute.RELATIVE_WIDTH, relativeWidth);
     }
 
 
@@ -544,7 +561,7 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      *          booleano indicando se a largura da região é uma porcentagem.
      */
     private boolean isRelativeWidth() {
-        return relativeWidth;
+        return Boolean.TRUE.equals(attributes.getBoolean(Attribute.RELATIVE_WIDTH));
     }
 
 
@@ -560,10 +577,12 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      * @see TreeSet#add
      */
     public boolean addRegion(R region) {
+        modified();
         if(regions.add(region)){
             //Se region existe, atribui este como seu parente
             if(region != null)
                 region.setParent(this);
+            added("region", region);
 
             return true;
         }
@@ -582,6 +601,7 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      * @see TreeSet#remove
      */
     public boolean removeRegion(String id) {
+        modified();
         for(R region : regions){
             if(region.getId().equals(id))
                 return removeRegion(region);
@@ -601,10 +621,12 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
      * @see TreeSet#remove
      */
     public boolean removeRegion(R region) {
+        modified();
         if(regions.remove(region)){
             //Se region existe, retira o seu parentesco
             if(region != null)
                 region.setParent(null);
+            removed("region", region);
 
             return true;
         }
@@ -648,7 +670,12 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
     
 
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -658,61 +685,61 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
         for(int i = 0; i < ident; i++)
             space += "\t";
 
-        content = space + "<region";
+        content.append(space + "<region");
         if(getId() != null)
-            content += " id='" + getId() + "'";
+            content.append(" id='" + escape(getId()) + "'");
         if(getLeft() != null) {
             String percent = "";
             if(isRelativeLeft())
                 percent = "%";
-            content += " left='" + getLeft() + percent + "'";
+            content.append(" left='" + getLeft() + percent + "'");
         }
         if(getRight() != null) {
             String percent = "";
             if(isRelativeRight())
                 percent = "%";
-            content += " right='" + getRight() + percent + "'";
+            content.append(" right='" + getRight() + percent + "'");
         }
         if(getTop() != null) {
             String percent = "";
             if(isRelativeTop())
                 percent = "%";
-            content += " top='" + getTop() + percent + "'";
+            content.append(" top='" + getTop() + percent + "'");
         }
         if(getBottom() != null) {
             String percent = "";
             if(isRelativeBottom())
                 percent = "%";
-            content += " bottom='" + getBottom() + percent + "'";
+            content.append(" bottom='" + getBottom() + percent + "'");
         }
         if(getHeight() != null) {
             String percent = "";
             if(isRelativeHeight())
                 percent = "%";
-            content += " height='" + getHeight() + percent + "'";
+            content.append(" height='" + getHeight() + percent + "'");
         }
         if(getWidth() != null) {
             String percent = "";
             if(isRelativeWidth())
                 percent = "%";
-            content += " width='" + getWidth() + percent + "'";
+            content.append(" width='" + getWidth() + percent + "'");
         }
         if(getzIndex() != null)
-            content += " zIndex='" + getzIndex() + "'";
+            content.append(" zIndex='" + escape(getzIndex()) + "'");
         if(getTitle() != null)
-            content += " title='" + getTitle() + "'";
+            content.append(" title='" + escape(getTitle()) + "'");
         if(hasRegion()) {
-            content += ">\n";
+            content.append(">\n");
 
             for(R region : getRegions())
-                content += region.parse(ident + 1);
+                content.append(region.parse(ident + 1));
             
-            content += space + "</region>\n";
+            content.append(space + "</region>\n");
         }
         else
-            content += "/>\n";
+            content.append("/>\n");
 
-        return content;
+        return content.toString();
     }
 
     /**
@@ -728,6 +755,39 @@ public class NCLRegion<R extends NCLRegion> extends NCLIdentifiableElement imple
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("title"))
+                setTitle((String) value);
+            else if(property.equals("left"))
+                setLeft((Integer) value, isRelativeLeft());
+            else if(property.equals("right"))
+                setRight((Integer) value, isRelativeRight());
+            else if(property.equals("top"))
+                setTop((Integer) value, isRelativeTop());
+            else if(property.equals("bottom"))
+                setBottom((Integer) value, isRelativeBottom());
+            else if(property.equals("height"))
+                setHeight((Integer) value, isRelativeHeight());
+            else if(property.equals("width"))
+                setWidth((Integer) value, isRelativeWidth());
+            else if(property.equals("zIndex"))
+                setzIndex((Integer) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else if(property.equals("region")){
+            if(operation == Operation.ADD)
+                addRegion((R) value);
+            else
+                removeRegion((R) value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
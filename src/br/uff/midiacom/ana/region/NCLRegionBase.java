@@ -37,9 +37,11 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.region;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
+import br.uff.midiacom.ana.NCLReference;
 import br.uff.midiacom.ana.NCLValues.NCLImportType;
 import br.uff.midiacom.ana.reuse.NCLImport;
 import java.util.Set;
@@ -71,7 +73,7 @@ import org.xml.sax.XMLReader;
 public class NCLRegionBase<R extends NCLRegion, I extends NCLImport> extends NCLIdentifiableElement {
 
     private String device;
-    private R parent_region;
+    private Object parent_region;
     
     private Set<R> regions = new TreeSet<R>();
     private Set<I> imports = new TreeSet<I>();
@@ -111,10 +113,13 @@ public class NCLRegionBase<R extends NCLRegion, I extends NCLImport> extends NCL
      * vazia como parametro.
      */
     public void setDevice(String device) throws IllegalArgumentException {
+        modified();
+        Object old = this.device;
         if(device != null && "".equals(device.trim()))
             throw new IllegalArgumentException("Empty device String");
 
         this.device = device;
+        changed("device", old, this.device);
     }
 
 
@@ -140,7 +145,10 @@ public class NCLRegionBase<R extends NCLRegion, I extends NCLImport> extends NCL
      *          Elemento representando a regiao a ser utilizada como pai.
      */
     public void setParentRegion(R region) {
+        modified();
+        Object old = NCLReference.peek(this.parent_region);
         this.parent_region = region;
+        changed("parentRegion", old, NCLReference.peek(this.parent_region));
     }
 
 
@@ -155,7 +163,7 @@ public class NCLRegionBase<R extends NCLRegion, I extends NCLImport> extends NCL
      *          elemento representando a regiao pai de uma base de regioes.
      */
     public NCLRegion getParentRegion() {
-        return parent_region;
+        return NCLReference.get(parent_region);
     }
 
 
@@ -174,10 +182,12 @@ public class NCLRegionBase<R extends NCLRegion, I extends NCLImport> extends NCL
      * @see TreeSet#add
      */
     public boolean addRegion(R region) {
+        modified();
         if(regions.add(region)){
             //Se region existe, atribui este como seu parente
             if(region != null)
                 region.setParent(this);
+            added("region", region);
 
             return true;
         }
@@ -198,6 +208,7 @@ public class NCLRegionBase<R extends NCLRegion, I extends NCLImport> extends NCL
      * @see TreeSet#remove
      */
     public boolean removeRegion(String id) {
+        modified();
         for(R region : regions){
             if(region.getId().equals(id))
                 return removeRegion(region);
@@ -218,10 +229,12 @@ public class NCLRegionBase<R extends NCLRegion, I extends NCLImport> extends NCL
      * @see TreeSet#remove
      */
     public boolean removeRegion(R region) {
+        modified();
         if(regions.remove(region)){
             //Se region existe, retira o seu parentesco
             if(region != null)
                 region.setParent(null);
+            removed("region", region);
 
             return true;
         }
@@ -277,10 +290,12 @@ public class NCLRegionBase<R extends NCLRegion, I extends NCLImport> extends NCL
      * @see TreeSet#add
      */
     public boolean addImportBase(I importBase) {
+        modified();
         if(imports.add(importBase)){
             //Se importBase existe, atribui este como seu parente
             if(importBase != null)
                 importBase.setParent(this);
+            added("importBase", importBase);
 
             return true;
         }
@@ -298,10 +313,12 @@ public class NCLRegionBase<R extends NCLRegion, I extends NCLImport> extends NCL
      * @see TreeSet#remove
      */
     public boolean removeImportBase(I importBase) {
+        modified();
         if(imports.remove(importBase)){
             //Se importBase existe, retira o seu parentesco
             if(importBase != null)
                 importBase.setParent(null);
+            removed("importBase", importBase);
 
             return true;
         }
@@ -344,7 +361,12 @@ public class NCLRegionBase<R extends NCLRegion, I extends NCLImport> extends NCL
 
 
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -354,40 +376,76 @@ public class NCLRegionBase<R extends NCLRegion, I extends NCLImport> extends NCL
         for(int i = 0; i < ident; i++)
             space += "\t";
 
-        content = space + "<regionBase";
+        content.append(space + "<regionBase");
         if(getId() != null)
-            content += " id='" + getId() + "'";
+            content.append(" id='" + escape(getId()) + "'");
         if(getDevice() != null)                         
-            content += " device='" + getDevice() + "'";
-        if(getParentRegion() != null)                         
-            content += " region='" + getParentRegion().getId() + "'";
+            content.append(" device='" + escape(getDevice()) + "'");
+        if(parent_region != null)                         
+            content.append(" region='" + escape(NCLReference.id(parent_region)) + "'");
         
         if(hasRegion() || hasImportBase()) {
-            content += ">\n";
+            content.append(">\n");
 
             if(hasImportBase()){
                 for(I imp : imports)
-                    content += imp.parse(ident + 1);
+                    content.append(imp.parse(ident + 1));
             }
             if(hasRegion()){
                 for(R region : regions)
-                    content += region.parse(ident + 1);
+                    content.append(region.parse(ident + 1));
             }
-            content += space + "</regionBase>\n";
+            content.append(space + "</regionBase>\n");
         }
         else
-            content += "/>\n";
+            content.append("/>\n");
 
-        return content;
+        return content.toString();
+    }
+
+
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("device"))
+                setDevice((String) value);
+            else if(property.equals("parentRegion"))
+                setParentRegion((R) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else if(property.equals("region")){
+            if(operation == Operation.ADD)
+                addRegion((R) value);
+            else
+                removeRegion((R) value);
+        }
+        else if(property.equals("importBase")){
+            if(operation == Operation.ADD)
+                addImportBase((I) value);
+            else
+                removeImportBase((I) value);
+        }
+        else
+            super.applyChange(operation, property, value);
     }
 
 
     public boolean validate() {
+        Boolean validated = getValidation();
+        if(validated != null)
+            return validated;
+
         cleanWarnings();
         cleanErrors();
 
         boolean valid = true;
 
+        if(!NCLReference.isValid(parent_region)){
+            addError("Atributo region possui um identificador inválido.");
+            valid = false;
+        }
+
         if(!hasImportBase() && !hasRegion()){
             addError("Elemento não possui elementos filhos em cardinalidade correta. Deve possuir ao menos um region ou importBase.");
             valid = false;
@@ -424,7 +482,7 @@ public class NCLRegionBase<R extends NCLRegion, I extends NCLImport> extends NCL
                     else if(attributes.getLocalName(i).equals("device"))
                         setDevice(attributes.getValue(i));
                     else if(attributes.getLocalName(i).equals("region"))
-                        setParentRegion((R) new NCLRegion(attributes.getValue(i)));//cast retirado na correcao das referencias
+                        parent_region = new NCLReference(NCLRegion.class, attributes.getValue(i));
                 }
             }
             else if(localName.equals("importBase")){
@@ -447,7 +505,7 @@ public class NCLRegionBase<R extends NCLRegion, I extends NCLImport> extends NCL
     @Override
     public void endDocument() {
         if(getParent() != null){
-            if(getParentRegion() != null)
+            if(parent_region != null)
                 setParentRegion(findRegion(getRegions()));
         }
 
@@ -486,12 +544,12 @@ public class NCLRegionBase<R extends NCLRegion, I extends NCLImport> extends NCL
                     return (R) r;
             }
             else{
-                if(reg.getId().equals(getParentRegion().getId()))
+                if(reg.getId().equals(NCLReference.id(parent_region)))
                     return (R) reg;
             }
         }
 
-        addWarning("Could not find region in regionBase with id: " + getParentRegion().getId());
+        addWarning("Could not find region in regionBase with id: " + NCLReference.id(parent_region));
         return null;
     }
 
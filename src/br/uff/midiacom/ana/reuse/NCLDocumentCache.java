@@ -0,0 +1,365 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana.reuse;
+
+import br.uff.midiacom.ana.NCLDoc;
+import br.uff.midiacom.ana.NCLParsingErrorHandler;
+import br.uff.midiacom.ana.NCLParsingException;
+import br.uff.midiacom.ana.NCLStringPool;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+
+/**
+ * Esta classe define uma cache de documentos da <i>Nested Context Language</i> (NCL)
+ * carregados a partir de seus endereços.<br/>
+ *
+ * Os documentos são identificados pelo endereço normalizado e por uma marca de
+ * versão: a data de modificação e o tamanho, para arquivos locais, ou o resumo
+ * MD5 do conteúdo, para os demais endereços. Um documento só é carregado novamente
+ * quando sua marca de versão muda. Quando o número de documentos ultrapassa a
+ * capacidade da cache, o documento usado há mais tempo é descartado.
+ *
+ * Pedidos simultâneos por um mesmo documento compartilham uma única leitura: o
+ * primeiro pedido realiza a leitura enquanto os demais aguardam o seu resultado.
+ * A instância retornada por <i>getInstance</i> é compartilhada por todo o processo.
+ * Os documentos retornados são compartilhados e não devem ser alterados. As
+ * Strings dos documentos lidos vêm do repositório compartilhado do processo.
+ *
+ * @see NCLImportResolver
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLDocumentCache {
+
+    /**
+     * Capacidade da cache compartilhada pelo processo.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final NCLDocumentCache instance = new NCLDocumentCache(DEFAULT_CAPACITY);
+
+    private final int capacity;
+    private final Map<String, Entry> entries;
+    private final AtomicInteger loads = new AtomicInteger();
+
+
+    /**
+     * Constrói uma cache de documentos.
+     *
+     * @param capacity
+     *          número máximo de documentos mantidos pela cache.
+     * @throws java.lang.IllegalArgumentException
+     *          se a capacidade não for positiva.
+     */
+    public NCLDocumentCache(int capacity) throws IllegalArgumentException {
+        if(capacity <= 0)
+            throw new IllegalArgumentException("Invalid capacity");
+
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > NCLDocumentCache.this.capacity;
+            }
+        };
+    }
+
+
+    /**
+     * Retorna a cache de documentos compartilhada pelo processo.
+     *
+     * @return
+     *          cache de documentos compartilhada.
+     */
+    public static NCLDocumentCache getInstance() {
+        return instance;
+    }
+
+
+    /**
+     * Retorna o documento NCL de um endereço, realizando sua leitura apenas se o
+     * documento não estiver na cache ou tiver sido modificado.
+     *
+     * @param uri
+     *          endereço do documento.
+     * @return
+     *          documento NCL.
+     * @throws br.uff.midiacom.ana.NCLParsingException
+     *          se algum erro ocorrer durante a leitura do documento.
+     */
+    public NCLDoc load(URI uri) throws NCLParsingException {
+        final URI location = normalize(uri);
+        final Source source = source(location);
+        String key = location.toString();
+
+        FutureTask<NCLDoc> task;
+        boolean owner = false;
+        synchronized(entries){
+            Entry entry = entries.get(key);
+            if(entry != null && entry.stamp.equals(source.stamp))
+                task = entry.task;
+            else{
+                task = new FutureTask<NCLDoc>(new Callable<NCLDoc>() {
+                    public NCLDoc call() throws Exception {
+                        return parse(location, source.content);
+                    }
+                });
+                entries.put(key, new Entry(source.stamp, task));
+                owner = true;
+            }
+        }
+
+        // a leitura é feita fora do bloqueio pela thread que criou a tarefa
+        if(owner)
+            task.run();
+
+        try{
+            return task.get();
+        }
+        catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new NCLParsingException(ex);
+        }
+        catch(ExecutionException ex){
+            synchronized(entries){
+                Entry entry = entries.get(key);
+                if(entry != null && entry.task == task)
+                    entries.remove(key);
+            }
+
+            if(ex.getCause() instanceof NCLParsingException)
+                throw (NCLParsingException) ex.getCause();
+            throw new NCLParsingException(ex.getCause().getMessage(), ex.getCause());
+        }
+    }
+
+
+    /**
+     * Descarta um documento da cache.
+     *
+     * @param uri
+     *          endereço do documento.
+     */
+    public void invalidate(URI uri) {
+        String key = normalize(uri).toString();
+        synchronized(entries){
+            entries.remove(key);
+        }
+    }
+
+
+    /**
+     * Descarta todos os documentos da cache.
+     */
+    public void clear() {
+        synchronized(entries){
+            entries.clear();
+        }
+    }
+
+
+    /**
+     * Retorna o número de documentos mantidos pela cache.
+     *
+     * @return
+     *          número de documentos na cache.
+     */
+    public int size() {
+        synchronized(entries){
+            return entries.size();
+        }
+    }
+
+
+    /**
+     * Retorna a capacidade da cache.
+     *
+     * @return
+     *          número máximo de documentos mantidos pela cache.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+
+    /**
+     * Retorna o número de leituras de documentos realizadas pela cache.
+     *
+     * @return
+     *          número de leituras realizadas.
+     */
+    public int getLoads() {
+        return loads.get();
+    }
+
+
+    /**
+     * Normaliza o endereço de um documento. Endereços sem esquema são tratados
+     * como caminhos de arquivos locais.
+     *
+     * @param uri
+     *          endereço do documento.
+     * @return
+     *          endereço absoluto e normalizado.
+     */
+    public static URI normalize(URI uri) {
+        if(uri.getScheme() == null)
+            return new File(uri.getPath()).getAbsoluteFile().toURI().normalize();
+
+        return uri.normalize();
+    }
+
+
+    private Source source(URI location) throws NCLParsingException {
+        if("file".equals(location.getScheme())){
+            File file = new File(location);
+            if(!file.isFile())
+                throw new NCLParsingException("Could not find document: " + location);
+
+            return new Source(file.lastModified() + ":" + file.length(), null);
+        }
+
+        try{
+            InputStream in = location.toURL().openStream();
+            try{
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while((read = in.read(buffer)) != -1)
+                    out.write(buffer, 0, read);
+
+                byte[] content = out.toByteArray();
+                return new Source(digest(content), content);
+            }
+            finally{
+                in.close();
+            }
+        }
+        catch(IOException ex){
+            throw new NCLParsingException(ex.getMessage(), ex);
+        }
+        catch(IllegalArgumentException ex){
+            throw new NCLParsingException(ex.getMessage(), ex);
+        }
+    }
+
+
+    private NCLDoc parse(URI location, byte[] content) throws NCLParsingException {
+        loads.incrementAndGet();
+        try{
+            NCLDoc doc = new NCLDoc();
+            XMLReader reader = NCLStringPool.shared().filter(XMLReaderFactory.createXMLReader());
+            doc.setReader(reader);
+            reader.setContentHandler(doc);
+            reader.setErrorHandler(new NCLParsingErrorHandler(reader));
+
+            InputSource input;
+            if(content != null)
+                input = new InputSource(new ByteArrayInputStream(content));
+            else
+                input = new InputSource();
+            input.setSystemId(location.toString());
+
+            reader.parse(input);
+            return doc;
+        }
+        catch(SAXException ex){
+            throw new NCLParsingException(ex.getMessage(), ex);
+        }
+        catch(IOException ex){
+            throw new NCLParsingException(ex.getMessage(), ex);
+        }
+    }
+
+
+    private static String digest(byte[] content) throws NCLParsingException {
+        try{
+            byte[] hash = MessageDigest.getInstance("MD5").digest(content);
+            StringBuilder result = new StringBuilder("md5:");
+            for(byte b : hash)
+                result.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+            return result.toString();
+        }
+        catch(NoSuchAlgorithmException ex){
+            throw new NCLParsingException(ex.getMessage(), ex);
+        }
+    }
+
+
+    private static class Source {
+
+        private String stamp;
+        private byte[] content;
+
+
+        private Source(String stamp, byte[] content) {
+            this.stamp = stamp;
+            this.content = content;
+        }
+    }
+
+
+    private static class Entry {
+
+        private String stamp;
+        private FutureTask<NCLDoc> task;
+
+
+        private Entry(String stamp, FutureTask<NCLDoc> task) {
+            this.stamp = stamp;
+            this.task = task;
+        }
+    }
+}
@@ -37,9 +37,12 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.reuse;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
+import br.uff.midiacom.ana.NCLDoc;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLHead;
-import br.uff.midiacom.ana.NCLInvalidIdentifierException;
+import br.uff.midiacom.ana.NCLReference;
+import br.uff.midiacom.ana.NCLReferenceIndex;
 import br.uff.midiacom.ana.NCLValues.NCLImportType;
 import br.uff.midiacom.ana.region.NCLRegion;
 import java.net.URI;
@@ -71,7 +74,8 @@ public class NCLImport<I extends NCLImport, R extends NCLRegion> extends NCLElem
 
     private String alias;
     private String documentURI;
-    private R region;
+    private Object region;
+    private NCLDoc importedDocument;
 
     private NCLImportType type;
 
@@ -125,7 +129,10 @@ public class NCLImport<I extends NCLImport, R extends NCLRegion> extends NCLElem
      *          String representando o alias.
      */
     public void setAlias(String alias) {
+        modified();
+        Object old = this.alias;
         this.alias = alias;
+        changed("alias", old, this.alias);
     }
 
 
@@ -152,10 +159,14 @@ public class NCLImport<I extends NCLImport, R extends NCLRegion> extends NCLElem
      * @see java.net.URI
      */
     public void setDocumentURI(String documentURI) throws URISyntaxException {
+        modified();
+        Object old = this.documentURI;
         if (documentURI != null)
             this.documentURI = new URI(documentURI).toString();
 
         this.documentURI = documentURI;
+        this.importedDocument = null;
+        changed("documentURI", old, this.documentURI);
     }
 
 
@@ -177,7 +188,11 @@ public class NCLImport<I extends NCLImport, R extends NCLRegion> extends NCLElem
      *          elemento representando a região associada.
      */
     public void setRegion(R region) {
+        modified();
+        Object old = NCLReference.peek(this.region);
+        NCLReferenceIndex.update(this, "region", NCLReference.peek(this.region), region);
         this.region = region;
+        changed("region", old, NCLReference.peek(this.region));
     }
 
 
@@ -188,11 +203,53 @@ public class NCLImport<I extends NCLImport, R extends NCLRegion> extends NCLElem
      *          elemento representando a região associada.
      */
     public R getRegion() {
-        return region;
+        return NCLReference.get(region);
+    }
+
+
+
+    /**
+     * Retorna o tipo do elemento de importação.
+     *
+     * @return
+     *          tipo do elemento, importBase ou importNCL.
+     */
+    public NCLImportType getType() {
+        return type;
+    }
+
+
+    /**
+     * Atribui o documento carregado a partir do endereço do importador.
+     *
+     * @param importedDocument
+     *          documento NCL importado.
+     *
+     * @see NCLImportResolver
+     */
+    public void setImportedDocument(NCLDoc importedDocument) {
+        this.importedDocument = importedDocument;
+    }
+
+
+    /**
+     * Retorna o documento carregado a partir do endereço do importador.
+     *
+     * @return
+     *          documento NCL importado ou nulo se o documento ainda não foi carregado.
+     *
+     * @see NCLImportResolver
+     */
+    public NCLDoc getImportedDocument() {
+        return importedDocument;
     }
 
     
     public String parse(int ident) {
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
         String space, content;
 
         if(ident < 0)
@@ -205,11 +262,11 @@ public class NCLImport<I extends NCLImport, R extends NCLRegion> extends NCLElem
 
         content = space + "<" + type.toString();
         if(getAlias() != null)
-            content += " alias='" + getAlias() + "'";
+            content += " alias='" + escape(getAlias()) + "'";
         if(getDocumentURI() != null)
-            content += " documentURI='" + getDocumentURI() + "'";
-        if(getRegion() != null)
-            content += " region='" + getRegion().getId() + "'";
+            content += " documentURI='" + escape(getDocumentURI()) + "'";
+        if(region != null)
+            content += " region='" + escape(NCLReference.id(region)) + "'";
         content += "/>\n";
 
         return content;
@@ -229,12 +286,34 @@ public class NCLImport<I extends NCLImport, R extends NCLRegion> extends NCLElem
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("alias"))
+                setAlias((String) value);
+            else if(property.equals("documentURI"))
+                setDocumentURI((String) value);
+            else if(property.equals("region"))
+                setRegion((R) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
 
         boolean valid = true;
 
+        if(!NCLReference.isValid(region)){
+            addError("Atributo region possui um identificador inválido.");
+            valid = false;
+        }
+
         if(getAlias() == null){
             addError("Elemento não possui atributo obrigatório alias.");
             valid = false;
@@ -276,13 +355,10 @@ public class NCLImport<I extends NCLImport, R extends NCLRegion> extends NCLElem
                 else if(attributes.getLocalName(i).equals("documentURI"))
                     setDocumentURI(attributes.getValue(i));
                 else if(attributes.getLocalName(i).equals("region")){
-                    setRegion((R) new NCLRegion(attributes.getValue(i)));//cast retirado na correcao das referencias
+                    region = new NCLReference(NCLRegion.class, attributes.getValue(i));
                 }
             }
         }
-        catch(NCLInvalidIdentifierException ex){
-            addError(ex.getMessage());
-        }
         catch(URISyntaxException ex){
             addError(ex.getMessage());
         }
@@ -294,7 +370,7 @@ public class NCLImport<I extends NCLImport, R extends NCLRegion> extends NCLElem
         if(getParent() == null)
             return;
 
-        if(getRegion() != null)
+        if(region != null)
             regionReference();
     }
 
@@ -342,12 +418,12 @@ public class NCLImport<I extends NCLImport, R extends NCLRegion> extends NCLElem
                     return (R) r;
             }
             else{
-                if(reg.getId().equals(getRegion().getId()))
+                if(reg.getId().equals(NCLReference.id(region)))
                     return (R) reg;
             }
         }
 
-        addWarning("Could not find region in regionBase with id: " + getRegion().getId());
+        addWarning("Could not find region in regionBase with id: " + NCLReference.id(region));
         return null;
     }
 }
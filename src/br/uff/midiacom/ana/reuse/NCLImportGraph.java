@@ -0,0 +1,660 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana.reuse;
+
+import br.uff.midiacom.ana.NCLBody;
+import br.uff.midiacom.ana.NCLDoc;
+import br.uff.midiacom.ana.NCLElement;
+import br.uff.midiacom.ana.NCLHead;
+import br.uff.midiacom.ana.connector.NCLCausalConnector;
+import br.uff.midiacom.ana.descriptor.NCLDescriptor;
+import br.uff.midiacom.ana.descriptor.NCLLayoutDescriptor;
+import br.uff.midiacom.ana.link.NCLBind;
+import br.uff.midiacom.ana.link.NCLLink;
+import br.uff.midiacom.ana.node.NCLContext;
+import br.uff.midiacom.ana.node.NCLNode;
+import br.uff.midiacom.ana.node.NCLSwitch;
+import br.uff.midiacom.ana.region.NCLRegion;
+import br.uff.midiacom.ana.rule.NCLTestRule;
+import br.uff.midiacom.ana.transition.NCLTransition;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Esta classe define o grafo de importação de um documento da <i>Nested Context
+ * Language</i> (NCL).<br/>
+ *
+ * O grafo é formado pelo documento raiz e por todos os documentos importados,
+ * direta ou indiretamente, através de elementos <i>importBase</i> e <i>importNCL</i>.
+ * Os documentos são carregados através de um resolvedor de importações e percorridos
+ * uma única vez em profundidade, o que permite detectar importações cíclicas em
+ * tempo linear no número de documentos e importações. Uma importação que fecha
+ * um ciclo é ignorada e registrada como aviso.
+ *
+ * Para cada documento é construído um índice com os conectores, descritores,
+ * regiões, regras e transições visíveis a partir dele, identificados pelo
+ * identificador local ou pelo identificador qualificado pelos apelidos das
+ * importações, como em "conn#onBeginStart" ou "lib#layout#r1". Após a construção,
+ * as referências qualificadas dos elos, binds e descritores de todos os documentos
+ * do grafo são resolvidas a partir desses índices.
+ *
+ * Apenas o documento raiz é alterado pelo grafo: suas importações recebem os
+ * documentos carregados e suas referências qualificadas são trocadas pelos
+ * elementos importados. Os documentos importados podem ser compartilhados por
+ * uma cache de documentos e não são alterados. Os documentos associados às suas
+ * importações e as suas referências resolvidas são guardados no próprio grafo.
+ *
+ * @see NCLImport
+ * @see NCLImportResolver
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLImportGraph {
+
+    /**
+     * Separador entre o apelido de uma importação e o identificador do elemento.
+     */
+    public static final char SEPARATOR = '#';
+
+    private static final int CONNECTOR = 0;
+    private static final int DESCRIPTOR = 1;
+    private static final int REGION = 2;
+    private static final int RULE = 3;
+    private static final int TRANSITION = 4;
+    private static final int KINDS = 5;
+
+    private static final int VISITING = 1;
+    private static final int DONE = 2;
+
+    private NCLDoc root;
+    private NCLImportResolver resolver;
+    private List<NCLDoc> documents = new ArrayList<NCLDoc>();
+    private Map<NCLDoc, URI> locations = new IdentityHashMap<NCLDoc, URI>();
+    private Map<String, NCLDoc> byLocation = new HashMap<String, NCLDoc>();
+    private Map<NCLDoc, List<Map<String, NCLElement>>> indexes = new IdentityHashMap<NCLDoc, List<Map<String, NCLElement>>>();
+    private Map<NCLImport, NCLDoc> imported = new IdentityHashMap<NCLImport, NCLDoc>();
+    private Map<NCLElement, NCLElement> references = new IdentityHashMap<NCLElement, NCLElement>();
+    private Set<NCLImport> cycles = Collections.newSetFromMap(new IdentityHashMap<NCLImport, Boolean>());
+    private List<String> warnings = new ArrayList<String>();
+
+
+    /**
+     * Constrói o grafo de importação de um documento usando a cache de documentos
+     * compartilhada pelo processo.
+     *
+     * @param root
+     *          documento NCL raiz.
+     * @param base
+     *          endereço do documento raiz, usado para resolver endereços relativos.
+     */
+    public NCLImportGraph(NCLDoc root, URI base) {
+        this(root, base, new NCLImportResolver());
+    }
+
+
+    /**
+     * Constrói o grafo de importação de um documento.
+     *
+     * @param root
+     *          documento NCL raiz.
+     * @param base
+     *          endereço do documento raiz, usado para resolver endereços relativos.
+     * @param resolver
+     *          resolvedor usado para carregar os documentos importados.
+     * @throws java.lang.NullPointerException
+     *          se o documento ou o resolvedor forem nulos.
+     */
+    public NCLImportGraph(NCLDoc root, URI base, NCLImportResolver resolver) throws NullPointerException {
+        if(root == null)
+            throw new NullPointerException("Null document");
+        if(resolver == null)
+            throw new NullPointerException("Null resolver");
+
+        this.root = root;
+        this.resolver = resolver;
+
+        if(base != null){
+            URI location = NCLDocumentCache.normalize(base);
+            locations.put(root, location);
+            byLocation.put(location.toString(), root);
+        }
+
+        visit();
+
+        root.setImportGraph(this);
+        for(NCLDoc doc : documents)
+            resolveReferences(doc);
+        for(String w : resolver.getWarnings())
+            warnings.add(w);
+    }
+
+
+    /**
+     * Retorna o documento raiz do grafo.
+     *
+     * @return
+     *          documento NCL raiz.
+     */
+    public NCLDoc getRoot() {
+        return root;
+    }
+
+
+    /**
+     * Retorna os documentos do grafo. Cada documento aparece depois de todos os
+     * documentos que ele importa, sendo o documento raiz o último.
+     *
+     * @return
+     *          lista com os documentos do grafo.
+     */
+    public List<NCLDoc> getDocuments() {
+        return Collections.unmodifiableList(documents);
+    }
+
+
+    /**
+     * Verifica se alguma importação do grafo fecha um ciclo.
+     *
+     * @return
+     *          verdadeiro se o grafo possuir uma importação cíclica.
+     */
+    public boolean hasCycle() {
+        return !cycles.isEmpty();
+    }
+
+
+    /**
+     * Retorna as mensagens encontradas durante a construção do grafo.
+     *
+     * @return
+     *          objeto Iterable contendo as mensagens.
+     */
+    public Iterable<String> getWarnings() {
+        return warnings;
+    }
+
+
+    /**
+     * Retorna o documento carregado para um elemento de importação de um
+     * documento do grafo.
+     *
+     * @param imp
+     *          elemento de importação.
+     * @return
+     *          documento NCL importado ou nulo se a importação não pertencer ao grafo.
+     */
+    public NCLDoc getImportedDocument(NCLImport imp) {
+        return imported.get(imp);
+    }
+
+
+    /**
+     * Retorna o elemento importado referenciado por um elo, bind ou descritor
+     * de um documento do grafo através de uma referência qualificada. Para os
+     * elementos do documento raiz, o elemento importado também é atribuído ao
+     * próprio elemento.
+     *
+     * @param element
+     *          elo, bind ou descritor.
+     * @return
+     *          conector, descritor ou região importado ou nulo se a referência
+     *          não tiver sido resolvida.
+     */
+    public NCLElement getReference(NCLElement element) {
+        return references.get(element);
+    }
+
+
+    /**
+     * Procura um elemento visível a partir de um documento do grafo.
+     *
+     * @param doc
+     *          documento NCL do grafo.
+     * @param id
+     *          identificador local ou qualificado do elemento.
+     * @return
+     *          elemento encontrado ou nulo se o elemento não for visível a partir do documento.
+     */
+    public NCLElement find(NCLDoc doc, String id) {
+        List<Map<String, NCLElement>> index = indexes.get(doc);
+        if(index == null)
+            return null;
+
+        for(Map<String, NCLElement> kind : index){
+            NCLElement el = kind.get(id);
+            if(el != null)
+                return el;
+        }
+        return null;
+    }
+
+
+    /**
+     * Procura um conector importado pelo documento de um elemento.
+     *
+     * @param from
+     *          elemento que faz a referência.
+     * @param alias
+     *          apelido da importação.
+     * @param id
+     *          identificador do conector no documento importado.
+     * @return
+     *          conector encontrado ou nulo.
+     */
+    public NCLCausalConnector findConnector(NCLElement from, String alias, String id) {
+        return (NCLCausalConnector) find(from, CONNECTOR, qualify(alias, id));
+    }
+
+
+    /**
+     * Procura um descritor importado pelo documento de um elemento.
+     *
+     * @param from
+     *          elemento que faz a referência.
+     * @param alias
+     *          apelido da importação.
+     * @param id
+     *          identificador do descritor no documento importado.
+     * @return
+     *          descritor ou switch de descritores encontrado ou nulo.
+     */
+    public NCLLayoutDescriptor findDescriptor(NCLElement from, String alias, String id) {
+        return (NCLLayoutDescriptor) find(from, DESCRIPTOR, qualify(alias, id));
+    }
+
+
+    /**
+     * Procura uma região importada pelo documento de um elemento.
+     *
+     * @param from
+     *          elemento que faz a referência.
+     * @param alias
+     *          apelido da importação.
+     * @param id
+     *          identificador da região no documento importado.
+     * @return
+     *          região encontrada ou nulo.
+     */
+    public NCLRegion findRegion(NCLElement from, String alias, String id) {
+        return (NCLRegion) find(from, REGION, qualify(alias, id));
+    }
+
+
+    /**
+     * Retorna o grafo de importação do documento que contém um elemento.
+     *
+     * @param element
+     *          elemento NCL.
+     * @return
+     *          grafo de importação ou nulo se as importações do documento não foram resolvidas.
+     */
+    public static NCLImportGraph getGraph(NCLElement element) {
+        NCLDoc doc = getDocument(element);
+        if(doc == null)
+            return null;
+
+        return doc.getImportGraph();
+    }
+
+
+    /**
+     * Retorna o apelido de uma referência qualificada, isto é, o trecho anterior
+     * ao último separador.
+     *
+     * @param reference
+     *          referência, como "conn#onBeginStart".
+     * @return
+     *          apelido ou nulo se a referência não for qualificada.
+     */
+    public static String alias(String reference) {
+        int index = reference.lastIndexOf(SEPARATOR);
+        if(index == -1)
+            return null;
+
+        return reference.substring(0, index);
+    }
+
+
+    /**
+     * Retorna o identificador local de uma referência qualificada, isto é, o
+     * trecho posterior ao último separador.
+     *
+     * @param reference
+     *          referência, como "conn#onBeginStart".
+     * @return
+     *          identificador do elemento no documento importado.
+     */
+    public static String localId(String reference) {
+        return reference.substring(reference.lastIndexOf(SEPARATOR) + 1);
+    }
+
+
+    /**
+     * Monta uma referência qualificada a partir de um apelido e de um identificador.
+     *
+     * @param alias
+     *          apelido da importação ou nulo.
+     * @param id
+     *          identificador do elemento.
+     * @return
+     *          referência qualificada ou o próprio identificador se o apelido for nulo.
+     */
+    public static String qualify(String alias, String id) {
+        if(alias == null)
+            return id;
+
+        return alias + SEPARATOR + id;
+    }
+
+
+    private NCLElement find(NCLElement from, int kind, String id) {
+        List<Map<String, NCLElement>> index = indexes.get(getDocument(from));
+        if(index == null)
+            return null;
+
+        return index.get(kind).get(id);
+    }
+
+
+    private void visit() {
+        Map<NCLDoc, Integer> state = new IdentityHashMap<NCLDoc, Integer>();
+        List<NCLDoc> stack = new ArrayList<NCLDoc>();
+        List<Integer> positions = new ArrayList<Integer>();
+        Map<NCLDoc, List<NCLImport>> edges = new IdentityHashMap<NCLDoc, List<NCLImport>>();
+
+        state.put(root, VISITING);
+        stack.add(root);
+        positions.add(0);
+        edges.put(root, load(root));
+
+        // percurso em profundidade iterativo: cada documento e cada importação
+        // são visitados uma única vez
+        while(!stack.isEmpty()){
+            int top = stack.size() - 1;
+            NCLDoc doc = stack.get(top);
+            List<NCLImport> imports = edges.get(doc);
+            int pos = positions.get(top);
+
+            if(pos == imports.size()){
+                stack.remove(top);
+                positions.remove(top);
+                state.put(doc, DONE);
+                documents.add(doc);
+                index(doc);
+                continue;
+            }
+            positions.set(top, pos + 1);
+
+            NCLImport imp = imports.get(pos);
+            NCLDoc child = imported.get(imp);
+            Integer s = state.get(child);
+            if(s == null){
+                state.put(child, VISITING);
+                stack.add(child);
+                positions.add(0);
+                edges.put(child, load(child));
+            }
+            else if(s == VISITING){
+                cycles.add(imp);
+                warnings.add("Importação cíclica do documento " + imp.getDocumentURI() + " através do apelido " + imp.getAlias() + ".");
+            }
+        }
+    }
+
+
+    private List<NCLImport> load(NCLDoc doc) {
+        List<NCLImport> result = new ArrayList<NCLImport>();
+        URI location = locations.get(doc);
+
+        for(NCLImport imp : NCLImportResolver.getImports(doc)){
+            URI uri = resolver.getURI(imp, location);
+            if(uri == null)
+                continue;
+
+            NCLDoc child = byLocation.get(uri.toString());
+            if(child == null)
+                child = imp.getImportedDocument();
+            if(child == null)
+                child = resolver.load(imp, location);
+
+            if(child == null)
+                continue;
+
+            // apenas as importações do documento raiz são alteradas
+            imported.put(imp, child);
+            if(doc == root)
+                imp.setImportedDocument(child);
+
+            if(!locations.containsKey(child)){
+                locations.put(child, uri);
+                byLocation.put(uri.toString(), child);
+            }
+            result.add(imp);
+        }
+
+        return result;
+    }
+
+
+    private void index(NCLDoc doc) {
+        List<Map<String, NCLElement>> index = new ArrayList<Map<String, NCLElement>>(KINDS);
+        for(int i = 0; i < KINDS; i++)
+            index.add(new HashMap<String, NCLElement>());
+        indexes.put(doc, index);
+
+        NCLHead head = doc.getHead();
+        if(head == null)
+            return;
+
+        if(head.getConnectorBase() != null){
+            Iterable<NCLCausalConnector> connectors = head.getConnectorBase().getCausalConnectors();
+            for(NCLCausalConnector c : connectors)
+                index.get(CONNECTOR).put(c.getId(), c);
+            Iterable<NCLImport> imports = head.getConnectorBase().getImportBases();
+            include(imports, index, CONNECTOR);
+        }
+        if(head.getDescriptorBase() != null){
+            Iterable<NCLLayoutDescriptor> descriptors = head.getDescriptorBase().getDescriptors();
+            for(NCLLayoutDescriptor d : descriptors)
+                index.get(DESCRIPTOR).put(d.getId(), (NCLElement) d);
+            Iterable<NCLImport> imports = head.getDescriptorBase().getImportBases();
+            include(imports, index, DESCRIPTOR);
+        }
+        if(head.getRegionBase() != null){
+            Iterable<NCLRegion> regions = head.getRegionBase().getRegions();
+            indexRegions(regions, index.get(REGION));
+            Iterable<NCLImport> imports = head.getRegionBase().getImportBases();
+            include(imports, index, REGION);
+        }
+        if(head.getRuleBase() != null){
+            Iterable<NCLTestRule> rules = head.getRuleBase().getRules();
+            for(NCLTestRule r : rules)
+                index.get(RULE).put(r.getId(), (NCLElement) r);
+            Iterable<NCLImport> imports = head.getRuleBase().getImportBases();
+            include(imports, index, RULE);
+        }
+        if(head.getTransitionBase() != null){
+            Iterable<NCLTransition> transitions = head.getTransitionBase().getTransitions();
+            for(NCLTransition t : transitions)
+                index.get(TRANSITION).put(t.getId(), t);
+            Iterable<NCLImport> imports = head.getTransitionBase().getImportBases();
+            include(imports, index, TRANSITION);
+        }
+        if(head.getImportedDocumentBase() != null){
+            Iterable<NCLImport> imports = head.getImportedDocumentBase().getImportNCLs();
+            for(int kind = 0; kind < KINDS; kind++)
+                include(imports, index, kind);
+        }
+    }
+
+
+    private void indexRegions(Iterable<NCLRegion> regions, Map<String, NCLElement> index) {
+        for(NCLRegion r : regions){
+            index.put(r.getId(), r);
+            if(r.hasRegion()){
+                Iterable<NCLRegion> children = r.getRegions();
+                indexRegions(children, index);
+            }
+        }
+    }
+
+
+    private void include(Iterable<NCLImport> imports, List<Map<String, NCLElement>> index, int kind) {
+        for(NCLImport imp : imports){
+            if(imp.getAlias() == null || cycles.contains(imp))
+                continue;
+
+            // o documento importado já foi indexado, pois é visitado antes do importador
+            List<Map<String, NCLElement>> other = indexes.get(imported.get(imp));
+            if(other == null)
+                continue;
+
+            String prefix = imp.getAlias() + SEPARATOR;
+            for(Map.Entry<String, NCLElement> e : other.get(kind).entrySet())
+                index.get(kind).put(prefix + e.getKey(), e.getValue());
+        }
+    }
+
+
+    private void resolveReferences(NCLDoc doc) {
+        boolean owned = doc == root;
+        NCLHead head = doc.getHead();
+        if(head != null && head.getDescriptorBase() != null){
+            Iterable<NCLLayoutDescriptor> descriptors = head.getDescriptorBase().getDescriptors();
+            for(NCLLayoutDescriptor d : descriptors){
+                if(!(d instanceof NCLDescriptor))
+                    continue;
+
+                NCLDescriptor desc = (NCLDescriptor) d;
+                if(desc.getRegionAlias() != null && desc.getRegion() != null){
+                    NCLRegion reg = findRegion(desc, desc.getRegionAlias(), desc.getRegion().getId());
+                    if(reg != null)
+                        resolved(desc, reg, owned);
+                    else
+                        warnings.add("Could not find region in imported base with id: " + qualify(desc.getRegionAlias(), desc.getRegion().getId()));
+                }
+            }
+        }
+
+        NCLBody body = doc.getBody();
+        if(body != null){
+            Iterable<NCLLink> links = body.getLinks();
+            resolveLinks(links, owned);
+            Iterable<NCLNode> nodes = body.getNodes();
+            resolveNodes(nodes, owned);
+        }
+    }
+
+
+    private void resolveNodes(Iterable<NCLNode> nodes, boolean owned) {
+        for(NCLNode n : nodes){
+            if(n instanceof NCLContext){
+                Iterable<NCLLink> links = ((NCLContext) n).getLinks();
+                resolveLinks(links, owned);
+                Iterable<NCLNode> cnodes = ((NCLContext) n).getNodes();
+                resolveNodes(cnodes, owned);
+            }
+            else if(n instanceof NCLSwitch){
+                Iterable<NCLNode> snodes = ((NCLSwitch) n).getNodes();
+                resolveNodes(snodes, owned);
+            }
+        }
+    }
+
+
+    private void resolveLinks(Iterable<NCLLink> links, boolean owned) {
+        for(NCLLink link : links){
+            if(link.getXconnectorAlias() != null && link.getXconnector() != null){
+                NCLCausalConnector c = findConnector(link, link.getXconnectorAlias(), link.getXconnector().getId());
+                if(c != null)
+                    resolved(link, c, owned);
+                else
+                    warnings.add("Could not find connector in imported base with id: " + qualify(link.getXconnectorAlias(), link.getXconnector().getId()));
+            }
+
+            Iterable<NCLBind> binds = link.getBinds();
+            for(NCLBind bind : binds){
+                if(bind.getDescriptorAlias() == null || bind.getDescriptor() == null)
+                    continue;
+
+                NCLLayoutDescriptor d = findDescriptor(bind, bind.getDescriptorAlias(), bind.getDescriptor().getId());
+                if(d instanceof NCLDescriptor)
+                    resolved(bind, d, owned);
+                else
+                    warnings.add("Could not find descriptor in imported base with id: " + qualify(bind.getDescriptorAlias(), bind.getDescriptor().getId()));
+            }
+        }
+    }
+
+
+    private void resolved(NCLElement element, Object target, boolean owned) {
+        references.put(element, (NCLElement) target);
+        if(!owned)
+            return;
+
+        // o apelido é mantido para que a referência continue qualificada
+        if(element instanceof NCLLink){
+            NCLLink link = (NCLLink) element;
+            link.setXconnector((NCLCausalConnector) target, link.getXconnectorAlias());
+        }
+        else if(element instanceof NCLBind){
+            NCLBind bind = (NCLBind) element;
+            bind.setDescriptor((NCLDescriptor) target, bind.getDescriptorAlias());
+        }
+        else{
+            NCLDescriptor desc = (NCLDescriptor) element;
+            desc.setRegion((NCLRegion) target, desc.getRegionAlias());
+        }
+    }
+
+
+    private static NCLDoc getDocument(NCLElement element) {
+        NCLElement root = element;
+        while(root != null && !(root instanceof NCLDoc))
+            root = root.getParent();
+
+        return (NCLDoc) root;
+    }
+}
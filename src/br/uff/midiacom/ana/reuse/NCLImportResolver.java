@@ -0,0 +1,251 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana.reuse;
+
+import br.uff.midiacom.ana.NCLDoc;
+import br.uff.midiacom.ana.NCLHead;
+import br.uff.midiacom.ana.NCLParsingException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Esta classe define um resolvedor dos elementos de importação de um documento
+ * da <i>Nested Context Language</i> (NCL).<br/>
+ *
+ * O resolvedor carrega os documentos referenciados pelos elementos <i>importBase</i>
+ * e <i>importNCL</i> do cabeçalho de um documento e os associa aos elementos de
+ * importação. Os endereços relativos são resolvidos a partir do endereço do
+ * documento importador. Os documentos são obtidos através de uma cache de documentos,
+ * de forma que um documento importado por várias aplicações seja lido uma única vez.
+ *
+ * @see NCLImport
+ * @see NCLDocumentCache
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLImportResolver {
+
+    private NCLDocumentCache cache;
+    private List<String> warnings = new ArrayList<String>();
+
+
+    /**
+     * Constrói um resolvedor que utiliza a cache de documentos compartilhada pelo processo.
+     */
+    public NCLImportResolver() {
+        this(NCLDocumentCache.getInstance());
+    }
+
+
+    /**
+     * Constrói um resolvedor que utiliza uma cache de documentos.
+     *
+     * @param cache
+     *          cache de documentos usada pelo resolvedor.
+     * @throws java.lang.NullPointerException
+     *          se a cache for nula.
+     */
+    public NCLImportResolver(NCLDocumentCache cache) throws NullPointerException {
+        if(cache == null)
+            throw new NullPointerException("Null cache");
+
+        this.cache = cache;
+    }
+
+
+    /**
+     * Retorna a cache de documentos usada pelo resolvedor.
+     *
+     * @return
+     *          cache de documentos.
+     */
+    public NCLDocumentCache getCache() {
+        return cache;
+    }
+
+
+    /**
+     * Carrega os documentos referenciados por todos os elementos de importação
+     * do cabeçalho de um documento.
+     *
+     * @param doc
+     *          documento NCL importador.
+     * @param base
+     *          endereço do documento importador, usado para resolver endereços relativos.
+     * @return
+     *          lista com os elementos de importação cujos documentos foram carregados.
+     */
+    public List<NCLImport> resolve(NCLDoc doc, URI base) {
+        List<NCLImport> result = new ArrayList<NCLImport>();
+
+        for(NCLImport imp : getImports(doc)){
+            if(resolve(imp, base) != null)
+                result.add(imp);
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Carrega o documento referenciado por um elemento de importação e o associa
+     * ao elemento.
+     *
+     * @param imp
+     *          elemento de importação.
+     * @param base
+     *          endereço do documento importador, usado para resolver endereços relativos.
+     * @return
+     *          documento NCL importado ou nulo se o documento não puder ser carregado.
+     */
+    public NCLDoc resolve(NCLImport imp, URI base) {
+        NCLDoc doc = load(imp, base);
+        if(doc != null)
+            imp.setImportedDocument(doc);
+
+        return doc;
+    }
+
+
+    /**
+     * Carrega o documento referenciado por um elemento de importação sem
+     * associá-lo ao elemento, que pode pertencer a um documento compartilhado.
+     *
+     * @param imp
+     *          elemento de importação.
+     * @param base
+     *          endereço do documento importador, usado para resolver endereços relativos.
+     * @return
+     *          documento NCL importado ou nulo se o documento não puder ser carregado.
+     */
+    public NCLDoc load(NCLImport imp, URI base) {
+        try{
+            URI location = getURI(imp, base);
+            if(location == null)
+                return null;
+
+            return cache.load(location);
+        }
+        catch(NCLParsingException ex){
+            warnings.add("Could not load document " + imp.getDocumentURI() + ": " + ex.getMessage());
+            return null;
+        }
+    }
+
+
+    /**
+     * Retorna o endereço absoluto e normalizado do documento referenciado por um
+     * elemento de importação.
+     *
+     * @param imp
+     *          elemento de importação.
+     * @param base
+     *          endereço do documento importador ou nulo.
+     * @return
+     *          endereço do documento importado ou nulo se o elemento não possuir endereço.
+     */
+    public URI getURI(NCLImport imp, URI base) {
+        if(imp.getDocumentURI() == null)
+            return null;
+
+        try{
+            URI location = new URI(imp.getDocumentURI());
+            if(base != null)
+                location = NCLDocumentCache.normalize(base).resolve(location);
+
+            return NCLDocumentCache.normalize(location);
+        }
+        catch(URISyntaxException ex){
+            warnings.add("Invalid document URI: " + imp.getDocumentURI());
+            return null;
+        }
+    }
+
+
+    /**
+     * Retorna as mensagens encontradas durante a resolução das importações.
+     *
+     * @return
+     *          objeto Iterable contendo as mensagens.
+     */
+    public Iterable<String> getWarnings() {
+        return warnings;
+    }
+
+
+    /**
+     * Retorna todos os elementos de importação do cabeçalho de um documento, isto
+     * é, os elementos <i>importNCL</i> da base de documentos importados e os elementos
+     * <i>importBase</i> das bases de regras, transições, regiões, descritores e conectores.
+     *
+     * @param doc
+     *          documento NCL.
+     * @return
+     *          lista com os elementos de importação do documento.
+     */
+    public static List<NCLImport> getImports(NCLDoc doc) {
+        List<NCLImport> result = new ArrayList<NCLImport>();
+        if(doc == null || doc.getHead() == null)
+            return result;
+
+        NCLHead head = doc.getHead();
+        if(head.getImportedDocumentBase() != null)
+            add(head.getImportedDocumentBase().getImportNCLs(), result);
+        if(head.getRuleBase() != null)
+            add(head.getRuleBase().getImportBases(), result);
+        if(head.getTransitionBase() != null)
+            add(head.getTransitionBase().getImportBases(), result);
+        if(head.getRegionBase() != null)
+            add(head.getRegionBase().getImportBases(), result);
+        if(head.getDescriptorBase() != null)
+            add(head.getDescriptorBase().getImportBases(), result);
+        if(head.getConnectorBase() != null)
+            add(head.getConnectorBase().getImportBases(), result);
+
+        return result;
+    }
+
+
+    private static void add(Iterable<NCLImport> imports, List<NCLImport> result) {
+        for(NCLImport imp : imports)
+            result.add(imp);
+    }
+}
@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.reuse;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
@@ -92,10 +93,12 @@ public class NCLImportedDocumentBase<I extends NCLImport> extends NCLIdentifiabl
      * @see TreeSet#add
      */
     public boolean addImportNCL(I importNCL) {
+        modified();
         if(imports.add(importNCL)){
             //Se importNCL existe, atribui este como seu parente
             if(importNCL != null)
                 importNCL.setParent(this);
+            added("importNCL", importNCL);
 
             return true;
         }
@@ -112,10 +115,12 @@ public class NCLImportedDocumentBase<I extends NCLImport> extends NCLIdentifiabl
      * @see TreeSet#remove
      */
     public boolean removeImportNCL(I importNCL) {
+        modified();
         if(imports.remove(importNCL)){
             //Se importNCL existe, retira o seu parentesco
             if(importNCL != null)
                 importNCL.setParent(null);
+            removed("importNCL", importNCL);
 
             return true;
         }
@@ -157,7 +162,12 @@ public class NCLImportedDocumentBase<I extends NCLImport> extends NCLIdentifiabl
 
 
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -167,26 +177,43 @@ public class NCLImportedDocumentBase<I extends NCLImport> extends NCLIdentifiabl
         for(int i = 0; i < ident; i++)
             space += "\t";
 
-        content = space + "<importedDocumentBase";
+        content.append(space + "<importedDocumentBase");
         if(getId() != null)
-            content += " id='" + getId() + "'";
+            content.append(" id='" + escape(getId()) + "'");
 
         if(hasImportNCL()){
-            content += ">\n";
+            content.append(">\n");
 
             for(I imp : imports)
-                content += imp.parse(ident + 1);
+                content.append(imp.parse(ident + 1));
 
-            content += space + "</importedDocumentBase>\n";
+            content.append(space + "</importedDocumentBase>\n");
         }
         else
-            content += "/>\n";
+            content.append("/>\n");
+
+        return content.toString();
+    }
+
 
-        return content;
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(property.equals("importNCL")){
+            if(operation == Operation.ADD)
+                addImportNCL((I) value);
+            else
+                removeImportNCL((I) value);
+        }
+        else
+            super.applyChange(operation, property, value);
     }
 
 
     public boolean validate() {
+        Boolean validated = getValidation();
+        if(validated != null)
+            return validated;
+
         cleanWarnings();
         cleanErrors();
 
@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.rule;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
@@ -105,7 +106,10 @@ public class NCLCompositeRule<T extends NCLTestRule> extends NCLIdentifiableElem
      *          elemento representando o operador da regra composta.
      */
     public void setOperator(NCLOperator operator) {
+        modified();
+        Object old = this.operator;
         this.operator = operator;
+        changed("operator", old, this.operator);
     }
 
 
@@ -131,10 +135,12 @@ public class NCLCompositeRule<T extends NCLTestRule> extends NCLIdentifiableElem
      * @see TreeSet#add
      */
     public boolean addRule(T rule) {
+        modified();
         if(rules.add(rule)){
             //Se rule existe, atribui este como seu parente
             if(rule != null)
                 rule.setParent(this);
+            added("rule", rule);
 
             return true;
         }
@@ -153,10 +159,12 @@ public class NCLCompositeRule<T extends NCLTestRule> extends NCLIdentifiableElem
      * @see TreeSet#remove
      */
     public boolean removeRule(T rule) {
+        modified();
         if(rules.remove(rule)){
             //Se rule existe, retira o seu parentesco
             if(rule != null)
                 rule.setParent(null);
+            removed("rule", rule);
 
             return true;
         }
@@ -201,7 +209,12 @@ public class NCLCompositeRule<T extends NCLTestRule> extends NCLIdentifiableElem
 
 
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -213,21 +226,21 @@ public class NCLCompositeRule<T extends NCLTestRule> extends NCLIdentifiableElem
 
 
         // param element and attributes declaration
-        content = space + "<compositeRule";
+        content.append(space + "<compositeRule");
         if(getId() != null)
-            content += " id='" + getId() + "'";
+            content.append(" id='" + escape(getId()) + "'");
         if(getOperator() != null)
-            content += " operator='" + getOperator() + "'";
-        content += ">\n";
+            content.append(" operator='" + escape(getOperator()) + "'");
+        content.append(">\n");
 
         if(hasRule()){
             for(T rule : rules)
-                content += rule.parse(ident + 1);
+                content.append(rule.parse(ident + 1));
         }
 
-        content += "</compositeRule>\n";
+        content.append("</compositeRule>\n");
 
-        return content;
+        return content.toString();
     }
 
     /**
@@ -244,6 +257,25 @@ public class NCLCompositeRule<T extends NCLTestRule> extends NCLIdentifiableElem
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("operator"))
+                setOperator((NCLOperator) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else if(property.equals("rule")){
+            if(operation == Operation.ADD)
+                addRule((T) value);
+            else
+                removeRule((T) value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
@@ -37,17 +37,19 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.rule;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
+import br.uff.midiacom.ana.NCLReference;
 import br.uff.midiacom.ana.interfaces.NCLProperty;
 import br.uff.midiacom.ana.NCLDoc;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
+import br.uff.midiacom.ana.NCLReferenceIndex;
 import br.uff.midiacom.ana.NCLValues.NCLComparator;
 import br.uff.midiacom.ana.NCLValues.NCLMimeType;
-import br.uff.midiacom.ana.node.NCLContext;
+import br.uff.midiacom.ana.NCLWalker;
 import br.uff.midiacom.ana.node.NCLMedia;
 import br.uff.midiacom.ana.node.NCLNode;
-import br.uff.midiacom.ana.node.NCLSwitch;
 import org.xml.sax.Attributes;
 import org.xml.sax.XMLReader;
 
@@ -68,7 +70,7 @@ import org.xml.sax.XMLReader;
  */
 public class NCLRule<P extends NCLProperty, T extends NCLTestRule> extends NCLIdentifiableElement implements NCLTestRule<T> {
 
-    private P var;
+    private Object var;
     private NCLComparator comparator;
     private String value;
 
@@ -110,7 +112,11 @@ public class NCLRule<P extends NCLProperty, T extends NCLTestRule> extends NCLId
      *          elemento representando a propriedade associada ao atributo.
      */
     public void setVar(P var) {
+        modified();
+        Object old = NCLReference.peek(this.var);
+        NCLReferenceIndex.update(this, "var", NCLReference.peek(this.var), var);
         this.var = var;
+        changed("var", old, NCLReference.peek(this.var));
     }
 
 
@@ -122,7 +128,7 @@ public class NCLRule<P extends NCLProperty, T extends NCLTestRule> extends NCLId
      *          elemento representando a propriedade associada ao atributo.
      */
     public P getVar() {
-        return var;
+        return NCLReference.get(var);
     }
 
 
@@ -135,7 +141,10 @@ public class NCLRule<P extends NCLProperty, T extends NCLTestRule> extends NCLId
      *          elemento representando o comparador da regra.
      */
     public void setComparator(NCLComparator comparator) {
+        modified();
+        Object old = this.comparator;
         this.comparator = comparator;
+        changed("comparator", old, this.comparator);
     }
 
 
@@ -163,10 +172,13 @@ public class NCLRule<P extends NCLProperty, T extends NCLTestRule> extends NCLId
      *          se a String for vazia.
      */
     public void setValue(String value) throws IllegalArgumentException {
+        modified();
+        Object old = this.value;
         if (value != null && "".equals(value.trim()))
             throw new IllegalArgumentException("Empty String");
 
         this.value = value;
+        changed("value", old, this.value);
     }
 
 
@@ -183,6 +195,10 @@ public class NCLRule<P extends NCLProperty, T extends NCLTestRule> extends NCLId
     
 
     public String parse(int ident) {
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
         String space, content;
 
         if(ident < 0)
@@ -197,13 +213,13 @@ public class NCLRule<P extends NCLProperty, T extends NCLTestRule> extends NCLId
         // param element and attributes declaration
         content = space + "<rule";
         if(getId() != null)
-            content += " id='" + getId() + "'";
-        if(getVar() != null)
-            content += " var='" + getVar().getName() + "'";
+            content += " id='" + escape(getId()) + "'";
+        if(var != null)
+            content += " var='" + escape(getVar().getName()) + "'";
         if(getComparator() != null)
-            content += " comparator='" + getComparator().toString() + "'";
+            content += " comparator='" + escape(getComparator().toString()) + "'";
         if(getValue() != null)
-            content += " value='" + getValue() + "'";
+            content += " value='" + escape(getValue()) + "'";
         content += "/>\n";
 
         return content;
@@ -222,17 +238,39 @@ public class NCLRule<P extends NCLProperty, T extends NCLTestRule> extends NCLId
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("var"))
+                setVar((P) value);
+            else if(property.equals("comparator"))
+                setComparator((NCLComparator) value);
+            else if(property.equals("value"))
+                setValue((String) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
 
         boolean valid = true;
 
+        if(!NCLReference.isValid(var)){
+            addError("Atributo var possui um identificador inválido.");
+            valid = false;
+        }
+
         if(getId() == null){
             addError("Elemento não possui atributo obrigatório id.");
             valid = false;
         }
-        if(getVar() == null){
+        if(var == null){
             addError("Elemento não possui atributo obrigatório var.");
             valid = false;
         }
@@ -245,7 +283,7 @@ public class NCLRule<P extends NCLProperty, T extends NCLTestRule> extends NCLId
             valid = false;
         }
 
-        if(getVar() != null){
+        if(var != null){
             if(getVar().getParent() != null && getVar().getParent() instanceof NCLMedia){
                 if(((NCLMedia)getVar().getParent()).getType() != NCLMimeType.APPLICATION_X_GINGA_SETTINGS){
                     addWarning("Atributo var deve referenciar um propriedade de um elemento media do tipo settings.");
@@ -271,7 +309,7 @@ public class NCLRule<P extends NCLProperty, T extends NCLTestRule> extends NCLId
                 if(attributes.getLocalName(i).equals("id"))
                     setId(attributes.getValue(i));
                 else if(attributes.getLocalName(i).equals("var"))
-                    setVar((P) new NCLProperty(attributes.getValue(i)));//cast retirado na correcao das referencias
+                    var = new NCLReference(NCLProperty.class, attributes.getValue(i));
                 else if(attributes.getLocalName(i).equals("comparator")){
                     for(NCLComparator c : NCLComparator.values()){
                         if(c.toString().equals(attributes.getValue(i)))
@@ -293,7 +331,7 @@ public class NCLRule<P extends NCLProperty, T extends NCLTestRule> extends NCLId
         if(getParent() == null)
             return;
 
-        if(getVar() != null)
+        if(var != null)
             propertyReference();
     }
 
@@ -334,30 +372,12 @@ public class NCLRule<P extends NCLProperty, T extends NCLTestRule> extends NCLId
      *      Null, caso ela não exista no conjunto.
      */
     private P findProperty(Iterable<NCLNode> nodes) {
-        for(NCLNode n : nodes){
-            if(n instanceof NCLMedia){
-                if( ((NCLMedia) n).hasProperty()){
-                    Iterable<P> properties = ((NCLMedia) n).getProperties();
-                    for(P prop : properties){
-                        if(prop.getName().equals(getVar().getName()))
-                            return prop;
-                    }
-                }
-            }
-            else if(n instanceof NCLContext){
-                if( ((NCLContext) n).hasNode()){
-                    Iterable<NCLNode> cnodes = ((NCLContext) n).getNodes();
-                    NCLProperty p = findProperty(cnodes);
-                    if(p != null)
-                        return (P) p;
-                }
-            }
-            else if(n instanceof NCLSwitch){
-                if( ((NCLSwitch) n).hasNode()){
-                    Iterable<NCLNode> snodes = ((NCLSwitch) n).getNodes();
-                    NCLProperty p = findProperty(snodes);
-                    if(p != null)
-                        return (P) p;
+        for(NCLNode n : NCLWalker.nodes(nodes)){
+            if(n instanceof NCLMedia && ((NCLMedia) n).hasProperty()){
+                Iterable<P> properties = ((NCLMedia) n).getProperties();
+                for(P prop : properties){
+                    if(prop.getName().equals(getVar().getName()))
+                        return prop;
                 }
             }
         }
@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.rule;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
@@ -96,10 +97,12 @@ public class NCLRuleBase<T extends NCLTestRule, I extends NCLImport> extends NCL
      * @see TreeSet#add
      */
     public boolean addRule(T rule) {
+        modified();
         if(rules.add(rule)){
             //Se rule existe, atribui este como seu parente
             if(rule != null)
                 rule.setParent(this);
+            added("rule", rule);
 
             return true;
         }
@@ -118,10 +121,12 @@ public class NCLRuleBase<T extends NCLTestRule, I extends NCLImport> extends NCL
      * @see TreeSet#remove
      */
     public boolean removeRule(T rule) {
+        modified();
         if(rules.remove(rule)){
             //Se rule existe, retira o seu parentesco
             if(rule != null)
                 rule.setParent(null);
+            removed("rule", rule);
 
             return true;
         }
@@ -174,10 +179,12 @@ public class NCLRuleBase<T extends NCLTestRule, I extends NCLImport> extends NCL
      * @see TreeSet#add
      */
     public boolean addImportBase(I importBase) {
+        modified();
         if(imports.add(importBase)){
             //Se importBase existe, atribui este como seu parente
             if(importBase != null)
                 importBase.setParent(this);
+            added("importBase", importBase);
 
             return true;
         }
@@ -194,10 +201,12 @@ public class NCLRuleBase<T extends NCLTestRule, I extends NCLImport> extends NCL
      * @see TreeSet#remove
      */
     public boolean removeImportBase(I importBase) {
+        modified();
         if(imports.remove(importBase)){
             //Se importBase existe, retira o seu parentesco
             if(importBase != null)
                 importBase.setParent(null);
+            removed("importBase", importBase);
 
             return true;
         }
@@ -239,7 +248,12 @@ public class NCLRuleBase<T extends NCLTestRule, I extends NCLImport> extends NCL
 
 
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -249,33 +263,56 @@ public class NCLRuleBase<T extends NCLTestRule, I extends NCLImport> extends NCL
         for(int i = 0; i < ident; i++)
             space += "\t";
 
-        content = space + "<ruleBase";
+        content.append(space + "<ruleBase");
         if(getId() != null)
-            content += " id='" + getId() + "'";
+            content.append(" id='" + escape(getId()) + "'");
 
         if(hasImportBase() || hasRule()){
-            content += ">\n";
+            content.append(">\n");
 
             if(hasImportBase()){
                 for(I imp : imports)
-                    content += imp.parse(ident + 1);
+                    content.append(imp.parse(ident + 1));
             }
 
             if(hasRule()){
                 for(T rule : rules)
-                    content += rule.parse(ident + 1);
+                    content.append(rule.parse(ident + 1));
             }
 
-            content += space + "</ruleBase>\n";
+            content.append(space + "</ruleBase>\n");
         }
         else
-            content += "/>\n";
+            content.append("/>\n");
 
-        return content;
+        return content.toString();
+    }
+
+
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(property.equals("rule")){
+            if(operation == Operation.ADD)
+                addRule((T) value);
+            else
+                removeRule((T) value);
+        }
+        else if(property.equals("importBase")){
+            if(operation == Operation.ADD)
+                addImportBase((I) value);
+            else
+                removeImportBase((I) value);
+        }
+        else
+            super.applyChange(operation, property, value);
     }
 
 
     public boolean validate() {
+        Boolean validated = getValidation();
+        if(validated != null)
+            return validated;
+
         cleanWarnings();
         cleanErrors();
 
@@ -0,0 +1,290 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana.rule;
+
+import br.uff.midiacom.ana.NCLDoc;
+import br.uff.midiacom.ana.NCLElement;
+import br.uff.midiacom.ana.descriptor.NCLDescriptor;
+import br.uff.midiacom.ana.descriptor.NCLDescriptorSwitch;
+import br.uff.midiacom.ana.descriptor.NCLLayoutDescriptor;
+import br.uff.midiacom.ana.node.NCLBindRule;
+import br.uff.midiacom.ana.node.NCLContext;
+import br.uff.midiacom.ana.node.NCLNode;
+import br.uff.midiacom.ana.node.NCLSwitch;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Esta classe avalia as regras de teste da <i>Nested Context Language</i> (NCL)
+ * e seleciona o conteúdo dos elementos <i>switch</i> e <i>descriptorSwitch</i>.<br/>
+ *
+ * As regras da base de regras são compiladas em um grafo compartilhado
+ * (<i>NCLRuleGraph</i>) sobre as variáveis de ambiente (<i>NCLSettings</i>).
+ * O resultado da seleção de cada switch é guardado junto com a versão das
+ * variáveis em que foi calculado e com o conjunto de variáveis lidas pelas
+ * suas regras. Um switch só é reavaliado
+ * quando alguma dessas variáveis é alterada.
+ *
+ * @see NCLSettings
+ * @see NCLRuleGraph
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLRuleEvaluator {
+
+    private NCLSettings settings;
+    private NCLRuleGraph graph = new NCLRuleGraph();
+    private Map<NCLElement, Selection> selections = new HashMap<NCLElement, Selection>();
+
+
+    /**
+     * Construtor do avaliador de regras.
+     *
+     * @param settings
+     *          variáveis de ambiente sobre as quais as regras serão avaliadas.
+     */
+    public NCLRuleEvaluator(NCLSettings settings) {
+        if(settings == null)
+            throw new IllegalArgumentException("Invalid settings");
+
+        this.settings = settings;
+    }
+
+
+    /**
+     * Retorna as variáveis de ambiente usadas pelo avaliador.
+     *
+     * @return
+     *          variáveis de ambiente.
+     */
+    public NCLSettings getSettings() {
+        return settings;
+    }
+
+
+    /**
+     * Compila todas as regras de uma base de regras.
+     *
+     * @param base
+     *          base de regras a ser compilada.
+     */
+    public void compile(NCLRuleBase base) {
+        graph.compile(base);
+    }
+
+
+    /**
+     * Avalia uma regra de teste com os valores atuais das variáveis de ambiente.
+     *
+     * @param rule
+     *          regra a ser avaliada.
+     * @return
+     *          verdadeiro se a regra for satisfeita.
+     */
+    public boolean evaluate(NCLTestRule rule) {
+        return graph.evaluate(rule, settings);
+    }
+
+
+    /**
+     * Seleciona o nó de um switch. O nó selecionado é o constituent do primeiro
+     * bindRule cuja regra for satisfeita ou o componente padrão, caso nenhuma
+     * regra seja satisfeita.
+     *
+     * @param s
+     *          switch a ser avaliado.
+     * @return
+     *          nó selecionado ou null se nenhum nó puder ser selecionado.
+     */
+    public NCLNode select(NCLSwitch s) {
+        Selection sel = selections.get(s);
+        if(sel != null && !settings.changedSince(sel.version, sel.variables))
+            return (NCLNode) sel.result;
+
+        List<NCLTestRule> rules = new ArrayList<NCLTestRule>();
+        List<NCLElement> constituents = new ArrayList<NCLElement>();
+        Iterable<NCLBindRule> binds = s.getBinds();
+        for(NCLBindRule bind : binds){
+            rules.add(bind.getRule());
+            constituents.add((NCLElement) bind.getConstituent());
+        }
+
+        sel = select(rules, constituents, (NCLElement) s.getDefaultComponent());
+        selections.put(s, sel);
+        return (NCLNode) sel.result;
+    }
+
+
+    /**
+     * Seleciona o descritor de um switch de descritores. O descritor selecionado
+     * é o constituent do primeiro bindRule cuja regra for satisfeita ou o
+     * descritor padrão, caso nenhuma regra seja satisfeita.
+     *
+     * @param s
+     *          switch de descritores a ser avaliado.
+     * @return
+     *          descritor selecionado ou null se nenhum descritor puder ser selecionado.
+     */
+    public NCLDescriptor select(NCLDescriptorSwitch s) {
+        Selection sel = selections.get(s);
+        if(sel != null && !settings.changedSince(sel.version, sel.variables))
+            return (NCLDescriptor) sel.result;
+
+        List<NCLTestRule> rules = new ArrayList<NCLTestRule>();
+        List<NCLElement> constituents = new ArrayList<NCLElement>();
+        Iterable<br.uff.midiacom.ana.descriptor.NCLBindRule> binds = s.getBinds();
+        for(br.uff.midiacom.ana.descriptor.NCLBindRule bind : binds){
+            rules.add(bind.getRule());
+            constituents.add(bind.getConstituent());
+        }
+
+        sel = select(rules, constituents, s.getDefaultDescriptor());
+        selections.put(s, sel);
+        return (NCLDescriptor) sel.result;
+    }
+
+
+    /**
+     * Seleciona o conteúdo de todos os switches e switches de descritores do
+     * documento. Somente os switches cujas regras leem alguma variável alterada
+     * desde a última seleção são reavaliados.
+     *
+     * @param doc
+     *          documento NCL.
+     * @return
+     *          mapa contendo, para cada switch, o elemento selecionado.
+     */
+    public Map<NCLElement, NCLElement> selectAll(NCLDoc doc) {
+        Map<NCLElement, NCLElement> result = new LinkedHashMap<NCLElement, NCLElement>();
+        if(doc == null)
+            return result;
+
+        if(doc.getHead() != null && doc.getHead().getDescriptorBase() != null){
+            Iterable<NCLLayoutDescriptor> descriptors = doc.getHead().getDescriptorBase().getDescriptors();
+            for(NCLLayoutDescriptor desc : descriptors){
+                if(desc instanceof NCLDescriptorSwitch)
+                    result.put((NCLElement) desc, select((NCLDescriptorSwitch) desc));
+            }
+        }
+        if(doc.getBody() != null){
+            Iterable<NCLNode> nodes = doc.getBody().getNodes();
+            selectAll(nodes, result);
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Descarta as regras compiladas e as seleções guardadas. Deve ser chamado
+     * quando a estrutura das regras ou dos switches for alterada.
+     */
+    public void invalidate() {
+        graph.clear();
+        selections.clear();
+    }
+
+
+    /**
+     * Descarta a seleção guardada de um switch ou switch de descritores.
+     *
+     * @param s
+     *          switch cuja seleção deve ser descartada.
+     */
+    public void invalidate(NCLElement s) {
+        selections.remove(s);
+    }
+
+
+    private void selectAll(Iterable<NCLNode> nodes, Map<NCLElement, NCLElement> result) {
+        for(NCLNode n : nodes){
+            if(n instanceof NCLSwitch){
+                result.put((NCLElement) n, (NCLElement) select((NCLSwitch) n));
+                Iterable<NCLNode> snodes = ((NCLSwitch) n).getNodes();
+                selectAll(snodes, result);
+            }
+            else if(n instanceof NCLContext){
+                Iterable<NCLNode> cnodes = ((NCLContext) n).getNodes();
+                selectAll(cnodes, result);
+            }
+        }
+    }
+
+
+    private Selection select(List<NCLTestRule> rules, List<NCLElement> constituents, NCLElement defaultElement) {
+        Set<String> vars = new HashSet<String>();
+        long version = settings.getVersion();
+
+        // Apenas as variáveis das regras avaliadas até a escolhida influenciam o resultado
+        for(int i = 0; i < rules.size(); i++){
+            NCLTestRule rule = rules.get(i);
+            if(rule == null)
+                continue;
+
+            vars.addAll(graph.getVariables(rule));
+            if(graph.evaluate(rule, settings))
+                return new Selection(constituents.get(i), version, vars);
+        }
+
+        return new Selection(defaultElement, version, vars);
+    }
+
+
+    /**
+     * Resultado da seleção de um switch.
+     */
+    private static class Selection {
+
+        NCLElement result;
+        long version;
+        Set<String> variables;
+
+
+        Selection(NCLElement result, long version, Set<String> variables) {
+            this.result = result;
+            this.version = version;
+            this.variables = variables;
+        }
+    }
+}
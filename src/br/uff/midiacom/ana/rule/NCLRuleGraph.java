@@ -0,0 +1,347 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana.rule;
+
+import br.uff.midiacom.ana.NCLValues.NCLComparator;
+import br.uff.midiacom.ana.NCLValues.NCLOperator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+
+/**
+ * Esta classe define o grafo compilado das regras de teste da <i>Nested Context Language</i> (NCL).<br/>
+ *
+ * Regras estruturalmente iguais são representadas por um único nó do grafo:
+ * regras simples com os mesmos atributos <i>var</i>, <i>comparator</i> e
+ * <i>value</i> compartilham o mesmo nó, assim como regras compostas com o mesmo
+ * operador e as mesmas regras filhas. O valor de cada nó é guardado para a
+ * versão das variáveis de ambiente em que foi calculado, de forma que cada
+ * regra simples é avaliada no máximo uma vez por versão, independente de
+ * quantas regras compostas e switches a referenciam.
+ *
+ * @see NCLRuleEvaluator
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLRuleGraph {
+
+    private Map<NCLTestRule, Node> compiled = new HashMap<NCLTestRule, Node>();
+    private Map<String, Node> shared = new HashMap<String, Node>();
+    private List<Node> nodes = new ArrayList<Node>();
+    private Node never;
+
+    private NCLSettings lastSettings;
+    private long lastVersion = -1;
+    private long generation = 0;
+    private long evaluations = 0;
+
+
+    /**
+     * Compila todas as regras de uma base de regras.
+     *
+     * @param base
+     *          base de regras a ser compilada.
+     */
+    public void compile(NCLRuleBase base) {
+        if(base == null || !base.hasRule())
+            return;
+
+        Iterable<NCLTestRule> rules = base.getRules();
+        for(NCLTestRule rule : rules)
+            compile(rule);
+    }
+
+
+    /**
+     * Avalia uma regra de teste com os valores atuais das variáveis de ambiente.
+     * A regra é compilada caso ainda não faça parte do grafo.
+     *
+     * @param rule
+     *          regra a ser avaliada.
+     * @param settings
+     *          variáveis de ambiente.
+     * @return
+     *          verdadeiro se a regra for satisfeita.
+     */
+    public boolean evaluate(NCLTestRule rule, NCLSettings settings) {
+        Node node = compile(rule);
+
+        if(settings != lastSettings || settings.getVersion() != lastVersion){
+            lastSettings = settings;
+            lastVersion = settings.getVersion();
+            generation++;
+        }
+
+        return node.evaluate(this, settings);
+    }
+
+
+    /**
+     * Retorna os nomes das variáveis lidas por uma regra de teste.
+     *
+     * @param rule
+     *          regra de teste.
+     * @return
+     *          conjunto contendo os nomes das variáveis lidas pela regra.
+     */
+    public Set<String> getVariables(NCLTestRule rule) {
+        return compile(rule).variables;
+    }
+
+
+    /**
+     * Retorna o número de nós distintos do grafo.
+     *
+     * @return
+     *          número de nós do grafo.
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+
+    /**
+     * Retorna o número de regras simples avaliadas desde a criação do grafo.
+     *
+     * @return
+     *          número de avaliações de regras simples.
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+
+    /**
+     * Descarta todas as regras compiladas. Deve ser chamado quando as regras
+     * forem alteradas.
+     */
+    public void clear() {
+        compiled.clear();
+        shared.clear();
+        nodes.clear();
+        never = null;
+        lastSettings = null;
+        lastVersion = -1;
+    }
+
+
+    private Node compile(NCLTestRule rule) {
+        Node node = compiled.get(rule);
+        if(node != null)
+            return node;
+
+        if(rule instanceof NCLRule)
+            node = atom((NCLRule) rule);
+        else if(rule instanceof NCLCompositeRule)
+            node = composite((NCLCompositeRule) rule);
+        else
+            node = never();
+
+        compiled.put(rule, node);
+        return node;
+    }
+
+
+    private Node atom(NCLRule rule) {
+        if(rule.getVar() == null || rule.getVar().getName() == null || rule.getComparator() == null || rule.getValue() == null)
+            return never();
+
+        String key = "R|" + rule.getVar().getName() + "|" + rule.getComparator() + "|" + rule.getValue();
+        Node node = shared.get(key);
+        if(node == null){
+            node = register(key, new Atom(rule.getVar().getName(), rule.getComparator(), rule.getValue()));
+        }
+        return node;
+    }
+
+
+    private Node composite(NCLCompositeRule rule) {
+        if(rule.getOperator() == null || !rule.hasRule())
+            return never();
+
+        // Os operadores são comutativos, então os filhos são ordenados e repetições eliminadas
+        Set<Node> children = new TreeSet<Node>();
+        Iterable<NCLTestRule> rules = rule.getRules();
+        for(NCLTestRule r : rules)
+            children.add(compile(r));
+
+        if(children.size() == 1)
+            return children.iterator().next();
+
+        String key = "C|" + rule.getOperator();
+        for(Node n : children)
+            key += "|" + n.index;
+
+        Node node = shared.get(key);
+        if(node == null){
+            node = register(key, new Composite(rule.getOperator(), children.toArray(new Node[children.size()])));
+        }
+        return node;
+    }
+
+
+    private Node never() {
+        if(never == null)
+            never = register("F", new Composite(NCLOperator.OR, new Node[0]));
+
+        return never;
+    }
+
+
+    private Node register(String key, Node node) {
+        node.index = nodes.size();
+        node.variables = Collections.unmodifiableSet(node.variables);
+        nodes.add(node);
+        shared.put(key, node);
+        return node;
+    }
+
+
+    /**
+     * Nó do grafo de regras.
+     */
+    private static abstract class Node implements Comparable<Node> {
+
+        int index;
+        Set<String> variables = new HashSet<String>();
+
+        private long stamp = -1;
+        private boolean value;
+
+
+        boolean evaluate(NCLRuleGraph graph, NCLSettings settings) {
+            if(stamp != graph.generation){
+                value = compute(graph, settings);
+                stamp = graph.generation;
+            }
+            return value;
+        }
+
+
+        abstract boolean compute(NCLRuleGraph graph, NCLSettings settings);
+
+
+        public int compareTo(Node other) {
+            return index - other.index;
+        }
+    }
+
+
+    /**
+     * Nó representando uma regra simples (elemento <i>rule</i>).
+     */
+    private static class Atom extends Node {
+
+        private String var;
+        private NCLComparator comparator;
+        private String value;
+        private double number;
+        private boolean numeric;
+
+
+        Atom(String var, NCLComparator comparator, String value) {
+            this.var = var;
+            this.comparator = comparator;
+            this.value = value;
+            try{
+                number = Double.parseDouble(value.trim());
+                numeric = true;
+            }
+            catch(NumberFormatException ex){
+                numeric = false;
+            }
+            variables.add(var);
+        }
+
+
+        boolean compute(NCLRuleGraph graph, NCLSettings settings) {
+            graph.evaluations++;
+
+            if(!settings.hasValue(var))
+                return false;
+
+            int comp = settings.compare(var, value, number, numeric);
+            switch(comparator){
+                case EQ: return comp == 0;
+                case NE: return comp != 0;
+                case GT: return comp > 0;
+                case LT: return comp < 0;
+                case GTE: return comp >= 0;
+                case LTE: return comp <= 0;
+            }
+            return false;
+        }
+    }
+
+
+    /**
+     * Nó representando uma regra composta (elemento <i>compositeRule</i>).
+     */
+    private static class Composite extends Node {
+
+        private NCLOperator operator;
+        private Node[] children;
+
+
+        Composite(NCLOperator operator, Node[] children) {
+            this.operator = operator;
+            this.children = children;
+            for(Node n : children)
+                variables.addAll(n.variables);
+        }
+
+
+        boolean compute(NCLRuleGraph graph, NCLSettings settings) {
+            if(children.length == 0)
+                return false;
+
+            boolean and = operator == NCLOperator.AND;
+            for(Node n : children){
+                if(n.evaluate(graph, settings) != and)
+                    return !and;
+            }
+            return and;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana.rule;
+
+import br.uff.midiacom.ana.NCLDoc;
+import br.uff.midiacom.ana.NCLValues.NCLMimeType;
+import br.uff.midiacom.ana.NCLValues.NCLSystemVariable;
+import br.uff.midiacom.ana.interfaces.NCLProperty;
+import br.uff.midiacom.ana.node.NCLContext;
+import br.uff.midiacom.ana.node.NCLMedia;
+import br.uff.midiacom.ana.node.NCLNode;
+import br.uff.midiacom.ana.node.NCLSwitch;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Esta classe define o conjunto de variáveis de ambiente usado na avaliação das
+ * regras de teste da <i>Nested Context Language</i> (NCL). As variáveis são as
+ * variáveis de sistema (<i>NCLSystemVariable</i>) e as propriedades dos nós de
+ * mídia do tipo <i>application/x-ginga-settings</i>.<br/>
+ *
+ * Cada valor é armazenado já tipado (numérico ou textual) e cada alteração
+ * incrementa um contador de versão. A versão em que cada variável foi alterada
+ * pela última vez também é mantida, permitindo saber se um conjunto de
+ * variáveis mudou desde uma determinada versão.
+ *
+ * @see NCLRuleEvaluator
+ * @see <a href="http://www.dtv.org.br/download/pt-br/ABNTNBR15606-2_2007Vc3_2008.pdf">
+ *          ABNT NBR 15606-2:2007</a>
+ */
+public class NCLSettings {
+
+    private Map<String, Value> values = new HashMap<String, Value>();
+    private long version = 0;
+
+
+    /**
+     * Atribui um valor a uma variável de ambiente.
+     *
+     * @param name
+     *          String contendo o nome da variável.
+     * @param value
+     *          String contendo o valor da variável. Se for null, a variável é removida.
+     * @return
+     *          verdadeiro se o valor da variável foi alterado.
+     */
+    public boolean setValue(String name, String value) {
+        if(name == null)
+            throw new IllegalArgumentException("Invalid name");
+
+        Value old = values.get(name);
+        if(old == null && value == null)
+            return false;
+        if(old != null && value != null && old.text.equals(value))
+            return false;
+
+        version++;
+        // A remoção também é uma alteração, por isso a versão é mantida
+        values.put(name, new Value(value, version));
+        return true;
+    }
+
+
+    /**
+     * Atribui um valor a uma variável de sistema.
+     *
+     * @param name
+     *          variável de sistema.
+     * @param value
+     *          String contendo o valor da variável.
+     * @return
+     *          verdadeiro se o valor da variável foi alterado.
+     */
+    public boolean setValue(NCLSystemVariable name, String value) {
+        if(name == null)
+            throw new IllegalArgumentException("Invalid name");
+
+        return setValue(name.toString(), value);
+    }
+
+
+    /**
+     * Retorna o valor de uma variável de ambiente.
+     *
+     * @param name
+     *          String contendo o nome da variável.
+     * @return
+     *          String contendo o valor da variável ou null se ela não estiver definida.
+     */
+    public String getValue(String name) {
+        Value v = values.get(name);
+        if(v == null)
+            return null;
+
+        return v.text;
+    }
+
+
+    /**
+     * Retorna o valor de uma variável de sistema.
+     *
+     * @param name
+     *          variável de sistema.
+     * @return
+     *          String contendo o valor da variável ou null se ela não estiver definida.
+     */
+    public String getValue(NCLSystemVariable name) {
+        return getValue(name.toString());
+    }
+
+
+    /**
+     * Verifica se uma variável de ambiente possui valor definido.
+     *
+     * @param name
+     *          String contendo o nome da variável.
+     * @return
+     *          verdadeiro se a variável possuir valor.
+     */
+    public boolean hasValue(String name) {
+        Value v = values.get(name);
+        return v != null && v.text != null;
+    }
+
+
+    /**
+     * Retorna a versão atual do conjunto de variáveis. A versão é incrementada
+     * a cada alteração de valor.
+     *
+     * @return
+     *          inteiro representando a versão atual.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+
+    /**
+     * Retorna a versão em que uma variável foi alterada pela última vez.
+     *
+     * @param name
+     *          String contendo o nome da variável.
+     * @return
+     *          inteiro representando a versão da variável ou 0 se ela nunca foi definida.
+     */
+    public long getVersion(String name) {
+        Value v = values.get(name);
+        if(v == null)
+            return 0;
+
+        return v.version;
+    }
+
+
+    /**
+     * Verifica se alguma das variáveis foi alterada depois de uma determinada versão.
+     *
+     * @param version
+     *          versão de referência.
+     * @param names
+     *          nomes das variáveis a serem verificadas.
+     * @return
+     *          verdadeiro se alguma das variáveis foi alterada.
+     */
+    public boolean changedSince(long version, Iterable<String> names) {
+        if(version >= this.version)
+            return false;
+
+        for(String name : names){
+            if(getVersion(name) > version)
+                return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Carrega as propriedades dos nós de mídia do tipo <i>application/x-ginga-settings</i>
+     * presentes no corpo do documento.
+     *
+     * @param doc
+     *          documento NCL de onde as propriedades serão lidas.
+     */
+    public void load(NCLDoc doc) {
+        if(doc == null || doc.getBody() == null)
+            return;
+
+        Iterable<NCLNode> nodes = doc.getBody().getNodes();
+        load(nodes);
+    }
+
+
+    /**
+     * Carrega as propriedades de um nó de mídia do tipo <i>application/x-ginga-settings</i>.
+     *
+     * @param media
+     *          nó de mídia de onde as propriedades serão lidas.
+     */
+    public void load(NCLMedia media) {
+        if(media.getType() != NCLMimeType.APPLICATION_X_GINGA_SETTINGS || !media.hasProperty())
+            return;
+
+        Iterable<NCLProperty> properties = media.getProperties();
+        for(NCLProperty prop : properties){
+            if(prop.getName() != null && prop.getValue() != null)
+                setValue(prop.getName(), prop.getValue());
+        }
+    }
+
+
+    private void load(Iterable<NCLNode> nodes) {
+        for(NCLNode n : nodes){
+            if(n instanceof NCLMedia)
+                load((NCLMedia) n);
+            else if(n instanceof NCLContext){
+                Iterable<NCLNode> cnodes = ((NCLContext) n).getNodes();
+                load(cnodes);
+            }
+            else if(n instanceof NCLSwitch){
+                Iterable<NCLNode> snodes = ((NCLSwitch) n).getNodes();
+                load(snodes);
+            }
+        }
+    }
+
+
+    /**
+     * Compara o valor de uma variável a um valor de regra. Se os dois valores
+     * forem numéricos a comparação é numérica, caso contrário é textual.
+     */
+    int compare(String name, String text, double number, boolean numeric) {
+        Value v = values.get(name);
+
+        if(numeric && v.numeric)
+            return Double.compare(v.number, number);
+
+        return v.text.compareTo(text);
+    }
+
+
+    /**
+     * Valor tipado de uma variável.
+     */
+    static class Value {
+
+        final String text;
+        final double number;
+        final boolean numeric;
+        final long version;
+
+
+        Value(String text, long version) {
+            this.text = text;
+            this.version = version;
+
+            double n = 0;
+            boolean isNumber = false;
+            if(text != null){
+                try{
+                    n = Double.parseDouble(text.trim());
+                    isNumber = true;
+                }
+                catch(NumberFormatException ex){}
+            }
+            this.number = n;
+            this.numeric = isNumber;
+        }
+    }
+}
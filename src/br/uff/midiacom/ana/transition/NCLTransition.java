@@ -37,6 +37,8 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.transition;
 
+import br.uff.midiacom.ana.NCLAttributes;
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.interfaces.NCLTime;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
@@ -68,18 +70,12 @@ import org.xml.sax.XMLReader;
  */
 public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableElement implements Comparable<T> {
 
-    private NCLTransitionType type;
-    private NCLTransitionSubtype subtype;
-    private NCLTime dur;
-    private Double startProgress;
-    private Double endProgress;
-    private NCLTransitionDirection direction;
-    private NCLColor fadeColor;
-    private Integer horRepeat;
-    private Integer vertRepeat;
-    private Integer borderWidth;
-    private NCLColor borderColor;
+    private enum Attribute {
+        TYPE, SUBTYPE, DUR, START_PROGRESS, END_PROGRESS, DIRECTION, FADE_COLOR,
+        HOR_REPEAT, VERT_REPEAT, BORDER_WIDTH, BORDER_COLOR
+    }
 
+    private NCLAttributes<Attribute> attributes = new NCLAttributes<Attribute>();
 
     /**
      * Construtor do elemento <i>transition</i> da <i>Nested Context Language</i> (NCL).
@@ -119,7 +115,10 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
      *          elemento representando o tipo da transição.
      */
     public void setType(NCLTransitionType type) {
-        this.type = type;
+        modified();
+        Object old = attributes.get(Attribute.TYPE);
+        attributes.set(Attribute.TYPE, type);
+        changed("type", old, attributes.get(Attribute.TYPE));
     }
 
 
@@ -132,7 +131,7 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
      *          elemento representando o tipo da transição.
      */
     public NCLTransitionType getType() {
-        return type;
+        return attributes.get(Attribute.TYPE);
     }
 
 
@@ -145,7 +144,10 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
      *          elemento representando o subtipo da transição.
      */
     public void setSubtype(NCLTransitionSubtype subtype) {
-        this.subtype = subtype;
+        modified();
+        Object old = attributes.get(Attribute.SUBTYPE);
+        attributes.set(Attribute.SUBTYPE, subtype);
+        changed("subtype", old, attributes.get(Attribute.SUBTYPE));
     }
 
 
@@ -158,7 +160,7 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
      *          elemento representando o subtipo da transição.
      */
     public NCLTransitionSubtype getSubtype() {
-        return subtype;
+        return attributes.get(Attribute.SUBTYPE);
     }
 
 
@@ -169,7 +171,10 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
      *          elemento representando a duração da transição.
      */
     public void setDur(NCLTime dur) {
-        this.dur = dur;
+        modified();
+        Object old = attributes.get(Attribute.DUR);
+        attributes.set(Attribute.DUR, dur);
+        changed("dur", old, attributes.get(Attribute.DUR));
     }
 
 
@@ -180,7 +185,7 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
      *          elemento representando a duração da transição.
      */
     public NCLTime getDur() {
-        return dur;
+        return attributes.get(Attribute.DUR);
     }
 
 
@@ -194,7 +199,10 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
     */
      
     public void setStartProgress(Double startProgress) {
-        this.startProgress = startProgress;
+        modified();
+        Object old = attributes.getDouble(Attribute.START_PROGRESS);
+        attributes.setDouble(Attribute.START_PROGRESS, startProgress);
+        changed("startProgress", old, attributes.getDouble(Attribute.START_PROGRESS));
     }
 
 
@@ -206,7 +214,7 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
      * inicio da transição.
      */
     public Double getStartProgress() {
-        return startProgress;
+        return attributes.getDouble(Attribute.START_PROGRESS);
     }
 
 
@@ -220,7 +228,10 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
      * para que o processo de transição termine.
      */
     public void setEndProgress(Double endProgress) {
-        this.endProgress = endProgress;
+        modified();
+        Object old = attributes.getDouble(Attribute.END_PROGRESS);
+        attributes.setDouble(Attribute.END_PROGRESS, endProgress);
+        changed("endProgress", old, attributes.getDouble(Attribute.END_PROGRESS));
     }
 
 
@@ -233,7 +244,7 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
      * para que o processo de transição termine.
      */
     public Double getEndProgress() {
-        return endProgress;
+        return attributes.getDouble(Attribute.END_PROGRESS);
     }
 
 
@@ -246,7 +257,10 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
      *          elemento representando a direção.
      */
     public void setDirection(NCLTransitionDirection direction) {
-        this.direction = direction;
+        modified();
+        Object old = attributes.get(Attribute.DIRECTION);
+        attributes.set(Attribute.DIRECTION, direction);
+        changed("direction", old, attributes.get(Attribute.DIRECTION));
     }
 
 
@@ -259,7 +273,7 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
      *          elemento representando a direção.
      */
     public NCLTransitionDirection getDirection() {
-        return direction;
+        return attributes.get(Attribute.DIRECTION);
     }
 
 
@@ -272,7 +286,10 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
      *          cor associada a transição de fade.
      */
     public void setFadeColor(NCLColor fadeColor) {
-        this.fadeColor = fadeColor;
+        modified();
+        Object old = attributes.get(Attribute.FADE_COLOR);
+        attributes.set(Attribute.FADE_COLOR, fadeColor);
+        changed("fadeColor", old, attributes.get(Attribute.FADE_COLOR));
     }
 
 
@@ -283,7 +300,7 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
      *          cor associada a transição de fade.
      */
     public NCLColor getFadeColor() {
-        return fadeColor;
+        return attributes.get(Attribute.FADE_COLOR);
     }
 
 
@@ -294,7 +311,10 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
      *          inteiro representando o número de repetições.
      */
     public void setHorRepeat(Integer horRepeat) {
-        this.horRepeat = horRepeat;
+        modified();
+        Object old = attributes.getInteger(Attribute.HOR_REPEAT);
+        attributes.setInteger(Attribute.HOR_REPEAT, horRepeat);
+        changed("horRepeat", old, attributes.getInteger(Attribute.HOR_REPEAT));
     }
 
 
@@ -305,7 +325,7 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
      *          inteiro representando o número de repetições.
      */
     public Integer getHorRepeat() {
-        return horRepeat;
+        return attributes.getInteger(Attribute.HOR_REPEAT);
     }
 
 
@@ -316,7 +336,10 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
      *          inteiro representando o número de repetições.
      */
     public void setVertRepeat(Integer vertRepeat) {
-        this.vertRepeat = vertRepeat;
+        modified();
+        Object old = attributes.getInteger(Attribute.VERT_REPEAT);
+        attributes.setInteger(Attribute.VERT_REPEAT, vertRepeat);
+        changed("vertRepeat", old, attributes.getInteger(Attribute.VERT_REPEAT));
     }
 
 
@@ -327,7 +350,7 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
      *          inteiro representando o número de repetições.
      */
     public Integer getVertRepeat() {
-        return vertRepeat;
+        return attributes.getInteger(Attribute.VERT_REPEAT);
     }
 
 
@@ -338,7 +361,10 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
      *          inteiro representando a largura da borda.
      */
     public void setBorderWidth(Integer borderWidth) {
-        this.borderWidth = borderWidth;
+        modified();
+        Object old = attributes.getInteger(Attribute.BORDER_WIDTH);
+        attributes.setInteger(Attribute.BORDER_WIDTH, borderWidth);
+        changed("borderWidth", old, attributes.getInteger(Attribute.BORDER_WIDTH));
     }
 
 
@@ -349,7 +375,7 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
      *          inteiro representando a largura da borda.
      */
     public Integer getBorderWidth() {
-        return borderWidth;
+        return attributes.getInteger(Attribute.BORDER_WIDTH);
     }
 
 
@@ -363,7 +389,10 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
      *          cor da moldura
      */
     public void setBorderColor(NCLColor borderColor) {
-        this.borderColor = borderColor;
+        modified();
+        Object old = attributes.get(Attribute.BORDER_COLOR);
+        attributes.set(Attribute.BORDER_COLOR, borderColor);
+        changed("borderColor", old, attributes.get(Attribute.BORDER_COLOR));
     }
 
 
@@ -374,11 +403,15 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
      *          cor da moldura.
      */
     public NCLColor getBorderColor() {
-        return borderColor;
+        return attributes.get(Attribute.BORDER_COLOR);
     }
 
     
     public String parse(int ident) {
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
         String space, content;
 
         if(ident < 0)
@@ -393,29 +426,29 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
         // param element and attributes declaration
         content = space + "<transition";
         if(getId() != null)
-            content += " id='" + getId() + "'";
+            content += " id='" + escape(getId()) + "'";
         if(getType() != null)
-            content += " type='" + getType().toString() + "'";
+            content += " type='" + escape(getType().toString()) + "'";
         if(getSubtype() != null)
-            content += " subtype='" + getSubtype().toString() + "'";
+            content += " subtype='" + escape(getSubtype().toString()) + "'";
         if(getDur() != null)
-            content += " dur='" + getDur() + "'";
+            content += " dur='" + escape(getDur()) + "'";
         if(getStartProgress() != null)
-            content += " startProgress='" + getStartProgress() + "'";
+            content += " startProgress='" + escape(getStartProgress()) + "'";
         if(getEndProgress() != null)
-            content += " endProgress='" + getEndProgress() + "'";
+            content += " endProgress='" + escape(getEndProgress()) + "'";
         if(getDirection() != null)
-            content += " direction='" + getDirection().toString() + "'";
+            content += " direction='" + escape(getDirection().toString()) + "'";
         if(getFadeColor() != null)
-            content += " fadeColor='" + getFadeColor().toString() + "'";
+            content += " fadeColor='" + escape(getFadeColor().toString()) + "'";
         if(getHorRepeat() != null)
-            content += " horRepeat='" + getHorRepeat() + "'";
+            content += " horRepeat='" + escape(getHorRepeat()) + "'";
         if(getVertRepeat() != null)
-            content += " vertRepeat='" + getVertRepeat() + "'";
+            content += " vertRepeat='" + escape(getVertRepeat()) + "'";
         if(getBorderWidth() != null)
-            content += " borderWidth='" + getBorderWidth() + "'";
+            content += " borderWidth='" + escape(getBorderWidth()) + "'";
         if(getBorderColor() != null)
-            content += " borderColor='" + getBorderColor().toString() + "'";
+            content += " borderColor='" + escape(getBorderColor().toString()) + "'";
         content += "/>\n";
 
         return content;
@@ -438,6 +471,39 @@ public class NCLTransition<T extends NCLTransition> extends NCLIdentifiableEleme
     }
 
 
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(operation == Operation.ATTRIBUTE){
+            if(property.equals("type"))
+                setType((NCLTransitionType) value);
+            else if(property.equals("subtype"))
+                setSubtype((NCLTransitionSubtype) value);
+            else if(property.equals("dur"))
+                setDur((NCLTime) value);
+            else if(property.equals("startProgress"))
+                setStartProgress((Double) value);
+            else if(property.equals("endProgress"))
+                setEndProgress((Double) value);
+            else if(property.equals("direction"))
+                setDirection((NCLTransitionDirection) value);
+            else if(property.equals("fadeColor"))
+                setFadeColor((NCLColor) value);
+            else if(property.equals("horRepeat"))
+                setHorRepeat((Integer) value);
+            else if(property.equals("vertRepeat"))
+                setVertRepeat((Integer) value);
+            else if(property.equals("borderWidth"))
+                setBorderWidth((Integer) value);
+            else if(property.equals("borderColor"))
+                setBorderColor((NCLColor) value);
+            else
+                super.applyChange(operation, property, value);
+        }
+        else
+            super.applyChange(operation, property, value);
+    }
+
+
     public boolean validate() {
         cleanWarnings();
         cleanErrors();
@@ -37,6 +37,7 @@
  *******************************************************************************/
 package br.uff.midiacom.ana.transition;
 
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
 import br.uff.midiacom.ana.NCLElement;
 import br.uff.midiacom.ana.NCLIdentifiableElement;
 import br.uff.midiacom.ana.NCLInvalidIdentifierException;
@@ -102,10 +103,12 @@ public class NCLTransitionBase<T extends NCLTransition, I extends NCLImport> ext
      * @see TreeSet#add
      */
     public boolean addTransition(T transition) {
+        modified();
         if(transitions.add(transition)){
             //Se transition existe, atribui este como seu parente
             if(transition != null)
                 transition.setParent(this);
+            added("transition", transition);
 
             return true;
         }
@@ -124,10 +127,12 @@ public class NCLTransitionBase<T extends NCLTransition, I extends NCLImport> ext
      * @see TreeSet#remove
      */
     public boolean removeTransition(T transition) {
+        modified();
         if(transitions.remove(transition)){
             //Se transition existe, retira o seu parentesco
             if(transition != null)
                 transition.setParent(null);
+            removed("transition", transition);
 
             return true;
         }
@@ -179,10 +184,12 @@ public class NCLTransitionBase<T extends NCLTransition, I extends NCLImport> ext
      * @see TreeSet#add
      */
     public boolean addImportBase(I importBase) {
+        modified();
         if(imports.add(importBase)){
             //Se importBase existe, atribui este como seu parente
             if(importBase != null)
                 importBase.setParent(this);
+            added("importBase", importBase);
 
             return true;
         }
@@ -199,10 +206,12 @@ public class NCLTransitionBase<T extends NCLTransition, I extends NCLImport> ext
      * @see TreeSet#remove
      */
     public boolean removeImportBase(I importBase) {
+        modified();
         if(imports.remove(importBase)){
             //Se importBase existe, retira o seu parentesco
             if(importBase != null)
                 importBase.setParent(null);
+            removed("importBase", importBase);
 
             return true;
         }
@@ -244,7 +253,12 @@ public class NCLTransitionBase<T extends NCLTransition, I extends NCLImport> ext
 
 
     public String parse(int ident) {
-        String space, content;
+        String cached = getCachedParse(ident);
+        if(cached != null)
+            return cached;
+
+        String space;
+        StringBuilder content = new StringBuilder();
 
         if(ident < 0)
             ident = 0;
@@ -254,33 +268,56 @@ public class NCLTransitionBase<T extends NCLTransition, I extends NCLImport> ext
         for(int i = 0; i < ident; i++)
             space += "\t";
 
-        content = space + "<transitionBase";
+        content.append(space + "<transitionBase");
         if(getId() != null)
-            content += " id='" + getId() + "'";
+            content.append(" id='" + escape(getId()) + "'");
 
         if(hasImportBase() || hasTransition()){
-            content += ">\n";
+            content.append(">\n");
 
             if(hasImportBase()){
                 for(I imp : imports)
-                    content += imp.parse(ident + 1);
+                    content.append(imp.parse(ident + 1));
             }
 
             if(hasTransition()){
                 for(T transition : transitions)
-                    content += transition.parse(ident + 1);
+                    content.append(transition.parse(ident + 1));
             }
 
-            content += space + "</transitionBase>\n";
+            content.append(space + "</transitionBase>\n");
         }
         else
-            content += "/>\n";
+            content.append("/>\n");
 
-        return content;
+        return content.toString();
+    }
+
+
+    @Override
+    protected void applyChange(Operation operation, String property, Object value) throws Exception {
+        if(property.equals("transition")){
+            if(operation == Operation.ADD)
+                addTransition((T) value);
+            else
+                removeTransition((T) value);
+        }
+        else if(property.equals("importBase")){
+            if(operation == Operation.ADD)
+                addImportBase((I) value);
+            else
+                removeImportBase((I) value);
+        }
+        else
+            super.applyChange(operation, property, value);
     }
 
 
     public boolean validate() {
+        Boolean validated = getValidation();
+        if(validated != null)
+            return validated;
+
         cleanWarnings();
         cleanErrors();
 
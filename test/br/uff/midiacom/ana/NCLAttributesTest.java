@@ -0,0 +1,126 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.descriptor.NCLDescriptor;
+import br.uff.midiacom.ana.region.NCLRegion;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class NCLAttributesTest {
+
+    private enum Key {
+        A, B, C, D, E
+    }
+
+
+    @Test
+    public void test1() {
+        NCLAttributes<Key> attributes = new NCLAttributes<Key>();
+        assertEquals(0, attributes.size());
+        assertNull(attributes.get(Key.A));
+
+        attributes.set(Key.D, "d");
+        attributes.set(Key.B, "b");
+        attributes.set(Key.C, "c");
+        assertEquals("b", attributes.get(Key.B));
+        assertEquals("c", attributes.get(Key.C));
+        assertEquals("d", attributes.get(Key.D));
+        assertEquals(3, attributes.size());
+
+        attributes.set(Key.C, null);
+        assertNull(attributes.get(Key.C));
+        assertEquals("b", attributes.get(Key.B));
+        assertEquals("d", attributes.get(Key.D));
+        assertEquals(2, attributes.size());
+        assertFalse(attributes.contains(Key.C));
+    }
+
+
+    @Test
+    public void test2() {
+        NCLAttributes<Key> attributes = new NCLAttributes<Key>();
+        attributes.setInteger(Key.E, 7);
+        attributes.setDouble(Key.A, 0.25);
+        attributes.setBoolean(Key.B, false);
+        attributes.set(Key.C, "c");
+
+        assertEquals(new Integer(7), attributes.getInteger(Key.E));
+        assertEquals(new Double(0.25), attributes.getDouble(Key.A));
+        assertEquals(Boolean.FALSE, attributes.getBoolean(Key.B));
+        assertNull(attributes.getBoolean(Key.D));
+        assertEquals(4, attributes.size());
+
+        attributes.setInteger(Key.E, null);
+        attributes.setBoolean(Key.B, null);
+        assertNull(attributes.getInteger(Key.E));
+        assertNull(attributes.getBoolean(Key.B));
+        assertEquals(new Double(0.25), attributes.getDouble(Key.A));
+        assertEquals(2, attributes.size());
+    }
+
+
+    @Test
+    public void test3() {
+        try{
+            NCLDescriptor d = new NCLDescriptor("d");
+            assertNull(d.getExplicitDur());
+            assertNull(d.getFreeze());
+
+            d.setExplicitDur(10);
+            d.setFreeze(true);
+            d.setFocusIndex(2);
+            d.setExplicitDur(null);
+            assertNull(d.getExplicitDur());
+            assertEquals(Boolean.TRUE, d.getFreeze());
+            assertEquals(new Integer(2), d.getFocusIndex());
+            assertEquals("<descriptor id='d' freeze='true' focusIndex='2'/>\n", d.parse(0));
+
+            NCLRegion r = new NCLRegion("r");
+            r.setLeft(10, true);
+            r.setWidth(200, false);
+            assertEquals(new Integer(10), r.getLeft());
+            assertEquals(new Integer(200), r.getWidth());
+            assertNull(r.getTop());
+        }
+        catch(NCLInvalidIdentifierException ex){
+            fail(ex.getMessage());
+        }
+    }
+}
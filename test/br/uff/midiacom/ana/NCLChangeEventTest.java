@@ -0,0 +1,218 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.NCLChangeEvent.Operation;
+import br.uff.midiacom.ana.node.NCLMedia;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class NCLChangeEventTest {
+
+    private static class Recorder implements NCLChangeListener {
+
+        private List<List<NCLChangeEvent>> batches = new ArrayList<List<NCLChangeEvent>>();
+
+        public void changed(List<NCLChangeEvent> events) {
+            batches.add(events);
+        }
+    }
+
+
+    @Test
+    public void test1() throws Exception {
+        NCLDoc doc = new NCLDoc();
+        NCLBody body = new NCLBody();
+        doc.setBody(body);
+        NCLMedia media = new NCLMedia("m1");
+        body.addNode(media);
+
+        Recorder recorder = new Recorder();
+        doc.addChangeListener(recorder);
+
+        media.setSrc("a.png");
+        media.setSrc("a.png");
+        assertEquals(1, recorder.batches.size());
+
+        NCLChangeEvent event = recorder.batches.get(0).get(0);
+        assertEquals(Operation.ATTRIBUTE, event.getOperation());
+        assertSame(media, event.getElement());
+        assertEquals("src", event.getProperty());
+        assertNull(event.getOldValue());
+        assertEquals("a.png", event.getNewValue());
+
+        media.setId("m2");
+        event = recorder.batches.get(1).get(0);
+        assertEquals("id", event.getProperty());
+        assertEquals("m1", event.getOldValue());
+        assertEquals("m2", event.getNewValue());
+
+        new NCLMedia("free").setSrc("b.png");
+        assertEquals(2, recorder.batches.size());
+
+        assertTrue(doc.removeChangeListener(recorder));
+        media.setSrc("c.png");
+        assertEquals(2, recorder.batches.size());
+    }
+
+
+    @Test
+    public void test2() throws Exception {
+        NCLDoc doc = new NCLDoc();
+        NCLBody body = new NCLBody();
+        doc.setBody(body);
+
+        Recorder recorder = new Recorder();
+        doc.addChangeListener(recorder);
+
+        NCLMedia media = new NCLMedia("m1");
+        body.addNode(media);
+        body.removeNode(media);
+        assertEquals(2, recorder.batches.size());
+
+        NCLChangeEvent added = recorder.batches.get(0).get(0);
+        assertEquals(Operation.ADD, added.getOperation());
+        assertSame(body, added.getElement());
+        assertEquals("node", added.getProperty());
+        assertSame(media, added.getNewValue());
+
+        NCLChangeEvent removed = recorder.batches.get(1).get(0);
+        assertEquals(Operation.REMOVE, removed.getOperation());
+        assertSame(body, removed.getElement());
+        assertSame(media, removed.getOldValue());
+        assertNull(removed.getNewValue());
+
+        NCLHead head = new NCLHead();
+        doc.setHead(head);
+        NCLChangeEvent set = recorder.batches.get(2).get(0);
+        assertEquals("head", set.getProperty());
+        assertSame(head, set.getNewValue());
+        doc.removeChangeListener(recorder);
+    }
+
+
+    @Test
+    public void test3() throws Exception {
+        NCLDoc doc = new NCLDoc();
+        NCLBody body = new NCLBody();
+        doc.setBody(body);
+        NCLMedia media = new NCLMedia("m1");
+        body.addNode(media);
+        media.setSrc("a.png");
+
+        Recorder recorder = new Recorder();
+        doc.addChangeListener(recorder);
+
+        doc.beginBatch();
+        media.setSrc("b.png");
+        doc.beginBatch();
+        media.setSrc("c.png");
+        NCLMedia temp = new NCLMedia("temp");
+        body.addNode(temp);
+        body.removeNode(temp);
+        doc.setTitle("title");
+        doc.setTitle(null);
+        doc.endBatch();
+        assertTrue(recorder.batches.isEmpty());
+        doc.endBatch();
+
+        assertEquals(1, recorder.batches.size());
+        List<NCLChangeEvent> events = recorder.batches.get(0);
+        assertEquals(1, events.size());
+        assertEquals("src", events.get(0).getProperty());
+        assertEquals("a.png", events.get(0).getOldValue());
+        assertEquals("c.png", events.get(0).getNewValue());
+
+        try{
+            doc.endBatch();
+            fail();
+        }
+        catch(IllegalStateException ex){}
+        doc.removeChangeListener(recorder);
+    }
+
+
+    @Test
+    public void test4() throws Exception {
+        NCLDoc doc = new NCLDoc();
+        NCLBody body = new NCLBody();
+        doc.setBody(body);
+        final NCLMedia m1 = new NCLMedia("m1");
+        body.addNode(m1);
+        NCLMedia m2 = new NCLMedia("m2");
+        body.addNode(m2);
+
+        NCLDoc other = new NCLDoc();
+        NCLBody otherBody = new NCLBody();
+        other.setBody(otherBody);
+        NCLMedia m3 = new NCLMedia("m3");
+        otherBody.addNode(m3);
+
+        Recorder recorder = new Recorder();
+        doc.addChangeListener(recorder);
+        assertNotNull(NCLChangeDispatcher.of(m1));
+        assertNull(NCLChangeDispatcher.of(m3));
+
+        // o lote de uma thread não agrupa as alterações de outra thread
+        doc.beginBatch();
+        m2.setSrc("b.png");
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try{
+                    m1.setSrc("a.png");
+                }
+                catch(Exception ex){}
+            }
+        };
+        thread.start();
+        thread.join();
+        assertEquals(1, recorder.batches.size());
+        assertSame(m1, recorder.batches.get(0).get(0).getElement());
+        doc.endBatch();
+
+        assertEquals(2, recorder.batches.size());
+        assertEquals(1, recorder.batches.get(1).size());
+        assertSame(m2, recorder.batches.get(1).get(0).getElement());
+        doc.removeChangeListener(recorder);
+        assertNull(NCLChangeDispatcher.of(m1));
+    }
+}
@@ -0,0 +1,149 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.node.NCLContext;
+import br.uff.midiacom.ana.node.NCLMedia;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class NCLConcurrentDocTest {
+
+    private static final int CONTEXTS = 4;
+    private static final int MEDIAS = 50;
+
+
+    @Test
+    public void test1() throws Exception {
+        NCLDoc doc = new NCLDoc();
+        NCLBody body = new NCLBody();
+        doc.setBody(body);
+
+        final List<NCLContext> contexts = new ArrayList<NCLContext>();
+        for(int i = 0; i < CONTEXTS; i++){
+            NCLContext ctx = new NCLContext("ctx" + i);
+            body.addNode(ctx);
+            contexts.add(ctx);
+        }
+
+        final NCLConcurrentDoc concurrent = new NCLConcurrentDoc(doc);
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for(int i = 0; i < CONTEXTS; i++){
+            final int index = i;
+            threads.add(new Thread(){
+                @Override
+                public void run() {
+                    final NCLContext ctx = contexts.get(index);
+                    try{
+                        for(int j = 0; j < MEDIAS; j++){
+                            final String id = "m" + index + "_" + j;
+                            concurrent.edit(ctx, new Callable<Boolean>() {
+                                public Boolean call() throws Exception {
+                                    return ctx.addNode(new NCLMedia(id));
+                                }
+                            });
+                        }
+                    }
+                    catch(Throwable ex){
+                        failures.add(ex);
+                    }
+                }
+            });
+        }
+        threads.add(new Thread(){
+            @Override
+            public void run() {
+                try{
+                    for(int j = 0; j < 20; j++){
+                        NCLFrozenDoc snapshot = concurrent.snapshot();
+                        assertEquals(CONTEXTS, snapshot.getElements("context").size());
+                        assertTrue(snapshot.getElements("media").size() <= CONTEXTS * MEDIAS);
+                    }
+                }
+                catch(Throwable ex){
+                    failures.add(ex);
+                }
+            }
+        });
+
+        for(Thread t : threads)
+            t.start();
+        for(Thread t : threads)
+            t.join();
+
+        assertTrue(failures.toString(), failures.isEmpty());
+        for(NCLContext ctx : contexts)
+            assertEquals(MEDIAS, ((Set) ctx.getNodes()).size());
+        assertEquals(CONTEXTS * MEDIAS, concurrent.snapshot().getElements("media").size());
+    }
+
+
+    @Test
+    public void test2() throws Exception {
+        final NCLDoc doc = new NCLDoc();
+        final NCLBody body = new NCLBody();
+        doc.setBody(body);
+        NCLConcurrentDoc concurrent = new NCLConcurrentDoc(doc, 2);
+
+        Boolean added = concurrent.edit(body, new Callable<Boolean>() {
+            public Boolean call() throws Exception {
+                return body.addNode(new NCLContext("ctx"));
+            }
+        });
+        assertTrue(added);
+
+        NCLDoc copy = concurrent.copy();
+        assertNotSame(doc, copy);
+        assertEquals(doc.parse(0), copy.parse(0));
+        assertEquals(doc.parse(0), concurrent.parse());
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void test3() {
+        new NCLConcurrentDoc(new NCLDoc(), 0);
+    }
+}
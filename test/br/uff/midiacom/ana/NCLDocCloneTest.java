@@ -0,0 +1,158 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static br.uff.midiacom.ana.NCLTestUtil.load;
+
+
+public class NCLDocCloneTest {
+
+    private static final String XML = "<ncl id='doc'><head>"+
+            "<regionBase><region id='r1'/><region id='r2'/></regionBase>"+
+            "<descriptorBase><descriptor id='d1' region='r1'/><descriptor id='d2' region='r2'/></descriptorBase>"+
+            "</head><body><port id='p1' component='m1'/>"+
+            "<media id='m1' src='video.mp4' descriptor='d1'><property name='bounds' value='0,0,10,10'/></media>"+
+            "<context id='ctx'><media id='m2' src='img.png'/><media id='m3' src='txt.txt'/></context>"+
+            "</body></ncl>";
+
+    @Test
+    public void test1() throws Exception {
+        NCLFrozenDoc frozen = load(XML).freeze();
+        String original = frozen.thaw().parse(0);
+
+        NCLDocClone clone = frozen.createClone();
+        clone.setAttribute("m1", "src", "other.mp4");
+        clone.setAttribute("m1", "descriptor", "d2");
+        NCLFrozenElement property = clone.getChildren(clone.getElement("m1")).get(0);
+        clone.setAttribute(property, "value", "5,5,20,20");
+        clone.remove(clone.getElement("m3"));
+
+        // apenas m1, a propriedade e o contexto foram copiados
+        assertEquals(4, clone.getEditCount());
+        assertSame(frozen.getElement("m2"), clone.getElement("m2"));
+        assertSame(frozen.getElement("r1"), clone.getElement("r1"));
+        assertNull(clone.getElement("m3"));
+        assertEquals(1, clone.getChildren(clone.getElement("ctx")).size());
+        assertEquals(2, clone.getElements("media").size());
+
+        assertSame(clone.getElement("d2"), clone.getReference(clone.getElement("m1"), "descriptor"));
+        assertSame(clone.getElement("m1"), clone.getReference(clone.getElement("p1"), "component"));
+        assertEquals("other.mp4", clone.getElement("m1").getAttribute("src"));
+        assertEquals("video.mp4", frozen.getElement("m1").getAttribute("src"));
+
+        NCLDoc doc = clone.thaw();
+        String xml = doc.parse(0);
+        assertTrue(xml.contains("src='other.mp4'"));
+        assertTrue(xml.contains("value='5,5,20,20'"));
+        assertFalse(xml.contains("m3"));
+        assertEquals(original, frozen.thaw().parse(0));
+
+        NCLDocClone second = clone.createClone();
+        second.setAttribute("m2", "src", "b.png");
+        assertEquals("img.png", clone.getElement("m2").getAttribute("src"));
+        assertEquals("other.mp4", second.getElement("m1").getAttribute("src"));
+    }
+
+    @Test
+    public void test2() throws Exception {
+        NCLFrozenDoc frozen = load(XML).freeze();
+
+        List<NCLDocClone> variants = new ArrayList<NCLDocClone>();
+        for(int i = 0; i < 10000; i++){
+            NCLDocClone clone = frozen.createClone();
+            clone.setAttribute("m1", "src", "video" + i + ".mp4");
+            variants.add(clone);
+        }
+
+        for(int i = 0; i < variants.size(); i++){
+            NCLDocClone clone = variants.get(i);
+            assertEquals(1, clone.getEditCount());
+            assertEquals("video" + i + ".mp4", clone.getElement("m1").getAttribute("src"));
+            assertSame(frozen.getElement("ctx"), clone.getElement("ctx"));
+        }
+
+        NCLDoc doc = variants.get(42).thaw();
+        assertTrue(doc.parse(0).contains("src='video42.mp4'"));
+    }
+
+    @Test
+    public void test3() throws Exception {
+        NCLFrozenDoc frozen = load(XML).freeze();
+        NCLFrozenDoc other = load("<ncl id='other'><body>"+
+                "<context id='ctx2'><port id='p2' component='m5'/><media id='m5' src='a.png'/></context>"+
+                "</body></ncl>").freeze();
+
+        NCLDocClone clone = frozen.createClone();
+        NCLFrozenElement m4 = clone.insert(clone.getElement("ctx"), "media");
+        clone.setAttribute(m4, "id", "m4");
+        clone.setAttribute("m4", "src", "a&b.png");
+        clone.setAttribute("m4", "descriptor", "d1");
+
+        // apenas o contexto e a nova mídia foram criados
+        assertEquals(3, clone.getEditCount());
+        assertEquals(3, clone.getChildren(clone.getElement("ctx")).size());
+        assertSame(clone.getElement("ctx"), clone.getParent(clone.getElement("m4")));
+        assertSame(clone.getElement("d1"), clone.getReference(clone.getElement("m4"), "descriptor"));
+        assertEquals(4, clone.getElements("media").size());
+        assertEquals(3, frozen.getElements("media").size());
+        assertNull(frozen.getElement("m4"));
+
+        NCLFrozenElement body = clone.getElements("body").get(0);
+        NCLFrozenElement ctx2 = clone.insert(body, other.getElement("ctx2"));
+        assertNotSame(other.getElement("ctx2"), ctx2);
+        assertSame(ctx2, clone.getElement("ctx2"));
+        assertSame(clone.getElement("m5"), clone.getReference(clone.getElement("p2"), "component"));
+        clone.setAttribute("m5", "descriptor", "d2");
+        assertSame(clone.getElement("d2"), clone.getReference(clone.getElement("m5"), "descriptor"));
+        assertEquals(5, clone.getElements("media").size());
+        assertEquals(1, other.getElements("media").size());
+
+        String xml = clone.parse(0);
+        assertTrue(xml.contains("src='a&amp;b.png'"));
+        assertEquals(clone.thaw().parse(0), load(xml).parse(0));
+
+        assertTrue(clone.remove(clone.getElement("m5")));
+        assertNull(clone.getElement("m5"));
+        assertEquals(4, clone.getElements("media").size());
+        assertFalse(clone.parse(0).contains("id='m5'"));
+    }
+}
@@ -0,0 +1,186 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static br.uff.midiacom.ana.NCLTestUtil.load;
+
+
+public class NCLDocDiffTest {
+
+    private static final String HEAD = "<head>"+
+        "<regionBase><region id='rg1' width='50%'/></regionBase>"+
+        "<descriptorBase><descriptor id='d1' region='rg1'/></descriptorBase>"+
+        "<connectorBase><causalConnector id='onBeginStart'>"+
+            "<simpleCondition role='onBegin'/><simpleAction role='start'/>"+
+        "</causalConnector></connectorBase>"+
+        "</head>";
+
+
+    private void assertPatch(String before, String after, int edits) throws Exception {
+        NCLDoc oldDoc = load(before);
+        NCLDoc newDoc = load(after);
+
+        NCLDocDiff diff = NCLDocDiff.diff(oldDoc, newDoc);
+        assertEquals(diff.toString(), edits, diff.getEdits().size());
+        assertEquals(newDoc.parse(0), diff.patch(load(before)).parse(0));
+    }
+
+
+    @Test
+    public void test1() {
+        try{
+            String xml = "<ncl id='doc'>" + HEAD + "<body><media id='m1' src='a.png' descriptor='d1'/></body></ncl>";
+            NCLDocDiff diff = NCLDocDiff.diff(load(xml), load(xml));
+            assertTrue(diff.isEmpty());
+            assertEquals(diff.getBaseHash(), diff.getResultHash());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test2() {
+        try{
+            // alteração, inclusão e retirada de atributos
+            assertPatch("<ncl id='doc'>" + HEAD + "<body><media id='m1' src='a.png' descriptor='d1'/></body></ncl>",
+                        "<ncl id='doc'>" + HEAD + "<body><media id='m1' src='b.png' type='image/png'/></body></ncl>", 3);
+
+            NCLDocDiff diff = NCLDocDiff.diff(
+                load("<ncl id='doc'>" + HEAD + "<body><media id='m1' src='a.png'/></body></ncl>"),
+                load("<ncl id='doc'>" + HEAD + "<body><media id='m1' src='b.png'/></body></ncl>"));
+            NCLDocDiff.Edit edit = diff.getEdits().get(0);
+            assertEquals(NCLDocDiff.Operation.ATTRIBUTE, edit.getOperation());
+            assertEquals("src", edit.getAttribute());
+            assertEquals("b.png", edit.getValue());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test3() {
+        try{
+            // inclusão de mídia com âncora, retirada de mídia e movimentação para um contexto
+            assertPatch("<ncl id='doc'>" + HEAD + "<body>"+
+                            "<port id='p1' component='m1'/>"+
+                            "<media id='m1' src='a.png'/>"+
+                            "<media id='m2' src='b.png'/>"+
+                            "<context id='ctx'><media id='m3'/></context>"+
+                        "</body></ncl>",
+                        "<ncl id='doc'>" + HEAD + "<body>"+
+                            "<port id='p1' component='m1'/>"+
+                            "<media id='m1' src='a.png'/>"+
+                            "<context id='ctx'><media id='m2' src='b.png'/><media id='m4'><area id='a1' begin='1s'/></media></context>"+
+                        "</body></ncl>", 4);
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test4() {
+        try{
+            // binds sem identificador são associados pelo papel
+            assertPatch("<ncl id='doc'>" + HEAD + "<body>"+
+                            "<media id='m1'/><media id='m2'/>"+
+                            "<link id='l1' xconnector='onBeginStart'>"+
+                                "<bind role='onBegin' component='m1'/>"+
+                                "<bind role='start' component='m2'/>"+
+                            "</link>"+
+                        "</body></ncl>",
+                        "<ncl id='doc'>" + HEAD + "<body>"+
+                            "<media id='m1'/><media id='m2'/>"+
+                            "<link id='l1' xconnector='onBeginStart'>"+
+                                "<bind role='onBegin' component='m2'/>"+
+                                "<bind role='start' component='m1'/>"+
+                            "</link>"+
+                        "</body></ncl>", 2);
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void test5() throws Exception {
+        NCLDocDiff diff = NCLDocDiff.diff(
+            load("<ncl id='doc'><head/><body><media id='m1'/></body></ncl>"),
+            load("<ncl id='doc'><head/><body><media id='m2'/></body></ncl>"));
+
+        diff.patch(load("<ncl id='doc'><head/><body><media id='m3'/></body></ncl>"));
+    }
+
+
+    @Test
+    public void test6() {
+        try{
+            StringBuilder before = new StringBuilder("<ncl id='doc'>" + HEAD + "<body>");
+            StringBuilder after = new StringBuilder("<ncl id='doc'>" + HEAD + "<body>");
+            for(int c = 0; c < 100; c++){
+                before.append("<context id='c").append(c).append("'>");
+                after.append("<context id='c").append(c).append("'>");
+                for(int m = 0; m < 100; m++){
+                    String id = "m" + c + "_" + m;
+                    before.append("<media id='").append(id).append("' src='").append(id).append(".png'/>");
+                    after.append("<media id='").append(id).append("' src='").append(c == 42 && m == 7 ? "x" : id).append(".png'/>");
+                }
+                before.append("</context>");
+                after.append("</context>");
+            }
+            before.append("</body></ncl>");
+            after.append("</body></ncl>");
+
+            NCLDocDiff diff = NCLDocDiff.diff(load(before.toString()), load(after.toString()));
+            assertEquals(1, diff.getEdits().size());
+            assertEquals(NCLDocDiff.Operation.ATTRIBUTE, diff.getEdits().get(0).getOperation());
+            assertEquals("x.png", diff.getEdits().get(0).getValue());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+}
@@ -37,10 +37,16 @@
  *******************************************************************************/
 package br.uff.midiacom.ana;
 
+import br.uff.midiacom.ana.node.NCLContext;
+import br.uff.midiacom.ana.node.NCLMedia;
 import org.junit.Test;
 import static org.junit.Assert.*;
+import static br.uff.midiacom.ana.NCLTestUtil.load;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
@@ -112,4 +118,163 @@ public class NCLDocTest {
             fail(ex.getMessage());
         }
     }
-}
\ No newline at end of file
+
+
+    private NCLDoc bigDoc() throws Exception {
+        String xml = "<ncl id='big'><head><regionBase><region id='rg1'/></regionBase>"+
+                "<descriptorBase><descriptor id='d1' region='rg1'/><descriptor id='d2' region='rg2'/></descriptorBase></head><body>";
+        for(int i = 0; i < 20; i++){
+            xml += "<context id='c" + i + "'><port id='p" + i + "' component='m" + i + "_0'/>";
+            for(int j = 0; j < 10; j++)
+                xml += "<media id='m" + i + "_" + j + "'" + (j % 3 == 0 ? " src='a.png'" : "") + "/>";
+            xml += "<context id='n" + i + "'><media id='x" + i + "'/>" + (i % 2 == 0 ? "<link id='l" + i + "'/>" : "") + "</context></context>";
+        }
+        xml += "</body></ncl>";
+
+        return load(xml);
+    }
+
+
+    private List<String> list(Iterable<String> messages) {
+        List<String> result = new ArrayList<String>();
+        for(String m : messages)
+            result.add(m);
+        return result;
+    }
+
+
+    @Test
+    public void test_validacao2() {
+        try{
+            NCLDoc doc = bigDoc();
+            boolean sequential = doc.validate();
+            List<String> warnings = list(doc.getWarnings());
+            List<String> errors = list(doc.getErrors());
+            assertFalse(errors.isEmpty());
+
+            ForkJoinPool pool = new ForkJoinPool(4);
+            for(int threshold : new int[]{1, 8, 100000}){
+                assertEquals(sequential, doc.validate(pool, threshold));
+                assertEquals(warnings, list(doc.getWarnings()));
+                assertEquals(errors, list(doc.getErrors()));
+            }
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test_validacao3() {
+        try{
+            NCLDoc doc = new NCLDoc();
+            doc.setId("doc");
+            doc.setHead(new NCLHead());
+            doc.setBody(new NCLBody());
+            doc.getBody().addNode(new NCLContext("c1"));
+
+            ForkJoinPool pool = new ForkJoinPool(2);
+            boolean before = doc.validate(pool, 1);
+            assertEquals(doc.validate(), before);
+
+            NCLContext c1 = (NCLContext) doc.getBody().getNodes().iterator().next();
+            assertNull(c1.getValidation());
+
+            c1.addNode(new NCLMedia("m1"));
+            boolean sequential = doc.validate();
+            List<String> errors = list(doc.getErrors());
+            assertEquals(sequential, doc.validate(pool, 1));
+            assertEquals(errors, list(doc.getErrors()));
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test3() {
+        try{
+            NCLDoc doc = bigDoc();
+            String expResult = doc.parse(0);
+
+            ForkJoinPool pool = new ForkJoinPool(4);
+            for(int threshold : new int[]{1, 8, 100000})
+                assertEquals(expResult, doc.parse(pool, threshold));
+
+            assertEquals(expResult, doc.parse(0));
+
+            NCLContext c0 = (NCLContext) doc.getBody().getNodes().iterator().next();
+            c0.addNode(new NCLMedia("novo"));
+            assertTrue(doc.parse(0).contains("novo"));
+            assertEquals(doc.parse(0), doc.parse(pool, 1));
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test4() {
+        try{
+            NCLDoc doc = new NCLDoc();
+            doc.setHead(new NCLHead());
+            doc.setBody(new NCLBody());
+
+            NCLElement parent = doc.getBody();
+            for(int i = 0; i < 1000; i++){
+                NCLContext c = new NCLContext("c" + i);
+                if(parent instanceof NCLBody)
+                    ((NCLBody) parent).addNode(c);
+                else
+                    ((NCLContext) parent).addNode(c);
+                parent = c;
+            }
+
+            String expResult = doc.parse(0);
+            assertEquals(expResult, doc.parse(new ForkJoinPool(2), 16));
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test5() {
+        try{
+            final NCLDoc doc = bigDoc();
+            final String expResult = doc.parse(0);
+            final ForkJoinPool pool = new ForkJoinPool(4);
+            final List<String> results = new ArrayList<String>();
+
+            // chamadas simultâneas sobre o mesmo documento não compartilham os trechos gerados
+            Thread[] threads = new Thread[4];
+            for(int t = 0; t < threads.length; t++){
+                threads[t] = new Thread(){
+                    @Override
+                    public void run() {
+                        for(int i = 0; i < 5; i++){
+                            String result = doc.parse(pool, 1);
+                            synchronized(results){
+                                results.add(result);
+                            }
+                        }
+                    }
+                };
+                threads[t].start();
+            }
+            for(Thread t : threads)
+                t.join();
+
+            assertEquals(20, results.size());
+            for(String result : results)
+                assertEquals(expResult, result);
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.descriptor.NCLDescriptor;
+import br.uff.midiacom.ana.interfaces.NCLArea;
+import br.uff.midiacom.ana.node.NCLContext;
+import br.uff.midiacom.ana.node.NCLMedia;
+import br.uff.midiacom.ana.node.NCLNode;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static br.uff.midiacom.ana.NCLTestUtil.load;
+
+
+public class NCLElementTest {
+
+    private static final String XML = "<ncl id='doc'><head>"+
+        "<regionBase><region id='rg1' width='50%'/></regionBase>"+
+        "<descriptorBase><descriptor id='d1' region='rg1'/></descriptorBase>"+
+        "</head><body>"+
+        "<media id='m1' src='a.png' descriptor='d1'/>"+
+        "<context id='ctx'><media id='m2' src='b.png'/></context>"+
+        "</body></ncl>";
+
+
+    private NCLElement node(NCLDoc doc, String id) {
+        for(Object node : doc.getBody().getNodes()){
+            if(((NCLIdentifiableElement) node).getId().equals(id))
+                return (NCLElement) node;
+        }
+        return null;
+    }
+
+
+    @Test
+    public void test1() {
+        try{
+            NCLDoc doc1 = load(XML);
+            NCLDoc doc2 = load(XML);
+
+            assertEquals(doc1.getFingerprint(), doc2.getFingerprint());
+            assertEquals(doc1.getHead().getFingerprint(), doc2.getHead().getFingerprint());
+            assertEquals(node(doc1, "ctx").getFingerprint(), node(doc2, "ctx").getFingerprint());
+            assertTrue(node(doc1, "m1").getFingerprint() != node(doc1, "ctx").getFingerprint());
+            assertTrue(doc1.getHead().getFingerprint() != doc1.getBody().getFingerprint());
+
+            // o cálculo dos resumos não altera o código gerado
+            assertEquals(doc2.parse(0), doc1.parse(0));
+            assertEquals(-1, doc1.parse(0).indexOf('\u0000'));
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test2() {
+        try{
+            NCLDoc doc = load(XML);
+            long docFp = doc.getFingerprint();
+            long headFp = doc.getHead().getFingerprint();
+            long ctxFp = node(doc, "ctx").getFingerprint();
+            NCLMedia m1 = (NCLMedia) node(doc, "m1");
+            long m1Fp = m1.getFingerprint();
+
+            // a alteração descarta os resumos do elemento e dos seus ancestrais
+            m1.setSrc(null, "c.png");
+            assertTrue(m1Fp != m1.getFingerprint());
+            assertTrue(docFp != doc.getFingerprint());
+            assertEquals(headFp, doc.getHead().getFingerprint());
+            assertEquals(ctxFp, node(doc, "ctx").getFingerprint());
+
+            m1.setSrc(null, "a.png");
+            assertEquals(m1Fp, m1.getFingerprint());
+            assertEquals(docFp, doc.getFingerprint());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test3() {
+        try{
+            NCLDoc doc = load(XML);
+            NCLMedia m1 = (NCLMedia) node(doc, "m1");
+            long m1Fp = m1.getFingerprint();
+            long ctxFp = node(doc, "ctx").getFingerprint();
+
+            // a mídia referencia o descritor pelo identificador
+            NCLDescriptor d1 = (NCLDescriptor) m1.getDescriptor();
+            d1.setId("d2");
+            assertTrue(m1Fp != m1.getFingerprint());
+            assertEquals(ctxFp, node(doc, "ctx").getFingerprint());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test4() {
+        try{
+            NCLDoc doc = load(XML);
+            NCLMedia m2 = (NCLMedia) ((br.uff.midiacom.ana.node.NCLContext) node(doc, "ctx")).getNodes().iterator().next();
+            long m2Fp = m2.getFingerprint();
+            long bodyFp = doc.getBody().getFingerprint();
+
+            NCLArea area = new NCLArea("a1");
+            m2.addArea(area);
+            assertTrue(m2Fp != m2.getFingerprint());
+            assertTrue(bodyFp != doc.getBody().getFingerprint());
+
+            // alterações nos elementos filhos também descartam os resumos
+            long withArea = doc.getBody().getFingerprint();
+            area.setId("a2");
+            assertTrue(withArea != doc.getBody().getFingerprint());
+
+            m2.removeArea(area);
+            assertEquals(m2Fp, m2.getFingerprint());
+            assertEquals(bodyFp, doc.getBody().getFingerprint());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test5() {
+        try{
+            NCLDoc doc1 = load(XML);
+            NCLDoc doc2 = load(XML);
+            doc1.getFingerprint();
+            doc2.getFingerprint();
+            int cached = doc2.getFingerprints(false).size();
+            assertTrue(cached > 0);
+
+            // a alteração de um identificador descarta apenas os resumos do seu documento
+            ((NCLMedia) node(doc1, "m1")).setId("m9");
+            assertEquals(0, doc1.getFingerprints(false).size());
+            assertEquals(cached, doc2.getFingerprints(false).size());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test6() {
+        try{
+            NCLDoc doc = load(XML);
+            NCLElement m1 = node(doc, "m1");
+            NCLElement ctx = node(doc, "ctx");
+            NCLElement m2 = (NCLElement) ((NCLContext) ctx).getNodes().iterator().next();
+            doc.getFingerprint();
+            assertTrue(doc.getFingerprints(false).containsKey(m2));
+
+            // os resumos dos elementos retirados não ficam na tabela do documento
+            doc.getBody().removeNode((NCLNode) ctx);
+            doc.getBody().removeNode((NCLNode) m1);
+            assertFalse(doc.getFingerprints(false).containsKey(ctx));
+            assertFalse(doc.getFingerprints(false).containsKey(m2));
+            assertFalse(doc.getFingerprints(false).containsKey(m1));
+            assertTrue(doc.getFingerprints(false).containsKey(doc.getHead()));
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.meta.NCLMeta;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static br.uff.midiacom.ana.NCLTestUtil.load;
+
+
+public class NCLFrozenDocTest {
+
+    private static final String XML = "<ncl id='doc' xmlns='http://www.ncl.org.br/NCL3.0/EDTVProfile'><head>"+
+            "<regionBase><region id='r1' width='100%'/></regionBase>"+
+            "<descriptorBase><descriptor id='d1' region='r1'/></descriptorBase>"+
+            "<connectorBase><causalConnector id='c1'>"+
+                "<simpleCondition role='onBegin'/><simpleAction role='start'/>"+
+            "</causalConnector></connectorBase>"+
+            "</head><body><port id='p1' component='ctx' interface='pc'/>"+
+            "<context id='ctx'><port id='pc' component='m1' interface='a1'/>"+
+                "<media id='m1' src='video.mp4' descriptor='d1'><area id='a1' begin='2s'/></media>"+
+                "<media id='m2' src='img.png'/>"+
+                "<link id='l1' xconnector='c1'>"+
+                    "<bind role='onBegin' component='m1' interface='a1'/>"+
+                    "<bind role='start' component='m2'/>"+
+                "</link>"+
+            "</context></body></ncl>";
+
+    @Test
+    public void test1() throws Exception {
+        NCLDoc doc = load(XML);
+        NCLFrozenDoc frozen = doc.freeze();
+
+        assertEquals("ncl", frozen.getRoot().getName());
+        assertEquals(2, frozen.getElements("media").size());
+        assertEquals("m2", frozen.getElements("media").get(1).getId());
+
+        NCLFrozenElement port = frozen.getElement("p1");
+        assertSame(frozen.getElement("ctx"), port.getReference("component"));
+        assertSame(frozen.getElement("pc"), port.getReference("interface"));
+
+        NCLFrozenElement m1 = frozen.getElement("m1");
+        assertSame(frozen.getElement("d1"), m1.getReference("descriptor"));
+        assertSame(frozen.getElement("r1"), m1.getReference("descriptor").getReference("region"));
+        assertEquals("context", m1.getParent().getName());
+        assertNull(m1.getReference("src"));
+
+        NCLFrozenElement bind = frozen.getElements("bind").get(0);
+        assertSame(frozen.getElement("a1"), bind.getReference("interface"));
+        assertSame(frozen.getElement("c1"), bind.getParent().getReference("xconnector"));
+
+        try{
+            frozen.getElements("media").clear();
+            fail();
+        }
+        catch(UnsupportedOperationException ex){}
+    }
+
+    @Test
+    public void test2() throws Exception {
+        NCLDoc doc = load(XML);
+        final NCLFrozenDoc frozen = doc.freeze();
+
+        NCLDoc copy = frozen.thaw();
+        assertEquals(doc.parse(0), copy.parse(0));
+
+        // cópias independentes
+        NCLDoc other = frozen.thaw();
+        other.setTitle("changed");
+        assertFalse(copy.parse(0).equals(other.parse(0)));
+        assertNull(frozen.getRoot().getAttribute("title"));
+
+        final String expected = doc.parse(0);
+        final boolean[] ok = new boolean[8];
+        Thread[] threads = new Thread[ok.length];
+        for(int i = 0; i < threads.length; i++){
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try{
+                        ok[index] = frozen.thaw().parse(0).equals(expected)
+                                && frozen.getElement("m1").getReference("descriptor") == frozen.getElement("d1");
+                    }
+                    catch(Exception ex){}
+                }
+            };
+            threads[i].start();
+        }
+        for(Thread t : threads)
+            t.join();
+        for(boolean b : ok)
+            assertTrue(b);
+    }
+
+    @Test
+    public void test3() throws Exception {
+        NCLDoc doc = load("<ncl id='doc'><body>"+
+                "<meta name='author' content='O&apos;Brien &amp; co'/>"+
+                "<media id='m1' src='a.png?x=1&amp;y=2'/>"+
+                "</body></ncl>");
+        NCLMeta meta = new NCLMeta();
+        meta.setName("title");
+        meta.setContent("\"Tab\"\tand\nline & <more>");
+        doc.getBody().addMeta(meta);
+
+        NCLFrozenDoc frozen = new NCLFrozenDoc(doc);
+        assertEquals("O'Brien & co", frozen.getElements("meta").get(0).getAttribute("content"));
+        assertEquals("\"Tab\"\tand\nline & <more>", frozen.getElements("meta").get(1).getAttribute("content"));
+        assertEquals("a.png?x=1&y=2", frozen.getElement("m1").getAttribute("src"));
+
+        assertTrue(NCLDocDiff.diff(doc, doc).isEmpty());
+        assertEquals(doc.parse(0), frozen.thaw().parse(0));
+    }
+}
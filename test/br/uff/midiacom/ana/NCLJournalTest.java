@@ -0,0 +1,300 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.NCLValues.NCLMimeType;
+import br.uff.midiacom.ana.interfaces.NCLArea;
+import br.uff.midiacom.ana.interfaces.NCLProperty;
+import br.uff.midiacom.ana.interfaces.NCLTime;
+import br.uff.midiacom.ana.node.NCLContext;
+import br.uff.midiacom.ana.node.NCLMedia;
+import br.uff.midiacom.ana.region.NCLRegion;
+import br.uff.midiacom.ana.region.NCLRegionBase;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class NCLJournalTest {
+
+    @Test
+    public void test1() throws Exception {
+        NCLDoc doc = new NCLDoc();
+        NCLBody body = new NCLBody();
+        doc.setBody(body);
+        NCLMedia media = new NCLMedia("m1");
+        body.addNode(media);
+
+        NCLJournal journal = new NCLJournal(doc);
+        media.setSrc("a.png");
+        NCLMedia other = new NCLMedia("m2");
+        body.addNode(other);
+        assertEquals(2, journal.size());
+
+        assertTrue(journal.undo());
+        assertFalse(body.hasNode("m2"));
+        assertTrue(journal.undo());
+        assertNull(media.getSrc());
+        assertFalse(journal.undo());
+        assertEquals(2, journal.size());
+
+        assertTrue(journal.redo());
+        assertEquals("a.png", media.getSrc());
+        assertTrue(journal.redo());
+        assertSame(body, other.getParent());
+        assertFalse(journal.redo());
+
+        journal.undo();
+        media.setSrc("b.png");
+        assertEquals(2, journal.size());
+        assertFalse(journal.canRedo());
+        journal.close();
+    }
+
+
+    @Test
+    public void test2() throws Exception {
+        NCLDoc doc = new NCLDoc();
+        NCLBody body = new NCLBody();
+        doc.setBody(body);
+        String base = doc.parse(0);
+
+        NCLJournal journal = new NCLJournal(doc);
+        doc.beginBatch();
+        NCLContext ctx = new NCLContext("ctx");
+        body.addNode(ctx);
+        ctx.addNode(new NCLMedia("m1"));
+        ctx.setId("ctx1");
+        doc.endBatch();
+        assertEquals(1, journal.size());
+
+        int checkpoint = journal.checkpoint();
+        String saved = doc.parse(0);
+        body.removeNode(ctx);
+        body.addNode(new NCLMedia("m2"));
+        assertEquals(3, journal.size());
+
+        journal.rollback(checkpoint);
+        assertEquals(saved, doc.parse(0));
+        journal.rollback(0);
+        assertEquals(base, doc.parse(0));
+        journal.rollback(3);
+        assertFalse(body.hasNode("ctx1"));
+        assertTrue(body.hasNode("m2"));
+
+        try{
+            journal.rollback(4);
+            fail();
+        }
+        catch(IllegalArgumentException ex){}
+        journal.close();
+    }
+
+
+    @Test
+    public void test3() throws Exception {
+        NCLDoc doc = new NCLDoc();
+        NCLBody body = new NCLBody();
+        doc.setBody(body);
+        NCLContext ctx = new NCLContext("ctx");
+        body.addNode(ctx);
+        NCLMedia media = new NCLMedia("m1");
+        ctx.addNode(media);
+        String base = doc.parse(0);
+
+        NCLJournal journal = new NCLJournal(doc);
+        media.setSrc("video.mp4");
+        NCLMedia image = new NCLMedia("m2");
+        image.setSrc("image.png");
+        ctx.addNode(image);
+        NCLProperty property = new NCLProperty("top");
+        image.addProperty(property);
+        property.setValue("10%");
+        ctx.setId("ctx2");
+        image.setSrc("image2.png");
+
+        int checkpoint = journal.checkpoint();
+        String saved = doc.parse(0);
+        ctx.removeNode(media);
+        image.removeProperty(property);
+
+        NCLDoc fresh = new NCLFrozenDoc(base).thaw();
+        journal.replay(fresh);
+        assertEquals(doc.parse(0), fresh.parse(0));
+
+        NCLDoc recovered = new NCLFrozenDoc(saved).thaw();
+        journal.replay(recovered, checkpoint);
+        assertEquals(doc.parse(0), recovered.parse(0));
+
+        try{
+            journal.replay(doc);
+            fail();
+        }
+        catch(IllegalArgumentException ex){}
+        journal.close();
+    }
+
+
+    @Test
+    public void test4() throws Exception {
+        NCLDoc doc = new NCLDoc();
+        NCLBody body = new NCLBody();
+        doc.setBody(body);
+        NCLMedia m1 = new NCLMedia("m1");
+        body.addNode(m1);
+        final NCLMedia m2 = new NCLMedia("m2");
+        body.addNode(m2);
+
+        // a operação do lote de uma thread não inclui as alterações de outra
+        NCLJournal journal = new NCLJournal(doc);
+        doc.beginBatch();
+        m1.setSrc("a.png");
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try{
+                    m2.setSrc("b.png");
+                }
+                catch(Exception ex){}
+            }
+        };
+        thread.start();
+        thread.join();
+        assertEquals(1, journal.size());
+        m1.setSrc("c.png");
+        doc.endBatch();
+        assertEquals(2, journal.size());
+
+        assertTrue(journal.undo());
+        assertNull(m1.getSrc());
+        assertEquals("b.png", m2.getSrc());
+        assertTrue(journal.undo());
+        assertNull(m2.getSrc());
+        journal.close();
+    }
+
+
+    @Test
+    public void test5() throws Exception {
+        NCLDoc doc = new NCLDoc();
+        NCLRegion region = new NCLRegion("r1");
+        region.setLeft(10, true);
+        NCLHead head = new NCLHead();
+        doc.setHead(head);
+        NCLRegionBase base = new NCLRegionBase();
+        head.setRegionBase(base);
+        base.addRegion(region);
+        String content = doc.parse(0);
+
+        NCLJournal journal = new NCLJournal(doc);
+        region.setLeft(20, true);
+        assertTrue(journal.undo());
+        assertEquals(new Integer(10), region.getLeft());
+        assertEquals(content, doc.parse(0));
+        assertTrue(journal.redo());
+        assertEquals(new Integer(20), region.getLeft());
+        journal.close();
+    }
+
+
+    @Test
+    public void test6() throws Exception {
+        NCLDoc doc = new NCLDoc();
+        NCLHead head = new NCLHead();
+        doc.setHead(head);
+        NCLRegionBase base = new NCLRegionBase();
+        head.setRegionBase(base);
+        NCLRegion region = new NCLRegion("r1");
+        region.setLeft(10, true);
+        base.addRegion(region);
+        NCLBody body = new NCLBody();
+        doc.setBody(body);
+        NCLContext ctx = new NCLContext("ctx");
+        body.addNode(ctx);
+        NCLMedia media = new NCLMedia("m1");
+        ctx.addNode(media);
+        NCLArea area = new NCLArea("a1");
+        media.addArea(area);
+        String content = doc.parse(0);
+
+        NCLJournal journal = new NCLJournal(doc);
+        media.setSrc("video.mp4");
+        media.setType(NCLMimeType.VIDEO_MPEG);
+        region.setLeft(20, true);
+        area.setBegin(new NCLTime(5));
+        NCLMedia image = new NCLMedia("m2");
+        image.setSrc("image.png");
+        ctx.addNode(image);
+        NCLProperty property = new NCLProperty("top");
+        image.addProperty(property);
+        property.setValue("10%");
+        ctx.setId("ctx2");
+
+        int checkpoint = journal.checkpoint();
+        String saved = doc.parse(0);
+        ctx.removeNode(media);
+        image.removeProperty(property);
+
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        journal.write(all);
+        ByteArrayOutputStream last = new ByteArrayOutputStream();
+        journal.write(last, checkpoint);
+        journal.close();
+
+        // o diário lido não depende do diário nem do documento originais
+        NCLDoc fresh = new NCLFrozenDoc(content).thaw();
+        NCLJournal replayed = new NCLJournal(fresh);
+        replayed.read(new ByteArrayInputStream(all.toByteArray()));
+        assertEquals(doc.parse(0), fresh.parse(0));
+        replayed.rollback(0);
+        assertEquals(content, fresh.parse(0));
+        replayed.close();
+
+        NCLDoc recovered = new NCLFrozenDoc(saved).thaw();
+        new NCLJournal(recovered).read(new ByteArrayInputStream(last.toByteArray()));
+        assertEquals(doc.parse(0), recovered.parse(0));
+
+        try{
+            new NCLJournal(recovered).read(new ByteArrayInputStream(new byte[]{1, 2, 3, 4}));
+            fail();
+        }
+        catch(IOException ex){}
+    }
+}
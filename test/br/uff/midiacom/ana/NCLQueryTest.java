@@ -0,0 +1,294 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.NCLValues.NCLMediaType;
+import br.uff.midiacom.ana.NCLValues.NCLMimeType;
+import br.uff.midiacom.ana.descriptor.NCLDescriptor;
+import br.uff.midiacom.ana.interfaces.NCLProperty;
+import br.uff.midiacom.ana.link.NCLLink;
+import br.uff.midiacom.ana.node.NCLContext;
+import br.uff.midiacom.ana.node.NCLMedia;
+import br.uff.midiacom.ana.region.NCLRegion;
+import java.util.Collection;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static br.uff.midiacom.ana.NCLTestUtil.load;
+
+
+public class NCLQueryTest {
+
+    private static final String XML = "<ncl><head>"+
+        "<descriptorBase><descriptor id='d1'/><descriptor id='d2'/></descriptorBase>"+
+        "<connectorBase><causalConnector id='onBeginStart'>"+
+            "<simpleCondition role='onBegin'/><simpleAction role='start'/>"+
+        "</causalConnector></connectorBase>"+
+        "</head><body>"+
+        "<media id='m1' src='a.mpg' descriptor='d1'/>"+
+        "<media id='m2' type='audio/mp3'/>"+
+        "<context id='c1'>"+
+            "<media id='m3' src='b.mp3' descriptor='d1'/>"+
+            "<context id='c2'>"+
+                "<media id='m4' type='video/mpeg' descriptor='d2'/>"+
+            "</context>"+
+        "</context>"+
+        "<link id='l1' xconnector='onBeginStart'>"+
+            "<bind role='onBegin' component='m1'/>"+
+            "<bind role='start' component='m2'/>"+
+        "</link>"+
+        "</body></ncl>";
+
+
+    private String ids(List<NCLElement> elements) {
+        String result = "";
+        for(NCLElement e : elements)
+            result += ((NCLIdentifiableElement) e).getId() + " ";
+
+        return result.trim();
+    }
+
+
+    @Test
+    public void test1() {
+        try{
+            NCLDoc doc = load(XML);
+            NCLQueryIndex index = new NCLQueryIndex(doc);
+            assertSame(index, doc.getQueryIndex());
+            assertSame(index.getReferenceIndex(), doc.getReferenceIndex());
+
+            assertEquals(4, index.select().kind(NCLMedia.class).count());
+            assertEquals(2, index.select().kind(NCLContext.class).count());
+            assertEquals(1, index.select().kind(NCLLink.class).count());
+
+            assertEquals("m2", ids(index.select().type(NCLMimeType.AUDIO_MP3).list()));
+            assertEquals("m4", ids(index.select().type(NCLMimeType.VIDEO_MPEG).list()));
+
+            List<NCLElement> audio = index.select().mediaType(NCLMediaType.AUDIO).list();
+            assertEquals(2, audio.size());
+            assertTrue(audio.contains(index.select().id("m2").first()));
+            assertTrue(audio.contains(index.select().id("m3").first()));
+            assertEquals(2, index.select().mediaType(NCLMediaType.VIDEO).count());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test2() {
+        try{
+            NCLDoc doc = load(XML);
+            NCLQueryIndex index = new NCLQueryIndex(doc);
+
+            NCLMedia m1 = (NCLMedia) index.select().id("m1").first();
+            NCLDescriptor d1 = (NCLDescriptor) m1.getDescriptor();
+
+            List<NCLElement> result = index.select().kind(NCLMedia.class).descriptor(d1).list();
+            assertEquals(2, result.size());
+            assertTrue(result.contains(m1));
+
+            NCLLink link = (NCLLink) doc.getBody().getLinks().iterator().next();
+            assertEquals("l1", ids(index.select().connector(link.getXconnector()).list()));
+            assertEquals(0, index.select().kind(NCLMedia.class).connector(link.getXconnector()).count());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test3() {
+        try{
+            NCLDoc doc = load(XML);
+            NCLQueryIndex index = new NCLQueryIndex(doc);
+
+            NCLContext c1 = (NCLContext) index.select().id("c1").first();
+            NCLContext c2 = (NCLContext) index.select().id("c2").first();
+
+            assertEquals("m3", ids(index.select().kind(NCLMedia.class).in(c1).list()));
+            assertEquals(2, index.select().kind(NCLMedia.class).under(c1).count());
+            assertEquals("m4", ids(index.select().mediaType(NCLMediaType.VIDEO).under(c1).list()));
+            assertEquals(2, index.select().in(c1).kind(NCLIdentifiableElement.class).count());
+            assertEquals(1, index.select().under(c2).count());
+            assertNull(index.select().id("m4").in(c1).first());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test4() {
+        try{
+            NCLDoc doc = load(XML);
+            NCLQueryIndex index = new NCLQueryIndex(doc);
+            int size = index.size();
+
+            NCLContext c2 = (NCLContext) index.select().id("c2").first();
+            NCLMedia m5 = new NCLMedia("m5");
+            m5.setType(NCLMimeType.IMAGE_PNG);
+            c2.addNode(m5);
+
+            assertEquals(size + 1, index.size());
+            assertSame(m5, index.select().mediaType(NCLMediaType.IMAGE).under(c2).first());
+
+            m5.setType(NCLMimeType.AUDIO_MP3);
+            assertEquals(0, index.select().mediaType(NCLMediaType.IMAGE).count());
+            assertEquals(2, index.select().type(NCLMimeType.AUDIO_MP3).count());
+
+            NCLMedia m3 = (NCLMedia) index.select().id("m3").first();
+            m3.setSrc("b.png");
+            assertSame(m3, index.select().mediaType(NCLMediaType.IMAGE).first());
+
+            c2.removeNode(m5);
+            assertEquals(size, index.size());
+            assertEquals(1, index.select().type(NCLMimeType.AUDIO_MP3).count());
+            assertEquals(0, index.select().under(c2).kind(NCLMedia.class).in(c2).id("m5").count());
+
+            NCLContext c1 = (NCLContext) index.select().id("c1").first();
+            doc.getBody().removeNode(c1);
+            assertEquals(2, index.select().kind(NCLMedia.class).count());
+            assertEquals(0, index.select().kind(NCLContext.class).count());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test5() {
+        try{
+            NCLDoc doc = load(XML);
+            NCLQueryIndex index = new NCLQueryIndex(doc);
+
+            Collection<NCLMedia> audio = index.getMedias(NCLMediaType.AUDIO);
+            Collection<NCLMedia> mp3 = index.getMedias(NCLMimeType.AUDIO_MP3);
+            assertEquals(2, audio.size());
+
+            NCLMedia m5 = new NCLMedia("m5");
+            m5.setType(NCLMimeType.AUDIO_MP3);
+            doc.getBody().addNode(m5);
+
+            assertEquals(2, audio.size());
+            assertEquals(1, mp3.size());
+            assertEquals(3, index.getMedias(NCLMediaType.AUDIO).size());
+            assertTrue(index.getMedias(NCLMimeType.AUDIO_MP3).contains(m5));
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test6() {
+        try{
+            NCLDoc doc = load("<ncl><head><regionBase id='rb'>"+
+                "<region id='r1'><region id='r2'><region id='r3'/></region></region>"+
+                "<region id='r4'/>"+
+                "</regionBase></head><body>"+
+                "<media id='m1'><property name='top' value='10'/></media>"+
+                "<context id='c1'>"+
+                    "<media id='m2'><property name='top' value='20'/></media>"+
+                    "<media id='m3'><property name='left'/></media>"+
+                    "<context id='c2'><property name='top' value='20'/></context>"+
+                "</context>"+
+                "</body></ncl>");
+            NCLQueryIndex index = new NCLQueryIndex(doc);
+
+            NCLContext c1 = (NCLContext) index.select().id("c1").first();
+            List<NCLElement> top = index.select().under(c1).property("top").list();
+            assertEquals(2, top.size());
+            assertTrue(top.contains(index.select().id("m2").first()));
+            assertTrue(top.contains(index.select().id("c2").first()));
+            assertEquals("m2", ids(index.select().kind(NCLMedia.class).under(c1).property("top", "20").list()));
+            assertEquals("m1", ids(index.select().property("top", "10").list()));
+            assertEquals(0, index.select().in(c1).property("right").count());
+
+            NCLElement rb = index.select().id("rb").first();
+            assertEquals("r2 r3", ids(index.select().kind(NCLRegion.class).under(rb).depth(2).list()));
+            assertEquals("r3", ids(index.select().kind(NCLRegion.class).depth(5).list()));
+            assertEquals(2, index.select().in(rb).count());
+
+            NCLMedia m3 = (NCLMedia) index.select().id("m3").first();
+            m3.addProperty(new NCLProperty("top"));
+            assertEquals(3, index.select().under(c1).property("top").count());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test7() {
+        try{
+            NCLDoc doc = load(XML);
+            NCLQueryIndex index = new NCLQueryIndex(doc);
+
+            NCLContext c1 = (NCLContext) index.select().id("c1").first();
+            Collection<NCLElement> children = index.getChildren(c1);
+            Collection<NCLMedia> audio = index.getMedias(NCLMediaType.AUDIO);
+            assertEquals(2, children.size());
+            assertEquals(3, index.getDescendants(c1).size());
+
+            NCLMedia m5 = new NCLMedia("m5");
+            m5.setType(NCLMimeType.AUDIO_MP3);
+            c1.addNode(m5);
+            for(NCLMedia m : audio){
+                if(m.getParent() == c1)
+                    c1.removeNode(m);
+            }
+
+            assertEquals(2, children.size());
+            assertEquals(2, audio.size());
+            assertEquals(2, index.getChildren(c1).size());
+            assertTrue(index.getChildren(c1).contains(m5));
+            assertEquals(2, index.getMedias(NCLMediaType.AUDIO).size());
+            assertEquals(3, index.getDescendants(c1).size());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.connector.NCLCausalConnector;
+import br.uff.midiacom.ana.descriptor.NCLDescriptor;
+import br.uff.midiacom.ana.interfaces.NCLPort;
+import br.uff.midiacom.ana.link.NCLBind;
+import br.uff.midiacom.ana.link.NCLLink;
+import br.uff.midiacom.ana.node.NCLMedia;
+import br.uff.midiacom.ana.region.NCLRegion;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static br.uff.midiacom.ana.NCLTestUtil.load;
+
+
+public class NCLReferenceIndexTest {
+
+    private static final String XML = "<ncl><head>"+
+        "<regionBase><region id='rg1'/></regionBase>"+
+        "<descriptorBase><descriptor id='d1' region='rg1'/><descriptor id='d2'/></descriptorBase>"+
+        "<connectorBase><causalConnector id='onBeginStart'>"+
+            "<simpleCondition role='onBegin'/><simpleAction role='start'/>"+
+        "</causalConnector></connectorBase>"+
+        "</head><body>"+
+        "<port id='p1' component='m1'/>"+
+        "<media id='m1' descriptor='d1'/>"+
+        "<media id='m2'/>"+
+        "<link id='l1' xconnector='onBeginStart'>"+
+            "<bind role='onBegin' component='m1'/>"+
+            "<bind role='start' component='m2' descriptor='d1'/>"+
+        "</link>"+
+        "</body></ncl>";
+
+
+    private NCLMedia media(NCLDoc doc, String id) {
+        for(Object node : doc.getBody().getNodes()){
+            if(((NCLMedia) node).getId().equals(id))
+                return (NCLMedia) node;
+        }
+        return null;
+    }
+
+
+    @Test
+    public void test1() {
+        try{
+            NCLDoc doc = load(XML);
+            NCLReferenceIndex index = new NCLReferenceIndex(doc);
+            assertSame(index, doc.getReferenceIndex());
+
+            NCLMedia m1 = media(doc, "m1");
+            NCLDescriptor d1 = (NCLDescriptor) m1.getDescriptor();
+            NCLRegion rg1 = (NCLRegion) d1.getRegion();
+
+            List<NCLReferenceIndex.Reference> refs = index.getReferrers(m1);
+            assertEquals(2, refs.size());
+            for(NCLReferenceIndex.Reference ref : refs)
+                assertEquals("component", ref.getAttribute());
+
+            assertEquals(2, index.getReferrers(d1).size());
+            assertEquals(1, index.getReferrers(rg1).size());
+            assertSame(d1, index.getReferrers(rg1).get(0).getReferrer());
+            assertEquals("region", index.getReferrers(rg1).get(0).getAttribute());
+
+            NCLLink link = (NCLLink) doc.getBody().getLinks().iterator().next();
+            assertEquals(1, index.getReferrers(link.getXconnector()).size());
+            for(Object bind : link.getBinds())
+                assertEquals(1, index.getReferrers(((NCLBind) bind).getRole()).size());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test2() {
+        try{
+            NCLDoc doc = load(XML);
+            NCLReferenceIndex index = new NCLReferenceIndex(doc);
+            int size = index.size();
+
+            // as referências alteradas depois da indexação são mantidas
+            NCLMedia m2 = media(doc, "m2");
+            NCLDescriptor d1 = (NCLDescriptor) media(doc, "m1").getDescriptor();
+            m2.setDescriptor(d1);
+            assertEquals(size + 1, index.size());
+            assertEquals(3, index.getReferrers(d1).size());
+
+            m2.setDescriptor(null);
+            assertEquals(size, index.size());
+            assertEquals(2, index.getReferrers(d1).size());
+
+            // elementos inseridos e retirados da árvore também são indexados
+            NCLMedia m3 = new NCLMedia("m3");
+            m3.setDescriptor(d1);
+            assertEquals(2, index.getReferrers(d1).size());
+            doc.getBody().addNode(m3);
+            assertEquals(3, index.getReferrers(d1).size());
+            doc.getBody().removeNode(m3);
+            assertEquals(2, index.getReferrers(d1).size());
+            assertEquals(size, index.size());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test3() {
+        try{
+            NCLDoc doc = load(XML);
+            NCLReferenceIndex index = new NCLReferenceIndex(doc);
+
+            NCLMedia m1 = media(doc, "m1");
+            NCLDescriptor d1 = (NCLDescriptor) m1.getDescriptor();
+            NCLRegion rg1 = (NCLRegion) d1.getRegion();
+
+            // o descritor removido deixa de ser usado pela mídia e pelo bind
+            assertTrue(index.delete(d1));
+            assertNull(d1.getParent());
+            assertFalse(doc.parse(0).contains("d1"));
+            assertNull(m1.getDescriptor());
+            NCLLink link = (NCLLink) doc.getBody().getLinks().iterator().next();
+            for(Object bind : link.getBinds())
+                assertNull(((NCLBind) bind).getDescriptor());
+            assertFalse(index.isReferenced(d1));
+            assertFalse(index.isReferenced(rg1));
+            assertFalse(index.delete(d1));
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test4() {
+        try{
+            NCLDoc doc = load(XML);
+            NCLReferenceIndex index = new NCLReferenceIndex(doc);
+
+            // a mídia removida leva consigo a porta e o bind que a usam
+            NCLMedia m1 = media(doc, "m1");
+            assertTrue(index.delete(m1));
+            assertFalse(doc.getBody().hasNode("m1"));
+            assertFalse(doc.getBody().getPorts().iterator().hasNext());
+
+            NCLLink link = (NCLLink) doc.getBody().getLinks().iterator().next();
+            int binds = 0;
+            for(Object bind : link.getBinds())
+                binds++;
+            assertEquals(1, binds);
+            assertFalse(index.isReferenced(m1));
+            assertEquals(1, index.getReferrers(media(doc, "m2")).size());
+
+            // o conector removido leva consigo o elo
+            NCLCausalConnector conn = (NCLCausalConnector) link.getXconnector();
+            assertTrue(index.delete(conn));
+            assertFalse(doc.getBody().getLinks().iterator().hasNext());
+            assertFalse(index.isReferenced(media(doc, "m2")));
+            assertEquals(1, index.size());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test5() {
+        try{
+            NCLDoc doc = load(XML);
+            NCLReferenceIndex index = new NCLReferenceIndex(doc);
+
+            NCLMedia m1 = media(doc, "m1");
+            List<NCLReferenceIndex.Reference> refs = index.rename(m1, "video");
+            assertEquals(2, refs.size());
+            assertTrue(doc.getBody().hasNode("video"));
+            assertFalse(doc.getBody().hasNode("m1"));
+            assertSame(m1, media(doc, "video"));
+
+            NCLPort port = (NCLPort) doc.getBody().getPorts().iterator().next();
+            assertTrue(port.parse(0).contains("component='video'"));
+            assertTrue(doc.parse(0).contains("component='video'"));
+            assertFalse(doc.parse(0).contains("m1"));
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test6() {
+        try{
+            NCLDoc doc = load(XML);
+            NCLReferenceIndex index = new NCLReferenceIndex(doc);
+
+            // um identificador já usado mantém o identificador original
+            NCLMedia m1 = media(doc, "m1");
+            try{
+                index.rename(m1, "m2");
+                fail();
+            }
+            catch(NCLInvalidIdentifierException ex){}
+
+            assertEquals("m1", m1.getId());
+            assertSame(m1, media(doc, "m1"));
+            assertEquals(2, index.getReferrers(m1).size());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+}
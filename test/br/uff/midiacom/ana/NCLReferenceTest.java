@@ -0,0 +1,165 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.link.NCLBind;
+import br.uff.midiacom.ana.link.NCLLink;
+import br.uff.midiacom.ana.node.NCLContext;
+import br.uff.midiacom.ana.node.NCLMedia;
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.util.Iterator;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+import static org.junit.Assert.*;
+
+
+public class NCLReferenceTest {
+
+    @Test
+    public void test1() {
+        NCLReference<NCLContext> ref = new NCLReference<NCLContext>(NCLContext.class, "ctx");
+        assertEquals("ctx", ref.getId());
+        assertEquals(NCLContext.class, ref.getType());
+        assertEquals("ctx", NCLReference.id(ref));
+        assertNull(NCLReference.peek(ref));
+
+        NCLContext target = NCLReference.get(ref);
+        assertEquals("ctx", target.getId());
+        assertSame(target, ref.getTarget());
+        assertSame(target, NCLReference.peek(ref));
+
+        assertSame(target, NCLReference.get(target));
+        assertEquals("ctx", NCLReference.id(target));
+        assertNull(NCLReference.get(null));
+        assertNull(NCLReference.id(null));
+    }
+
+
+    @Test
+    public void test2() {
+        assertTrue(NCLReference.isValid(new NCLReference<NCLContext>(NCLContext.class, "ctx")));
+        assertFalse(NCLReference.isValid(new NCLReference<NCLContext>(NCLContext.class, "1ctx")));
+        assertTrue(NCLReference.isValid(null));
+    }
+
+
+    @Test
+    public void test3() {
+        String xml = "<ncl><head>"+
+            "<connectorBase><causalConnector id='onBeginStart'>"+
+                "<simpleCondition role='onBegin'/><simpleAction role='start'/>"+
+            "</causalConnector></connectorBase>"+
+            "</head><body>"+
+            "<media id='m1'/>"+
+            "<link id='l1' xconnector='onBeginStart'>"+
+                "<bind role='onBegin' component='m1'/>"+
+                "<bind role='start' component='missing'/>"+
+            "</link>"+
+            "</body></ncl>";
+
+        try{
+            XMLReader reader = XMLReaderFactory.createXMLReader();
+            NCLDoc doc = new NCLDoc();
+            doc.setReader(reader);
+            reader.setContentHandler(doc);
+            reader.parse(new InputSource(new StringReader(xml)));
+
+            NCLMedia media = (NCLMedia) doc.getBody().getNodes().iterator().next();
+            NCLLink link = (NCLLink) doc.getBody().getLinks().iterator().next();
+            assertSame(doc.getHead().getConnectorBase().getCausalConnectors().iterator().next(), link.getXconnector());
+
+            Iterator it = link.getBinds().iterator();
+            NCLBind b1 = (NCLBind) it.next();
+            NCLBind b2 = (NCLBind) it.next();
+            assertSame(media, b1.getComponent());
+
+            String content = b2.parse(0);
+            assertTrue(content.contains("component='missing'"));
+
+            assertTrue(b2.getComponent() instanceof NCLContext);
+            assertEquals("missing", ((NCLContext) b2.getComponent()).getId());
+            assertSame(b2.getComponent(), b2.getComponent());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test4() {
+        String xml = "<ncl><head></head><body>"+
+            "<media id='m1'/>"+
+            "<link id='l1' xconnector='missing'/>"+
+            "<link id='l2' xconnector='other'/>"+
+            "<link id='l3' xconnector='1bad'/>"+
+            "</body></ncl>";
+
+        try{
+            XMLReader reader = XMLReaderFactory.createXMLReader();
+            NCLDoc doc = new NCLDoc();
+            doc.setReader(reader);
+            reader.setContentHandler(doc);
+            reader.parse(new InputSource(new StringReader(xml)));
+
+            // a ordenação dos elos não cria os elementos das referências
+            Field field = NCLLink.class.getDeclaredField("xconnector");
+            field.setAccessible(true);
+            int count = 0;
+            for(Object l : doc.getBody().getLinks()){
+                NCLLink link = (NCLLink) l;
+                assertNull(NCLReference.peek(field.get(link)));
+                if(link.getId().equals("l3")){
+                    assertFalse(link.validate());
+                    boolean found = false;
+                    for(String error : link.getErrors())
+                        found |= error.contains("xconnector");
+                    assertTrue(found);
+                }
+                count++;
+            }
+            assertEquals(3, count);
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.node.NCLContext;
+import br.uff.midiacom.ana.node.NCLMedia;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static br.uff.midiacom.ana.NCLTestUtil.load;
+
+
+public class NCLSerializationCacheTest {
+
+    private String document(int contexts, int medias) {
+        StringBuilder xml = new StringBuilder("<ncl id='doc'><head>");
+        xml.append("<regionBase><region id='rg1' width='50%'/></regionBase>");
+        xml.append("<descriptorBase><descriptor id='d1' region='rg1'/></descriptorBase>");
+        xml.append("</head><body>");
+        for(int c = 0; c < contexts; c++){
+            xml.append("<context id='c").append(c).append("'>");
+            for(int m = 0; m < medias; m++)
+                xml.append("<media id='m").append(c).append('_').append(m).append("' src='a").append(m).append(".png' descriptor='d1'/>");
+            xml.append("</context>");
+        }
+        xml.append("</body></ncl>");
+
+        return xml.toString();
+    }
+
+
+    private NCLMedia media(NCLDoc doc, String context, String id) {
+        for(Object node : doc.getBody().getNodes()){
+            NCLContext ctx = (NCLContext) node;
+            if(ctx.getId().equals(context)){
+                for(Object media : ctx.getNodes()){
+                    if(((NCLMedia) media).getId().equals(id))
+                        return (NCLMedia) media;
+                }
+            }
+        }
+        return null;
+    }
+
+
+    @Test
+    public void test1() {
+        try{
+            String xml = document(3, 4);
+            NCLDoc plain = load(xml);
+            NCLDoc doc = load(xml);
+            NCLSerializationCache cache = new NCLSerializationCache();
+            doc.setSerializationCache(cache);
+
+            assertEquals(plain.parse(0), doc.parse(0));
+            assertTrue(cache.size() > 0);
+            assertEquals(0, cache.getHits());
+
+            // a segunda geração retorna o código guardado para o documento
+            assertEquals(plain.parse(0), doc.parse(0));
+            assertEquals(1, cache.getHits());
+            assertEquals(plain.parse(1), doc.parse(1));
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test2() {
+        try{
+            String xml = document(50, 50);
+            NCLDoc plain = load(xml);
+            NCLDoc doc = load(xml);
+            NCLSerializationCache cache = new NCLSerializationCache();
+            doc.setSerializationCache(cache);
+            doc.parse(0);
+
+            // apenas a mídia alterada e os seus ancestrais são gerados novamente
+            media(doc, "c7", "m7_3").setSrc(null, "x.png");
+            media(plain, "c7", "m7_3").setSrc(null, "x.png");
+            int misses = cache.getMisses();
+            int hits = cache.getHits();
+            assertEquals(plain.parse(0), doc.parse(0));
+            assertEquals(4, cache.getMisses() - misses);
+            assertTrue(cache.getHits() - hits >= 49 + 49 + 1);
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test3() {
+        try{
+            // documentos diferentes compartilham o código dos elementos idênticos
+            NCLSerializationCache cache = new NCLSerializationCache();
+            NCLDoc doc1 = load(document(2, 3));
+            NCLDoc doc2 = load(document(2, 3));
+            doc1.setSerializationCache(cache);
+            doc2.setSerializationCache(cache);
+
+            String content = doc1.parse(0);
+            int size = cache.size();
+            assertEquals(content, doc2.parse(0));
+            assertEquals(size, cache.size());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test4() {
+        try{
+            NCLDoc plain = load(document(10, 10));
+            NCLDoc doc = load(document(10, 10));
+            NCLSerializationCache cache = new NCLSerializationCache(2000);
+            doc.setSerializationCache(cache);
+
+            assertEquals(plain.parse(0), doc.parse(0));
+            assertTrue(cache.getLength() <= 2000);
+            assertEquals(plain.parse(0), doc.parse(0));
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test(expected=IllegalArgumentException.class)
+    public void test5() {
+        new NCLSerializationCache(0);
+    }
+
+
+    @Test
+    public void test6() {
+        try{
+            // o texto de cada elemento é guardado uma única vez, mesmo em documentos profundos
+            StringBuilder xml = new StringBuilder("<ncl id='doc'><head/><body>");
+            for(int c = 0; c < 40; c++)
+                xml.append("<context id='c").append(c).append("'><media id='m").append(c).append("' src='a.png'/>");
+            for(int c = 0; c < 40; c++)
+                xml.append("</context>");
+            xml.append("</body></ncl>");
+
+            NCLDoc plain = load(xml.toString());
+            NCLDoc doc = load(xml.toString());
+            NCLSerializationCache cache = new NCLSerializationCache();
+            doc.setSerializationCache(cache);
+
+            String content = plain.parse(0);
+            assertEquals(content, doc.parse(0));
+            assertTrue(cache.getLength() <= content.length());
+            assertEquals(content, doc.parse(0));
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test7() {
+        try{
+            String xml = document(20, 20);
+            NCLDoc plain = load(xml);
+            NCLDoc doc = load(xml);
+            NCLSerializationCache cache = new NCLSerializationCache();
+            doc.setSerializationCache(cache);
+
+            // a geração paralela usa a cache do documento
+            ForkJoinPool pool = new ForkJoinPool(4);
+            assertEquals(plain.parse(0), doc.parse(pool, 8));
+            assertTrue(cache.size() > 20);
+
+            media(doc, "c3", "m3_3").setSrc(null, "x.png");
+            media(plain, "c3", "m3_3").setSrc(null, "x.png");
+            int misses = cache.getMisses();
+            assertEquals(plain.parse(0), doc.parse(pool, 8));
+            assertEquals(4, cache.getMisses() - misses);
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.link.NCLLink;
+import br.uff.midiacom.ana.node.NCLContext;
+import br.uff.midiacom.ana.node.NCLMedia;
+import br.uff.midiacom.ana.node.NCLSwitch;
+import br.uff.midiacom.ana.region.NCLRegion;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import static org.junit.Assert.*;
+
+
+public class NCLStreamReaderTest {
+
+    private static final String XML = "<ncl id='doc'><head>"+
+        "<regionBase><region id='rg1'><region id='rg2'/></region></regionBase>"+
+        "<connectorBase><causalConnector id='onBeginStart'>"+
+            "<simpleCondition role='onBegin'/><simpleAction role='start'/>"+
+        "</causalConnector></connectorBase>"+
+        "</head><body>"+
+        "<media id='m1'><area id='a1'/><property name='top'/></media>"+
+        "<context id='c1'>"+
+            "<media id='m2'/>"+
+            "<link id='l2' xconnector='onBeginStart'>"+
+                "<bind role='onBegin' component='m2'/>"+
+                "<bind role='start' component='m2'/>"+
+            "</link>"+
+        "</context>"+
+        "<link id='l1' xconnector='onBeginStart'>"+
+            "<bind role='onBegin' component='m1'/>"+
+            "<bind role='start' component='c1'/>"+
+        "</link>"+
+        "</body></ncl>";
+
+
+    private static class Recorder extends NCLStreamListener {
+
+        private List<String> events = new ArrayList<String>();
+        private NCLDoc doc;
+
+
+        @Override
+        public void onMedia(NCLMedia media) {
+            events.add("media " + media.getId() + " in " + ((NCLIdentifiableElement) media.getParent()).getId()
+                    + (media.hasArea() ? " areas" : "") + (media.hasProperty() ? " properties" : ""));
+        }
+
+
+        @Override
+        public void onContext(NCLContext context) {
+            events.add("context " + context.getId() + (context.hasNode() || context.hasLink() ? " full" : " empty"));
+        }
+
+
+        @Override
+        public void onLink(NCLLink link) {
+            events.add("link " + link.getId() + " binds " + (link.hasBind() ? 2 : 0));
+        }
+
+
+        @Override
+        public void onRegion(NCLRegion region) {
+            events.add("region " + region.getId() + (region.hasRegion() ? " nested" : ""));
+        }
+
+
+        @Override
+        public void onDocument(NCLDoc doc) {
+            this.doc = doc;
+        }
+    }
+
+
+    @Test
+    public void test1() {
+        try{
+            Recorder recorder = new Recorder();
+            new NCLStreamReader(recorder).parse(new InputSource(new StringReader(XML)));
+
+            List<String> expected = new ArrayList<String>();
+            expected.add("region rg2");
+            expected.add("region rg1 nested");
+            expected.add("media m1 in null areas properties");
+            expected.add("media m2 in c1");
+            expected.add("link l2 binds 2");
+            expected.add("context c1 full");
+            expected.add("link l1 binds 2");
+            assertEquals(expected, recorder.events);
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test2() {
+        try{
+            Recorder recorder = new Recorder();
+            new NCLStreamReader(recorder).parse(new InputSource(new StringReader(XML)));
+
+            NCLDoc doc = recorder.doc;
+            assertNotNull(doc);
+            assertEquals("doc", doc.getId());
+            assertFalse(doc.getBody().hasNode());
+            assertFalse(doc.getBody().hasLink());
+            assertFalse(doc.getHead().getRegionBase().hasRegion());
+            assertFalse(doc.getHead().getConnectorBase().hasCausalConnector());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test3() {
+        String xml = "<ncl id='doc'><head></head><body>"+
+            "<context id='c1'>"+
+                "<context id='c2'><media id='m1'/></context>"+
+                "<switch id='s1'><media id='m2'/></switch>"+
+            "</context>"+
+            "</body></ncl>";
+
+        try{
+            final List<NCLContext> contexts = new ArrayList<NCLContext>();
+            final List<String> switches = new ArrayList<String>();
+            Recorder recorder = new Recorder() {
+                @Override
+                public void onContext(NCLContext context) {
+                    contexts.add(context);
+                }
+
+                @Override
+                public void onSwitch(NCLSwitch swt) {
+                    switches.add(swt.getId() + (swt.hasNode() ? " full" : " empty"));
+                }
+            };
+            new NCLStreamReader(recorder).parse(new InputSource(new StringReader(xml)));
+
+            assertEquals(2, contexts.size());
+            NCLContext c2 = contexts.get(0);
+            NCLContext c1 = contexts.get(1);
+            assertEquals("c2", c2.getId());
+            assertTrue(c2.hasNode());
+            assertEquals("c1", c1.getId());
+            assertTrue(c1.hasNode());
+            assertSame(c1, c2.getParent());
+            assertEquals(1, switches.size());
+            assertEquals("s1 full", switches.get(0));
+
+            assertFalse(recorder.doc.getBody().hasNode());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+}
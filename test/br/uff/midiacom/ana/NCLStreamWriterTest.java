@@ -0,0 +1,231 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.NCLValues.NCLMimeType;
+import br.uff.midiacom.ana.NCLValues.NCLNamespace;
+import br.uff.midiacom.ana.meta.NCLMeta;
+import br.uff.midiacom.ana.node.NCLMedia;
+import br.uff.midiacom.ana.region.NCLRegion;
+import java.io.ByteArrayOutputStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static br.uff.midiacom.ana.NCLTestUtil.load;
+
+
+public class NCLStreamWriterTest {
+
+    @Test
+    public void test1() {
+        try{
+            NCLHead head = load(("<ncl><head>"+
+                "<descriptorBase><descriptor id='d1'/></descriptorBase>"+
+                "<connectorBase><causalConnector id='onBeginStart'>"+
+                    "<simpleCondition role='onBegin'/><simpleAction role='start'/>"+
+                "</causalConnector></connectorBase>"+
+                "</head></ncl>").getBytes()).getHead();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            NCLStreamWriter writer = new NCLStreamWriter(out);
+            writer.startDocument("doc", "teste", NCLNamespace.EDTV);
+            writer.head(head);
+            writer.startBody(null);
+            writer.port("p1", "c1", null);
+            writer.startContext("c1");
+            writer.port("p2", "m1", null);
+            writer.media("m1", "video.mpg", null, "d1");
+            writer.media("m2", null, NCLMimeType.AUDIO_MP3, null);
+            writer.link("l1", "onBeginStart", new NCLStreamWriter.Bind("onBegin", "m1"), new NCLStreamWriter.Bind("start", "m2"));
+            writer.endContext();
+            writer.startContext("c2");
+            writer.endContext();
+            writer.endBody();
+            writer.endDocument();
+
+            NCLDoc doc = load(out.toByteArray());
+            assertEquals(doc.parse(0), out.toString("ISO-8859-1"));
+            assertTrue(doc.validate());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test2() {
+        try{
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            NCLStreamWriter writer = new NCLStreamWriter(out);
+            writer.startDocument("doc", "a < b & 'c' é €", null);
+            writer.startBody(null);
+            writer.media("m1", "http://host/a?x=1&y='2'", null, null);
+            writer.endDocument();
+
+            NCLDoc doc = load(out.toByteArray());
+            assertEquals("a < b & 'c' é €", doc.getTitle());
+            NCLMedia m1 = (NCLMedia) doc.getBody().getNodes().iterator().next();
+            assertEquals("http://host/a?x=1&y='2'", m1.getSrc());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test3() {
+        try{
+            NCLStreamWriter writer = new NCLStreamWriter(new ByteArrayOutputStream());
+            try{
+                writer.startBody(null);
+                fail("body before document");
+            }
+            catch(IllegalStateException ex){}
+
+            writer.startDocument(null, null, null);
+            try{
+                writer.media("m1", null, null, null);
+                fail("media outside body");
+            }
+            catch(IllegalStateException ex){}
+
+            writer.startBody(null);
+            try{
+                writer.head(new NCLHead());
+                fail("head after body");
+            }
+            catch(IllegalStateException ex){}
+
+            writer.media("m1", null, null, null);
+            try{
+                writer.media("m1", null, null, null);
+                fail("repeated id");
+            }
+            catch(IllegalArgumentException ex){}
+
+            try{
+                writer.link("l1", "onBeginStart", new NCLStreamWriter.Bind("onBegin", "m1"));
+                fail("link with one bind");
+            }
+            catch(IllegalArgumentException ex){}
+
+            try{
+                writer.link("l2", null, new NCLStreamWriter.Bind("onBegin", "m1"), new NCLStreamWriter.Bind("start", "m1"));
+                fail("link without connector");
+            }
+            catch(IllegalArgumentException ex){}
+
+            writer.startContext("c1");
+            writer.port("p1", "m1", null);
+            try{
+                writer.endContext();
+                fail("port to a node outside the context");
+            }
+            catch(IllegalStateException ex){
+                assertEquals("Atributo component deve referênciar elemento interno ao contexto.", ex.getMessage());
+            }
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test4() {
+        try{
+            String title = "a\tb\nc\r d \uD83D\uDE00";
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            NCLStreamWriter writer = new NCLStreamWriter(out);
+            try{
+                writer.startDocument("doc", "a\u0001b", null);
+                fail("control character");
+            }
+            catch(IllegalArgumentException ex){}
+            try{
+                writer.startDocument("doc", "a\uD83Db", null);
+                fail("unpaired surrogate");
+            }
+            catch(IllegalArgumentException ex){}
+            assertEquals(0, out.size());
+
+            writer.startDocument("doc", title, null);
+            writer.endDocument();
+
+            String xml = out.toString("ISO-8859-1");
+            assertTrue(xml.contains("title='a&#9;b&#10;c&#13; d &#128512;'"));
+            assertEquals(title, load(out.toByteArray()).getTitle());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test5() {
+        try{
+            NCLHead head = load(("<ncl><head>"+
+                "<regionBase><region id='r1' title='O&apos;Brien &amp; &lt;co&gt;'/></regionBase>"+
+                "</head></ncl>").getBytes()).getHead();
+            NCLMeta meta = new NCLMeta();
+            meta.setName("author");
+            meta.setContent("O'Brien & co");
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            NCLStreamWriter writer = new NCLStreamWriter(out);
+            writer.startDocument("doc", null, null);
+            writer.head(head);
+            writer.startBody(null);
+            writer.element(meta);
+            writer.endDocument();
+
+            NCLDoc doc = load(out.toByteArray());
+            assertEquals(doc.parse(0), out.toString("ISO-8859-1"));
+            NCLMeta read = (NCLMeta) doc.getBody().getMetas().iterator().next();
+            assertEquals("O'Brien & co", read.getContent());
+            NCLRegion r1 = (NCLRegion) doc.getHead().getRegionBase().getRegions().iterator().next();
+            assertEquals("O'Brien & <co>", r1.getTitle());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.link.NCLBind;
+import br.uff.midiacom.ana.link.NCLLink;
+import br.uff.midiacom.ana.node.NCLMedia;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.StringReader;
+import java.util.Iterator;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+import static org.junit.Assert.*;
+
+
+public class NCLStringPoolTest {
+
+    private static final String XML = "<ncl><head>"+
+        "<descriptorBase><descriptor id='d1'/></descriptorBase>"+
+        "</head><body>"+
+        "<media id='m1' descriptor='d1'/>"+
+        "<media id='m2' descriptor='d1'/>"+
+        "<link id='l1' xconnector='onBeginStart'>"+
+            "<bind role='onBegin' component='m1'/>"+
+            "<bind role='start' component='m2'/>"+
+        "</link>"+
+        "<link id='l2' xconnector='onBeginStart'>"+
+            "<bind role='onBegin' component='m2'/>"+
+            "<bind role='start' component='m1'/>"+
+        "</link>"+
+        "</body></ncl>";
+
+
+    @Test
+    public void test1() {
+        NCLStringPool pool = new NCLStringPool();
+        String a = new String("abc");
+        String b = new String("abc");
+
+        assertSame(a, pool.intern(a));
+        assertSame(a, pool.intern(b));
+        assertNull(pool.intern(null));
+        assertEquals(1, pool.size());
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+
+        String c = new String("shared-" + System.nanoTime());
+        assertSame(NCLStringPool.shared().intern(c), NCLStringPool.shared().intern(new String(c)));
+    }
+
+
+    @Test
+    public void test2() {
+        try{
+            NCLStringPool pool = new NCLStringPool();
+            XMLReader reader = pool.filter(XMLReaderFactory.createXMLReader());
+
+            NCLDoc doc = new NCLDoc();
+            doc.setReader(reader);
+            reader.setContentHandler(doc);
+            reader.parse(new InputSource(new StringReader(XML)));
+
+            Iterator nodes = doc.getBody().getNodes().iterator();
+            NCLMedia m1 = (NCLMedia) nodes.next();
+            NCLMedia m2 = (NCLMedia) nodes.next();
+            assertSame(m1.getDescriptor().getId(), m2.getDescriptor().getId());
+
+            Iterator links = doc.getBody().getLinks().iterator();
+            NCLLink l1 = (NCLLink) links.next();
+            NCLLink l2 = (NCLLink) links.next();
+            assertSame(l1.getXconnector().getId(), l2.getXconnector().getId());
+
+            for(Object b : l1.getBinds()){
+                NCLBind bind = (NCLBind) b;
+                for(Object o : l2.getBinds()){
+                    NCLBind other = (NCLBind) o;
+                    if(bind.getRole().getName().equals(other.getRole().getName()))
+                        assertSame(bind.getRole().getName(), other.getRole().getName());
+                }
+            }
+            assertTrue(pool.getHits() > 0);
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test3() {
+        try{
+            File file = File.createTempFile("pool", ".ncl");
+            file.deleteOnExit();
+            FileWriter w = new FileWriter(file);
+            w.write(XML);
+            w.close();
+
+            NCLDoc doc1 = new NCLDoc();
+            doc1.setStringPool(NCLStringPool.shared());
+            doc1.loadXML(file.getPath());
+            NCLDoc doc2 = new NCLDoc();
+            doc2.setStringPool(NCLStringPool.shared());
+            doc2.loadXML(file.getPath());
+
+            NCLMedia a = (NCLMedia) doc1.getBody().getNodes().iterator().next();
+            NCLMedia b = (NCLMedia) doc2.getBody().getNodes().iterator().next();
+            assertNotSame(a, b);
+            assertSame(a.getId(), b.getId());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+
+/**
+ * Métodos auxiliares usados pelos testes para ler documentos NCL.
+ */
+public final class NCLTestUtil {
+
+    private NCLTestUtil() {}
+
+
+    /**
+     * Lê um documento NCL a partir do seu código XML.
+     */
+    public static NCLDoc load(String xml) throws SAXException, IOException {
+        return load(new InputSource(new StringReader(xml)));
+    }
+
+
+    /**
+     * Lê um documento NCL a partir dos bytes do seu código XML.
+     */
+    public static NCLDoc load(byte[] xml) throws SAXException, IOException {
+        return load(new InputSource(new ByteArrayInputStream(xml)));
+    }
+
+
+    /**
+     * Lê um documento NCL a partir de um arquivo.
+     */
+    public static NCLDoc load(File file) throws SAXException, IOException {
+        return load(new InputSource(file.toURI().toString()));
+    }
+
+
+    private static NCLDoc load(InputSource input) throws SAXException, IOException {
+        XMLReader reader = XMLReaderFactory.createXMLReader();
+
+        NCLDoc doc = new NCLDoc();
+        doc.setReader(reader);
+        reader.setContentHandler(doc);
+        reader.parse(input);
+
+        return doc;
+    }
+}
@@ -0,0 +1,193 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana;
+
+import br.uff.midiacom.ana.connector.NCLRole;
+import br.uff.midiacom.ana.link.NCLLink;
+import br.uff.midiacom.ana.node.NCLContext;
+import br.uff.midiacom.ana.node.NCLMedia;
+import br.uff.midiacom.ana.node.NCLNode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static br.uff.midiacom.ana.NCLTestUtil.load;
+
+
+public class NCLWalkerTest {
+
+    private static final String XML = "<ncl><head>"+
+        "<connectorBase><causalConnector id='onBeginStart'>"+
+            "<simpleCondition role='onBegin'/><simpleAction role='start'/>"+
+        "</causalConnector></connectorBase>"+
+        "</head><body>"+
+        "<media id='m1'/>"+
+        "<context id='c1'>"+
+            "<media id='m2'/>"+
+            "<context id='c2'><media id='m3'/></context>"+
+        "</context>"+
+        "<media id='m4' refer='m3'/>"+
+        "<link id='l1' xconnector='onBeginStart'>"+
+            "<bind role='onBegin' component='m1'/>"+
+            "<bind role='start' component='m2'/>"+
+        "</link>"+
+        "</body></ncl>";
+
+
+    @Test
+    public void test1() {
+        try{
+            NCLDoc doc = load(XML);
+
+            List<Object> elements = new ArrayList<Object>();
+            NCLWalker.collect(doc.getBody(), elements);
+
+            String ids = "";
+            for(Object e : elements){
+                if(e instanceof NCLIdentifiableElement && ((NCLIdentifiableElement) e).getId() != null)
+                    ids += ((NCLIdentifiableElement) e).getId() + " ";
+            }
+            assertEquals("c1 c2 m3 m2 m1 m4 l1", ids.trim());
+
+            ids = "";
+            for(NCLNode n : NCLWalker.nodes(doc.getBody().getNodes()))
+                ids += n.getId() + " ";
+            assertEquals("c1 c2 m3 m2 m1 m4", ids.trim());
+
+            NCLMedia m4 = null;
+            for(Object n : doc.getBody().getNodes()){
+                if(((NCLNode) n).getId().equals("m4"))
+                    m4 = (NCLMedia) n;
+            }
+            assertNotNull(m4.getRefer());
+            assertFalse(m4.getWarnings().iterator().hasNext());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test2() {
+        try{
+            NCLDoc doc = load(XML);
+
+            NCLStatistics stats = NCLStatistics.of(doc);
+            assertEquals(4, stats.getCount(NCLMedia.class));
+            assertEquals(2, stats.getCount(NCLContext.class));
+            assertEquals(1, stats.getCount(NCLLink.class));
+            assertEquals(2, stats.getCount(NCLRole.class));
+            assertEquals(6, stats.getDepth());
+
+            NCLStatistics parallel = NCLStatistics.of(doc, new ForkJoinPool(4), 1);
+            assertEquals(stats.getElements(), parallel.getElements());
+            assertEquals(stats.getDepth(), parallel.getDepth());
+            assertEquals(stats.getCounts(), parallel.getCounts());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test3() {
+        try{
+            NCLDoc doc = load(XML);
+            final List<Object> visited = new ArrayList<Object>();
+
+            Integer count = NCLWalker.walk(doc.getBody(), new NCLVisitor<Integer>() {
+
+                public boolean visit(Object element, int depth) {
+                    visited.add(element);
+                    return !(element instanceof NCLContext);
+                }
+
+
+                public Integer leave(Object element, int depth, List<Integer> results) {
+                    int sum = 1;
+                    for(Integer r : results)
+                        sum += r;
+                    return sum;
+                }
+            });
+
+            assertEquals(visited.size(), count.intValue());
+            for(Object e : visited){
+                if(e instanceof NCLMedia)
+                    assertNotSame("m2", ((NCLMedia) e).getId());
+            }
+            assertEquals(7, visited.size());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+
+
+    @Test
+    public void test4() {
+        try{
+            NCLDoc doc = new NCLDoc();
+            doc.setBody(new NCLBody());
+
+            NCLElement parent = doc.getBody();
+            for(int i = 0; i < 20000; i++){
+                NCLContext c = new NCLContext("c" + i);
+                if(parent instanceof NCLBody)
+                    ((NCLBody) parent).addNode(c);
+                else
+                    ((NCLContext) parent).addNode(c);
+                parent = c;
+            }
+            ((NCLContext) parent).addNode(new NCLMedia("m"));
+
+            NCLStatistics stats = NCLStatistics.of(doc);
+            assertEquals(20003, stats.getElements());
+            assertEquals(20003, stats.getDepth());
+
+            NCLStatistics parallel = NCLStatistics.of(doc, new ForkJoinPool(), 64);
+            assertEquals(stats.getCounts(), parallel.getCounts());
+        }
+        catch(Exception ex){
+            fail(ex.getMessage());
+        }
+    }
+}
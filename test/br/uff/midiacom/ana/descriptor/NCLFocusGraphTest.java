@@ -0,0 +1,123 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana.descriptor;
+
+import br.uff.midiacom.ana.NCLDoc;
+import br.uff.midiacom.ana.NCLValues.NCLKey;
+import br.uff.midiacom.ana.node.NCLMedia;
+import java.io.IOException;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+import static org.junit.Assert.*;
+import static br.uff.midiacom.ana.NCLTestUtil.load;
+
+
+public class NCLFocusGraphTest {
+
+    private int count(Iterable<String> warnings) {
+        int n = 0;
+        for(String w : warnings)
+            n++;
+        return n;
+    }
+
+    @Test
+    public void test1() {
+        try{
+            NCLDoc doc = load("<ncl><head><descriptorBase>"+
+                "<descriptor id='d1' focusIndex='1' moveRight='2'/>"+
+                "<descriptor id='d2' focusIndex='2' moveLeft='1' moveRight='3'/>"+
+                "<descriptor id='d3' focusIndex='3' moveLeft='2'/>"+
+                "</descriptorBase></head><body>"+
+                "<media id='m1' descriptor='d1'/>"+
+                "<context id='c1'><media id='m2' descriptor='d2'/></context>"+
+                "<media id='m3' descriptor='d3'/>"+
+                "<media id='m4'/>"+
+                "</body></ncl>");
+
+            NCLFocusGraph graph = new NCLFocusGraph(doc);
+            assertEquals(3, graph.size());
+            assertEquals("m1", graph.getMedia(graph.getInitialFocus()).getId());
+
+            NCLMedia m = graph.getMedia(graph.getInitialFocus());
+            m = graph.move(m, NCLKey.RIGHT);
+            assertEquals("m2", m.getId());
+            m = graph.move(m, NCLKey.RIGHT);
+            assertEquals("m3", m.getId());
+            assertNull(graph.move(m, NCLKey.RIGHT));
+            assertNull(graph.move(m, NCLKey.UP));
+            assertEquals("m2", graph.move(m, NCLKey.LEFT).getId());
+            assertEquals(NCLFocusGraph.NONE, graph.move(graph.getInitialFocus(), NCLKey.ENTER));
+
+            assertEquals(0, count(graph.getWarnings()));
+        }
+        catch(SAXException ex){
+            fail(ex.getMessage());
+        }
+        catch(IOException ex){
+            fail(ex.getMessage());
+        }
+    }
+
+    @Test
+    public void test2() {
+        try{
+            NCLDoc doc = load("<ncl><head><descriptorBase>"+
+                "<descriptor id='d1' focusIndex='1' moveRight='2' moveDown='1'/>"+
+                "<descriptor id='d2' focusIndex='2'/>"+
+                "<descriptor id='d3' focusIndex='3'/>"+
+                "<descriptor id='d4' focusIndex='4'/>"+
+                "</descriptorBase></head><body>"+
+                "<media id='m1' descriptor='d1'/>"+
+                "<media id='m2' descriptor='d2'/>"+
+                "<media id='m3' descriptor='d3'/>"+
+                "</body></ncl>");
+
+            NCLFocusGraph graph = new NCLFocusGraph(doc);
+
+            // assimetria m1 -> m2, m3 inalcançável, ciclo moveDown em m1, d4 não usado
+            assertEquals(4, count(graph.getWarnings()));
+        }
+        catch(SAXException ex){
+            fail(ex.getMessage());
+        }
+        catch(IOException ex){
+            fail(ex.getMessage());
+        }
+    }
+}
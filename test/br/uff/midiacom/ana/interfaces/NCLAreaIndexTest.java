@@ -0,0 +1,123 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana.interfaces;
+
+import br.uff.midiacom.ana.NCLInvalidIdentifierException;
+import br.uff.midiacom.ana.NCLValues.NCLSampleType;
+import br.uff.midiacom.ana.node.NCLMedia;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class NCLAreaIndexTest {
+
+    @Test
+    public void test1() throws NCLInvalidIdentifierException {
+        NCLMedia media = new NCLMedia("m1");
+
+        NCLArea a1 = new NCLArea("a1");
+        a1.setBegin(new NCLTime("2s"));
+        a1.setEnd(new NCLTime("5s"));
+        NCLArea a2 = new NCLArea("a2");
+        a2.setBegin(new NCLTime("4.5s"));
+        NCLArea a3 = new NCLArea("a3");
+        a3.setFirst(new NCLSample(1, NCLSampleType.S));
+        a3.setLast(new NCLSample(3, NCLSampleType.NPT));
+        NCLArea a4 = new NCLArea("a4");
+        a4.setFirst(new NCLSample(10, NCLSampleType.F));
+        NCLArea a5 = new NCLArea("a5");
+        a5.setLabel("label");
+
+        media.addArea(a1);
+        media.addArea(a2);
+        media.addArea(a3);
+        media.addArea(a4);
+        media.addArea(a5);
+
+        NCLAreaIndex index = media.getAreaIndex();
+        assertEquals(3, index.size());
+
+        List active = index.getActive(0.5);
+        assertTrue(active.isEmpty());
+
+        active = index.getActive(2.5);
+        assertEquals(2, active.size());
+        assertSame(a3, active.get(0));
+        assertSame(a1, active.get(1));
+
+        active = index.getActive(4.75);
+        assertEquals(2, active.size());
+        assertSame(a1, active.get(0));
+        assertSame(a2, active.get(1));
+
+        active = index.getActive(100);
+        assertEquals(1, active.size());
+        assertSame(a2, active.get(0));
+
+        assertEquals(1.0, index.nextBoundary(0), 0.0);
+        assertEquals(2.0, index.nextBoundary(1), 0.0);
+        assertEquals(4.5, index.nextBoundary(3), 0.0);
+        assertEquals(5.0, index.nextBoundary(4.5), 0.0);
+        assertTrue(Double.isInfinite(index.nextBoundary(5)));
+    }
+
+    @Test
+    public void test2() throws NCLInvalidIdentifierException {
+        NCLMedia media = new NCLMedia("m1");
+
+        NCLArea a1 = new NCLArea("a1");
+        a1.setBegin(new NCLTime("0:1:0"));
+        a1.setEnd(new NCLTime("0:2:0"));
+        media.addArea(a1);
+
+        NCLAreaIndex index = media.getAreaIndex();
+        assertSame(index, media.getAreaIndex());
+        assertEquals(1, index.getActive(90).size());
+        assertTrue(index.isActive(a1, 60));
+        assertFalse(index.isActive(a1, 120));
+
+        a1.setEnd(new NCLTime("70s"));
+        assertNotSame(index, media.getAreaIndex());
+        assertTrue(media.getAreaIndex().getActive(90).isEmpty());
+
+        media.removeArea(a1);
+        assertEquals(0, media.getAreaIndex().size());
+        assertTrue(Double.isInfinite(media.getAreaIndex().nextBoundary(0)));
+    }
+}
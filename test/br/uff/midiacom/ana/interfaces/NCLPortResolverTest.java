@@ -0,0 +1,257 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana.interfaces;
+
+import br.uff.midiacom.ana.NCLDoc;
+import br.uff.midiacom.ana.node.NCLContext;
+import br.uff.midiacom.ana.node.NCLMedia;
+import br.uff.midiacom.ana.node.NCLSwitch;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static br.uff.midiacom.ana.NCLTestUtil.load;
+
+
+public class NCLPortResolverTest {
+
+    @Test
+    public void test1() {
+        try{
+            NCLDoc doc = load("<ncl><head/><body>"+
+                "<port id='p0' component='ctx' interface='pc'/>"+
+                "<port id='p1' component='m3'/>"+
+                "<context id='ctx'>"+
+                    "<port id='pc' component='sw' interface='sp'/>"+
+                    "<switch id='sw'>"+
+                        "<switchPort id='sp'>"+
+                            "<mapping component='m1' interface='a1'/>"+
+                            "<mapping component='m2'/>"+
+                        "</switchPort>"+
+                        "<media id='m1'><area id='a1' begin='1s'/></media>"+
+                        "<media id='m2'/>"+
+                    "</switch>"+
+                "</context>"+
+                "<media id='m3'/>"+
+                "</body></ncl>");
+
+            NCLPortResolver resolver = new NCLPortResolver(doc);
+            assertFalse(resolver.getWarnings().iterator().hasNext());
+            assertEquals(4, resolver.size());
+
+            List<NCLPortResolver.Target> entry = resolver.getEntryPoints();
+            assertEquals(3, entry.size());
+            assertEquals("m1", entry.get(0).getNode().getId());
+            assertEquals("a1", entry.get(0).getInterface().getId());
+            assertEquals("m2", entry.get(1).getNode().getId());
+            assertNull(entry.get(1).getInterface());
+            assertEquals("m3", entry.get(2).getNode().getId());
+
+            NCLContext ctx = (NCLContext) doc.getBody().getNodes().iterator().next();
+            NCLPort pc = (NCLPort) ctx.getPorts().iterator().next();
+            NCLSwitch sw = (NCLSwitch) ctx.getNodes().iterator().next();
+            NCLSwitchPort sp = (NCLSwitchPort) sw.getPorts().iterator().next();
+            NCLMapping m2 = null;
+            for(Object m : sp.getMappings()){
+                if(((NCLMapping) m).getInterface() == null)
+                    m2 = (NCLMapping) m;
+            }
+            assertEquals(resolver.getTargets(sp), resolver.getTargets(pc));
+
+            // alterar o mapeamento descarta apenas a cadeia que passa por ele
+            NCLPort p1 = null;
+            for(Object p : doc.getBody().getPorts()){
+                if(((NCLPort) p).getId().equals("p1"))
+                    p1 = (NCLPort) p;
+            }
+            List<NCLPortResolver.Target> p1Targets = resolver.getTargets(p1);
+            NCLMedia m1 = (NCLMedia) entry.get(0).getNode();
+            m2.setComponent(m1);
+            assertEquals(1, resolver.size());
+            assertSame(p1Targets, resolver.getTargets(p1));
+
+            entry = resolver.getEntryPoints();
+            assertEquals(3, entry.size());
+            assertSame(m1, entry.get(1).getNode());
+            assertNull(entry.get(1).getInterface());
+
+            pc.setInterface(null);
+            entry = resolver.getEntryPoints();
+            assertEquals(2, entry.size());
+            assertSame(sw, entry.get(0).getNode());
+            assertEquals(2, resolver.getTargets(sp).size());
+        }
+        catch(Exception e){
+            fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void test2() {
+        try{
+            int levels = 30;
+            String xml = "<ncl><head/><body><port id='p0' component='c1' interface='p1'/>";
+            for(int i = 1; i <= levels; i++){
+                xml += "<context id='c" + i + "'>";
+                if(i < levels)
+                    xml += "<port id='p" + i + "' component='c" + (i + 1) + "' interface='p" + (i + 1) + "'/>";
+                else
+                    xml += "<port id='p" + i + "' component='m'/><media id='m'/>";
+            }
+            for(int i = 1; i <= levels; i++)
+                xml += "</context>";
+            xml += "</body></ncl>";
+
+            NCLDoc doc = load(xml);
+            NCLPortResolver resolver = new NCLPortResolver(doc);
+            assertEquals(levels + 1, resolver.size());
+
+            List<NCLPortResolver.Target> entry = resolver.getEntryPoints();
+            assertEquals(1, entry.size());
+            assertEquals("m", entry.get(0).getNode().getId());
+        }
+        catch(Exception e){
+            fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void test3() {
+        try{
+            NCLDoc doc = load("<ncl><head/><body>"+
+                "<port id='p0' component='sw' interface='sp'/>"+
+                "<switch id='sw'>"+
+                    "<switchPort id='sp'>"+
+                        "<mapping component='ctx' interface='pc'/>"+
+                        "<mapping component='m2'/>"+
+                    "</switchPort>"+
+                    "<context id='ctx'>"+
+                        "<port id='pc' component='m3'/>"+
+                        "<media id='m3'/>"+
+                    "</context>"+
+                    "<media id='m2'/>"+
+                "</switch>"+
+                "</body></ncl>");
+
+            NCLSwitch sw = (NCLSwitch) doc.getBody().getNodes().iterator().next();
+            NCLSwitchPort sp = (NCLSwitchPort) sw.getPorts().iterator().next();
+            NCLContext ctx = null;
+            for(Object n : sw.getNodes()){
+                if(n instanceof NCLContext)
+                    ctx = (NCLContext) n;
+            }
+            NCLPort pc = (NCLPort) ctx.getPorts().iterator().next();
+            pc.setComponent(sw);
+            pc.setInterface(sp);
+
+            // a porta pc fecha a cadeia cíclica e não pode guardar um resultado parcial
+            NCLPortResolver resolver = new NCLPortResolver(doc);
+            assertTrue(resolver.getWarnings().iterator().hasNext());
+            assertEquals(1, resolver.getEntryPoints().size());
+            assertEquals("m2", resolver.getTargets(sp).get(0).getNode().getId());
+            assertEquals(1, resolver.getTargets(pc).size());
+            assertEquals("m2", resolver.getTargets(pc).get(0).getNode().getId());
+
+            // adicionar ou remover uma porta do corpo descarta os pontos de entrada
+            NCLPort p1 = new NCLPort("p1");
+            p1.setComponent(ctx);
+            doc.getBody().addPort(p1);
+            assertEquals(2, resolver.getEntryPoints().size());
+
+            doc.getBody().removePort(p1);
+            assertEquals(1, resolver.getEntryPoints().size());
+        }
+        catch(Exception e){
+            fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void test4() {
+        try{
+            NCLDoc doc = load("<ncl><head/><body>"+
+                "<port id='p0' component='c0' interface='pc0'/>"+
+                "<port id='p1' component='sw' interface='sp'/>"+
+                "<context id='c0'><port id='pc0' component='m'/><media id='m'/></context>"+
+                "<switch id='sw'>"+
+                    "<switchPort id='sp'><mapping component='m1' interface='a1'/></switchPort>"+
+                    "<media id='m1'><area id='a1' begin='1s'/></media>"+
+                "</switch>"+
+                "</body></ncl>");
+
+            NCLPortResolver resolver = new NCLPortResolver(doc);
+            assertEquals(2, resolver.getEntryPoints().size());
+
+            NCLContext c0 = null;
+            NCLSwitch sw = null;
+            for(Object n : doc.getBody().getNodes()){
+                if(n instanceof NCLContext)
+                    c0 = (NCLContext) n;
+                else
+                    sw = (NCLSwitch) n;
+            }
+            NCLPort pc0 = (NCLPort) c0.getPorts().iterator().next();
+            NCLSwitchPort sp = (NCLSwitchPort) sw.getPorts().iterator().next();
+
+            // as portas retiradas de contextos e switches não produzem alvos
+            assertTrue(c0.removePort(pc0));
+            List<NCLPortResolver.Target> entry = resolver.getEntryPoints();
+            assertEquals(1, entry.size());
+            assertEquals("m1", entry.get(0).getNode().getId());
+
+            assertTrue(c0.addPort(pc0));
+            assertEquals(2, resolver.getEntryPoints().size());
+
+            assertTrue(sw.removePort(sp));
+            assertEquals(1, resolver.getEntryPoints().size());
+            assertTrue(sw.addPort(sp));
+            assertEquals(2, resolver.getEntryPoints().size());
+
+            // a remoção de um nó descarta as cadeias que chegam a ele
+            NCLMedia m = (NCLMedia) c0.getNodes().iterator().next();
+            assertTrue(c0.removeNode(m));
+            assertEquals(1, resolver.getEntryPoints().size());
+
+            assertTrue(doc.getBody().removeNode(sw));
+            assertEquals(0, resolver.getEntryPoints().size());
+            assertTrue(resolver.getWarnings().iterator().hasNext());
+        }
+        catch(Exception e){
+            fail(e.getMessage());
+        }
+    }
+}
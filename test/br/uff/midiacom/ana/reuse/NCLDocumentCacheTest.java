@@ -0,0 +1,160 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana.reuse;
+
+import br.uff.midiacom.ana.NCLDoc;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class NCLDocumentCacheTest {
+
+    private File write(File dir, String name, String xml) throws IOException {
+        File file = new File(dir, name);
+        FileWriter w = new FileWriter(file);
+        w.write(xml);
+        w.close();
+        return file;
+    }
+
+    private File tempDir() throws IOException {
+        File dir = File.createTempFile("ncl", "");
+        dir.delete();
+        dir.mkdir();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    @Test
+    public void test1() throws Exception {
+        File dir = tempDir();
+        File f1 = write(dir, "conn.ncl", "<ncl id='conn'><head><connectorBase>"+
+                "<causalConnector id='onBeginStart'/></connectorBase></head></ncl>");
+        File f2 = write(dir, "other.ncl", "<ncl id='other'/>");
+        File f3 = write(dir, "third.ncl", "<ncl id='third'/>");
+
+        NCLDocumentCache cache = new NCLDocumentCache(2);
+        NCLDoc d1 = cache.load(f1.toURI());
+        assertEquals("conn", d1.getId());
+        assertSame(d1, cache.load(new File(dir, "./conn.ncl").toURI()));
+        assertEquals(1, cache.getLoads());
+
+        cache.load(f2.toURI());
+        cache.load(f1.toURI());
+        cache.load(f3.toURI());
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.getLoads());
+
+        // other.ncl foi o documento usado há mais tempo
+        assertSame(d1, cache.load(f1.toURI()));
+        cache.load(f2.toURI());
+        assertEquals(4, cache.getLoads());
+
+        write(dir, "conn.ncl", "<ncl id='conn2'/>");
+        f1.setLastModified(f1.lastModified() + 2000);
+        assertEquals("conn2", cache.load(f1.toURI()).getId());
+
+        try{
+            cache.load(new File(dir, "missing.ncl").toURI());
+            fail();
+        }
+        catch(Exception ex){}
+    }
+
+    @Test
+    public void test2() throws Exception {
+        File dir = tempDir();
+        final File f1 = write(dir, "conn.ncl", "<ncl id='conn'/>");
+        final NCLDocumentCache cache = new NCLDocumentCache(4);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<NCLDoc> first = new AtomicReference<NCLDoc>();
+        final AtomicReference<Boolean> same = new AtomicReference<Boolean>(true);
+
+        Thread[] threads = new Thread[8];
+        for(int i = 0; i < threads.length; i++){
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try{
+                        start.await();
+                        NCLDoc doc = cache.load(f1.toURI());
+                        if(!first.compareAndSet(null, doc) && first.get() != doc)
+                            same.set(false);
+                    }
+                    catch(Exception ex){
+                        same.set(false);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for(Thread t : threads)
+            t.join();
+
+        assertTrue(same.get());
+        assertEquals(1, cache.getLoads());
+    }
+
+    @Test
+    public void test3() throws Exception {
+        File dir = tempDir();
+        write(dir, "conn.ncl", "<ncl id='conn'/>");
+        File app = write(dir, "app.ncl", "<ncl id='app'><head>"+
+                "<connectorBase><importBase alias='conn' documentURI='conn.ncl'/></connectorBase>"+
+                "<regionBase><importBase alias='missing' documentURI='missing.ncl'/></regionBase>"+
+                "</head></ncl>");
+
+        NCLDocumentCache cache = new NCLDocumentCache(4);
+        NCLImportResolver resolver = new NCLImportResolver(cache);
+        NCLDoc doc = cache.load(app.toURI());
+
+        assertEquals(2, NCLImportResolver.getImports(doc).size());
+        List<NCLImport> resolved = resolver.resolve(doc, app.toURI());
+        assertEquals(1, resolved.size());
+        assertEquals("conn", resolved.get(0).getAlias());
+        assertEquals("conn", resolved.get(0).getImportedDocument().getId());
+        assertTrue(resolver.getWarnings().iterator().hasNext());
+    }
+}
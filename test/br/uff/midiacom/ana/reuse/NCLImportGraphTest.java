@@ -0,0 +1,183 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana.reuse;
+
+import br.uff.midiacom.ana.NCLDoc;
+import br.uff.midiacom.ana.descriptor.NCLDescriptor;
+import br.uff.midiacom.ana.link.NCLBind;
+import br.uff.midiacom.ana.connector.NCLCausalConnector;
+import br.uff.midiacom.ana.link.NCLLink;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static br.uff.midiacom.ana.NCLTestUtil.load;
+
+
+public class NCLImportGraphTest {
+
+    private File write(File dir, String name, String xml) throws IOException {
+        File file = new File(dir, name);
+        FileWriter w = new FileWriter(file);
+        w.write(xml);
+        w.close();
+        return file;
+    }
+
+    private File tempDir() throws IOException {
+        File dir = File.createTempFile("ncl", "");
+        dir.delete();
+        dir.mkdir();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    @Test
+    public void test1() throws Exception {
+        File dir = tempDir();
+        write(dir, "conn.ncl", "<ncl id='conn'><head><connectorBase>"+
+                "<causalConnector id='onBeginStart'/></connectorBase></head></ncl>");
+        write(dir, "layout.ncl", "<ncl id='layout'><head>"+
+                "<regionBase><region id='r1'><region id='r2'/></region></regionBase>"+
+                "<descriptorBase><descriptor id='d1' region='r2'/></descriptorBase>"+
+                "</head></ncl>");
+        write(dir, "lib.ncl", "<ncl id='lib'><head><importedDocumentBase>"+
+                "<importNCL alias='layout' documentURI='layout.ncl'/>"+
+                "</importedDocumentBase></head></ncl>");
+        File app = write(dir, "app.ncl", "<ncl id='app'><head>"+
+                "<importedDocumentBase><importNCL alias='lib' documentURI='lib.ncl'/></importedDocumentBase>"+
+                "<descriptorBase><descriptor id='d2' region='lib#layout#r2'/></descriptorBase>"+
+                "<connectorBase><importBase alias='conn' documentURI='conn.ncl'/></connectorBase>"+
+                "</head><body><media id='m1'/>"+
+                "<link id='l1' xconnector='conn#onBeginStart'><bind role='onBegin' component='m1' descriptor='lib#layout#d1'/></link>"+
+                "</body></ncl>");
+
+        NCLDocumentCache cache = new NCLDocumentCache(8);
+        NCLDoc doc = load(app);
+        NCLImportGraph graph = new NCLImportGraph(doc, app.toURI(), new NCLImportResolver(cache));
+
+        assertFalse(graph.hasCycle());
+        assertEquals(4, graph.getDocuments().size());
+        assertSame(doc, graph.getDocuments().get(3));
+        assertSame(graph, doc.getImportGraph());
+
+        NCLDescriptor d2 = (NCLDescriptor) doc.getHead().getDescriptorBase().getDescriptors().iterator().next();
+        assertEquals("lib#layout", d2.getRegionAlias());
+        assertEquals("r2", d2.getRegion().getId());
+        assertNotNull(d2.getRegion().getParent());
+
+        NCLLink link = (NCLLink) doc.getBody().getLinks().iterator().next();
+        NCLBind bind = (NCLBind) link.getBinds().iterator().next();
+        assertNotNull(link.getXconnector().getParent());
+        assertEquals("onBeginStart", link.getXconnector().getId());
+        assertNotNull(bind.getDescriptor().getParent());
+        assertEquals("r2", bind.getDescriptor().getRegion().getId());
+
+        assertTrue(link.parse(0).contains("xconnector='conn#onBeginStart'"));
+        assertTrue(d2.parse(0).contains("region='lib#layout#r2'"));
+        assertNotNull(graph.find(doc, "lib#layout#d1"));
+        assertNull(graph.find(doc, "layout#d1"));
+    }
+
+    @Test
+    public void test2() throws Exception {
+        File dir = tempDir();
+        write(dir, "a.ncl", "<ncl id='a'><head><importedDocumentBase>"+
+                "<importNCL alias='b' documentURI='b.ncl'/>"+
+                "</importedDocumentBase><connectorBase><causalConnector id='ca'/></connectorBase></head></ncl>");
+        write(dir, "b.ncl", "<ncl id='b'><head><importedDocumentBase>"+
+                "<importNCL alias='a' documentURI='a.ncl'/>"+
+                "</importedDocumentBase><connectorBase><causalConnector id='cb'/></connectorBase></head></ncl>");
+
+        NCLDocumentCache cache = new NCLDocumentCache(8);
+        File a = new File(dir, "a.ncl");
+        NCLDoc doc = cache.load(a.toURI());
+        NCLImportGraph graph = new NCLImportGraph(doc, a.toURI(), new NCLImportResolver(cache));
+
+        assertTrue(graph.hasCycle());
+        assertTrue(graph.getWarnings().iterator().hasNext());
+        assertEquals(2, graph.getDocuments().size());
+        assertNotNull(graph.find(doc, "ca"));
+        assertNotNull(graph.find(doc, "b#cb"));
+        assertNull(graph.find(doc, "b#a#ca"));
+    }
+
+    @Test
+    public void test3() throws Exception {
+        File dir = tempDir();
+        write(dir, "conn.ncl", "<ncl id='conn'><head><connectorBase>"+
+                "<causalConnector id='onBeginStart'/></connectorBase></head></ncl>");
+        write(dir, "lib.ncl", "<ncl id='lib'><head>"+
+                "<connectorBase><importBase alias='conn' documentURI='conn.ncl'/></connectorBase>"+
+                "</head><body><media id='m1'/>"+
+                "<link id='l1' xconnector='conn#onBeginStart'><bind role='onBegin' component='m1'/></link>"+
+                "</body></ncl>");
+        File app1 = write(dir, "app1.ncl", "<ncl id='app1'><head><importedDocumentBase>"+
+                "<importNCL alias='lib' documentURI='lib.ncl'/></importedDocumentBase></head></ncl>");
+        File app2 = write(dir, "app2.ncl", "<ncl id='app2'><head><importedDocumentBase>"+
+                "<importNCL alias='lib' documentURI='lib.ncl'/></importedDocumentBase></head></ncl>");
+
+        // os documentos da cache são compartilhados pelos grafos e não são alterados
+        NCLDocumentCache cache = new NCLDocumentCache(8);
+        NCLImportGraph graph1 = new NCLImportGraph(load(app1), app1.toURI(), new NCLImportResolver(cache));
+        NCLImportGraph graph2 = new NCLImportGraph(load(app2), app2.toURI(), new NCLImportResolver(cache));
+
+        NCLDoc lib = cache.load(new File(dir, "lib.ncl").toURI());
+        assertSame(lib, graph1.getDocuments().get(1));
+        assertSame(lib, graph2.getDocuments().get(1));
+        assertNull(lib.getImportGraph());
+
+        NCLImport imp = (NCLImport) lib.getHead().getConnectorBase().getImportBases().iterator().next();
+        assertNull(imp.getImportedDocument());
+        assertSame(graph1.getDocuments().get(0), graph1.getImportedDocument(imp));
+
+        NCLLink link = (NCLLink) lib.getBody().getLinks().iterator().next();
+        assertNull(link.getXconnector().getParent());
+        assertNotNull(graph1.getReference(link).getParent());
+        assertSame(graph1.getReference(link), graph2.getReference(link));
+
+        // atribuir outro conector descarta o apelido
+        NCLLink own = new NCLLink();
+        own.setXconnector(new NCLCausalConnector("c1"), "conn");
+        assertTrue(own.parse(0).contains("xconnector='conn#c1'"));
+        own.setXconnector(new NCLCausalConnector("c2"));
+        assertNull(own.getXconnectorAlias());
+        assertTrue(own.parse(0).contains("xconnector='c2'"));
+    }
+}
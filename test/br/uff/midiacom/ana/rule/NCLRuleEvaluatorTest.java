@@ -0,0 +1,167 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana.rule;
+
+import br.uff.midiacom.ana.NCLDoc;
+import br.uff.midiacom.ana.NCLElement;
+import br.uff.midiacom.ana.descriptor.NCLDescriptor;
+import br.uff.midiacom.ana.descriptor.NCLDescriptorSwitch;
+import br.uff.midiacom.ana.node.NCLNode;
+import br.uff.midiacom.ana.node.NCLSwitch;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+import static org.junit.Assert.*;
+import static br.uff.midiacom.ana.NCLTestUtil.load;
+
+
+public class NCLRuleEvaluatorTest {
+
+    private static final String XML = "<ncl><head><ruleBase>"+
+                "<rule id='rEn' var='system.language' comparator='eq' value='en'/>"+
+                "<rule id='rPt' var='system.language' comparator='eq' value='pt'/>"+
+                "<compositeRule id='rBig' operator='and'>"+
+                "<rule id='rW' var='system.screenSize' comparator='gte' value='1280'/>"+
+                "<rule id='rEn2' var='system.language' comparator='eq' value='en'/>"+
+                "</compositeRule>"+
+                "<rule id='rCap' var='system.caption' comparator='ne' value='off'/>"+
+                "</ruleBase>"+
+                "<descriptorBase><descriptorSwitch id='ds'>"+
+                "<bindRule rule='rCap' constituent='d1'/>"+
+                "<defaultDescriptor descriptor='d2'/>"+
+                "<descriptor id='d1'/><descriptor id='d2'/>"+
+                "</descriptorSwitch></descriptorBase></head>"+
+                "<body><media id='settings' type='application/x-ginga-settings'>"+
+                "<property name='system.language' value='pt'/>"+
+                "<property name='system.screenSize' value='1920'/>"+
+                "<property name='system.caption' value='off'/>"+
+                "</media>"+
+                "<switch id='s1'>"+
+                "<bindRule rule='rBig' constituent='mBig'/>"+
+                "<bindRule rule='rPt' constituent='mPt'/>"+
+                "<defaultComponent component='mDef'/>"+
+                "<media id='mBig'/><media id='mPt'/><media id='mDef'/>"+
+                "</switch></body></ncl>";
+
+
+    private NCLSwitch getSwitch(NCLDoc doc) {
+        for(Object n : doc.getBody().getNodes()){
+            if(n instanceof NCLSwitch)
+                return (NCLSwitch) n;
+        }
+        return null;
+    }
+
+
+    @Test
+    public void test1() {
+        try{
+            NCLDoc doc = load(XML);
+            NCLSettings settings = new NCLSettings();
+            settings.load(doc);
+
+            NCLRuleEvaluator evaluator = new NCLRuleEvaluator(settings);
+            evaluator.compile(doc.getHead().getRuleBase());
+
+            NCLNode result = evaluator.select(getSwitch(doc));
+            assertEquals("mPt", result.getId());
+
+            settings.setValue("system.language", "en");
+            result = evaluator.select(getSwitch(doc));
+            assertEquals("mBig", result.getId());
+
+            settings.setValue("system.language", "es");
+            result = evaluator.select(getSwitch(doc));
+            assertEquals("mDef", result.getId());
+        }
+        catch(SAXException ex){
+            fail(ex.getMessage());
+        }
+        catch(IOException ex){
+            fail(ex.getMessage());
+        }
+    }
+
+    @Test
+    public void test2() {
+        try{
+            NCLDoc doc = load(XML);
+            NCLSettings settings = new NCLSettings();
+            settings.load(doc);
+
+            NCLRuleEvaluator evaluator = new NCLRuleEvaluator(settings);
+            Map<NCLElement, NCLElement> result = evaluator.selectAll(doc);
+            assertEquals(2, result.size());
+
+            NCLDescriptorSwitch ds = (NCLDescriptorSwitch) doc.getHead().getDescriptorBase().getDescriptors().iterator().next();
+            assertEquals("d2", ((NCLDescriptor) result.get(ds)).getId());
+            assertEquals("mPt", ((NCLNode) result.get(getSwitch(doc))).getId());
+
+            settings.setValue("system.caption", "on");
+            result = evaluator.selectAll(doc);
+            assertEquals("d1", ((NCLDescriptor) result.get(ds)).getId());
+        }
+        catch(SAXException ex){
+            fail(ex.getMessage());
+        }
+        catch(IOException ex){
+            fail(ex.getMessage());
+        }
+    }
+
+    @Test
+    public void test3() {
+        NCLSettings settings = new NCLSettings();
+        assertEquals(0, settings.getVersion());
+
+        assertTrue(settings.setValue("system.memory", "64"));
+        assertFalse(settings.setValue("system.memory", "64"));
+        assertEquals(1, settings.getVersion());
+        assertEquals(1, settings.getVersion("system.memory"));
+
+        settings.setValue("system.CPU", "arm");
+        List<String> names = new ArrayList<String>();
+        names.add("system.memory");
+        assertFalse(settings.changedSince(1, names));
+        names.add("system.CPU");
+        assertTrue(settings.changedSince(1, names));
+    }
+}
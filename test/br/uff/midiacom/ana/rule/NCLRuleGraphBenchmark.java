@@ -0,0 +1,182 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana.rule;
+
+import br.uff.midiacom.ana.NCLInvalidIdentifierException;
+import br.uff.midiacom.ana.NCLValues.NCLComparator;
+import br.uff.midiacom.ana.NCLValues.NCLOperator;
+import br.uff.midiacom.ana.interfaces.NCLProperty;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * Compara a avaliação ingênua (cada switch avalia suas regras recursivamente)
+ * com a avaliação pelo grafo compartilhado de regras em uma base com 10 mil
+ * regras compostas. Não faz parte dos testes: deve ser executada pelo método
+ * <i>main</i>, que imprime os tempos e o número de avaliações de cada abordagem.
+ */
+public class NCLRuleGraphBenchmark {
+
+    private static final int VARIABLES = 20;
+    private static final int ATOMS = 400;
+    private static final int RULES = 10000;
+    private static final int SWITCHES = 500;
+    private static final int BINDS = 20;
+    private static final int ROUNDS = 20;
+
+
+    public static void main(String[] args) throws NCLInvalidIdentifierException {
+        Random random = new Random(42);
+        NCLComparator[] comparators = NCLComparator.values();
+
+        // regras simples possíveis (var, comparator, value)
+        String[][] atoms = new String[ATOMS][];
+        for(int i = 0; i < ATOMS; i++){
+            atoms[i] = new String[]{"v" + random.nextInt(VARIABLES),
+                                    Integer.toString(random.nextInt(comparators.length)),
+                                    Integer.toString(random.nextInt(10))};
+        }
+
+        NCLRuleBase base = new NCLRuleBase();
+        List<NCLTestRule> rules = new ArrayList<NCLTestRule>();
+        for(int i = 0; i < RULES; i++){
+            NCLCompositeRule comp = new NCLCompositeRule("c" + i);
+            comp.setOperator(random.nextBoolean() ? NCLOperator.AND : NCLOperator.OR);
+            int n = 2 + random.nextInt(4);
+            for(int j = 0; j < n; j++){
+                String[] a = atoms[random.nextInt(ATOMS)];
+                NCLRule rule = new NCLRule("c" + i + "r" + j);
+                rule.setVar(new NCLProperty(a[0]));
+                rule.setComparator(comparators[Integer.parseInt(a[1])]);
+                rule.setValue(a[2]);
+                comp.addRule(rule);
+            }
+            base.addRule(comp);
+            rules.add(comp);
+        }
+
+        int[][] switches = new int[SWITCHES][BINDS];
+        for(int i = 0; i < SWITCHES; i++){
+            for(int j = 0; j < BINDS; j++)
+                switches[i][j] = random.nextInt(RULES);
+        }
+
+        NCLSettings settings = new NCLSettings();
+        for(int i = 0; i < VARIABLES; i++)
+            settings.setValue("v" + i, Integer.toString(random.nextInt(10)));
+
+        NCLRuleGraph graph = new NCLRuleGraph();
+        graph.compile(base);
+
+        long naiveTime = 0, graphTime = 0, naiveAtoms = 0;
+        for(int round = 0; round < ROUNDS; round++){
+            settings.setValue("v" + random.nextInt(VARIABLES), Integer.toString(random.nextInt(10)));
+
+            int[] naive = new int[SWITCHES];
+            long start = System.nanoTime();
+            for(int i = 0; i < SWITCHES; i++){
+                naive[i] = -1;
+                for(int j = 0; j < BINDS; j++){
+                    long[] count = new long[1];
+                    if(naiveEvaluate(rules.get(switches[i][j]), settings, count)){
+                        naive[i] = j;
+                        naiveAtoms += count[0];
+                        break;
+                    }
+                    naiveAtoms += count[0];
+                }
+            }
+            naiveTime += System.nanoTime() - start;
+
+            int[] shared = new int[SWITCHES];
+            start = System.nanoTime();
+            for(int i = 0; i < SWITCHES; i++){
+                shared[i] = -1;
+                for(int j = 0; j < BINDS; j++){
+                    if(graph.evaluate(rules.get(switches[i][j]), settings)){
+                        shared[i] = j;
+                        break;
+                    }
+                }
+            }
+            graphTime += System.nanoTime() - start;
+
+            for(int i = 0; i < SWITCHES; i++){
+                if(naive[i] != shared[i])
+                    throw new IllegalStateException("Switch " + i + " selected bind " + shared[i] + " instead of " + naive[i]);
+            }
+        }
+
+        System.out.println("NCLRuleGraphBenchmark: " + RULES + " rules, " + graph.size() + " graph nodes");
+        System.out.println("  naive:  " + (naiveTime / 1000000) + " ms, " + naiveAtoms + " atomic evaluations");
+        System.out.println("  shared: " + (graphTime / 1000000) + " ms, " + graph.getEvaluations() + " atomic evaluations");
+    }
+
+
+    private static boolean naiveEvaluate(NCLTestRule rule, NCLSettings settings, long[] count) {
+        if(rule instanceof NCLCompositeRule){
+            NCLCompositeRule comp = (NCLCompositeRule) rule;
+            boolean and = comp.getOperator() == NCLOperator.AND;
+            Iterable<NCLTestRule> children = comp.getRules();
+            for(NCLTestRule r : children){
+                if(naiveEvaluate(r, settings, count) != and)
+                    return !and;
+            }
+            return and;
+        }
+
+        NCLRule r = (NCLRule) rule;
+        count[0]++;
+        String value = settings.getValue(r.getVar().getName());
+        if(value == null)
+            return false;
+
+        int comp = Double.compare(Double.parseDouble(value), Double.parseDouble(r.getValue()));
+        switch(r.getComparator()){
+            case EQ: return comp == 0;
+            case NE: return comp != 0;
+            case GT: return comp > 0;
+            case LT: return comp < 0;
+            case GTE: return comp >= 0;
+            case LTE: return comp <= 0;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,198 @@
+/********************************************************************************
+ * This file is part of the api for NCL authoring - aNa.
+ *
+ * Copyright (c) 2011, MídiaCom Lab (www.midiacom.uff.br)
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * All advertising materials mentioning features or use of this software must
+ *    display the following acknowledgement:
+ *        This product includes the Api for NCL Authoring - aNa
+ *        (http://joeldossantos.github.com/aNa).
+ *
+ *  * Neither the name of the lab nor the names of its contributors may be used
+ *    to endorse or promote products derived from this software without specific
+ *    prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY MÍDIACOM LAB AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE MÍDIACOM LAB OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *******************************************************************************/
+package br.uff.midiacom.ana.rule;
+
+import br.uff.midiacom.ana.NCLInvalidIdentifierException;
+import br.uff.midiacom.ana.NCLValues.NCLComparator;
+import br.uff.midiacom.ana.NCLValues.NCLOperator;
+import br.uff.midiacom.ana.interfaces.NCLProperty;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class NCLRuleGraphTest {
+
+    private NCLRule createRule(String id, String var, NCLComparator comp, String value) throws NCLInvalidIdentifierException {
+        NCLRule rule = new NCLRule(id);
+        rule.setVar(new NCLProperty(var));
+        rule.setComparator(comp);
+        rule.setValue(value);
+        return rule;
+    }
+
+    @Test
+    public void test1() throws NCLInvalidIdentifierException {
+        NCLRuleBase base = new NCLRuleBase();
+
+        NCLCompositeRule c1 = new NCLCompositeRule("c1");
+        c1.setOperator(NCLOperator.AND);
+        c1.addRule(createRule("a1", "system.language", NCLComparator.EQ, "pt"));
+        c1.addRule(createRule("a2", "system.caption", NCLComparator.EQ, "on"));
+        base.addRule(c1);
+
+        NCLCompositeRule c2 = new NCLCompositeRule("c2");
+        c2.setOperator(NCLOperator.AND);
+        c2.addRule(createRule("b1", "system.caption", NCLComparator.EQ, "on"));
+        c2.addRule(createRule("b2", "system.language", NCLComparator.EQ, "pt"));
+        base.addRule(c2);
+
+        NCLCompositeRule c3 = new NCLCompositeRule("c3");
+        c3.setOperator(NCLOperator.OR);
+        c3.addRule(createRule("d1", "system.language", NCLComparator.EQ, "pt"));
+        c3.addRule(createRule("d2", "system.memory", NCLComparator.GT, "32"));
+        base.addRule(c3);
+
+        NCLRule r1 = createRule("r1", "system.language", NCLComparator.EQ, "pt");
+        base.addRule(r1);
+
+        NCLRuleGraph graph = new NCLRuleGraph();
+        graph.compile(base);
+
+        // 3 regras simples distintas, c1 e c2 compartilham o mesmo nó, c3
+        assertEquals(5, graph.size());
+
+        NCLSettings settings = new NCLSettings();
+        settings.setValue("system.language", "pt");
+        settings.setValue("system.caption", "on");
+        settings.setValue("system.memory", "16");
+
+        assertTrue(graph.evaluate(c1, settings));
+        assertTrue(graph.evaluate(c2, settings));
+        assertTrue(graph.evaluate(c3, settings));
+        assertTrue(graph.evaluate(r1, settings));
+        assertEquals(2, graph.getEvaluations());
+
+        settings.setValue("system.caption", "off");
+        assertFalse(graph.evaluate(c2, settings));
+        assertFalse(graph.evaluate(c1, settings));
+        assertEquals(4, graph.getEvaluations());
+    }
+
+    @Test
+    public void test2() throws NCLInvalidIdentifierException {
+        NCLRuleGraph graph = new NCLRuleGraph();
+        NCLSettings settings = new NCLSettings();
+        settings.setValue("system.screenSize", "1920");
+
+        assertTrue(graph.evaluate(createRule("r1", "system.screenSize", NCLComparator.GT, "800"), settings));
+        assertFalse(graph.evaluate(createRule("r2", "system.screenSize", NCLComparator.LT, "800"), settings));
+        assertTrue(graph.evaluate(createRule("r3", "system.screenSize", NCLComparator.GTE, "1920.0"), settings));
+        assertFalse(graph.evaluate(createRule("r4", "system.memory", NCLComparator.NE, "0"), settings));
+
+        NCLCompositeRule empty = new NCLCompositeRule("c1");
+        empty.setOperator(NCLOperator.AND);
+        assertFalse(graph.evaluate(empty, settings));
+    }
+
+
+    @Test
+    public void test3() throws NCLInvalidIdentifierException {
+        Random random = new Random(42);
+        NCLComparator[] comparators = NCLComparator.values();
+
+        String[][] atoms = new String[40][];
+        for(int i = 0; i < atoms.length; i++){
+            atoms[i] = new String[]{"v" + random.nextInt(5),
+                                    Integer.toString(random.nextInt(comparators.length)),
+                                    Integer.toString(random.nextInt(10))};
+        }
+
+        NCLRuleBase base = new NCLRuleBase();
+        List<NCLCompositeRule> rules = new ArrayList<NCLCompositeRule>();
+        for(int i = 0; i < 200; i++){
+            NCLCompositeRule comp = new NCLCompositeRule("c" + i);
+            comp.setOperator(random.nextBoolean() ? NCLOperator.AND : NCLOperator.OR);
+            int n = 2 + random.nextInt(4);
+            for(int j = 0; j < n; j++){
+                String[] a = atoms[random.nextInt(atoms.length)];
+                comp.addRule(createRule("c" + i + "r" + j, a[0], comparators[Integer.parseInt(a[1])], a[2]));
+            }
+            base.addRule(comp);
+            rules.add(comp);
+        }
+
+        NCLSettings settings = new NCLSettings();
+        for(int i = 0; i < 5; i++)
+            settings.setValue("v" + i, Integer.toString(random.nextInt(10)));
+
+        NCLRuleGraph graph = new NCLRuleGraph();
+        graph.compile(base);
+
+        for(int round = 0; round < 5; round++){
+            settings.setValue("v" + random.nextInt(5), Integer.toString(random.nextInt(10)));
+            for(NCLCompositeRule rule : rules)
+                assertEquals(evaluate(rule, settings), graph.evaluate(rule, settings));
+        }
+
+        // cada regra simples distinta é avaliada no máximo uma vez por rodada
+        assertTrue(graph.getEvaluations() <= atoms.length * 5);
+    }
+
+
+    private boolean evaluate(NCLTestRule rule, NCLSettings settings) {
+        if(rule instanceof NCLCompositeRule){
+            NCLCompositeRule comp = (NCLCompositeRule) rule;
+            boolean and = comp.getOperator() == NCLOperator.AND;
+            Iterable<NCLTestRule> children = comp.getRules();
+            for(NCLTestRule r : children){
+                if(evaluate(r, settings) != and)
+                    return !and;
+            }
+            return and;
+        }
+
+        NCLRule r = (NCLRule) rule;
+        String value = settings.getValue(r.getVar().getName());
+        if(value == null)
+            return false;
+
+        int comp = Double.compare(Double.parseDouble(value), Double.parseDouble(r.getValue()));
+        switch(r.getComparator()){
+            case EQ: return comp == 0;
+            case NE: return comp != 0;
+            case GT: return comp > 0;
+            case LT: return comp < 0;
+            case GTE: return comp >= 0;
+            case LTE: return comp <= 0;
+        }
+        return false;
+    }
+}